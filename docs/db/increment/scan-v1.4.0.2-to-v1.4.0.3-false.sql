@@ -0,0 +1,52 @@
+USE `scan_platon`;
+
+-- 备份表按id范围分区，由scan-job的bakDataPruneJobHandler任务预建分区并按消费断点整分区删除
+-- 首次分区会整表重建一次，数据量大时请在业务低峰期执行
+ALTER TABLE `tx_bak` PARTITION BY RANGE (`id`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+ALTER TABLE `tx_erc_20_bak` PARTITION BY RANGE (`id`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+ALTER TABLE `tx_erc_721_bak` PARTITION BY RANGE (`id`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+ALTER TABLE `tx_erc_1155_bak` PARTITION BY RANGE (`id`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+ALTER TABLE `tx_transfer_bak` PARTITION BY RANGE (`id`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+ALTER TABLE `tx_delegation_reward_bak` PARTITION BY RANGE (`id`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+ALTER TABLE `n_opt_bak` PARTITION BY RANGE (`id`) (PARTITION `p_max` VALUES LESS THAN MAXVALUE);
+
+-- 质押/委托变更的地址，由agent在同一事务中写入，scan-job的addressUpdateJobHandler按地址增量更新地址表的质押委托统计
+DROP TABLE IF EXISTS `address_dirty`;
+CREATE TABLE `address_dirty` (
+                                 `address` varchar(42) NOT NULL COMMENT '地址',
+                                 `version` bigint(20) NOT NULL DEFAULT '1' COMMENT '变更版本号，每次标记加1，处理时按版本号删除，防止并发标记丢失',
+                                 PRIMARY KEY (`address`)
+);
+
+-- token总供应量增量更新的断点，从备份表当前最大id开始，之前的变动由全量更新兜底
+INSERT INTO `point_log`(`id`, `type`, `name`, `desc`, `position`) SELECT * FROM (( SELECT 13 AS 'id', 1 AS 'type', 'tx_erc_20_bak_total_supply' AS 'name', '从tx_erc_20_bak交易备份表增量更新token总供应量的断点记录' AS 'desc', tb.`id` AS 'position' FROM `tx_erc_20_bak` tb ORDER BY tb.`id` DESC LIMIT 1 ) UNION ( SELECT 13 AS 'id', 1 AS 'type', 'tx_erc_20_bak_total_supply' AS 'name', '从tx_erc_20_bak交易备份表增量更新token总供应量的断点记录' AS 'desc', '0' AS 'position')) t LIMIT 1;
+INSERT INTO `point_log`(`id`, `type`, `name`, `desc`, `position`) SELECT * FROM (( SELECT 14 AS 'id', 1 AS 'type', 'tx_erc_721_bak_total_supply' AS 'name', '从tx_erc_721_bak交易备份表增量更新token总供应量的断点记录' AS 'desc', tb.`id` AS 'position' FROM `tx_erc_721_bak` tb ORDER BY tb.`id` DESC LIMIT 1 ) UNION ( SELECT 14 AS 'id', 1 AS 'type', 'tx_erc_721_bak_total_supply' AS 'name', '从tx_erc_721_bak交易备份表增量更新token总供应量的断点记录' AS 'desc', '0' AS 'position')) t LIMIT 1;
+
+-- scan-job备份表消费流的租约，多个执行器同时调度时只有持有租约的执行器推进断点
+DROP TABLE IF EXISTS `job_lease`;
+CREATE TABLE `job_lease` (
+                             `name` varchar(64) NOT NULL COMMENT '租约名称',
+                             `owner` varchar(128) NOT NULL COMMENT '持有者标识',
+                             `expire_time` datetime NOT NULL COMMENT '到期时间',
+                             PRIMARY KEY (`name`)
+);
+
+-- token持有者按余额排序：余额左补0到uint256的最大位数后按字符串排序即为数值顺序，持有者列表在(token_address, balance_sort)索引上分页
+ALTER TABLE `token_holder`
+    ADD COLUMN `balance_sort` char(78) GENERATED ALWAYS AS (LPAD(IFNULL(`balance`, '0'), 78, '0')) STORED COMMENT '余额排序键，由balance生成',
+    ADD INDEX `idx_token_address_balance_sort` (`token_address`, `balance_sort`);
+
+-- token持有者数量及余额之和，scan-job更新余额时增量维护
+-- 余额为uint256，余额之和可能超过decimal的最大位数(65位)，以字符串保存，由scan-job按BigInteger计算
+ALTER TABLE `token` ADD COLUMN `holder_sum_balance` varchar(128) NOT NULL DEFAULT '0' COMMENT 'token持有者(erc20、erc721)余额之和';
+-- 只回填单个余额不超过58位的token的余额之和(千万个持有者以内不会超过decimal(65,0))，其余token由升级后执行一次updateTokenHolderCountJobHandler补齐
+UPDATE `token` t
+    INNER JOIN (
+        SELECT `token_address`,
+               count(1) AS `holder_count`,
+               IF(max(length(`balance`)) <= 58, cast(sum(cast(IF(length(`balance`) <= 58, `balance`, '0') AS decimal(65,0))) AS char), '0') AS `sum_balance`
+        FROM `token_holder`
+        WHERE `balance_sort` > LPAD('0', 78, '0')
+        GROUP BY `token_address`
+    ) th ON t.`address` = th.`token_address`
+SET t.`holder` = th.`holder_count`, t.`holder_sum_balance` = th.`sum_balance`;
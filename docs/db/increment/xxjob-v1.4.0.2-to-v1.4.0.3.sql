@@ -0,0 +1,21 @@
+#
+# XXL-JOB v2.3.1-SNAPSHOT
+# Copyright (c) 2015-present, xuxueli.
+use `xxl_job`;
+
+INSERT INTO `xxl_job_info`(`job_group`, `job_desc`, `add_time`, `update_time`, `author`, `alarm_email`, `schedule_type`, `schedule_conf`, `misfire_strategy`, `executor_route_strategy`, `executor_handler`, `executor_param`, `executor_block_strategy`, `executor_timeout`, `executor_fail_retry_count`, `glue_type`, `glue_source`, `glue_remark`, `glue_updatetime`, `child_jobid`, `trigger_status`, `trigger_last_time`, `trigger_next_time`)
+VALUES (2, '备份表预建分区及按断点删除分区', '2022-03-01 10:00:00', '2022-03-01 10:00:00', 'admin', '', 'CRON', '0 0/30 * * * ?', 'DO_NOTHING', 'FIRST', 'bakDataPruneJobHandler', '', 'SERIAL_EXECUTION', 0, 0, 'BEAN', '', 'GLUE代码初始化', '2022-03-01 10:00:00', '', 0, 0, 0);
+
+UPDATE xxl_job_info SET job_desc = '地址表信息补充(质押委托变更的地址)' WHERE job_group = 2 AND executor_handler = 'addressUpdateJobHandler';
+
+INSERT INTO `xxl_job_info`(`job_group`, `job_desc`, `add_time`, `update_time`, `author`, `alarm_email`, `schedule_type`, `schedule_conf`, `misfire_strategy`, `executor_route_strategy`, `executor_handler`, `executor_param`, `executor_block_strategy`, `executor_timeout`, `executor_fail_retry_count`, `glue_type`, `glue_source`, `glue_remark`, `glue_updatetime`, `child_jobid`, `trigger_status`, `trigger_last_time`, `trigger_next_time`)
+VALUES (2, '地址表质押委托信息全量核对', '2022-03-16 10:00:00', '2022-03-16 10:00:00', 'admin', '', 'CRON', '0 0/10 * * * ?', 'DO_NOTHING', 'FIRST', 'addressConsistencyJobHandler', '1000', 'SERIAL_EXECUTION', 0, 0, 'BEAN', '', 'GLUE代码初始化', '2022-03-16 10:00:00', '', 0, 0, 0);
+
+UPDATE xxl_job_info SET schedule_conf = '0 */1 * * * ?', executor_param = '' WHERE job_group = 2 AND executor_handler = 'nodeOptMoveToESJobHandler';
+
+UPDATE xxl_job_info SET executor_param = '2000' WHERE job_group = 2 AND executor_handler IN ('incrementUpdatePrc20TokenHolderBalanceJobHandler', 'incrementUpdatePrc721TokenHolderBalanceJobHandler');
+
+INSERT INTO `xxl_job_info`(`job_group`, `job_desc`, `add_time`, `update_time`, `author`, `alarm_email`, `schedule_type`, `schedule_conf`, `misfire_strategy`, `executor_route_strategy`, `executor_handler`, `executor_param`, `executor_block_strategy`, `executor_timeout`, `executor_fail_retry_count`, `glue_type`, `glue_source`, `glue_remark`, `glue_updatetime`, `child_jobid`, `trigger_status`, `trigger_last_time`, `trigger_next_time`)
+VALUES (2, '增量更新token的总供应量', '2022-03-24 10:00:00', '2022-03-24 10:00:00', 'admin', '', 'CRON', '0 */1 * * * ?', 'DO_NOTHING', 'FIRST', 'incrementUpdateTokenTotalSupplyJobHandler', '5000', 'SERIAL_EXECUTION', 0, 0, 'BEAN', '', 'GLUE代码初始化', '2022-03-24 10:00:00', '', 0, 0, 0);
+
+UPDATE xxl_job_info SET schedule_conf = '0 0 */1 * * ?' WHERE job_group = 2 AND executor_handler = 'totalUpdateTokenTotalSupplyJobHandler';
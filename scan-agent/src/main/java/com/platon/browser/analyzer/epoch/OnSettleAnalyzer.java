@@ -4,13 +4,10 @@ import cn.hutool.core.collection.CollUtil;
 import com.alibaba.fastjson.JSON;
 import com.platon.browser.bean.*;
 import com.platon.browser.config.BlockChainConfig;
-import com.platon.browser.dao.custommapper.CustomGasEstimateLogMapper;
 import com.platon.browser.dao.custommapper.EpochBusinessMapper;
 import com.platon.browser.dao.entity.GasEstimate;
-import com.platon.browser.dao.entity.GasEstimateLog;
 import com.platon.browser.dao.entity.Staking;
 import com.platon.browser.dao.entity.StakingExample;
-import com.platon.browser.dao.mapper.GasEstimateLogMapper;
 import com.platon.browser.dao.mapper.StakingMapper;
 import com.platon.browser.dao.param.epoch.Settle;
 import com.platon.browser.elasticsearch.dto.Block;
@@ -42,12 +39,6 @@ public class OnSettleAnalyzer {
     @Resource
     private StakingMapper stakingMapper;
 
-    @Resource
-    private CustomGasEstimateLogMapper customGasEstimateLogMapper;
-
-    @Resource
-    private GasEstimateLogMapper gasEstimateLogMapper;
-
     @Resource
     private RestrictingMinimumReleaseParamService restrictingMinimumReleaseParamService;
 
@@ -171,19 +162,10 @@ public class OnSettleAnalyzer {
             gasEstimates.add(ge);
         });
 
-        // 1、把周期数需要自增1的节点质押先入mysql数据库
-        Long seq = block.getNum() * 10000;
-        List<GasEstimateLog> gasEstimateLogs = new ArrayList<>();
-        GasEstimateLog gasEstimateLog = new GasEstimateLog();
-        gasEstimateLog.setSeq(seq);
-        gasEstimateLog.setJson(JSON.toJSONString(gasEstimates));
-        gasEstimateLogs.add(gasEstimateLog);
-        customGasEstimateLogMapper.batchInsertOrUpdateSelective(gasEstimateLogs, GasEstimateLog.Column.values());
-
+        // 周期数需要自增1的节点质押与结算在同一事务中直接更新，无需再经gas_estimate_log中转
         if (CollUtil.isNotEmpty(gasEstimates)) {
             epochBusinessMapper.updateGasEstimate(gasEstimates);
         }
-        gasEstimateLogMapper.deleteByPrimaryKey(seq);
 
         log.debug("处理耗时:{} ms", System.currentTimeMillis() - startTime);
 
@@ -1,8 +1,8 @@
 package com.platon.browser.analyzer.ppos;
 
 import com.platon.browser.bean.CollectionEvent;
+import com.platon.browser.cache.DelegationStateCache;
 import com.platon.browser.dao.entity.GasEstimate;
-import com.platon.browser.dao.custommapper.CustomGasEstimateMapper;
 import com.platon.browser.dao.custommapper.DelegateBusinessMapper;
 import com.platon.browser.dao.param.ppos.DelegateCreate;
 import com.platon.browser.elasticsearch.dto.Transaction;
@@ -12,8 +12,6 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * @description: 委托业务参数转换器
@@ -28,7 +26,7 @@ public class DelegateCreateAnalyzer extends PPOSAnalyzer<DelegateCreate> {
     private DelegateBusinessMapper delegateBusinessMapper;
 
     @Resource
-    private CustomGasEstimateMapper customGasEstimateMapper;
+    private DelegationStateCache delegationStateCache;
 
     /**
      * 发起委托(委托)
@@ -60,16 +58,15 @@ public class DelegateCreateAnalyzer extends PPOSAnalyzer<DelegateCreate> {
                 .build();
 
         delegateBusinessMapper.create(businessParam);
+        delegationStateCache.onDelegateCreate(businessParam);
 
-        // 1. 新增 估算gas委托未计算周期 epoch = 0: 直接入库到mysql数据库
-        List<GasEstimate> estimates = new ArrayList<>();
+        // 1. 新增 估算gas委托未计算周期 epoch = 0: 区块分析完成后批量入库
         GasEstimate estimate = new GasEstimate();
         estimate.setNodeId(txParam.getNodeId());
         estimate.setSbn(txParam.getStakingBlockNum().longValue());
         estimate.setAddr(tx.getFrom());
         estimate.setEpoch(0L);
-        estimates.add(estimate);
-        customGasEstimateMapper.batchInsertOrUpdateSelective(estimates, GasEstimate.Column.values());
+        delegationStateCache.upsertGasEstimate(estimate);
 
         log.debug("处理耗时:{} ms", System.currentTimeMillis() - startTime);
         return businessParam;
@@ -1,20 +1,13 @@
 package com.platon.browser.analyzer.ppos;
 
-import cn.hutool.core.util.ObjectUtil;
 import com.alibaba.fastjson.JSON;
 import com.platon.browser.bean.CollectionEvent;
 import com.platon.browser.bean.CustomStaking;
 import com.platon.browser.bean.DelegateExitResult;
-import com.platon.browser.cache.AddressCache;
+import com.platon.browser.cache.DelegationStateCache;
 import com.platon.browser.config.BlockChainConfig;
-import com.platon.browser.dao.custommapper.CustomAddressMapper;
-import com.platon.browser.dao.custommapper.CustomGasEstimateMapper;
 import com.platon.browser.dao.custommapper.DelegateBusinessMapper;
 import com.platon.browser.dao.entity.*;
-import com.platon.browser.dao.mapper.AddressMapper;
-import com.platon.browser.dao.mapper.DelegationMapper;
-import com.platon.browser.dao.mapper.GasEstimateMapper;
-import com.platon.browser.dao.mapper.StakingMapper;
 import com.platon.browser.dao.param.BusinessParam;
 import com.platon.browser.dao.param.ppos.DelegateExit;
 import com.platon.browser.elasticsearch.dto.DelegationReward;
@@ -48,25 +41,7 @@ public class DelegateExitAnalyzer extends PPOSAnalyzer<DelegateExitResult> {
     private DelegateBusinessMapper delegateBusinessMapper;
 
     @Resource
-    private StakingMapper stakingMapper;
-
-    @Resource
-    private DelegationMapper delegationMapper;
-
-    @Resource
-    private AddressCache addressCache;
-
-    @Resource
-    private CustomGasEstimateMapper customGasEstimateMapper;
-
-    @Resource
-    private GasEstimateMapper gasEstimateMapper;
-
-    @Resource
-    private AddressMapper addressMapper;
-
-    @Resource
-    private CustomAddressMapper customAddressMapper;
+    private DelegationStateCache delegationStateCache;
 
     /**
      * 减持/撤销委托(赎回委托)
@@ -95,22 +70,18 @@ public class DelegateExitAnalyzer extends PPOSAnalyzer<DelegateExitResult> {
         delegationKey.setDelegateAddr(tx.getFrom());
         delegationKey.setNodeId(txParam.getNodeId());
         delegationKey.setStakingBlockNum(txParam.getStakingBlockNum().longValue());
-        Delegation delegation = delegationMapper.selectByPrimaryKey(delegationKey);
+        Delegation delegation = delegationStateCache.getDelegation(delegationKey);
 
         if (delegation == null) {
             return der;
         }
         // 查询出对应的节点信息
-        StakingExample stakingExample = new StakingExample();
-        stakingExample.createCriteria().andNodeIdEqualTo(delegation.getNodeId()).andStakingBlockNumEqualTo(delegation.getStakingBlockNum());
-        List<Staking> stakings = stakingMapper.selectByExample(stakingExample);
+        Staking staking = delegationStateCache.getStaking(delegation.getNodeId(), delegation.getStakingBlockNum());
 
-        if (stakings.isEmpty()) {
+        if (staking == null) {
             throw new BusinessException("委托者:" + tx.getFrom() + "的质押节点:" + txParam.getNodeId() + "不存在");
         }
 
-        Staking staking = stakings.get(0);
-
         DelegateExit businessParam = DelegateExit.builder()
                                                  .nodeId(txParam.getNodeId())
                                                  .blockNumber(BigInteger.valueOf(tx.getNum()))
@@ -208,6 +179,7 @@ public class DelegateExitAnalyzer extends PPOSAnalyzer<DelegateExitResult> {
 
         businessParam.setRealRefundAmount(realRefundAmount);
         delegateBusinessMapper.exit(businessParam);
+        delegationStateCache.onDelegateExit(businessParam);
 
         der.setDelegateExit(businessParam);
 
@@ -244,7 +216,8 @@ public class DelegateExitAnalyzer extends PPOSAnalyzer<DelegateExitResult> {
             der.setDelegationReward(delegationReward);
         }
 
-        updateAddressHaveReward(businessParam);
+        // 更新地址已领取委托奖励，区块分析完成后批量入库
+        delegationStateCache.addHaveReward(businessParam.getTxFrom(), businessParam.getDelegateReward());
 
         if (isRefundAll) {
             // 1. 全部赎回： 删除对应记录
@@ -252,40 +225,19 @@ public class DelegateExitAnalyzer extends PPOSAnalyzer<DelegateExitResult> {
             gek.setNodeId(txParam.getNodeId());
             gek.setAddr(tx.getFrom());
             gek.setSbn(txParam.getStakingBlockNum().longValue());
-            gasEstimateMapper.deleteByPrimaryKey(gek);
+            delegationStateCache.deleteGasEstimate(gek);
         } else {
             // 2. 部分赎回：1. 新增 委托未计算周期  记录， epoch = 0
-            List<GasEstimate> estimates = new ArrayList<>();
             GasEstimate estimate = new GasEstimate();
             estimate.setNodeId(txParam.getNodeId());
             estimate.setSbn(txParam.getStakingBlockNum().longValue());
             estimate.setAddr(tx.getFrom());
             estimate.setEpoch(0L);
-            estimates.add(estimate);
-            customGasEstimateMapper.batchInsertOrUpdateSelective(estimates, GasEstimate.Column.values());
+            delegationStateCache.upsertGasEstimate(estimate);
         }
 
         log.debug("处理耗时:{} ms", System.currentTimeMillis() - startTime);
         return der;
     }
 
-    /**
-     * 更新地址已领取委托奖励
-     *
-     * @param businessParam:
-     * @return: void
-     * @date: 2021/12/2
-     */
-    private void updateAddressHaveReward(DelegateExit businessParam) {
-        Address addressInfo = addressMapper.selectByPrimaryKey(businessParam.getTxFrom());
-        if (ObjectUtil.isNull(addressInfo)) {
-            // db不存在则在缓存中创建一个新的地址，并更新已领取委托奖励
-            Address address = addressCache.createDefaultAddress(businessParam.getTxFrom());
-            address.setHaveReward(businessParam.getDelegateReward());
-            addressMapper.insertSelective(address);
-        } else {
-            customAddressMapper.updateAddressHaveReward(businessParam.getTxFrom(), businessParam.getDelegateReward());
-        }
-    }
-
 }
@@ -1,15 +1,10 @@
 package com.platon.browser.analyzer.ppos;
 
-import cn.hutool.core.util.ObjectUtil;
 import com.alibaba.fastjson.JSON;
 import com.platon.browser.bean.CollectionEvent;
-import com.platon.browser.cache.AddressCache;
-import com.platon.browser.dao.custommapper.CustomAddressMapper;
-import com.platon.browser.dao.custommapper.CustomGasEstimateMapper;
+import com.platon.browser.cache.DelegationStateCache;
 import com.platon.browser.dao.custommapper.DelegateBusinessMapper;
-import com.platon.browser.dao.entity.Address;
 import com.platon.browser.dao.entity.GasEstimate;
-import com.platon.browser.dao.mapper.AddressMapper;
 import com.platon.browser.dao.param.ppos.DelegateRewardClaim;
 import com.platon.browser.elasticsearch.dto.DelegationReward;
 import com.platon.browser.elasticsearch.dto.Transaction;
@@ -37,16 +32,7 @@ public class DelegateRewardClaimAnalyzer extends PPOSAnalyzer<DelegationReward>
     private DelegateBusinessMapper delegateBusinessMapper;
 
     @Resource
-    private AddressCache addressCache;
-
-    @Resource
-    private CustomGasEstimateMapper customGasEstimateMapper;
-
-    @Resource
-    private AddressMapper addressMapper;
-
-    @Resource
-    private CustomAddressMapper customAddressMapper;
+    private DelegationStateCache delegationStateCache;
 
     /**
      * 领取奖励
@@ -79,8 +65,7 @@ public class DelegateRewardClaimAnalyzer extends PPOSAnalyzer<DelegationReward>
         List<DelegationReward.Extra> extraList = new ArrayList<>();
         List<DelegationReward.Extra> extraCleanList = new ArrayList<>();
 
-        // 1. 领取委托奖励 估算gas委托未计算周期 epoch = 0: 直接入库到mysql数据库
-        List<GasEstimate> estimates = new ArrayList<>();
+        // 1. 领取委托奖励 估算gas委托未计算周期 epoch = 0: 区块分析完成后批量入库
         for (Reward reward : businessParam.getRewardList()) {
             DelegationReward.Extra extra = new DelegationReward.Extra();
             extra.setNodeId(reward.getNodeId());
@@ -97,7 +82,7 @@ public class DelegateRewardClaimAnalyzer extends PPOSAnalyzer<DelegationReward>
             estimate.setSbn(reward.getStakingNum().longValue());
             estimate.setAddr(tx.getFrom());
             estimate.setEpoch(0L);
-            estimates.add(estimate);
+            delegationStateCache.upsertGasEstimate(estimate);
         }
 
         DelegationReward delegationReward = null;
@@ -114,36 +99,11 @@ public class DelegateRewardClaimAnalyzer extends PPOSAnalyzer<DelegationReward>
             delegationReward.setExtraClean(JSON.toJSONString(extraCleanList));
         }
 
-        updateAddressHaveReward(businessParam);
-
-        // 直接入库到mysql数据库
-        customGasEstimateMapper.batchInsertOrUpdateSelective(estimates, GasEstimate.Column.values());
+        // 更新地址已领取委托奖励，区块分析完成后批量入库
+        delegationStateCache.addHaveReward(businessParam.getAddress(), txTotalReward);
 
         log.debug("处理耗时:{} ms", System.currentTimeMillis() - startTime);
         return delegationReward;
     }
 
-    /**
-     * 更新地址已领取委托奖励
-     *
-     * @param businessParam:
-     * @return: void
-     * @date: 2021/12/2
-     */
-    private void updateAddressHaveReward(DelegateRewardClaim businessParam) {
-        BigDecimal totalAmount = BigDecimal.ZERO;
-        for (Reward reward : businessParam.getRewardList()) {
-            totalAmount = totalAmount.add(reward.getReward());
-        }
-        Address addressInfo = addressMapper.selectByPrimaryKey(businessParam.getAddress());
-        if (ObjectUtil.isNull(addressInfo)) {
-            // db不存在则在缓存中创建一个新的地址，并更新已领取委托奖励
-            Address address = addressCache.createDefaultAddress(businessParam.getAddress());
-            address.setHaveReward(totalAmount);
-            addressMapper.insertSelective(address);
-        } else {
-            customAddressMapper.updateAddressHaveReward(businessParam.getAddress(), totalAmount);
-        }
-    }
-
 }
@@ -0,0 +1,398 @@
+package com.platon.browser.cache;
+
+import cn.hutool.core.collection.CollUtil;
+import com.platon.browser.bean.CollectionEvent;
+import com.platon.browser.dao.custommapper.CustomAddressMapper;
+import com.platon.browser.dao.custommapper.CustomDelegationMapper;
+import com.platon.browser.dao.custommapper.CustomGasEstimateMapper;
+import com.platon.browser.dao.entity.*;
+import com.platon.browser.dao.mapper.AddressMapper;
+import com.platon.browser.dao.mapper.DelegationMapper;
+import com.platon.browser.dao.mapper.StakingMapper;
+import com.platon.browser.dao.param.BusinessParam;
+import com.platon.browser.dao.param.ppos.DelegateCreate;
+import com.platon.browser.dao.param.ppos.DelegateExit;
+import com.platon.browser.elasticsearch.dto.Transaction;
+import com.platon.browser.param.DelegateExitParam;
+import com.platon.browser.param.ReportParam;
+import com.platon.browser.param.StakeExitParam;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 区块级委托状态缓存
+ * 在PPOSService分析区块内交易前，一次性批量加载本区块委托相关交易涉及的委托、质押和地址记录，
+ * 委托相关分析器在内存中读取和修改，最后由PPOSService在区块交易分析完成后批量回写gas估算和地址已领取奖励。
+ * 注意：
+ * 1、本缓存只在CollectionEventHandler的单线程事务内使用，每个区块开始前重新加载，结束后清空
+ * 2、本区块内存在退出质押或举报交易的节点，其委托记录会被对应的业务SQL直接修改，这些节点不走缓存，直接查库
+ *
+ * @date 2022/6/1
+ */
+@Slf4j
+@Component
+public class DelegationStateCache {
+
+    @Resource
+    private CustomDelegationMapper customDelegationMapper;
+
+    @Resource
+    private DelegationMapper delegationMapper;
+
+    @Resource
+    private StakingMapper stakingMapper;
+
+    @Resource
+    private AddressMapper addressMapper;
+
+    @Resource
+    private CustomAddressMapper customAddressMapper;
+
+    @Resource
+    private CustomGasEstimateMapper customGasEstimateMapper;
+
+    @Resource
+    private AddressCache addressCache;
+
+    /**
+     * 已加载的委托记录，value为null表示数据库中不存在
+     */
+    private final Map<String, Delegation> delegationMap = new HashMap<>();
+
+    /**
+     * 已加载的质押记录
+     */
+    private final Map<String, Staking> stakingMap = new HashMap<>();
+
+    /**
+     * 数据库中已存在的地址
+     */
+    private final Set<String> existAddressSet = new HashSet<>();
+
+    /**
+     * 已加载过的地址
+     */
+    private final Set<String> loadedAddressSet = new HashSet<>();
+
+    /**
+     * 本区块内委托记录会被质押业务直接修改的节点
+     */
+    private final Set<String> volatileNodeIdSet = new HashSet<>();
+
+    /**
+     * 本区块存在无法解析参数的退出质押或举报交易，无法确定受影响的节点，所有节点都不走缓存
+     */
+    private boolean allNodesVolatile;
+
+    /**
+     * 本区块地址已领取委托奖励增量
+     */
+    private final Map<String, BigDecimal> haveRewardMap = new LinkedHashMap<>();
+
+    /**
+     * 本区块gas估算记录的最终状态: 新增或更新
+     */
+    private final Map<String, GasEstimate> gasEstimateUpsertMap = new LinkedHashMap<>();
+
+    /**
+     * 本区块gas估算记录的最终状态: 删除
+     */
+    private final Map<String, GasEstimateKey> gasEstimateDeleteMap = new LinkedHashMap<>();
+
+    /**
+     * 批量加载本区块委托相关交易所需的委托、质押及地址记录
+     *
+     * @param event:
+     * @return: void
+     */
+    public void load(CollectionEvent event) {
+        clean();
+        List<DelegationKey> delegationKeys = new ArrayList<>();
+        Set<String> addresses = new HashSet<>();
+        for (Transaction tx : event.getTransactions()) {
+            collect(tx, delegationKeys, addresses);
+            for (Transaction vt : tx.getVirtualTransactions()) {
+                collect(vt, delegationKeys, addresses);
+            }
+        }
+        if (CollUtil.isNotEmpty(delegationKeys)) {
+            delegationKeys.forEach(key -> delegationMap.put(delegationKey(key.getDelegateAddr(), key.getNodeId(), key.getStakingBlockNum()), null));
+            customDelegationMapper.selectByDelegationKeys(delegationKeys)
+                                  .forEach(d -> delegationMap.put(delegationKey(d.getDelegateAddr(), d.getNodeId(), d.getStakingBlockNum()), d));
+            Set<String> nodeIds = new HashSet<>();
+            delegationKeys.forEach(key -> nodeIds.add(key.getNodeId()));
+            StakingExample stakingExample = new StakingExample();
+            stakingExample.createCriteria().andNodeIdIn(new ArrayList<>(nodeIds));
+            stakingMapper.selectByExample(stakingExample).forEach(s -> stakingMap.put(stakingKey(s.getNodeId(), s.getStakingBlockNum()), s));
+        }
+        if (CollUtil.isNotEmpty(addresses)) {
+            AddressExample addressExample = new AddressExample();
+            addressExample.createCriteria().andAddressIn(new ArrayList<>(addresses));
+            addressMapper.selectByExample(addressExample).forEach(a -> existAddressSet.add(a.getAddress()));
+            loadedAddressSet.addAll(addresses);
+        }
+        log.debug("区块[{}]委托状态缓存加载完成,委托数:{},质押数:{},地址数:{}", event.getBlock().getNum(), delegationMap.size(), stakingMap.size(), loadedAddressSet.size());
+    }
+
+    private void collect(Transaction tx, List<DelegationKey> delegationKeys, Set<String> addresses) {
+        if (Transaction.StatusEnum.SUCCESS.getCode() != tx.getStatus()) {
+            return;
+        }
+        switch (tx.getTypeEnum()) {
+            case DELEGATE_EXIT:
+                DelegateExitParam dep = parseTxParam(tx, DelegateExitParam.class);
+                if (dep == null || dep.getStakingBlockNum() == null) {
+                    break;
+                }
+                DelegationKey key = new DelegationKey();
+                key.setDelegateAddr(tx.getFrom());
+                key.setNodeId(dep.getNodeId());
+                key.setStakingBlockNum(dep.getStakingBlockNum().longValue());
+                delegationKeys.add(key);
+                addresses.add(tx.getFrom());
+                break;
+            case CLAIM_REWARDS:
+                addresses.add(tx.getFrom());
+                break;
+            case STAKE_EXIT:
+                StakeExitParam sep = parseTxParam(tx, StakeExitParam.class);
+                addVolatileNodeId(tx, sep == null ? null : sep.getNodeId());
+                break;
+            case REPORT:
+                ReportParam rp = parseTxParam(tx, ReportParam.class);
+                addVolatileNodeId(tx, rp == null ? null : rp.getVerify());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private <T> T parseTxParam(Transaction tx, Class<T> clazz) {
+        try {
+            return tx.getTxParam(clazz);
+        } catch (Exception e) {
+            log.warn("交易[{}]参数[{}]解析失败", tx.getHash(), tx.getInfo(), e);
+            return null;
+        }
+    }
+
+    private void addVolatileNodeId(Transaction tx, String nodeId) {
+        if (nodeId == null) {
+            log.warn("交易[{}]无法确定节点id，本区块所有节点的委托及质押记录直接查库", tx.getHash());
+            allNodesVolatile = true;
+            return;
+        }
+        volatileNodeIdSet.add(nodeId);
+    }
+
+    private boolean isVolatile(String nodeId) {
+        return allNodesVolatile || volatileNodeIdSet.contains(nodeId);
+    }
+
+    /**
+     * 获取委托记录，未加载或节点委托会被其它业务修改时查库
+     *
+     * @param key:
+     * @return: com.platon.browser.dao.entity.Delegation
+     */
+    public Delegation getDelegation(DelegationKey key) {
+        String k = delegationKey(key.getDelegateAddr(), key.getNodeId(), key.getStakingBlockNum());
+        if (isVolatile(key.getNodeId()) || !delegationMap.containsKey(k)) {
+            return delegationMapper.selectByPrimaryKey(key);
+        }
+        return delegationMap.get(k);
+    }
+
+    /**
+     * 获取质押记录，未加载或节点状态会被其它业务修改时查库
+     *
+     * @param nodeId:
+     * @param stakingBlockNum:
+     * @return: com.platon.browser.dao.entity.Staking
+     */
+    public Staking getStaking(String nodeId, Long stakingBlockNum) {
+        Staking staking = isVolatile(nodeId) ? null : stakingMap.get(stakingKey(nodeId, stakingBlockNum));
+        if (staking == null) {
+            StakingExample stakingExample = new StakingExample();
+            stakingExample.createCriteria().andNodeIdEqualTo(nodeId).andStakingBlockNumEqualTo(stakingBlockNum);
+            List<Staking> stakings = stakingMapper.selectByExample(stakingExample);
+            staking = stakings.isEmpty() ? null : stakings.get(0);
+        }
+        return staking;
+    }
+
+    /**
+     * 发起委托后同步内存中的委托记录
+     *
+     * @param param:
+     * @return: void
+     */
+    public void onDelegateCreate(DelegateCreate param) {
+        String k = delegationKey(param.getTxFrom(), param.getNodeId(), param.getStakingBlockNumber().longValue());
+        if (!delegationMap.containsKey(k)) {
+            return;
+        }
+        Delegation delegation = delegationMap.get(k);
+        if (delegation == null) {
+            delegation = new Delegation();
+            delegation.setDelegateAddr(param.getTxFrom());
+            delegation.setNodeId(param.getNodeId());
+            delegation.setStakingBlockNum(param.getStakingBlockNumber().longValue());
+            delegation.setDelegateHes(BigDecimal.ZERO);
+            delegation.setDelegateLocked(BigDecimal.ZERO);
+            delegation.setDelegateReleased(BigDecimal.ZERO);
+            delegation.setSequence(param.getSequence().longValue());
+            delegationMap.put(k, delegation);
+        }
+        delegation.setDelegateHes(delegation.getDelegateHes().add(param.getAmount()));
+        delegation.setIsHistory(BusinessParam.YesNoEnum.NO.getCode());
+        delegation.setCurDelegationBlockNum(param.getBlockNumber().longValue());
+    }
+
+    /**
+     * 撤销委托后同步内存中的委托记录
+     *
+     * @param param:
+     * @return: void
+     */
+    public void onDelegateExit(DelegateExit param) {
+        Delegation delegation = delegationMap.get(delegationKey(param.getTxFrom(), param.getNodeId(), param.getStakingBlockNumber().longValue()));
+        if (delegation == null) {
+            return;
+        }
+        delegation.setDelegateHes(param.getBalance().getDelegateHes());
+        delegation.setDelegateLocked(param.getBalance().getDelegateLocked());
+        delegation.setDelegateReleased(param.getBalance().getDelegateReleased());
+        delegation.setIsHistory(param.getCodeIsHistory());
+    }
+
+    /**
+     * 累加地址已领取委托奖励，在flush时批量入库
+     *
+     * @param address:
+     * @param reward:
+     * @return: void
+     */
+    public void addHaveReward(String address, BigDecimal reward) {
+        haveRewardMap.merge(address, reward, BigDecimal::add);
+    }
+
+    /**
+     * 新增或更新gas估算记录，在flush时批量入库
+     *
+     * @param estimate:
+     * @return: void
+     */
+    public void upsertGasEstimate(GasEstimate estimate) {
+        String k = delegationKey(estimate.getAddr(), estimate.getNodeId(), estimate.getSbn());
+        gasEstimateDeleteMap.remove(k);
+        gasEstimateUpsertMap.put(k, estimate);
+    }
+
+    /**
+     * 删除gas估算记录，在flush时批量入库
+     *
+     * @param key:
+     * @return: void
+     */
+    public void deleteGasEstimate(GasEstimateKey key) {
+        String k = delegationKey(key.getAddr(), key.getNodeId(), key.getSbn());
+        gasEstimateUpsertMap.remove(k);
+        gasEstimateDeleteMap.put(k, key);
+    }
+
+    /**
+     * 把本区块累计的变更批量回写数据库，必须在地址统计之前调用
+     *
+     * @param :
+     * @return: void
+     */
+    public void flush() {
+        if (!gasEstimateDeleteMap.isEmpty()) {
+            customGasEstimateMapper.batchDeleteByKeys(gasEstimateDeleteMap.values());
+        }
+        if (!gasEstimateUpsertMap.isEmpty()) {
+            customGasEstimateMapper.batchInsertOrUpdateSelective(new ArrayList<>(gasEstimateUpsertMap.values()), GasEstimate.Column.values());
+        }
+        if (!haveRewardMap.isEmpty()) {
+            List<String> unknown = new ArrayList<>();
+            haveRewardMap.keySet().forEach(address -> {
+                if (!loadedAddressSet.contains(address)) {
+                    unknown.add(address);
+                }
+            });
+            if (!unknown.isEmpty()) {
+                AddressExample addressExample = new AddressExample();
+                addressExample.createCriteria().andAddressIn(unknown);
+                addressMapper.selectByExample(addressExample).forEach(a -> existAddressSet.add(a.getAddress()));
+            }
+            List<Address> insertList = new ArrayList<>();
+            List<Address> updateList = new ArrayList<>();
+            haveRewardMap.forEach((address, reward) -> {
+                if (existAddressSet.contains(address)) {
+                    Address item = new Address();
+                    item.setAddress(address);
+                    item.setHaveReward(reward);
+                    updateList.add(item);
+                } else {
+                    // db不存在则在缓存中创建一个新的地址，并设置已领取委托奖励
+                    Address item = addressCache.createDefaultAddress(address);
+                    item.setHaveReward(reward);
+                    insertList.add(item);
+                }
+            });
+            if (!insertList.isEmpty()) {
+                addressMapper.batchInsertSelective(insertList,
+                                                   Address.Column.address,
+                                                   Address.Column.type,
+                                                   Address.Column.contractName,
+                                                   Address.Column.contractCreate,
+                                                   Address.Column.contractCreatehash,
+                                                   Address.Column.txQty,
+                                                   Address.Column.erc20TxQty,
+                                                   Address.Column.erc721TxQty,
+                                                   Address.Column.erc1155TxQty,
+                                                   Address.Column.transferQty,
+                                                   Address.Column.stakingQty,
+                                                   Address.Column.delegateQty,
+                                                   Address.Column.proposalQty,
+                                                   Address.Column.haveReward);
+            }
+            if (!updateList.isEmpty()) {
+                customAddressMapper.batchUpdateAddressHaveReward(updateList);
+            }
+        }
+        clean();
+    }
+
+    /**
+     * 清空缓存
+     *
+     * @param :
+     * @return: void
+     */
+    public void clean() {
+        delegationMap.clear();
+        stakingMap.clear();
+        existAddressSet.clear();
+        loadedAddressSet.clear();
+        volatileNodeIdSet.clear();
+        allNodesVolatile = false;
+        haveRewardMap.clear();
+        gasEstimateUpsertMap.clear();
+        gasEstimateDeleteMap.clear();
+    }
+
+    private static String delegationKey(String addr, String nodeId, Long sbn) {
+        return addr + ":" + nodeId + ":" + sbn;
+    }
+
+    private static String stakingKey(String nodeId, Long sbn) {
+        return nodeId + ":" + sbn;
+    }
+
+}
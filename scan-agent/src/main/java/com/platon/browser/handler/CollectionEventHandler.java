@@ -9,6 +9,7 @@ import com.platon.browser.analyzer.TransactionAnalyzer;
 import com.platon.browser.bean.*;
 import com.platon.browser.cache.AddressCache;
 import com.platon.browser.cache.NodeCache;
+import com.platon.browser.dao.batch.BulkWriter;
 import com.platon.browser.dao.custommapper.*;
 import com.platon.browser.dao.entity.TxTransferBak;
 import com.platon.browser.dao.mapper.NodeMapper;
@@ -36,6 +37,20 @@ import java.util.stream.Collectors;
 @Component
 public class CollectionEventHandler implements EventHandler<CollectionEvent> {
 
+    private static final String INSERT_TX_BAK = CustomTxBakMapper.class.getName() + ".insertOne";
+
+    private static final String INSERT_TX_ERC_20_BAK = CustomTx20BakMapper.class.getName() + ".insertOne";
+
+    private static final String INSERT_TX_ERC_721_BAK = CustomTx721BakMapper.class.getName() + ".insertOne";
+
+    private static final String INSERT_TX_ERC_1155_BAK = CustomTx1155BakMapper.class.getName() + ".insertOne";
+
+    private static final String INSERT_TX_TRANSFER_BAK = CustomTxTransferBakMapper.class.getName() + ".insertOne";
+
+    private static final String INSERT_TX_DELEGATION_REWARD_BAK = CustomTxDelegationRewardBakMapper.class.getName() + ".insertOne";
+
+    private static final String INSERT_N_OPT_BAK = CustomNOptBakMapper.class.getName() + ".insertOne";
+
     @Resource
     private PPOSService pposService;
 
@@ -48,15 +63,9 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
     @Resource
     private ComplementEventPublisher complementEventPublisher;
 
-    @Resource
-    private CustomNOptBakMapper customNOptBakMapper;
-
     @Resource
     private NodeMapper nodeMapper;
 
-    @Resource
-    private CustomTxBakMapper customTxBakMapper;
-
     @Resource
     private AddressCache addressCache;
 
@@ -67,19 +76,7 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
     private TransactionAnalyzer transactionAnalyzer;
 
     @Resource
-    private CustomTx20BakMapper customTx20BakMapper;
-
-    @Resource
-    private CustomTx721BakMapper customTx721BakMapper;
-
-    @Resource
-    private CustomTx1155BakMapper customTx1155BakMapper;
-
-    @Resource
-    private CustomTxTransferBakMapper customTxTransferBakMapper;
-
-    @Resource
-    private CustomTxDelegationRewardBakMapper customTxDelegationRewardBakMapper;
+    private BulkWriter bulkWriter;
 
     /**
      * 重试次数
@@ -144,10 +141,10 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
             if (CollUtil.isNotEmpty(txAnalyseResult.getNodeOptList())) {
                 nodeOpts1.addAll(txAnalyseResult.getNodeOptList());
             }
-            // 交易入库mysql，因为缓存无法实现自增id，不再删除操作日志表
+            // 交易入库mysql，因为缓存无法实现自增id，备份表由scan-job按消费断点整分区删除
             if (CollUtil.isNotEmpty(transactions)) {
-                // 依赖于数据库的自增id
-                customTxBakMapper.batchInsertOrUpdateSelective(transactions);
+                // 依赖于数据库的自增id，BATCH执行器按字节分块提交，返回时id已回填
+                bulkWriter.insert(INSERT_TX_BAK, transactions);
                 addTxErc20Bak(transactions);
                 addTxErc721Bak(transactions);
                 addTxErc1155Bak(transactions);
@@ -156,12 +153,12 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
             List<DelegationReward> delegationRewardList = txAnalyseResult.getDelegationRewardList();
             // 委托奖励交易入库
             if (CollUtil.isNotEmpty(delegationRewardList)) {
-                customTxDelegationRewardBakMapper.batchInsert(delegationRewardList);
+                bulkWriter.insert(INSERT_TX_DELEGATION_REWARD_BAK, delegationRewardList);
             }
-            // 操作日志入库mysql，再由定时任务同步到es，因为缓存无法实现自增id，所以不再由环形队列入库，不再删除操作日志表
+            // 操作日志入库mysql，再由定时任务同步到es，因为缓存无法实现自增id，所以不再由环形队列入库，备份表由scan-job按消费断点整分区删除
             if (CollUtil.isNotEmpty(nodeOpts1)) {
-                // 依赖于数据库的自增id
-                customNOptBakMapper.batchInsertOrUpdateSelective(nodeOpts1);
+                // 依赖于数据库的自增id，列表不含id，原replace into等同于insert
+                bulkWriter.insert(INSERT_N_OPT_BAK, nodeOpts1);
             }
             // 统计业务参数，以MySQL数据库块高为准，所以必须保证块高是最后入库
             statisticService.analyze(copyEvent);
@@ -238,7 +235,7 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
             }
         });
         if (CollUtil.isNotEmpty(erc20List)) {
-            customTx20BakMapper.batchInsert(erc20List);
+            bulkWriter.insert(INSERT_TX_ERC_20_BAK, erc20List);
         }
     }
 
@@ -257,7 +254,7 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
             }
         });
         if (CollUtil.isNotEmpty(erc721List)) {
-            customTx721BakMapper.batchInsert(erc721List);
+            bulkWriter.insert(INSERT_TX_ERC_721_BAK, erc721List);
         }
     }
 
@@ -276,7 +273,7 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
             }
         });
         if (CollUtil.isNotEmpty(erc1155Set)) {
-            customTx1155BakMapper.batchInsert(erc1155Set);
+            bulkWriter.insert(INSERT_TX_ERC_1155_BAK, erc1155Set);
         }
     }
 
@@ -288,7 +285,7 @@ public class CollectionEventHandler implements EventHandler<CollectionEvent> {
             }
         });
         if (CollUtil.isNotEmpty(transferSet)) {
-            customTxTransferBakMapper.batchInsert(transferSet);
+            bulkWriter.insert(INSERT_TX_TRANSFER_BAK, transferSet);
         }
     }
 }
@@ -6,7 +6,6 @@ import com.platon.browser.bean.CommonConstant;
 import com.platon.browser.bean.GasEstimateEvent;
 import com.platon.browser.dao.custommapper.EpochBusinessMapper;
 import com.platon.browser.dao.entity.GasEstimate;
-import com.platon.browser.dao.mapper.GasEstimateLogMapper;
 import com.platon.browser.utils.CommonUtil;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.retry.annotation.Recover;
@@ -14,7 +13,10 @@ import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -24,14 +26,24 @@ import java.util.concurrent.atomic.AtomicLong;
 @Component
 public class GasEstimateEventHandler implements EventHandler<GasEstimateEvent> {
 
-    @Resource
-    private GasEstimateLogMapper gasEstimateLogMapper;
-
     @Resource
     private EpochBusinessMapper epochBusinessMapper;
 
+    /**
+     * 待累加的估算记录，key为nodeId:sbn，epoch字段为需要累加的周期数
+     */
+    private final Map<String, GasEstimate> pendingMap = new LinkedHashMap<>();
+
+    /**
+     * 已合并到待处理集合的最大日志序号
+     */
     private Long prevSeq = 0L;
 
+    /**
+     * 已入库的最大日志序号
+     */
+    private Long flushedSeq = 0L;
+
     /**
      * 重试次数
      */
@@ -69,22 +81,63 @@ public class GasEstimateEventHandler implements EventHandler<GasEstimateEvent> {
             if (retryCount.incrementAndGet() > 1) {
                 log.error("重试次数[{}],该seq[{}]重复处理，可能会引起数据重复统计，event对象数据为[{}]", retryCount.get(), event.getSeq(), JSONUtil.toJsonStr(event));
             }
-            if (prevSeq.equals(event.getSeq())) {
-                // 如果当前序列号等于前一次的序列号，证明消息已经处理过
-                retryCount.set(0);
-                return;
+            if (event.getSeq() != null && event.getSeq() > prevSeq) {
+                merge(event.getEstimateList());
+                prevSeq = event.getSeq();
+            } else {
+                // 序列号不大于已合并的序列号，证明消息已经处理过
+                log.debug("该seq[{}]已处理，忽略", event.getSeq());
             }
-            List<GasEstimate> estimateList = event.getEstimateList();
-            if (estimateList != null && !estimateList.isEmpty()) {
-                epochBusinessMapper.updateGasEstimate(estimateList);
+            // 一批事件消费完后统一入库，跨区块合并同一质押的周期数
+            if (endOfBatch) {
+                flush();
             }
-            // es入库完成后删除mysql中的日志记录
-            gasEstimateLogMapper.deleteByPrimaryKey(event.getSeq());
-            prevSeq = event.getSeq();
             retryCount.set(0);
         } catch (Exception e) {
             log.error("", e);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * 按(nodeId,sbn)合并估算记录，同一质押出现多次时累加周期数
+     * 事件对象会被环形队列复用，所以需要复制一份
+     *
+     * @param estimateList:
+     * @return: void
+     * @date: 2022/3/14
+     */
+    private void merge(List<GasEstimate> estimateList) {
+        if (estimateList == null) {
+            return;
+        }
+        estimateList.forEach(estimate -> {
+            GasEstimate pending = pendingMap.computeIfAbsent(estimate.getNodeId() + ":" + estimate.getSbn(), key -> {
+                GasEstimate ge = new GasEstimate();
+                ge.setNodeId(estimate.getNodeId());
+                ge.setSbn(estimate.getSbn());
+                ge.setEpoch(0L);
+                return ge;
+            });
+            pending.setEpoch(pending.getEpoch() + 1);
+        });
+    }
+
+    /**
+     * 一次性累加周期数并按序号范围删除日志记录，两者在同一事务中
+     * 入库失败时保留待处理集合，下一批事件到达时重试；进程重启时由未删除的日志记录恢复
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/14
+     */
+    private void flush() {
+        if (prevSeq <= flushedSeq) {
+            return;
+        }
+        epochBusinessMapper.increaseGasEstimateEpoch(new ArrayList<>(pendingMap.values()), prevSeq);
+        log.debug("合并更新Gas估算周期数成功，质押数[{}]，日志序号<=[{}]", pendingMap.size(), prevSeq);
+        pendingMap.clear();
+        flushedSeq = prevSeq;
+    }
+
+}
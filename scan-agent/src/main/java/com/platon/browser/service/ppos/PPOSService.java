@@ -7,6 +7,7 @@ import com.platon.browser.analyzer.ppos.*;
 import org.springframework.stereotype.Service;
 
 import com.platon.browser.cache.AddressCache;
+import com.platon.browser.cache.DelegationStateCache;
 import com.platon.browser.cache.NetworkStatCache;
 import com.platon.browser.bean.CollectionEvent;
 import com.platon.browser.bean.DelegateExitResult;
@@ -89,6 +90,9 @@ public class PPOSService {
     @Resource
     private AddressCache addressCache;
 
+    @Resource
+    private DelegationStateCache delegationStateCache;
+
     // 前一个区块号
     private long preBlockNumber = 0L;
 
@@ -109,41 +113,50 @@ public class PPOSService {
             return tar;
         }
 
+        // 批量加载本区块委托相关交易涉及的委托、质押和地址记录
+        this.delegationStateCache.load(event);
+
         // 普通交易和虚拟PPOS交易统一设置seq排序序号： 区块号*100000+自增号(allTxCount)
         int allTxCount = 0;
-        for (Transaction tx : transactions) {
-            // 设置普通交易的交易序号
-            tx.setSeq(event.getBlock().getNum() * 100000 + allTxCount);
-            this.addressCache.update(tx);
-            // 自增
-            allTxCount++;
-            // 分析真实交易
-            this.analyzePPosTx(event, tx, tar);
-            // 分析虚拟交易
-            List<Transaction> virtualTxes = tx.getVirtualTransactions();
-            for (Transaction vt : virtualTxes) {
-                // 设置合约调用ppos交易的交易序号
-                vt.setSeq(event.getBlock().getNum() * 100000 + allTxCount);
-                switch (vt.getTypeEnum()) {
-                    // 如果是提案交易，且交易是由普通合约内部调用触发的，则
-                    // 所构造的虚拟交易HASH的格式是：<普通合约调用hash>-<合约内部ppos交易索引>
-                    // 由于底层在合约内部执行多个提案时，只有一个可以成功，是唯一的
-                    // 所以在把提案数据存储到platscan数据库中时，可以把虚拟提案交易的"-<合约内部ppos交易索引>" 去掉
-                    // 防止外部在查询提案时找不到相应的交易信息（也就是说通过普通合约代理执行的提案，在浏览器中查看提案所在交易时，是跳到普通合约交易的）
-                    case PROPOSAL_TEXT: // 2000
-                    case PROPOSAL_UPGRADE: // 2001
-                    case PROPOSAL_PARAMETER: // 2002
-                    case PROPOSAL_CANCEL: // 2005
-                        // case PROPOSAL_VOTE: // 2003 投票提案可以同时有多笔成功(实测)
-                    case VERSION_DECLARE: // 2004
-                        vt.setHash(vt.getHash().split("-")[0]);
-                    default:
-                        break;
-                }
-                this.analyzePPosTx(event, vt, tar);
+        try {
+            for (Transaction tx : transactions) {
+                // 设置普通交易的交易序号
+                tx.setSeq(event.getBlock().getNum() * 100000 + allTxCount);
+                this.addressCache.update(tx);
                 // 自增
                 allTxCount++;
+                // 分析真实交易
+                this.analyzePPosTx(event, tx, tar);
+                // 分析虚拟交易
+                List<Transaction> virtualTxes = tx.getVirtualTransactions();
+                for (Transaction vt : virtualTxes) {
+                    // 设置合约调用ppos交易的交易序号
+                    vt.setSeq(event.getBlock().getNum() * 100000 + allTxCount);
+                    switch (vt.getTypeEnum()) {
+                        // 如果是提案交易，且交易是由普通合约内部调用触发的，则
+                        // 所构造的虚拟交易HASH的格式是：<普通合约调用hash>-<合约内部ppos交易索引>
+                        // 由于底层在合约内部执行多个提案时，只有一个可以成功，是唯一的
+                        // 所以在把提案数据存储到platscan数据库中时，可以把虚拟提案交易的"-<合约内部ppos交易索引>" 去掉
+                        // 防止外部在查询提案时找不到相应的交易信息（也就是说通过普通合约代理执行的提案，在浏览器中查看提案所在交易时，是跳到普通合约交易的）
+                        case PROPOSAL_TEXT: // 2000
+                        case PROPOSAL_UPGRADE: // 2001
+                        case PROPOSAL_PARAMETER: // 2002
+                        case PROPOSAL_CANCEL: // 2005
+                            // case PROPOSAL_VOTE: // 2003 投票提案可以同时有多笔成功(实测)
+                        case VERSION_DECLARE: // 2004
+                            vt.setHash(vt.getHash().split("-")[0]);
+                        default:
+                            break;
+                    }
+                    this.analyzePPosTx(event, vt, tar);
+                    // 自增
+                    allTxCount++;
+                }
             }
+            // 委托相关分析器在内存中累计的变更批量入库
+            this.delegationStateCache.flush();
+        } finally {
+            this.delegationStateCache.clean();
         }
 
         Block block = event.getBlock();
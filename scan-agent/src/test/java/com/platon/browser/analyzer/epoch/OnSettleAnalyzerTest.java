@@ -3,11 +3,8 @@ package com.platon.browser.analyzer.epoch;
 import com.platon.browser.AgentTestBase;
 import com.platon.browser.bean.EpochMessage;
 import com.platon.browser.bean.CollectionEvent;
-import com.platon.browser.dao.mapper.GasEstimateLogMapper;
-import com.platon.browser.publisher.GasEstimateEventPublisher;
 import com.platon.browser.dao.custommapper.EpochBusinessMapper;
 import com.platon.browser.config.BlockChainConfig;
-import com.platon.browser.dao.custommapper.CustomGasEstimateLogMapper;
 import com.platon.browser.dao.mapper.StakingMapper;
 import com.platon.browser.elasticsearch.dto.Block;
 import org.junit.Before;
@@ -38,26 +35,16 @@ public class OnSettleAnalyzerTest extends AgentTestBase {
     @Mock
     private StakingMapper stakingMapper;
 
-    @Mock
-    private GasEstimateEventPublisher gasEstimateEventPublisher;
-
-    @Mock
-    private CustomGasEstimateLogMapper customGasEstimateLogMapper;
-
     @InjectMocks
     @Spy
     private OnSettleAnalyzer target;
 
-    @Mock
-    private GasEstimateLogMapper gasEstimateLogMapper;
-
     @Before
     public void setup() throws Exception {
         when(chainConfig.getUnStakeRefundSettlePeriodCount()).thenReturn(blockChainConfig.getUnStakeRefundSettlePeriodCount());
         when(chainConfig.getMaxSettlePeriodCount4AnnualizedRateStat()).thenReturn(blockChainConfig.getMaxSettlePeriodCount4AnnualizedRateStat());
         when(chainConfig.getSettlePeriodCountPerIssue()).thenReturn(blockChainConfig.getSettlePeriodCountPerIssue());
         when(stakingMapper.selectByExampleWithBLOBs(any())).thenReturn(new ArrayList<>(stakingList));
-        when(gasEstimateLogMapper.deleteByPrimaryKey(any())).thenReturn(1);
     }
 
     @Test
@@ -2,11 +2,11 @@ package com.platon.browser.analyzer.ppos;
 
 import com.platon.browser.AgentTestBase;
 import com.platon.browser.bean.CollectionTransaction;
+import com.platon.browser.cache.DelegationStateCache;
 import com.platon.browser.cache.NodeCache;
 import com.platon.browser.bean.NodeItem;
 import com.platon.browser.bean.CollectionEvent;
 import com.platon.browser.dao.custommapper.DelegateBusinessMapper;
-import com.platon.browser.dao.custommapper.CustomGasEstimateMapper;
 import com.platon.browser.elasticsearch.dto.Transaction;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,7 +37,7 @@ public class DelegateCreateAnalyzerTest extends AgentTestBase {
     @Mock
     private NodeCache nodeCache;
     @Mock
-    private CustomGasEstimateMapper customGasEstimateMapper;
+    private DelegationStateCache delegationStateCache;
     @InjectMocks
     @Spy
     private DelegateCreateAnalyzer target;
@@ -2,20 +2,13 @@ package com.platon.browser.analyzer.ppos;
 
 import com.platon.browser.AgentTestBase;
 import com.platon.browser.bean.CollectionTransaction;
-import com.platon.browser.cache.AddressCache;
+import com.platon.browser.cache.DelegationStateCache;
 import com.platon.browser.cache.NodeCache;
 import com.platon.browser.bean.NodeItem;
 import com.platon.browser.bean.CollectionEvent;
-import com.platon.browser.dao.custommapper.CustomAddressMapper;
 import com.platon.browser.dao.custommapper.DelegateBusinessMapper;
 import com.platon.browser.config.BlockChainConfig;
-import com.platon.browser.dao.entity.Address;
 import com.platon.browser.dao.entity.Staking;
-import com.platon.browser.dao.custommapper.CustomGasEstimateMapper;
-import com.platon.browser.dao.mapper.AddressMapper;
-import com.platon.browser.dao.mapper.DelegationMapper;
-import com.platon.browser.dao.mapper.GasEstimateMapper;
-import com.platon.browser.dao.mapper.StakingMapper;
 import com.platon.browser.bean.CustomDelegation;
 import com.platon.browser.elasticsearch.dto.Transaction;
 import org.junit.Before;
@@ -29,7 +22,6 @@ import org.mockito.junit.MockitoJUnitRunner;
 import javax.annotation.Resource;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Arrays;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -55,30 +47,15 @@ public class DelegateExitAnalyzerTest extends AgentTestBase {
     private NodeCache nodeCache;
 
     @Mock
-    private DelegationMapper delegationMapper;
+    private DelegationStateCache delegationStateCache;
 
     @Mock
     private BlockChainConfig chainConfig;
 
-    @Mock
-    private AddressCache addressCache;
-
-    @Mock
-    private GasEstimateMapper gasEstimateMapper;
-
-    @Mock
-    private CustomGasEstimateMapper customGasEstimateMapper;
-
-    @Mock
-    private StakingMapper stakingMapper;
-
     @InjectMocks
     @Spy
     private DelegateExitAnalyzer target;
-    @Mock
-    private AddressMapper addressMapper;
-    @Mock
-    private CustomAddressMapper customAddressMapper;
+
     @Before
     public void setup() throws Exception {
         NodeItem nodeItem = NodeItem.builder()
@@ -87,11 +64,8 @@ public class DelegateExitAnalyzerTest extends AgentTestBase {
                 .stakingBlockNum(new BigInteger("88602"))
                 .build();
         when(this.nodeCache.getNode(anyString())).thenReturn(nodeItem);
-        when(this.stakingMapper.selectByPrimaryKey(any())).thenReturn(this.stakingList.get(0));
         this.blockChainConfig.getDelegateThreshold();
         when(this.chainConfig.getDelegateThreshold()).thenReturn(this.blockChainConfig.getDelegateThreshold());
-        Address addressInfo =new Address();
-        when(addressMapper.selectByPrimaryKey(any())).thenReturn(addressInfo);
     }
 
     @Test
@@ -106,11 +80,11 @@ public class DelegateExitAnalyzerTest extends AgentTestBase {
         delegation.setDelegateReleased(BigDecimal.ONE);
         delegation.setDelegateHes(new BigDecimal("0"));
         delegation.setDelegateLocked(new BigDecimal("1000000000000000000"));
-        when(this.delegationMapper.selectByPrimaryKey(any())).thenReturn(delegation);
+        when(this.delegationStateCache.getDelegation(any())).thenReturn(delegation);
         Staking staking = new Staking();
         staking.setNodeId(delegation.getNodeId());
         staking.setStatus(1);
-        when(this.stakingMapper.selectByExample(any())).thenReturn(Arrays.asList(staking));
+        when(this.delegationStateCache.getStaking(anyString(), any())).thenReturn(staking);
 
         CollectionTransaction tx = null;
         for (CollectionTransaction collectionTransaction : this.transactionList) {
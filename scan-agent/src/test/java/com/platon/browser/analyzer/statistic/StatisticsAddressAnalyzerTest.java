@@ -6,7 +6,6 @@ import com.platon.browser.bean.CollectionEvent;
 import com.platon.browser.bean.EpochMessage;
 import com.platon.browser.cache.AddressCache;
 import com.platon.browser.dao.custommapper.CustomAddressMapper;
-import com.platon.browser.dao.mapper.AddressMapper;
 import com.platon.browser.dao.custommapper.StatisticBusinessMapper;
 import com.platon.browser.elasticsearch.dto.Block;
 import com.platon.browser.enums.ContractTypeEnum;
@@ -23,7 +22,8 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
 
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -34,8 +34,6 @@ public class StatisticsAddressAnalyzerTest extends AgentTestBase {
     @Mock
     private StatisticBusinessMapper statisticBusinessMapper;
     @Mock
-    private AddressMapper addressMapper;
-    @Mock
     private RedisTemplate redisTemplate;
     @InjectMocks
     @Spy
@@ -45,7 +43,6 @@ public class StatisticsAddressAnalyzerTest extends AgentTestBase {
     @Before
     public void setup() throws Exception {
         when(this.addressCache.getAll()).thenReturn(new ArrayList<>(this.addressList));
-        when(this.addressMapper.selectByExampleWithBLOBs(any())).thenReturn(new ArrayList<>(this.addressList));
         when(customAddressMapper.batchUpdateAddressInfo(any())).thenReturn(1);
     }
 
@@ -65,7 +62,14 @@ public class StatisticsAddressAnalyzerTest extends AgentTestBase {
         TransactionAnalyzer.setGeneralContractAddressCache(this.addressList.get(1).getAddress(), ContractTypeEnum.WASM);
         TransactionAnalyzer.setGeneralContractAddressCache(this.addressList.get(2).getAddress(), ContractTypeEnum.ERC20_EVM);
         this.transactionList.get(0).setBin("0x");
+        this.transactionList.get(0).setTo(this.addressList.get(0).getAddress());
+        this.addressList.get(0).setContractDestroyHash(null);
         this.target.analyze(collectionEvent, block, epochMessage);
+        // 地址信息一次upsert入库，销毁合约交易的hash写入对应地址
+        String destroyHash = this.transactionList.get(0).getHash();
+        String address = this.addressList.get(0).getAddress();
+        verify(statisticBusinessMapper, times(1)).addressChange(argThat(list -> list.size() == this.addressList.size()
+                && list.stream().anyMatch(item -> item.getAddress().equals(address) && destroyHash.equals(item.getContractDestroyHash()))));
     }
 
 }
@@ -0,0 +1,180 @@
+package com.platon.browser.cache;
+
+import com.platon.browser.AgentTestBase;
+import com.platon.browser.bean.CollectionEvent;
+import com.platon.browser.bean.CustomDelegation;
+import com.platon.browser.bean.EpochMessage;
+import com.platon.browser.dao.custommapper.CustomAddressMapper;
+import com.platon.browser.dao.custommapper.CustomDelegationMapper;
+import com.platon.browser.dao.custommapper.CustomGasEstimateMapper;
+import com.platon.browser.dao.entity.*;
+import com.platon.browser.dao.mapper.AddressMapper;
+import com.platon.browser.dao.mapper.DelegationMapper;
+import com.platon.browser.dao.mapper.StakingMapper;
+import com.platon.browser.dao.param.ppos.DelegateCreate;
+import com.platon.browser.elasticsearch.dto.Transaction;
+import com.platon.browser.param.DelegateExitParam;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class DelegationStateCacheTest extends AgentTestBase {
+
+    private static final String NODE_ID = "0x77fffc999d9f9403b65009f1eb27bae65774e2d8ea36f7b20a89f82642a5067557430e6edfe5320bb81c3666a19cf4a5172d6533117d7ebcd0f2c82055499050";
+
+    private static final String ADDR = "atp12att07xxprevkqddq74qfnj988dgyrq2pcdvt4";
+
+    @Mock
+    private CustomDelegationMapper customDelegationMapper;
+
+    @Mock
+    private DelegationMapper delegationMapper;
+
+    @Mock
+    private StakingMapper stakingMapper;
+
+    @Mock
+    private AddressMapper addressMapper;
+
+    @Mock
+    private CustomAddressMapper customAddressMapper;
+
+    @Mock
+    private CustomGasEstimateMapper customGasEstimateMapper;
+
+    @Mock
+    private AddressCache addressCache;
+
+    @InjectMocks
+    @Spy
+    private DelegationStateCache target;
+
+    private CollectionEvent event;
+
+    @Before
+    public void setup() {
+        Transaction tx = new Transaction();
+        tx.setFrom(ADDR);
+        tx.setStatus(Transaction.StatusEnum.SUCCESS.getCode());
+        tx.setType(Transaction.TypeEnum.DELEGATE_EXIT.getCode());
+        DelegateExitParam param = new DelegateExitParam().setNodeId(NODE_ID)
+                                                         .setStakingBlockNum(BigInteger.TEN)
+                                                         .setAmount(BigDecimal.ONE)
+                                                         .setReward(BigDecimal.ZERO);
+        tx.setInfo(param.toJSONString());
+        event = new CollectionEvent();
+        event.setBlock(blockList.get(0));
+        event.setEpochMessage(EpochMessage.newInstance());
+        event.setTransactions(new ArrayList<>(Collections.singletonList(tx)));
+
+        CustomDelegation delegation = new CustomDelegation();
+        delegation.setDelegateAddr(ADDR);
+        delegation.setNodeId(NODE_ID);
+        delegation.setStakingBlockNum(10L);
+        delegation.setDelegateHes(BigDecimal.ONE);
+        delegation.setDelegateLocked(BigDecimal.ZERO);
+        delegation.setDelegateReleased(BigDecimal.ZERO);
+        when(customDelegationMapper.selectByDelegationKeys(any())).thenReturn(Collections.singletonList(delegation));
+        Staking staking = new Staking();
+        staking.setNodeId(NODE_ID);
+        staking.setStakingBlockNum(10L);
+        staking.setStatus(1);
+        when(stakingMapper.selectByExample(any())).thenReturn(Collections.singletonList(staking));
+        Address address = new Address();
+        address.setAddress(ADDR);
+        when(addressMapper.selectByExample(any())).thenReturn(Collections.singletonList(address));
+    }
+
+    @Test
+    public void test() {
+        target.load(event);
+
+        DelegationKey key = new DelegationKey();
+        key.setDelegateAddr(ADDR);
+        key.setNodeId(NODE_ID);
+        key.setStakingBlockNum(10L);
+        Delegation delegation = target.getDelegation(key);
+        assertEquals(BigDecimal.ONE, delegation.getDelegateHes());
+        assertEquals(NODE_ID, target.getStaking(NODE_ID, 10L).getNodeId());
+        verify(delegationMapper, never()).selectByPrimaryKey(any());
+
+        // 同一区块内先委托后赎回，赎回时应读取到内存中累加后的委托金额
+        DelegateCreate create = DelegateCreate.builder()
+                                              .nodeId(NODE_ID)
+                                              .amount(BigDecimal.TEN)
+                                              .blockNumber(BigInteger.ONE)
+                                              .txFrom(ADDR)
+                                              .sequence(BigInteger.ONE)
+                                              .stakingBlockNumber(BigInteger.TEN)
+                                              .build();
+        target.onDelegateCreate(create);
+        assertEquals(new BigDecimal("11"), target.getDelegation(key).getDelegateHes());
+
+        // 未加载的委托直接查库
+        DelegationKey other = new DelegationKey();
+        other.setDelegateAddr(ADDR);
+        other.setNodeId(NODE_ID);
+        other.setStakingBlockNum(11L);
+        assertNull(target.getDelegation(other));
+        verify(delegationMapper, times(1)).selectByPrimaryKey(any());
+
+        // 同一key先新增后删除，最终只执行删除
+        GasEstimate estimate = new GasEstimate();
+        estimate.setAddr(ADDR);
+        estimate.setNodeId(NODE_ID);
+        estimate.setSbn(10L);
+        estimate.setEpoch(0L);
+        target.upsertGasEstimate(estimate);
+        GasEstimateKey gek = new GasEstimateKey();
+        gek.setAddr(ADDR);
+        gek.setNodeId(NODE_ID);
+        gek.setSbn(10L);
+        target.deleteGasEstimate(gek);
+
+        target.addHaveReward(ADDR, BigDecimal.ONE);
+        target.addHaveReward(ADDR, BigDecimal.ONE);
+        target.flush();
+
+        verify(customGasEstimateMapper, times(1)).batchDeleteByKeys(any());
+        verify(customGasEstimateMapper, never()).batchInsertOrUpdateSelective(anyList(), any());
+        verify(customAddressMapper, times(1)).batchUpdateAddressHaveReward(argThat(list -> list.size() == 1 && new BigDecimal("2").equals(list.get(0).getHaveReward())));
+        verify(addressMapper, never()).batchInsertSelective(anyList(), any());
+    }
+
+    @Test
+    public void malformedParam() {
+        // 无法解析参数的退出质押交易不影响本区块加载，所有节点直接查库
+        Transaction tx = new Transaction();
+        tx.setHash("0x01");
+        tx.setFrom(ADDR);
+        tx.setStatus(Transaction.StatusEnum.SUCCESS.getCode());
+        tx.setType(Transaction.TypeEnum.STAKE_EXIT.getCode());
+        tx.setInfo("{malformed");
+        event.getTransactions().add(tx);
+        target.load(event);
+
+        DelegationKey key = new DelegationKey();
+        key.setDelegateAddr(ADDR);
+        key.setNodeId(NODE_ID);
+        key.setStakingBlockNum(10L);
+        target.getDelegation(key);
+        verify(delegationMapper, times(1)).selectByPrimaryKey(any());
+    }
+
+}
@@ -6,9 +6,8 @@ import com.platon.browser.bean.EpochMessage;
 import com.platon.browser.bean.TxAnalyseResult;
 import com.platon.browser.cache.AddressCache;
 import com.platon.browser.cache.NetworkStatCache;
+import com.platon.browser.dao.batch.BulkWriter;
 import com.platon.browser.dao.entity.NetworkStat;
-import com.platon.browser.dao.custommapper.CustomNOptBakMapper;
-import com.platon.browser.dao.custommapper.CustomTxBakMapper;
 import com.platon.browser.dao.mapper.NOptBakMapper;
 import com.platon.browser.dao.mapper.TxBakMapper;
 import com.platon.browser.publisher.ComplementEventPublisher;
@@ -59,10 +58,7 @@ public class CollectionEventHandlerTest extends AgentTestBase {
     private TxBakMapper txBakMapper;
 
     @Mock
-    private CustomTxBakMapper customTxBakMapper;
-
-    @Mock
-    private CustomNOptBakMapper customNOptBakMapper;
+    private BulkWriter bulkWriter;
 
     @InjectMocks
     @Spy
@@ -93,7 +89,6 @@ public class CollectionEventHandlerTest extends AgentTestBase {
         event.setBlock(blockList.get(0));
         event.setEpochMessage(EpochMessage.newInstance());
         event.setTransactions(new ArrayList<>(transactionList));
-//        when(customTxBakMapper.batchInsertOrUpdateSelective(any(), any())).thenReturn(100);
         target.onEvent(event, 33, false);
         verify(target, times(1)).onEvent(any(), anyLong(), anyBoolean());
 
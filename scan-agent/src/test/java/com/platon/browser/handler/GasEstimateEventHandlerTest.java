@@ -4,7 +4,6 @@ import com.platon.browser.AgentTestBase;
 import com.platon.browser.bean.GasEstimateEvent;
 import com.platon.browser.dao.custommapper.EpochBusinessMapper;
 import com.platon.browser.dao.entity.GasEstimate;
-import com.platon.browser.dao.mapper.GasEstimateLogMapper;
 import com.platon.browser.exception.BeanCreateOrUpdateException;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,18 +12,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
 @RunWith(MockitoJUnitRunner.Silent.class)
 public class GasEstimateEventHandlerTest extends AgentTestBase {
 
-	@Mock
-	private GasEstimateLogMapper gasEstimateLogMapper;
 	@Mock
 	private EpochBusinessMapper epochBusinessMapper;
 	@InjectMocks
@@ -34,21 +37,42 @@ public class GasEstimateEventHandlerTest extends AgentTestBase {
 	@Before
     public void setup() {
     }
-	
+
+	private GasEstimateEvent event(long seq, GasEstimate... estimates) {
+		GasEstimateEvent gasEstimateEvent = new GasEstimateEvent();
+		gasEstimateEvent.setEstimateList(new ArrayList<>(Arrays.asList(estimates)));
+		gasEstimateEvent.setSeq(seq);
+		return gasEstimateEvent;
+	}
+
+	private GasEstimate estimate(String nodeId, long sbn) {
+		GasEstimate gasEstimate = new GasEstimate();
+		gasEstimate.setNodeId(nodeId);
+		gasEstimate.setSbn(sbn);
+		return gasEstimate;
+	}
+
 	 @Test
 	 public void test() throws InterruptedException, ExecutionException, BeanCreateOrUpdateException, IOException {
-		 GasEstimateEvent gasEstimateEvent = new GasEstimateEvent();
-		 List<GasEstimate> estimateList = new ArrayList<>();
-		 GasEstimate gasEstimate = new GasEstimate();
-		 gasEstimate.setAddr("1");
-		 estimateList.add(gasEstimate);
-		 gasEstimateEvent.setEstimateList(estimateList);
-		 gasEstimateEvent.setSeq(1l);
-		 target.onEvent(gasEstimateEvent, 1, false);
-		 gasEstimateEvent.getEstimateList();
-		 gasEstimateEvent.getSeq();
-		 ReflectionTestUtils.setField(target, "epochBusinessMapper", null);
-		 target.onEvent(gasEstimateEvent, 1, false);
+		 // 两个结算周期的日志合并为一次入库，同一质押累加2个周期
+		 target.onEvent(event(10000L, estimate("0x1", 1L), estimate("0x2", 2L)), 1, false);
+		 verify(epochBusinessMapper, never()).increaseGasEstimateEpoch(any(), anyLong());
+		 target.onEvent(event(20000L, estimate("0x1", 1L)), 2, true);
+		 verify(epochBusinessMapper, times(1)).increaseGasEstimateEpoch(argThat(list -> {
+			 List<GasEstimate> estimates = new ArrayList<>(list);
+			 return estimates.size() == 2 && estimates.get(0).getEpoch() == 2L && estimates.get(1).getEpoch() == 1L;
+		 }), eq(20000L));
+
+		 // 已处理的序号不重复累加
+		 target.onEvent(event(20000L, estimate("0x1", 1L)), 3, true);
+		 verify(epochBusinessMapper, times(1)).increaseGasEstimateEpoch(any(), anyLong());
+
+		 // 入库失败时保留待处理数据，下一批重试
+		 doThrow(new RuntimeException("")).when(epochBusinessMapper).increaseGasEstimateEpoch(any(), anyLong());
+		 target.onEvent(event(30000L, estimate("0x3", 3L)), 4, true);
+		 doNothing().when(epochBusinessMapper).increaseGasEstimateEpoch(any(), anyLong());
+		 target.onEvent(event(40000L, estimate("0x3", 3L)), 5, true);
+		 verify(epochBusinessMapper, times(1)).increaseGasEstimateEpoch(argThat(list -> list.size() == 1 && list.iterator().next().getEpoch() == 2L), eq(40000L));
 	 }
 	
 }
@@ -4,6 +4,7 @@ import com.platon.browser.AgentTestBase;
 import com.platon.browser.analyzer.ppos.*;
 import com.platon.browser.bean.EpochMessage;
 import com.platon.browser.cache.AddressCache;
+import com.platon.browser.cache.DelegationStateCache;
 import com.platon.browser.cache.NetworkStatCache;
 import com.platon.browser.bean.CollectionEvent;
 import com.platon.browser.bean.DelegateExitResult;
@@ -70,6 +71,8 @@ public class PPOSServiceTest extends AgentTestBase {
     private NetworkStatCache networkStatCache;
     @Mock
     private AddressCache addressCache;
+    @Mock
+    private DelegationStateCache delegationStateCache;
     @InjectMocks
     @Spy
     private PPOSService target;
@@ -0,0 +1,124 @@
+package com.platon.browser.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 字符串布隆过滤器
+ * 按预期元素数及误判率计算位数和哈希函数个数，可限制最大位数；mightContain为false时元素一定不存在。
+ * 位数组使用AtomicLongArray，支持单线程写入、多线程并发读取
+ */
+public class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+
+    private final long bitSize;
+
+    private final int hashCount;
+
+    private final long expectedInsertions;
+
+    private final LongAdder insertions = new LongAdder();
+
+    /**
+     * @param expectedInsertions: 预期元素数
+     * @param fpp:                误判率
+     * @param maxBits:            最大位数，按预期元素数及误判率计算的位数超过该值时取该值，误判率相应升高
+     */
+    public BloomFilter(long expectedInsertions, double fpp, long maxBits) {
+        this.expectedInsertions = Math.max(expectedInsertions, 1);
+        long optimalBits = (long) (-this.expectedInsertions * Math.log(fpp) / (LN2 * LN2));
+        long size = Math.max(64, Math.min(optimalBits, maxBits));
+        bits = new AtomicLongArray((int) Math.min((size + 63) / 64, Integer.MAX_VALUE));
+        bitSize = bits.length() * 64L;
+        hashCount = Math.max(1, (int) Math.round((double) bitSize / this.expectedInsertions * LN2));
+    }
+
+    public void put(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long index = Math.floorMod(hash1 + (long) i * hash2, bitSize);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long old;
+            do {
+                old = bits.get(word);
+                if ((old & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, old, old | mask));
+            changed |= (old & mask) == 0;
+        }
+        // 重复添加的元素不计数
+        if (changed) {
+            insertions.increment();
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long index = Math.floorMod(hash1 + (long) i * hash2, bitSize);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按已插入的元素数估算当前误判率
+     *
+     * @param :
+     * @return: double
+     * @date: 2022/3/24
+     */
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) insertions.sum() / bitSize), hashCount);
+    }
+
+    /**
+     * 已插入的元素数是否超过预期元素数，超过后误判率会持续升高，需要重建
+     *
+     * @param :
+     * @return: boolean
+     * @date: 2022/3/24
+     */
+    public boolean isSaturated() {
+        return insertions.sum() > expectedInsertions;
+    }
+
+    public long getInsertions() {
+        return insertions.sum();
+    }
+
+    public long getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * FNV-1a 64位哈希，再经murmur3的fmix64混合
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+}
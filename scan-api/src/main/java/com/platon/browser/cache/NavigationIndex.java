@@ -0,0 +1,329 @@
+package com.platon.browser.cache;
+
+import cn.hutool.core.collection.CollUtil;
+import com.platon.browser.dao.entity.NetworkStat;
+import com.platon.browser.elasticsearch.dto.Block;
+import com.platon.browser.elasticsearch.dto.Transaction;
+import com.platon.browser.service.StatisticCacheService;
+import com.platon.browser.service.elasticsearch.EsBlockRepository;
+import com.platon.browser.service.elasticsearch.EsTransactionRepository;
+import com.platon.browser.service.elasticsearch.bean.ESResult;
+import com.platon.browser.service.elasticsearch.query.ESQueryBuilderConstructor;
+import com.platon.browser.service.elasticsearch.query.ESQueryBuilders;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 搜索导航路由索引
+ * 用布隆过滤器记录交易hash及区块hash，搜索导航时按关键字更可能属于的数据源决定查询顺序，未命中时仍查询另一数据源，
+ * 索引的遗漏(如晚于增量窗口写入ES的数据)只多一次查询，不会导致查不到；索引未构建完成时按原有顺序查询。
+ * 启动后从ES全量构建一次，之后按新区块增量更新；元素数超过容量时新增一层过滤器扩容，不再重新全量读取。
+ * 已索引块高只推进到当前块高之前若干块，区块连续写入，已索引的块高一定存在
+ */
+@Slf4j
+@Component
+public class NavigationIndex {
+
+    /**
+     * 全量构建时每批读取的文档数
+     */
+    private static final int SCROLL_BATCH_SIZE = 5000;
+
+    /**
+     * 增量更新时每次读取的区块数
+     */
+    private static final int REFRESH_BLOCK_SIZE = 1000;
+
+    /**
+     * 增量更新时回溯的区块数，覆盖ES刷新延迟导致的晚到数据
+     */
+    private static final int OVERLAP_BLOCKS = 10;
+
+    /**
+     * 已索引块高距当前块高的区块数，此范围内的交易可能尚未写入ES，每次增量更新重新读取
+     */
+    private static final int CONFIRM_BLOCKS = 100;
+
+    /**
+     * 容量为构建时元素数的倍数，预留增长空间
+     */
+    private static final int GROWTH_FACTOR = 2;
+
+    /**
+     * 最小容量
+     */
+    private static final long MIN_CAPACITY = 100000;
+
+    @Value("${platon.navigation.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 误判率
+     */
+    @Value("${platon.navigation.fpp:0.01}")
+    private double fpp;
+
+    /**
+     * 路由索引的最大内存(MB)，超过时按比例缩小各过滤器并停止扩容，误判率相应升高
+     */
+    @Value("${platon.navigation.maxMemoryMb:256}")
+    private long maxMemoryMb;
+
+    @Resource
+    private EsBlockRepository esBlockRepository;
+
+    @Resource
+    private EsTransactionRepository esTransactionRepository;
+
+    @Resource
+    private StatisticCacheService statisticCacheService;
+
+    private final AtomicBoolean building = new AtomicBoolean(false);
+
+    /**
+     * 全量构建线程，同一时刻只有一次构建
+     */
+    private final ThreadPoolTaskExecutor buildExecutor = new ThreadPoolTaskExecutor();
+
+    private volatile Filters filters;
+
+    @PostConstruct
+    public void init() {
+        buildExecutor.setCorePoolSize(1);
+        buildExecutor.setMaxPoolSize(1);
+        buildExecutor.setThreadNamePrefix("navigation-index-build-");
+        buildExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        buildExecutor.shutdown();
+    }
+
+    /**
+     * 66位hash是否应先按区块hash查询：只在区块hash中可能存在、在交易hash中一定不存在时为true，
+     * 否则先按交易hash查询；无论顺序如何，未命中时都查询另一数据源
+     *
+     * @param hash: 小写的hash
+     * @return: boolean
+     * @date: 2022/3/24
+     */
+    public boolean preferBlock(String hash) {
+        Filters current = filters;
+        return current != null && !current.txHashes.mightContain(hash) && current.blockHashes.mightContain(hash);
+    }
+
+    /**
+     * 块高是否已索引，区块连续写入，已索引的块高一定存在
+     *
+     * @param number: 块高
+     * @return: boolean
+     * @date: 2022/3/24
+     */
+    public boolean isIndexedBlock(long number) {
+        Filters current = filters;
+        return current != null && number >= 0 && number <= current.blockNumber;
+    }
+
+    /**
+     * 增量更新，索引未构建时异步全量构建
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/24
+     */
+    public void refresh() throws Exception {
+        if (!enabled) {
+            return;
+        }
+        Filters current = filters;
+        if (current == null) {
+            buildAsync();
+            return;
+        }
+        long from = Math.max(current.blockNumber - OVERLAP_BLOCKS + 1, 0);
+        ESQueryBuilderConstructor blockConstructor = new ESQueryBuilderConstructor();
+        blockConstructor.must(new ESQueryBuilders().range("num", from, null));
+        blockConstructor.setAsc("num");
+        blockConstructor.setResult(new String[]{"hash", "num"});
+        ESResult<Block> blocks = esBlockRepository.search(blockConstructor, Block.class, 1, REFRESH_BLOCK_SIZE);
+        if (CollUtil.isEmpty(blocks.getRsData())) {
+            return;
+        }
+        blocks.getRsData().forEach(block -> current.blockHashes.put(block.getHash().toLowerCase()));
+        long to = CollUtil.getLast(blocks.getRsData()).getNum();
+        addTransactions(current, from, to);
+        // 只推进到确认交易已写入的块高，之后的交易下次更新重新读取
+        NetworkStat networkStat = statisticCacheService.getNetworkStatCache();
+        if (networkStat != null && networkStat.getCurNumber() != null) {
+            current.blockNumber = Math.max(current.blockNumber, Math.min(to, networkStat.getCurNumber() - CONFIRM_BLOCKS));
+        }
+    }
+
+    private void buildAsync() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        buildExecutor.submit(() -> {
+            try {
+                build();
+            } catch (Exception e) {
+                log.error("构建搜索导航路由索引异常", e);
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    /**
+     * 全量构建，只在启动后执行一次，失败时下次增量更新重试
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/24
+     */
+    private void build() throws Exception {
+        long start = System.currentTimeMillis();
+        NetworkStat networkStat = statisticCacheService.getNetworkStatCache();
+        if (networkStat == null || networkStat.getCurNumber() == null) {
+            return;
+        }
+        // 构建起点之后的数据由增量更新补齐，最近的区块中可能有尚未写入的交易，已索引块高从确认的块高开始
+        long blockNumber = networkStat.getCurNumber();
+        long txCapacity = capacity(networkStat.getTxQty() == null ? 0 : networkStat.getTxQty());
+        long blockCapacity = capacity(blockNumber);
+        // 按误判率计算的位数超过内存上限时等比例缩小，扩容时各过滤器按构建时的比例分配内存上限
+        double bitsPerElement = -Math.log(fpp) / (Math.log(2) * Math.log(2));
+        double required = bitsPerElement * (txCapacity + blockCapacity);
+        long maxBits = maxMemoryMb * 8 * 1024 * 1024;
+        double scale = Math.min(1, maxBits / required);
+        Filters built = new Filters(new LayeredFilter(txCapacity, fpp, (long) (bitsPerElement * txCapacity * scale), (long) (maxBits * bitsPerElement * txCapacity / required)),
+                                    new LayeredFilter(blockCapacity, fpp, (long) (bitsPerElement * blockCapacity * scale), (long) (maxBits * bitsPerElement * blockCapacity / required)));
+        built.blockNumber = Math.max(blockNumber - CONFIRM_BLOCKS, 0);
+
+        ESQueryBuilderConstructor blockConstructor = new ESQueryBuilderConstructor();
+        blockConstructor.must(new ESQueryBuilders().range("num", 0, blockNumber));
+        blockConstructor.setResult(new String[]{"hash"});
+        esBlockRepository.scroll(blockConstructor, Block.class, SCROLL_BATCH_SIZE, blocks -> blocks.forEach(block -> built.blockHashes.put(block.getHash().toLowerCase())));
+        addTransactions(built, 0, blockNumber);
+
+        filters = built;
+        log.info("构建搜索导航路由索引完成，块高[{}]，交易[{}]条，区块[{}]个，内存[{}]MB，预估误判率[交易:{},区块:{}]，耗时[{}]ms",
+                 blockNumber,
+                 built.txHashes.getInsertions(),
+                 built.blockHashes.getInsertions(),
+                 (built.txHashes.getBitSize() + built.blockHashes.getBitSize()) / 8 / 1024 / 1024,
+                 built.txHashes.expectedFpp(),
+                 built.blockHashes.expectedFpp(),
+                 System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 添加块高范围内的交易hash
+     *
+     * @return: void
+     * @date: 2022/3/24
+     */
+    private void addTransactions(Filters target, long from, long to) throws Exception {
+        ESQueryBuilderConstructor txConstructor = new ESQueryBuilderConstructor();
+        txConstructor.must(new ESQueryBuilders().range("num", from, to));
+        txConstructor.setResult(new String[]{"hash"});
+        esTransactionRepository.scroll(txConstructor, Transaction.class, SCROLL_BATCH_SIZE, txs -> txs.forEach(tx -> target.txHashes.put(tx.getHash().toLowerCase())));
+    }
+
+    private long capacity(long count) {
+        return Math.max(count * GROWTH_FACTOR, MIN_CAPACITY);
+    }
+
+    private static class Filters {
+
+        private final LayeredFilter txHashes;
+
+        private final LayeredFilter blockHashes;
+
+        /**
+         * 已索引的最大块高
+         */
+        private volatile long blockNumber;
+
+        private Filters(LayeredFilter txHashes, LayeredFilter blockHashes) {
+            this.txHashes = txHashes;
+            this.blockHashes = blockHashes;
+        }
+
+    }
+
+    /**
+     * 分层扩容的布隆过滤器
+     * 当前层饱和后新增一层，任一层可能存在即可能存在，扩容不需要重新读取已索引的数据；
+     * 总位数达到上限后不再扩容，继续写入最后一层，误判率随之升高，只影响查询顺序。只支持单线程写入
+     */
+    static class LayeredFilter {
+
+        private final long layerCapacity;
+
+        private final double fpp;
+
+        private final long layerBits;
+
+        private final long maxBits;
+
+        private final List<BloomFilter> layers = new CopyOnWriteArrayList<>();
+
+        LayeredFilter(long layerCapacity, double fpp, long layerBits, long maxBits) {
+            this.layerCapacity = layerCapacity;
+            this.fpp = fpp;
+            this.layerBits = layerBits;
+            this.maxBits = maxBits;
+            layers.add(new BloomFilter(layerCapacity, fpp, layerBits));
+        }
+
+        void put(String value) {
+            BloomFilter current = layers.get(layers.size() - 1);
+            if (current.isSaturated() && getBitSize() + layerBits <= maxBits) {
+                current = new BloomFilter(layerCapacity, fpp, layerBits);
+                layers.add(current);
+            }
+            current.put(value);
+        }
+
+        boolean mightContain(String value) {
+            for (BloomFilter layer : layers) {
+                if (layer.mightContain(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long getInsertions() {
+            return layers.stream().mapToLong(BloomFilter::getInsertions).sum();
+        }
+
+        long getBitSize() {
+            return layers.stream().mapToLong(BloomFilter::getBitSize).sum();
+        }
+
+        /**
+         * 任一层误判即误判
+         */
+        double expectedFpp() {
+            double none = 1;
+            for (BloomFilter layer : layers) {
+                none *= 1 - layer.expectedFpp();
+            }
+            return 1 - none;
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.platon.browser.cache;
+
+import java.util.*;
+
+/**
+ * 名称子串索引
+ * 按名称的二元组（忽略大小写）建立倒排表，子串查询只校验包含关键字中最短倒排表的候选项，单字关键字直接扫描全部名称。
+ * 构建后不可变，支持多线程并发读取
+ */
+public class NgramIndex {
+
+    private static final int GRAM = 2;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final String[] keys;
+
+    private final String[] names;
+
+    private final Map<String, int[]> postings;
+
+    /**
+     * @param names: 主键 -> 名称，名称为空的不建索引
+     */
+    public NgramIndex(Map<String, String> names) {
+        List<String> keyList = new ArrayList<>(names.size());
+        List<String> nameList = new ArrayList<>(names.size());
+        names.forEach((key, name) -> {
+            if (name != null && !name.isEmpty()) {
+                keyList.add(key);
+                nameList.add(normalize(name));
+            }
+        });
+        this.keys = keyList.toArray(new String[0]);
+        this.names = nameList.toArray(new String[0]);
+        Map<String, List<Integer>> grams = new HashMap<>();
+        for (int i = 0; i < this.names.length; i++) {
+            Set<String> distinct = new HashSet<>();
+            String name = this.names[i];
+            for (int j = 0; j + GRAM <= name.length(); j++) {
+                distinct.add(name.substring(j, j + GRAM));
+            }
+            for (String gram : distinct) {
+                grams.computeIfAbsent(gram, k -> new ArrayList<>()).add(i);
+            }
+        }
+        this.postings = new HashMap<>(grams.size() * 2);
+        grams.forEach((gram, list) -> postings.put(gram, list.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * 查询名称包含关键字（忽略大小写）的主键
+     *
+     * @param keyword: 关键字
+     * @return: java.util.List<java.lang.String>
+     * @date: 2022/3/24
+     */
+    public List<String> search(String keyword) {
+        String normalized = normalize(keyword);
+        List<String> result = new ArrayList<>();
+        if (normalized.isEmpty()) {
+            return result;
+        }
+        if (normalized.length() < GRAM) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].contains(normalized)) {
+                    result.add(keys[i]);
+                }
+            }
+            return result;
+        }
+        // 取最短的倒排表作为候选
+        int[] candidates = null;
+        for (int j = 0; j + GRAM <= normalized.length(); j++) {
+            int[] posting = postings.getOrDefault(normalized.substring(j, j + GRAM), EMPTY);
+            if (candidates == null || posting.length < candidates.length) {
+                candidates = posting;
+            }
+            if (candidates.length == 0) {
+                return result;
+            }
+        }
+        for (int i : candidates) {
+            if (names[i].contains(normalized)) {
+                result.add(keys[i]);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+}
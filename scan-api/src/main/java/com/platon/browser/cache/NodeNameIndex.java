@@ -0,0 +1,61 @@
+package com.platon.browser.cache;
+
+import com.platon.browser.dao.custommapper.CustomNodeMapper;
+import com.platon.browser.dao.entity.Node;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 节点名称搜索索引
+ * 验证人列表按名称关键字查询时先从索引取得匹配的nodeId，再按主键批量查询，避免node_name的前置通配符模糊查询全表扫描。
+ * 节点名称由scan-job的NodeUpdateTask及质押修改交易更新，本索引定时比对节点名称，发生变化时重建
+ */
+@Slf4j
+@Component
+public class NodeNameIndex {
+
+    @Resource
+    private CustomNodeMapper customNodeMapper;
+
+    private volatile Map<String, String> nodeNames;
+
+    private volatile NgramIndex index;
+
+    /**
+     * 查询名称包含关键字的节点
+     *
+     * @param keyword: 关键字
+     * @return: java.util.List<java.lang.String> 匹配的nodeId，索引未构建时返回null
+     * @date: 2022/3/24
+     */
+    public List<String> search(String keyword) {
+        NgramIndex current = index;
+        return current == null ? null : current.search(keyword);
+    }
+
+    /**
+     * 节点名称发生变化时重建索引
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/24
+     */
+    public void refresh() {
+        List<Node> nodes = customNodeMapper.selectAllNodeNames();
+        Map<String, String> latest = new HashMap<>(nodes.size() * 2);
+        nodes.forEach(node -> latest.put(node.getNodeId(), node.getNodeName()));
+        if (latest.equals(nodeNames)) {
+            return;
+        }
+        NgramIndex rebuilt = new NgramIndex(latest);
+        nodeNames = latest;
+        index = rebuilt;
+        log.info("节点名称搜索索引已重建，节点数：{}", rebuilt.size());
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.platon.browser.cache;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.platon.browser.constant.Browser;
+import com.platon.browser.dao.entity.Proposal;
+import com.platon.browser.dao.entity.ProposalExample;
+import com.platon.browser.dao.mapper.ProposalMapper;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提案标题缓存
+ * 提案标题由定时任务从github解析后写入，写入前为占位符，写入后不再变化，因此只缓存已解析的标题，
+ * 占位符每次都回源查询；提案列表及详情查询到提案时同步刷新缓存
+ */
+@Component
+public class ProposalTopicCache {
+
+    /**
+     * <提案hash-标题>
+     */
+    private final Cache<String, String> cache = Caffeine.newBuilder()
+                                                        .initialCapacity(100)
+                                                        .maximumSize(10000)
+                                                        .expireAfterAccess(1, TimeUnit.DAYS)
+                                                        .build();
+
+    @Resource
+    private ProposalMapper proposalMapper;
+
+    /**
+     * 批量获取提案标题，缓存未命中的用一次IN查询回源
+     * 不存在或标题未解析的提案不在返回结果中
+     *
+     * @param proposalHashes: 提案hash集合
+     * @return: java.util.Map<java.lang.String, java.lang.String>
+     * @date: 2022/3/24
+     */
+    public Map<String, String> getTopics(Collection<String> proposalHashes) {
+        Map<String, String> topics = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String hash : new HashSet<>(proposalHashes)) {
+            String topic = cache.getIfPresent(hash);
+            if (topic != null) {
+                topics.put(hash, topic);
+            } else {
+                misses.add(hash);
+            }
+        }
+        if (CollUtil.isNotEmpty(misses)) {
+            ProposalExample example = new ProposalExample();
+            example.createCriteria().andHashIn(misses);
+            for (Proposal proposal : proposalMapper.selectByExample(example)) {
+                if (refresh(proposal)) {
+                    topics.put(proposal.getHash(), proposal.getTopic());
+                }
+            }
+        }
+        return topics;
+    }
+
+    /**
+     * 用查询到的提案刷新缓存
+     *
+     * @param proposal: 提案
+     * @return: boolean 标题是否已解析
+     * @date: 2022/3/24
+     */
+    public boolean refresh(Proposal proposal) {
+        if (proposal == null || StrUtil.isBlank(proposal.getTopic()) || Browser.INQUIRY.equals(proposal.getTopic())) {
+            return false;
+        }
+        cache.put(proposal.getHash(), proposal.getTopic());
+        return true;
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.platon.browser.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并
+ * 按(接口, 语言, 规范化后的请求)合并并发的相同请求，同一时刻只有一个请求真正执行，其余请求等待并共享其结果；
+ * 可选短时缓存，执行完成后的短时间内相同请求直接返回结果。共享的结果对象由多个请求同时使用，调用方不应再修改；
+ * 各接口的合并指标由SingleFlightMetricsTask定期输出到日志
+ */
+@Slf4j
+@Component
+public class SingleFlight {
+
+    /**
+     * 详情类接口的默认短时缓存时间(毫秒)，约一个出块时间
+     */
+    public static final long MICRO_CACHE_MILLIS = 1000;
+
+    /**
+     * 短时缓存的最长时间(毫秒)
+     */
+    private static final long MAX_CACHE_MILLIS = 10000;
+
+    /**
+     * <请求key-执行中的请求>
+     */
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * <请求key-结果>
+     */
+    private final Cache<String, CacheEntry> microCache = Caffeine.newBuilder()
+                                                                 .maximumSize(10000)
+                                                                 .expireAfterWrite(MAX_CACHE_MILLIS, TimeUnit.MILLISECONDS)
+                                                                 .build();
+
+    /**
+     * <接口-指标>
+     */
+    private final Map<String, Metrics> metricsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 执行请求，相同的请求正在执行时等待其结果
+     * 执行逻辑会按当前语言生成提示信息，不同语言的请求分别执行及缓存
+     *
+     * @param endpoint:    接口名称
+     * @param req:         请求参数，按字段排序后的json规范化
+     * @param cacheMillis: 短时缓存时间(毫秒)，0为不缓存
+     * @param loader:      真正的执行逻辑
+     * @return: T
+     * @date: 2022/3/24
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String endpoint, Object req, long cacheMillis, Supplier<T> loader) {
+        String key = endpoint + "#" + LocaleContextHolder.getLocale().toLanguageTag() + "#" + JSON.toJSONString(req, SerializerFeature.SortField, SerializerFeature.MapSortField);
+        Metrics metrics = metricsMap.computeIfAbsent(endpoint, k -> new Metrics());
+        metrics.calls.increment();
+        if (cacheMillis > 0) {
+            CacheEntry entry = microCache.getIfPresent(key);
+            if (entry != null && entry.expireAt > System.currentTimeMillis()) {
+                metrics.cached.increment();
+                return (T) entry.value;
+            }
+        }
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            metrics.coalesced.increment();
+            return (T) join(existing);
+        }
+        metrics.executions.increment();
+        try {
+            T value = loader.get();
+            if (cacheMillis > 0 && value != null) {
+                microCache.put(key, new CacheEntry(value, System.currentTimeMillis() + Math.min(cacheMillis, MAX_CACHE_MILLIS)));
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 获取各接口的合并指标
+     *
+     * @param :
+     * @return: java.util.Map<java.lang.String, com.platon.browser.cache.SingleFlight.Metrics>
+     * @date: 2022/3/24
+     */
+    public Map<String, Metrics> getMetrics() {
+        return Collections.unmodifiableMap(new TreeMap<>(metricsMap));
+    }
+
+    private Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 合并指标
+     */
+    public static class Metrics {
+
+        /**
+         * 请求次数
+         */
+        private final LongAdder calls = new LongAdder();
+
+        /**
+         * 真正执行的次数
+         */
+        private final LongAdder executions = new LongAdder();
+
+        /**
+         * 等待其它相同请求结果的次数
+         */
+        private final LongAdder coalesced = new LongAdder();
+
+        /**
+         * 命中短时缓存的次数
+         */
+        private final LongAdder cached = new LongAdder();
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getCoalesced() {
+            return coalesced.sum();
+        }
+
+        public long getCached() {
+            return cached.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "{calls=" + getCalls() + ", executions=" + getExecutions() + ", coalesced=" + getCoalesced() + ", cached=" + getCached() + "}";
+        }
+
+    }
+
+    private static class CacheEntry {
+
+        private final Object value;
+
+        private final long expireAt;
+
+        private CacheEntry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+    }
+
+}
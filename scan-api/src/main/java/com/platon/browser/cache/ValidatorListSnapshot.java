@@ -0,0 +1,206 @@
+package com.platon.browser.cache;
+
+import com.github.pagehelper.Page;
+import com.platon.browser.bean.NodeSettleStatis;
+import com.platon.browser.config.BlockChainConfig;
+import com.platon.browser.dao.entity.NetworkStat;
+import com.platon.browser.dao.entity.Node;
+import com.platon.browser.dao.entity.NodeExample;
+import com.platon.browser.dao.mapper.NodeMapper;
+import com.platon.browser.exception.BlockNumberException;
+import com.platon.browser.service.StatisticCacheService;
+import com.platon.browser.utils.EpochUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 验证人列表快照
+ * 内存中保存全部节点及解析后的结算周期出块统计，验证人列表在内存中过滤、排序及分页，不再逐次分页查询node表、逐行解析出块统计json。
+ * 快照按结算周期版本化：进入新的结算周期时全量重新加载，周期内按update_time增量合并每个区块更新的节点，
+ * 出块统计json未变化的节点沿用已解析的结果及按结算周期缓存的出块率
+ */
+@Slf4j
+@Component
+public class ValidatorListSnapshot {
+
+    /**
+     * 增量加载的update_time回溯时间，覆盖提交晚于update_time的事务
+     */
+    private static final long OVERLAP_MILLIS = 30 * 1000L;
+
+    /**
+     * 全量重新加载的间隔，兜底回溯时间之外提交的更新
+     */
+    private static final long FULL_RELOAD_MILLIS = 5 * 60 * 1000L;
+
+    @Resource
+    private NodeMapper nodeMapper;
+
+    @Resource
+    private StatisticCacheService statisticCacheService;
+
+    @Resource
+    private BlockChainConfig blockChainConfig;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 在快照中查询节点
+     *
+     * @param filter:   过滤条件
+     * @param order:    排序
+     * @param pageNo:   页码
+     * @param pageSize: 每页条数
+     * @return: com.github.pagehelper.Page<com.platon.browser.dao.entity.Node> 快照未加载时返回null，返回的节点只读
+     * @date: 2022/3/24
+     */
+    public Page<Node> select(Predicate<Node> filter, Comparator<Node> order, int pageNo, int pageSize) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        List<Node> matched = current.entries.values()
+                                            .stream()
+                                            .map(entry -> entry.node)
+                                            .filter(filter)
+                                            .sorted(order)
+                                            .collect(Collectors.toList());
+        Page<Node> page = new Page<>(pageNo, pageSize);
+        page.setTotal(matched.size());
+        int from = Math.max(pageNo - 1, 0) * pageSize;
+        if (from < matched.size()) {
+            page.addAll(matched.subList(from, Math.min(from + pageSize, matched.size())));
+        }
+        return page;
+    }
+
+    /**
+     * 计算节点最近结算周期的出块率，节点来自当前快照时使用已解析的出块统计及缓存的结果
+     *
+     * @param node:             节点
+     * @param settleEpochRound: 当前结算周期轮数
+     * @return: java.lang.String
+     * @date: 2022/3/24
+     */
+    public String getGenBlocksRate(Node node, BigInteger settleEpochRound) {
+        Snapshot current = snapshot;
+        Entry entry = current == null ? null : current.entries.get(node.getNodeId());
+        if (entry == null || entry.node != node) {
+            return NodeSettleStatis.jsonToBean(node.getNodeSettleStatisInfo()).computeGenBlocksRate(settleEpochRound);
+        }
+        return entry.getGenBlocksRate(settleEpochRound);
+    }
+
+    /**
+     * 加载节点更新，进入新的结算周期或距上次全量加载超过间隔时全量重新加载
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/24
+     */
+    public void refresh() throws BlockNumberException {
+        NetworkStat networkStat = statisticCacheService.getNetworkStatCache();
+        if (networkStat.getCurNumber() == null) {
+            return;
+        }
+        BigInteger settleEpochRound = EpochUtil.getEpoch(BigInteger.valueOf(networkStat.getCurNumber()), blockChainConfig.getSettlePeriodBlockCount());
+        Snapshot current = snapshot;
+        long now = System.currentTimeMillis();
+        boolean full = current == null || !settleEpochRound.equals(current.settleEpochRound) || now - current.loadTime >= FULL_RELOAD_MILLIS;
+        NodeExample nodeExample = new NodeExample();
+        if (!full) {
+            nodeExample.createCriteria().andUpdateTimeGreaterThanOrEqualTo(new Date(current.maxUpdateTime - OVERLAP_MILLIS));
+        }
+        List<Node> nodes = nodeMapper.selectByExample(nodeExample);
+        if (!full && nodes.isEmpty()) {
+            return;
+        }
+        Map<String, Entry> entries = full ? new HashMap<>(nodes.size() * 2) : new HashMap<>(current.entries);
+        long maxUpdateTime = full ? 0 : current.maxUpdateTime;
+        for (Node node : nodes) {
+            Entry old = current == null ? null : current.entries.get(node.getNodeId());
+            entries.put(node.getNodeId(), Entry.of(node, old));
+            if (node.getUpdateTime() != null) {
+                maxUpdateTime = Math.max(maxUpdateTime, node.getUpdateTime().getTime());
+            }
+        }
+        snapshot = new Snapshot(settleEpochRound, entries, maxUpdateTime, full ? now : current.loadTime);
+        if (full) {
+            log.info("验证人列表快照已全量加载，结算周期：{}，节点数：{}", settleEpochRound, entries.size());
+        }
+    }
+
+    private static class Snapshot {
+
+        private final BigInteger settleEpochRound;
+
+        private final Map<String, Entry> entries;
+
+        private final long maxUpdateTime;
+
+        private final long loadTime;
+
+        private Snapshot(BigInteger settleEpochRound, Map<String, Entry> entries, long maxUpdateTime, long loadTime) {
+            this.settleEpochRound = settleEpochRound;
+            this.entries = entries;
+            this.maxUpdateTime = maxUpdateTime;
+            this.loadTime = loadTime;
+        }
+
+    }
+
+    private static class Entry {
+
+        private final Node node;
+
+        private final NodeSettleStatis settleStatis;
+
+        private volatile GenBlocksRate genBlocksRate;
+
+        private Entry(Node node, NodeSettleStatis settleStatis, GenBlocksRate genBlocksRate) {
+            this.node = node;
+            this.settleStatis = settleStatis;
+            this.genBlocksRate = genBlocksRate;
+        }
+
+        /**
+         * 出块统计json未变化时沿用已解析的结果
+         */
+        private static Entry of(Node node, Entry old) {
+            if (old != null && Objects.equals(old.node.getNodeSettleStatisInfo(), node.getNodeSettleStatisInfo())) {
+                return new Entry(node, old.settleStatis, old.genBlocksRate);
+            }
+            return new Entry(node, NodeSettleStatis.jsonToBean(node.getNodeSettleStatisInfo()), null);
+        }
+
+        private String getGenBlocksRate(BigInteger settleEpochRound) {
+            GenBlocksRate cached = genBlocksRate;
+            if (cached == null || !cached.settleEpochRound.equals(settleEpochRound)) {
+                cached = new GenBlocksRate(settleEpochRound, settleStatis.computeGenBlocksRate(settleEpochRound));
+                genBlocksRate = cached;
+            }
+            return cached.value;
+        }
+
+    }
+
+    private static class GenBlocksRate {
+
+        private final BigInteger settleEpochRound;
+
+        private final String value;
+
+        private GenBlocksRate(BigInteger settleEpochRound, String value) {
+            this.settleEpochRound = settleEpochRound;
+            this.value = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.platon.browser.config;
+
+import com.platon.browser.enums.I18nEnum;
+import com.platon.browser.exception.BusinessException;
+import com.platon.browser.utils.I18nUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 查询接口异步执行器
+ * 查询接口返回的Mono在独立的有界线程池中执行，Tomcat线程在等待ES、Redis及链上查询期间即被释放；
+ * 并发数及排队数超过上限时立即拒绝，超过超时时间未完成的请求返回系统异常，避免慢查询堆积耗尽Tomcat线程；
+ * 超时只结束请求，执行中的查询由数据库语句超时及ES请求超时中止，两者配置为与本超时一致，超时的查询不会继续占用线程
+ */
+@Slf4j
+@Component
+public class AsyncReadExecutor {
+
+    @Value("${platon.asyncRead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${platon.asyncRead.maxThreads:100}")
+    private int maxThreads;
+
+    @Value("${platon.asyncRead.maxQueued:200}")
+    private int maxQueued;
+
+    @Value("${platon.asyncRead.timeoutMillis:10000}")
+    private long timeoutMillis;
+
+    @Resource
+    private I18nUtil i18n;
+
+    private ThreadPoolExecutor executor;
+
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger index = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxThreads,
+                                          maxThreads,
+                                          60L,
+                                          TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue<>(maxQueued),
+                                          runnable -> new Thread(runnable, "async-read-" + index.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        scheduler = Schedulers.fromExecutorService(executor);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+        executor.shutdown();
+    }
+
+    /**
+     * 在异步线程池中执行查询，沿用当前请求的语言环境
+     *
+     * @param callable: 查询
+     * @return: reactor.core.publisher.Mono<T>
+     * @date: 2022/3/24
+     */
+    public <T> Mono<T> submit(Callable<T> callable) {
+        if (!enabled) {
+            return Mono.fromCallable(callable);
+        }
+        LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        String languageTag = LocaleContextHolder.getLocale().toLanguageTag();
+        return Mono.fromCallable(() -> {
+            LocaleContextHolder.setLocaleContext(localeContext);
+            try {
+                return callable.call();
+            } finally {
+                LocaleContextHolder.resetLocaleContext();
+            }
+        }).subscribeOn(scheduler).timeout(Duration.ofMillis(timeoutMillis)).onErrorMap(this::isOverloaded, e -> {
+            log.warn("查询接口异步执行失败，活跃线程数：{}，排队数：{}", executor.getActiveCount(), executor.getQueue().size(), e);
+            return new BusinessException(i18n.i(I18nEnum.SYSTEM_EXCEPTION, languageTag));
+        });
+    }
+
+    /**
+     * 线程池已满或执行超时
+     */
+    private boolean isOverloaded(Throwable e) {
+        return e instanceof RejectedExecutionException || e instanceof TimeoutException;
+    }
+
+}
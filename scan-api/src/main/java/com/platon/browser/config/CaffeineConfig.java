@@ -1,12 +1,15 @@
 package com.platon.browser.config;
 
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.platon.browser.cache.SingleFlight;
+import com.platon.browser.cache.SingleFlightCacheManager;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import javax.annotation.Resource;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -17,6 +20,9 @@ import java.util.concurrent.TimeUnit;
 @Configuration
 public class CaffeineConfig {
 
+    @Resource
+    private SingleFlight singleFlight;
+
     /**
      * caffeine缓存管理 (60s)
      */
@@ -50,6 +56,7 @@ public class CaffeineConfig {
         CaffeineCacheManager cacheManager = new CaffeineCacheManager();
         cacheManager.setAllowNullValues(true);
         cacheManager.setCaffeine(caffeine);
-        return cacheManager;
+        // @Cacheable(sync = true)的方法未命中缓存时合并并发的相同请求
+        return new SingleFlightCacheManager(cacheManager, singleFlight);
     }
 }
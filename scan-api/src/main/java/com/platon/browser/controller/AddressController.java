@@ -1,5 +1,6 @@
 package com.platon.browser.controller;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.enums.I18nEnum;
 import com.platon.browser.enums.RetEnum;
 import com.platon.browser.request.address.QueryDetailRequest;
@@ -36,6 +37,9 @@ public class AddressController {
     @Resource
     private I18nUtil i18n;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * 查询地址详情
      *
@@ -45,9 +49,9 @@ public class AddressController {
      */
     @PostMapping("address/details")
     public Mono<BaseResp<QueryDetailResp>> details(@Valid @RequestBody QueryDetailRequest req) {
-        return Mono.create(sink -> {
+        return asyncReadExecutor.submit(() -> {
             QueryDetailResp resp = addressService.getDetails(req);
-            sink.success(BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp));
+            return BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp);
         });
     }
 
@@ -60,9 +64,9 @@ public class AddressController {
      */
     @PostMapping("address/rpplanDetail")
     public Mono<BaseResp<QueryRPPlanDetailResp>> rpplanDetail(@Valid @RequestBody QueryRPPlanDetailRequest req) {
-        return Mono.create(sink -> {
+        return asyncReadExecutor.submit(() -> {
             QueryRPPlanDetailResp resp = addressService.rpplanDetail(req);
-            sink.success(BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp));
+            return BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp);
         });
     }
 
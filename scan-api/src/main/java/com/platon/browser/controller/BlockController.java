@@ -1,5 +1,6 @@
 package com.platon.browser.controller;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -52,6 +53,9 @@ public class BlockController {
     @Resource
     private CommonMethod commonMethod;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * 区块列表
      *
@@ -61,7 +65,7 @@ public class BlockController {
      */
     @PostMapping("block/blockList")
     public Mono<RespPage<BlockListResp>> blockList(@Valid @RequestBody PageReq req) {
-        return Mono.just(blockService.blockList(req));
+        return asyncReadExecutor.submit(() -> blockService.blockList(req));
     }
 
     /**
@@ -73,7 +77,7 @@ public class BlockController {
      */
     @PostMapping("block/blockListByNodeId")
     public Mono<RespPage<BlockListResp>> blockListByNodeId(@Valid @RequestBody BlockListByNodeIdReq req) {
-        return Mono.just(blockService.blockListByNodeId(req));
+        return asyncReadExecutor.submit(() -> blockService.blockListByNodeId(req));
     }
 
     /**
@@ -119,9 +123,9 @@ public class BlockController {
      */
     @PostMapping("block/blockDetails")
     public Mono<BaseResp<BlockDetailResp>> blockDetails(@Valid @RequestBody BlockDetailsReq req) {
-        return Mono.create(sink -> {
+        return asyncReadExecutor.submit(() -> {
             BlockDetailResp resp = blockService.blockDetails(req);
-            sink.success(BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp));
+            return BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp);
         });
     }
 
@@ -134,9 +138,9 @@ public class BlockController {
      */
     @PostMapping("block/blockDetailNavigate")
     public Mono<BaseResp<BlockDetailResp>> blockDetailNavigate(@Valid @RequestBody BlockDetailNavigateReq req) {
-        return Mono.create(sink -> {
+        return asyncReadExecutor.submit(() -> {
             BlockDetailResp resp = blockService.blockDetailNavigate(req);
-            sink.success(BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp));
+            return BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp);
         });
     }
 
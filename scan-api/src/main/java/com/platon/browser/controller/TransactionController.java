@@ -1,5 +1,6 @@
 package com.platon.browser.controller;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -51,6 +52,9 @@ public class TransactionController {
     @Resource
     private CommonMethod commonMethod;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * 交易列表
      *
@@ -60,7 +64,7 @@ public class TransactionController {
      */
     @PostMapping("transaction/transactionList")
     public Mono<RespPage<TransactionListResp>> transactionList(@Valid @RequestBody PageReq req) {
-        return Mono.just(transactionService.getTransactionList(req));
+        return asyncReadExecutor.submit(() -> transactionService.getTransactionList(req));
     }
 
     /**
@@ -72,7 +76,7 @@ public class TransactionController {
      */
     @PostMapping("transaction/transactionListByBlock")
     public Mono<RespPage<TransactionListResp>> transactionListByBlock(@Valid @RequestBody TransactionListByBlockRequest req) {
-        return Mono.just(transactionService.getTransactionListByBlock(req));
+        return asyncReadExecutor.submit(() -> transactionService.getTransactionListByBlock(req));
     }
 
     /**
@@ -84,7 +88,7 @@ public class TransactionController {
      */
     @PostMapping("transaction/transactionListByAddress")
     public Mono<RespPage<TransactionListResp>> transactionListByAddress(@Valid @RequestBody TransactionListByAddressRequest req) {
-        return Mono.just(transactionService.getTransactionListByAddress(req));
+        return asyncReadExecutor.submit(() -> transactionService.getTransactionListByAddress(req));
     }
 
     /**
@@ -136,9 +140,9 @@ public class TransactionController {
      */
     @PostMapping("transaction/transactionDetails")
     public Mono<BaseResp<TransactionDetailsResp>> transactionDetails(@Valid @RequestBody TransactionDetailsReq req) {
-        return Mono.create(sink -> {
+        return asyncReadExecutor.submit(() -> {
             TransactionDetailsResp resp = transactionService.transactionDetails(req);
-            sink.success(BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp));
+            return BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp);
         });
     }
 
@@ -151,7 +155,7 @@ public class TransactionController {
      */
     @PostMapping("transaction/queryClaimByAddress")
     public Mono<RespPage<QueryClaimByAddressResp>> queryClaimByAddress(@Valid @RequestBody TransactionListByAddressRequest req) {
-        return Mono.just(transactionService.queryClaimByAddress(req));
+        return asyncReadExecutor.submit(() -> transactionService.queryClaimByAddress(req));
     }
 
     /**
@@ -163,7 +167,7 @@ public class TransactionController {
      */
     @PostMapping("transaction/queryClaimByStaking")
     public Mono<RespPage<QueryClaimByStakingResp>> queryClaimByStaking(@Valid @RequestBody QueryClaimByStakingReq req) {
-        return Mono.just(transactionService.queryClaimByStaking(req));
+        return asyncReadExecutor.submit(() -> transactionService.queryClaimByStaking(req));
     }
 
 }
@@ -1,5 +1,6 @@
 package com.platon.browser.controller.token;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -39,6 +40,9 @@ public class Arc1155InventoryController {
     @Resource
     private Token1155Service token1155Service;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * ARC1155 库存列表
      *
@@ -48,7 +52,7 @@ public class Arc1155InventoryController {
      */
     @PostMapping("list")
     public Mono<RespPage<QueryTokenIdListResp>> list(@Valid @RequestBody QueryTokenIdListReq req) {
-        return Mono.just(token1155Service.queryTokenIdList(req));
+        return asyncReadExecutor.submit(() -> token1155Service.queryTokenIdList(req));
     }
 
     /**
@@ -60,9 +64,9 @@ public class Arc1155InventoryController {
      */
     @PostMapping("detail")
     public Mono<BaseResp<QueryTokenIdDetailResp>> detail(@Valid @RequestBody QueryTokenIdDetailReq req) {
-        return Mono.create(sink -> {
+        return asyncReadExecutor.submit(() -> {
             QueryTokenIdDetailResp resp = token1155Service.queryTokenIdDetail(req);
-            sink.success(BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp));
+            return BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp);
         });
     }
 
@@ -1,5 +1,6 @@
 package com.platon.browser.controller.token;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -35,6 +36,9 @@ public class Arc1155TxController {
     @Resource
     private CommonMethod commonMethod;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * ARC1155交易列表
      *
@@ -44,7 +48,7 @@ public class Arc1155TxController {
      */
     @PostMapping("list")
     public Mono<RespPage<QueryTokenTransferRecordListResp>> list(@Valid @RequestBody QueryTokenTransferRecordListReq req) {
-        return Mono.just(ercTxService.token1155TransferList(req));
+        return asyncReadExecutor.submit(() -> ercTxService.token1155TransferList(req));
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.platon.browser.controller.token;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -35,6 +36,9 @@ public class Arc20TxController {
     @Resource
     private CommonMethod commonMethod;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * ARC20交易列表
      *
@@ -44,7 +48,7 @@ public class Arc20TxController {
      */
     @PostMapping("list")
     public Mono<RespPage<QueryTokenTransferRecordListResp>> token20TransferList(@Valid @RequestBody QueryTokenTransferRecordListReq req) {
-        return Mono.just(ercTxService.token20TransferList(req));
+        return asyncReadExecutor.submit(() -> ercTxService.token20TransferList(req));
     }
 
     /**
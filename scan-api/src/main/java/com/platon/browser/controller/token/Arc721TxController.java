@@ -1,5 +1,6 @@
 package com.platon.browser.controller.token;//package com.platon.browser.controller;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -35,6 +36,9 @@ public class Arc721TxController {
     @Resource
     private CommonMethod commonMethod;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * ARC721交易列表
      *
@@ -44,7 +48,7 @@ public class Arc721TxController {
      */
     @PostMapping("list")
     public Mono<RespPage<QueryTokenTransferRecordListResp>> list(@Valid @RequestBody QueryTokenTransferRecordListReq req) {
-        return Mono.just(ercTxService.token721TransferList(req));
+        return asyncReadExecutor.submit(() -> ercTxService.token721TransferList(req));
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.platon.browser.controller.token;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -36,6 +37,9 @@ public class HolderController {
     @Resource
     private CommonMethod commonMethod;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * Token令牌持有人列表
      *
@@ -45,7 +49,7 @@ public class HolderController {
      */
     @PostMapping("list")
     public Mono<RespPage<QueryTokenHolderListResp>> list(@Valid @RequestBody QueryTokenHolderListReq req) {
-        return Mono.just(ercTxService.tokenHolderList(req));
+        return asyncReadExecutor.submit(() -> ercTxService.tokenHolderList(req));
     }
 
     /**
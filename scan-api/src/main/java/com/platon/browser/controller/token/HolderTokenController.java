@@ -1,5 +1,6 @@
 package com.platon.browser.controller.token;//package com.platon.browser.controller;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.config.CommonMethod;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.enums.I18nEnum;
@@ -35,6 +36,9 @@ public class HolderTokenController {
     @Resource
     private CommonMethod commonMethod;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * 持有者的Token令牌列表
      *
@@ -44,7 +48,7 @@ public class HolderTokenController {
      */
     @PostMapping("list")
     public Mono<RespPage<QueryHolderTokenListResp>> list(@Valid @RequestBody QueryHolderTokenListReq req) {
-        return Mono.just(ercTxService.holderTokenList(req));
+        return asyncReadExecutor.submit(() -> ercTxService.holderTokenList(req));
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.platon.browser.controller.token;
 
+import com.platon.browser.config.AsyncReadExecutor;
 import com.platon.browser.enums.I18nEnum;
 import com.platon.browser.enums.RetEnum;
 import com.platon.browser.request.token.QueryTokenDetailReq;
@@ -31,6 +32,9 @@ public class TokenController {
     @Resource
     private I18nUtil i18n;
 
+    @Resource
+    private AsyncReadExecutor asyncReadExecutor;
+
     /**
      * token令牌列表
      *
@@ -40,10 +44,7 @@ public class TokenController {
      */
     @PostMapping("list")
     public Mono<RespPage<QueryTokenListResp>> list(@Valid @RequestBody QueryTokenListReq req) {
-        return Mono.create(sink -> {
-            RespPage<QueryTokenListResp> resp = tokenService.queryTokenList(req);
-            sink.success(resp);
-        });
+        return asyncReadExecutor.submit(() -> tokenService.queryTokenList(req));
     }
 
     /**
@@ -55,9 +56,9 @@ public class TokenController {
      */
     @PostMapping("detail")
     public Mono<BaseResp<QueryTokenDetailResp>> detail(@Valid @RequestBody QueryTokenDetailReq req) {
-        return Mono.create(sink -> {
+        return asyncReadExecutor.submit(() -> {
             QueryTokenDetailResp resp = tokenService.queryTokenDetail(req);
-            sink.success(BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp));
+            return BaseResp.build(RetEnum.RET_SUCCESS.getCode(), i18n.i(I18nEnum.SUCCESS), resp);
         });
     }
 
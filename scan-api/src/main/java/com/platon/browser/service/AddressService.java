@@ -2,12 +2,15 @@ package com.platon.browser.service;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.platon.browser.bean.CustomAddressDetail;
 import com.platon.browser.bean.DlLock;
 import com.platon.browser.bean.LockDelegate;
 import com.platon.browser.bean.RestrictingBalance;
+import com.platon.browser.cache.SingleFlight;
 import com.platon.browser.client.PlatOnClient;
 import com.platon.browser.client.SpecialApi;
 import com.platon.browser.config.BlockChainConfig;
@@ -39,14 +42,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * 地址具体逻辑实现方法
@@ -61,6 +67,59 @@ public class AddressService {
 
     private final Logger logger = LoggerFactory.getLogger(AddressService.class);
 
+    /**
+     * 数据库查询的等待时间(毫秒)
+     */
+    private static final long DB_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * 链上及ES查询的等待时间(毫秒)
+     */
+    private static final long RPC_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 超过该耗时(毫秒)的查询打印各阶段耗时
+     */
+    private static final long SLOW_MILLIS = 1000;
+
+    /**
+     * 链上查询结果的缓存时间(毫秒)，约一个出块时间
+     */
+    private static final long CHAIN_CACHE_MILLIS = 1000;
+
+    /**
+     * 地址详情查询线程数
+     */
+    private static final int DETAIL_THREADS = 16;
+
+    /**
+     * 地址详情查询排队数
+     */
+    private static final int DETAIL_QUEUED = 256;
+
+    private static final Cache<String, List<RestrictingBalance>> RESTRICTING_CACHE = Caffeine.newBuilder()
+                                                                                            .maximumSize(10000)
+                                                                                            .expireAfterWrite(CHAIN_CACHE_MILLIS, TimeUnit.MILLISECONDS)
+                                                                                            .build();
+
+    private static final Cache<String, Optional<BigDecimal>> REWARD_CACHE = Caffeine.newBuilder()
+                                                                                    .maximumSize(10000)
+                                                                                    .expireAfterWrite(CHAIN_CACHE_MILLIS, TimeUnit.MILLISECONDS)
+                                                                                    .build();
+
+    private static final Cache<String, BigInteger> BALANCE_CACHE = Caffeine.newBuilder()
+                                                                          .maximumSize(10000)
+                                                                          .expireAfterWrite(CHAIN_CACHE_MILLIS, TimeUnit.MILLISECONDS)
+                                                                          .build();
+
+    /**
+     * 地址详情查询线程池，队列有界，已满时拒绝，避免慢节点占满线程
+     */
+    private final ThreadPoolTaskExecutor detailExecutor = new ThreadPoolTaskExecutor();
+
+    @Resource
+    private SingleFlight singleFlight;
+
     @Resource
     private CustomAddressMapper customAddressMapper;
 
@@ -91,6 +150,20 @@ public class AddressService {
     @Resource
     private PlatOnClient platOnClient;
 
+    @PostConstruct
+    public void init() {
+        detailExecutor.setCorePoolSize(DETAIL_THREADS);
+        detailExecutor.setMaxPoolSize(DETAIL_THREADS);
+        detailExecutor.setQueueCapacity(DETAIL_QUEUED);
+        detailExecutor.setThreadNamePrefix("address-detail-");
+        detailExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        detailExecutor.shutdown();
+    }
+
     /**
      * 查询地址详情
      *
@@ -99,13 +172,27 @@ public class AddressService {
      * @date 2021/4/15
      */
     public QueryDetailResp getDetails(QueryDetailRequest req) {
+        return singleFlight.execute("address/details", req, SingleFlight.MICRO_CACHE_MILLIS, () -> loadDetails(req));
+    }
+
+    private QueryDetailResp loadDetails(QueryDetailRequest req) {
         QueryDetailResp resp = new QueryDetailResp();
         // 如果查询0地址，直接返回
         if (StrUtil.isNotBlank(req.getAddress()) && com.platon.browser.utils.AddressUtil.isAddrZero(req.getAddress())) {
             return resp;
         }
+        String address = req.getAddress();
+        long start = System.currentTimeMillis();
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        // 互不依赖的数据源并行查询
+        Stage<CustomAddressDetail> detailFuture = submit("detail", timings, DB_TIMEOUT_MILLIS, () -> customAddressMapper.findAddressDetail(address));
+        Stage<List<RestrictingBalance>> restrictingFuture = submit("restricting", timings, RPC_TIMEOUT_MILLIS, () -> getRestrictingBalance(address));
+        Stage<Optional<BigDecimal>> rewardFuture = submit("reward", timings, RPC_TIMEOUT_MILLIS, () -> getDelegateClaim(address));
+        Stage<Long> rpPlanFuture = submit("rpPlan", timings, DB_TIMEOUT_MILLIS, () -> countRpPlan(address));
+
         /** 根据主键查询地址信息 */
-        CustomAddressDetail item = customAddressMapper.findAddressDetail(req.getAddress());
+        CustomAddressDetail item = await("detail", detailFuture);
+        Stage<String> codeFuture = null;
         if (item != null) {
             if (TokenTypeEnum.ERC20.getType().equalsIgnoreCase(item.getTokenType())) {
                 resp.setHasErc20(true);
@@ -125,78 +212,46 @@ public class AddressService {
             resp.setDestroyHash(item.getContractDestroyHash());
             resp.setContractName(ConvertUtil.captureName(item.getContractName()));
 
-            if (resp.getType() > AddressTypeEnum.INNER_CONTRACT.getCode()){
-                try {
-                    resp.setContractBin(platOnClient.getAddressCode(req.getAddress()));
-                } catch (Exception e) {
-                    logger.warn("getAddressCode error", e);
-                }
+            if (resp.getType() > AddressTypeEnum.INNER_CONTRACT.getCode()) {
+                codeFuture = submit("code", timings, RPC_TIMEOUT_MILLIS, () -> platOnClient.getAddressCode(address));
             }
         }
         /** 特殊账户余额直接查询链  */
-        try {
-            this.getAddressInfo(req, resp);
-        } catch (Exception e) {
-            logger.error("getBalance error", e);
-            platonClient.updateCurrentWeb3jWrapper();
-            try {
-                this.getAddressInfo(req, resp);
-            } catch (Exception e1) {
-                logger.error("getBalance error again", e);
-            }
+        List<RestrictingBalance> restrictingBalances = await("restricting", restrictingFuture);
+        if (CollUtil.isNotEmpty(restrictingBalances)) {
+            resp.setBalance(new BigDecimal(restrictingBalances.get(0).getFreeBalance()));
+            resp.setRestrictingBalance(new BigDecimal(restrictingBalances.get(0).getLockBalance().subtract(restrictingBalances.get(0).getPledgeBalance())));
         }
-        RpPlanExample rpPlanExample = new RpPlanExample();
-        RpPlanExample.Criteria criteria = rpPlanExample.createCriteria();
-        criteria.andAddressEqualTo(req.getAddress());
-        List<RpPlan> rpPlans = rpPlanMapper.selectByExample(rpPlanExample);
+        Stage<BigInteger> balanceFuture = null;
+        if (resp.getBalance() != null && resp.getBalance().compareTo(BigDecimal.valueOf(10000000000L)) > 0) {
+            balanceFuture = submit("balance", timings, RPC_TIMEOUT_MILLIS, () -> getBalance(address));
+        }
+        Stage<Block> blockFuture = null;
+        NetworkStat networkStat = statisticCacheService.getNetworkStatCache();
+        if (CollUtil.isNotEmpty(restrictingBalances) && CollUtil.isNotEmpty(restrictingBalances.get(0).getDlLocks())) {
+            blockFuture = submit("block", timings, RPC_TIMEOUT_MILLIS, () -> esBlockRepository.get(String.valueOf(networkStat.getCurNumber()), Block.class));
+        }
+
+        Optional<BigDecimal> delegateClaim = await("reward", rewardFuture);
+        if (delegateClaim != null) {
+            delegateClaim.ifPresent(resp::setDelegateClaim);
+        }
+        Long rpPlanCount = await("rpPlan", rpPlanFuture);
         /** 有锁仓数据之后就可以返回1 */
-        if (rpPlans != null && !rpPlans.isEmpty()) {
+        if (rpPlanCount != null && rpPlanCount > 0) {
             resp.setIsRestricting(1);
         }
-        List<LockDelegate> lockDelegateList = new ArrayList<>();
-        try {
-            List<RestrictingBalance> restrictingBalances = specialApi.getRestrictingBalance(platonClient.getWeb3jWrapper().getWeb3j(), req.getAddress());
-            // 已解冻的委托金额/待提取委托
-            BigDecimal unLockBalance = BigDecimal.ZERO;
-            // 未解冻的委托金额/待赎回委托
-            BigDecimal lockBalance = BigDecimal.ZERO;
-            if (CollUtil.isNotEmpty(restrictingBalances)) {
-                unLockBalance = new BigDecimal(restrictingBalances.get(0).getDlFreeBalance().add(restrictingBalances.get(0).getDlRestrictingBalance()));
-                unLockBalance = ConvertUtil.convertByFactor(unLockBalance, 18);
-                if (CollUtil.isNotEmpty(restrictingBalances.get(0).getDlLocks())) {
-                    NetworkStat networkStat = statisticCacheService.getNetworkStatCache();
-                    Block block = null;
-                    try {
-                        block = esBlockRepository.get(String.valueOf(networkStat.getCurNumber()), Block.class);
-                    } catch (Exception e) {
-                        logger.error("获取区块错误。", e);
-                    }
-                    for (DlLock dlLock : restrictingBalances.get(0).getDlLocks()) {
-                        BigDecimal accLockBalance = new BigDecimal(dlLock.getFreeBalance().add(dlLock.getLockBalance()));
-                        accLockBalance = ConvertUtil.convertByFactor(accLockBalance, 18);
-                        lockBalance = lockBalance.add(accLockBalance);
-                        LockDelegate lockDelegate = new LockDelegate();
-                        lockDelegate.setBlockNum(dlLock.getEpoch().multiply(blockChainConfig.getSettlePeriodBlockCount()));
-                        // 预计时间：预计块高减去当前块高乘以出块时间再加上区块时间
-                        BigDecimal diff = new BigDecimal(lockDelegate.getBlockNum().subtract(BigInteger.valueOf(networkStat.getCurNumber())));
-                        if (block != null) {
-                            if (diff.compareTo(BigDecimal.ZERO) > 0) {
-                                lockDelegate.setDate(new BigDecimal(networkStat.getAvgPackTime()).multiply(diff).add(BigDecimal.valueOf(block.getTime().getTime())).longValue());
-                            } else {
-                                lockDelegate.setDate(block.getTime().getTime());
-                            }
-                        }
-                        lockDelegate.setLock(accLockBalance.toPlainString());
-                        lockDelegateList.add(lockDelegate);
-                    }
-                }
-                resp.setLockBalance(lockBalance.toPlainString());
-                resp.setUnLockBalance(unLockBalance.toPlainString());
-            }
-        } catch (Exception e) {
-            logger.error("获取冻结委托异常", e);
+        String code = await("code", codeFuture);
+        if (code != null) {
+            resp.setContractBin(code);
+        }
+        BigInteger balance = await("balance", balanceFuture);
+        if (balance != null) {
+            resp.setBalance(new BigDecimal(balance));
         }
-        resp.setLockDelegateList(lockDelegateList);
+        Block block = await("block", blockFuture);
+        resp.setLockDelegateList(getLockDelegates(resp, restrictingBalances, networkStat, block));
+        recordTimings(address, timings, System.currentTimeMillis() - start);
         return resp;
     }
 
@@ -290,41 +345,210 @@ public class AddressService {
     }
 
     /**
-     * 从链上查询特殊账户余额
+     * 计算冻结委托：已解冻的委托金额/待提取委托，未解冻的委托金额/待赎回委托及各笔的预计解冻时间
      *
-     * @param req
-     * @param resp
-     * @return com.platon.browser.response.address.QueryDetailResp
-     * @date 2021/6/7
+     * @param resp:                地址详情
+     * @param restrictingBalances: 锁仓余额
+     * @param networkStat:         统计信息
+     * @param block:               当前区块，查询失败时为null
+     * @return: java.util.List<com.platon.browser.bean.LockDelegate>
+     * @date: 2022/3/24
      */
-    private QueryDetailResp getAddressInfo(QueryDetailRequest req, QueryDetailResp resp) throws Exception {
-        List<RestrictingBalance> restrictingBalances = specialApi.getRestrictingBalance(platonClient.getWeb3jWrapper().getWeb3j(), req.getAddress());
-        if (restrictingBalances != null && !restrictingBalances.isEmpty()) {
-            resp.setBalance(new BigDecimal(restrictingBalances.get(0).getFreeBalance()));
-            resp.setRestrictingBalance(new BigDecimal(restrictingBalances.get(0).getLockBalance().subtract(restrictingBalances.get(0).getPledgeBalance())));
+    private List<LockDelegate> getLockDelegates(QueryDetailResp resp, List<RestrictingBalance> restrictingBalances, NetworkStat networkStat, Block block) {
+        List<LockDelegate> lockDelegateList = new ArrayList<>();
+        if (CollUtil.isEmpty(restrictingBalances)) {
+            return lockDelegateList;
         }
-        /** 特殊账户余额直接查询链  */
-        if (resp.getBalance().compareTo(BigDecimal.valueOf(10000000000L)) > 0) {
-            BigInteger balance = platonClient.getWeb3jWrapper().getWeb3j().platonGetBalance(req.getAddress(), DefaultBlockParameterName.LATEST).send().getBalance();
-            resp.setBalance(new BigDecimal(balance));
+        try {
+            // 已解冻的委托金额/待提取委托
+            BigDecimal unLockBalance = new BigDecimal(restrictingBalances.get(0).getDlFreeBalance().add(restrictingBalances.get(0).getDlRestrictingBalance()));
+            unLockBalance = ConvertUtil.convertByFactor(unLockBalance, 18);
+            // 未解冻的委托金额/待赎回委托
+            BigDecimal lockBalance = BigDecimal.ZERO;
+            if (CollUtil.isNotEmpty(restrictingBalances.get(0).getDlLocks())) {
+                for (DlLock dlLock : restrictingBalances.get(0).getDlLocks()) {
+                    BigDecimal accLockBalance = new BigDecimal(dlLock.getFreeBalance().add(dlLock.getLockBalance()));
+                    accLockBalance = ConvertUtil.convertByFactor(accLockBalance, 18);
+                    lockBalance = lockBalance.add(accLockBalance);
+                    LockDelegate lockDelegate = new LockDelegate();
+                    lockDelegate.setBlockNum(dlLock.getEpoch().multiply(blockChainConfig.getSettlePeriodBlockCount()));
+                    // 预计时间：预计块高减去当前块高乘以出块时间再加上区块时间
+                    BigDecimal diff = new BigDecimal(lockDelegate.getBlockNum().subtract(BigInteger.valueOf(networkStat.getCurNumber())));
+                    if (block != null) {
+                        if (diff.compareTo(BigDecimal.ZERO) > 0) {
+                            lockDelegate.setDate(new BigDecimal(networkStat.getAvgPackTime()).multiply(diff).add(BigDecimal.valueOf(block.getTime().getTime())).longValue());
+                        } else {
+                            lockDelegate.setDate(block.getTime().getTime());
+                        }
+                    }
+                    lockDelegate.setLock(accLockBalance.toPlainString());
+                    lockDelegateList.add(lockDelegate);
+                }
+            }
+            resp.setLockBalance(lockBalance.toPlainString());
+            resp.setUnLockBalance(unLockBalance.toPlainString());
+        } catch (Exception e) {
+            logger.error("获取冻结委托异常", e);
         }
-        /**
-         * 查询所有的交易金额进行汇总
-         */
-        List<String> nodes = new ArrayList<>();
-        List<Reward> rewards = platonClient.getRewardContract().getDelegateReward(req.getAddress(), nodes).send().getData();
-        /**
-         * 当奖励为空时直接return
-         */
-        if (rewards == null) {
-            return resp;
+        return lockDelegateList;
+    }
+
+    /**
+     * 查询锁仓余额，结果缓存约一个出块时间
+     *
+     * @param address: 地址
+     * @return: java.util.List<com.platon.browser.bean.RestrictingBalance>
+     * @date: 2022/3/24
+     */
+    private List<RestrictingBalance> getRestrictingBalance(String address) throws Exception {
+        List<RestrictingBalance> restrictingBalances = RESTRICTING_CACHE.getIfPresent(address);
+        if (restrictingBalances == null) {
+            restrictingBalances = callChain(() -> specialApi.getRestrictingBalance(platonClient.getWeb3jWrapper().getWeb3j(), address));
+            if (restrictingBalances == null) {
+                restrictingBalances = Collections.emptyList();
+            }
+            RESTRICTING_CACHE.put(address, restrictingBalances);
         }
-        BigDecimal allRewards = BigDecimal.ZERO;
-        for (Reward reward : rewards) {
-            allRewards = allRewards.add(new BigDecimal(reward.getReward()));
+        return restrictingBalances;
+    }
+
+    /**
+     * 查询所有委托的待领取奖励进行汇总，结果缓存约一个出块时间
+     *
+     * @param address: 地址
+     * @return: java.util.Optional<java.math.BigDecimal> 奖励为空时为empty
+     * @date: 2022/3/24
+     */
+    private Optional<BigDecimal> getDelegateClaim(String address) throws Exception {
+        Optional<BigDecimal> delegateClaim = REWARD_CACHE.getIfPresent(address);
+        if (delegateClaim == null) {
+            List<Reward> rewards = callChain(() -> platonClient.getRewardContract().getDelegateReward(address, new ArrayList<>()).send().getData());
+            delegateClaim = rewards == null ? Optional.empty() : Optional.of(rewards.stream().map(reward -> new BigDecimal(reward.getReward())).reduce(BigDecimal.ZERO, BigDecimal::add));
+            REWARD_CACHE.put(address, delegateClaim);
         }
-        resp.setDelegateClaim(allRewards);
-        return resp;
+        return delegateClaim;
+    }
+
+    /**
+     * 特殊账户余额直接查询链，结果缓存约一个出块时间
+     *
+     * @param address: 地址
+     * @return: java.math.BigInteger
+     * @date: 2022/3/24
+     */
+    private BigInteger getBalance(String address) throws Exception {
+        BigInteger balance = BALANCE_CACHE.getIfPresent(address);
+        if (balance == null) {
+            balance = callChain(() -> platonClient.getWeb3jWrapper().getWeb3j().platonGetBalance(address, DefaultBlockParameterName.LATEST).send().getBalance());
+            BALANCE_CACHE.put(address, balance);
+        }
+        return balance;
+    }
+
+    private Long countRpPlan(String address) {
+        RpPlanExample rpPlanExample = new RpPlanExample();
+        rpPlanExample.createCriteria().andAddressEqualTo(address);
+        return rpPlanMapper.countByExample(rpPlanExample);
+    }
+
+    /**
+     * 链上查询失败时切换节点重试一次
+     *
+     * @param call: 查询
+     * @return: T
+     * @date: 2022/3/24
+     */
+    private <T> T callChain(Callable<T> call) throws Exception {
+        try {
+            return call.call();
+        } catch (Exception e) {
+            logger.error("查询链上数据异常，切换节点重试", e);
+            platonClient.updateCurrentWeb3jWrapper();
+            return call.call();
+        }
+    }
+
+    /**
+     * 提交到地址详情线程池，线程池已满时直接返回失败，由调用方按缺失处理
+     * 等待时间从提交时开始计算，依赖前序结果后提交的阶段同样有完整的等待时间
+     *
+     * @param stage:         阶段名称
+     * @param timings:       <阶段-耗时>
+     * @param timeoutMillis: 等待时间(毫秒)
+     * @param task:          查询
+     * @return: com.platon.browser.service.AddressService.Stage<T>
+     * @date: 2022/3/24
+     */
+    private <T> Stage<T> submit(String stage, Map<String, Long> timings, long timeoutMillis, Callable<T> task) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            return new Stage<>(detailExecutor.submit(() -> {
+                long start = System.currentTimeMillis();
+                try {
+                    return task.call();
+                } finally {
+                    timings.put(stage, System.currentTimeMillis() - start);
+                }
+            }), deadline);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return new Stage<>(future, deadline);
+        }
+    }
+
+    /**
+     * 在截止时间前等待查询结果，超时或失败时返回null，其余数据照常返回
+     *
+     * @param stage:      阶段名称
+     * @param stageFuture: 已提交的查询
+     * @return: T
+     * @date: 2022/3/24
+     */
+    private <T> T await(String stage, Stage<T> stageFuture) {
+        if (stageFuture == null) {
+            return null;
+        }
+        Future<T> future = stageFuture.future;
+        try {
+            return future.get(Math.max(stageFuture.deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("查询地址详情[{}]超时", stage);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("查询地址详情[{}]异常", stage, e.getCause());
+        }
+        return null;
+    }
+
+    /**
+     * 打印各阶段耗时，超过慢查询阈值时按warn级别打印
+     */
+    private void recordTimings(String address, Map<String, Long> timings, long elapsed) {
+        if (elapsed > SLOW_MILLIS) {
+            logger.warn("查询地址[{}]详情耗时[{}]ms，各阶段耗时{}", address, elapsed, timings);
+        } else {
+            logger.debug("查询地址[{}]详情耗时[{}]ms，各阶段耗时{}", address, elapsed, timings);
+        }
+    }
+
+    /**
+     * 已提交的查询及其截止时间(毫秒时间戳)
+     */
+    private static class Stage<T> {
+
+        private final Future<T> future;
+
+        private final long deadline;
+
+        private Stage(Future<T> future, long deadline) {
+            this.future = future;
+            this.deadline = deadline;
+        }
+
     }
 
 }
@@ -174,10 +174,10 @@ public class ErcTxService {
             }
 
             try {
-                queryResultFromES = repository.search(constructor, ErcTx.class, req.getPageNo(), req.getPageSize());
-                ESResult<?> res = repository.Count(count);
-                totalCount = res.getTotal();
-                displayTotalCount = res.getTotal();
+                // 列表及总数在一次msearch请求中并行查询
+                queryResultFromES = repository.searchWithCount(constructor, count, ErcTx.class, req.getPageNo(), req.getPageSize());
+                totalCount = queryResultFromES.getTotal();
+                displayTotalCount = queryResultFromES.getTotal();
             } catch (Exception e) {
                 log.error("检索代币交易列表失败", e);
                 return result;
@@ -2,6 +2,7 @@ package com.platon.browser.service;
 
 import com.platon.browser.bean.CustomStaking;
 import com.platon.browser.bean.StakingBO;
+import com.platon.browser.cache.NavigationIndex;
 import com.platon.browser.config.BlockChainConfig;
 import com.platon.browser.dao.custommapper.CustomNodeMapper;
 import com.platon.browser.dao.entity.Address;
@@ -73,6 +74,9 @@ public class HomeService {
     @Resource
     private NetworkParams networkParams;
 
+    @Resource
+    private NavigationIndex navigationIndex;
+
     private final static String BLOCK_ERR_TIPS = "获取区块错误。";
 
     /**
@@ -120,14 +124,17 @@ public class HomeService {
             } catch (Exception e) {
                 return result;
             }
-            /* 存在区块信息则返回区块号 */
+            /* 存在区块信息则返回区块号，已索引的块高一定存在 */
+            boolean indexed = navigationIndex.isIndexedBlock(number);
             Block block = null;
-            try {
-                block = ESBlockRepository.get(String.valueOf(number), Block.class);
-            } catch (IOException e) {
-                log.error(BLOCK_ERR_TIPS, e);
+            if (!indexed) {
+                try {
+                    block = ESBlockRepository.get(String.valueOf(number), Block.class);
+                } catch (IOException e) {
+                    log.error(BLOCK_ERR_TIPS, e);
+                }
             }
-            if (block != null) {
+            if (indexed || block != null) {
                 result.setType(BLOCK_TYPE);
                 queryNavigationStructResp.setNumber(number);
             }
@@ -172,30 +179,22 @@ public class HomeService {
                      * 4、以上都无记录，则返回空结果
                      */
                     keyword = keyword.toLowerCase();
-                    Transaction items = null;
-                    try {
-                        items = ESTransactionRepository.get(keyword, Transaction.class);
-                    } catch (IOException e) {
-                        log.error(BLOCK_ERR_TIPS, e);
-                    }
-                    if (items != null) {
-                        result.setType(TRANSACTION_TYPE);
-                        queryNavigationStructResp.setTxHash(keyword);
-                    } else {
-                        log.debug("在交易表查询不到Hash为[{}]的交易记录，尝试查询Hash为[{}]的区块信息...", keyword, keyword);
-
-                        ESQueryBuilderConstructor blockConstructor = new ESQueryBuilderConstructor();
-                        blockConstructor.must(new ESQueryBuilders().term("hash", keyword));
-                        ESResult<Block> blockList = new ESResult<>();
+                    /* 路由索引判断更可能是区块hash时先查区块，只决定查询顺序，未命中时仍查询另一数据源 */
+                    boolean preferBlock = navigationIndex.preferBlock(keyword);
+                    boolean found = preferBlock && navigateBlockHash(keyword, result, queryNavigationStructResp);
+                    if (!found) {
+                        Transaction items = null;
                         try {
-                            blockList = ESBlockRepository.search(blockConstructor, Block.class, 1, 1);
+                            items = ESTransactionRepository.get(keyword, Transaction.class);
                         } catch (IOException e) {
                             log.error(BLOCK_ERR_TIPS, e);
                         }
-                        if (blockList.getTotal() > 0l) {
-                            /*  如果找到区块信息，则构造结果并返回  */
-                            result.setType(BLOCK_TYPE);
-                            queryNavigationStructResp.setNumber(blockList.getRsData().get(0).getNum());
+                        if (items != null) {
+                            result.setType(TRANSACTION_TYPE);
+                            queryNavigationStructResp.setTxHash(keyword);
+                        } else if (!preferBlock) {
+                            log.debug("在交易表查询不到Hash为[{}]的交易记录，尝试查询Hash为[{}]的区块信息...", keyword, keyword);
+                            navigateBlockHash(keyword, result, queryNavigationStructResp);
                         }
                     }
                 }
@@ -215,6 +214,33 @@ public class HomeService {
         return result;
     }
 
+    /**
+     * 按区块hash查询区块
+     *
+     * @param hash:                      区块hash
+     * @param result:                    导航结果
+     * @param queryNavigationStructResp: 导航结构
+     * @return: boolean 是否找到
+     * @date: 2022/3/24
+     */
+    private boolean navigateBlockHash(String hash, QueryNavigationResp result, QueryNavigationStructResp queryNavigationStructResp) {
+        ESQueryBuilderConstructor blockConstructor = new ESQueryBuilderConstructor();
+        blockConstructor.must(new ESQueryBuilders().term("hash", hash));
+        ESResult<Block> blockList = new ESResult<>();
+        try {
+            blockList = ESBlockRepository.search(blockConstructor, Block.class, 1, 1);
+        } catch (IOException e) {
+            log.error(BLOCK_ERR_TIPS, e);
+        }
+        if (blockList.getTotal() > 0l) {
+            /*  如果找到区块信息，则构造结果并返回  */
+            result.setType(BLOCK_TYPE);
+            queryNavigationStructResp.setNumber(blockList.getRsData().get(0).getNum());
+            return true;
+        }
+        return false;
+    }
+
     public BlockStatisticNewResp blockStatisticNew() {
         /*------------ 组装图表数据 ------------*/
         List<Block> items = statisticCacheService.getBlockCache(0, 32);
@@ -5,6 +5,7 @@ import com.platon.browser.request.internaltransfer.QueryByAddressRequest;
 import com.platon.browser.response.RespPage;
 import com.platon.browser.response.transaction.InternalTransferParam;
 import com.platon.browser.service.elasticsearch.EsTransferTxRepository;
+import com.platon.browser.service.elasticsearch.AbstractEsRepository;
 import com.platon.browser.service.elasticsearch.bean.ESResult;
 import com.platon.browser.service.elasticsearch.query.ESQueryBuilderConstructor;
 import org.elasticsearch.index.query.BoolQueryBuilder;
@@ -37,7 +38,7 @@ public class InternalTransferService {
         constructor.setUnmappedType("long");
         constructor.setResult(new String[]{"hash", "from", "fromType", "to", "toType", "value", "bn"});
         try {
-            items = esTransferTxRepository.search(constructor, InternalTransferParam.class, req.getPageNo(), req.getPageSize());
+            items = esTransferTxRepository.searchWithTotal(constructor, InternalTransferParam.class, req.getPageNo(), req.getPageSize(), AbstractEsRepository.DEFAULT_TRACK_TOTAL_HITS);
         } catch (Exception e) {
             this.logger.error(ERROR_TIPS, e);
             return result;
@@ -5,6 +5,7 @@ import com.platon.utils.Convert;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.platon.browser.bean.CustomProposal;
+import com.platon.browser.cache.ProposalTopicCache;
 import com.platon.browser.config.BlockChainConfig;
 import com.platon.browser.constant.Browser;
 import com.platon.browser.dao.entity.NetworkStat;
@@ -73,6 +74,9 @@ public class ProposalInfoService {
     @Resource
     private NetworkParams networkParams;
 
+    @Resource
+    private ProposalTopicCache proposalTopicCache;
+
     public RespPage<ProposalListResp> list(PageReq req) {
         RespPage<ProposalListResp> respPage = new RespPage<>();
         req = req == null ? new PageReq() : req;
@@ -90,6 +94,7 @@ public class ProposalInfoService {
                 /**
                  * 循环转换数据
                  */
+                proposalTopicCache.refresh(proposal);
                 ProposalListResp proposalListResp = new ProposalListResp();
                 BeanUtils.copyProperties(proposal, proposalListResp);
                 proposalListResp.setTopic(Browser.INQUIRY.equals(proposal.getTopic()) ? "" : proposal.getTopic());
@@ -118,6 +123,7 @@ public class ProposalInfoService {
             logger.error("## ERROR # get record not exist proposalHash:{}", req.getProposalHash());
             return BaseResp.build(ErrorCodeEnum.RECORD_NOT_EXIST.getCode(), i18n.i(I18nEnum.RECORD_NOT_EXIST, req.getProposalHash()), null);
         }
+        proposalTopicCache.refresh(proposal);
         ProposalDetailsResp proposalDetailsResp = new ProposalDetailsResp();
         BeanUtils.copyProperties(proposal, proposalDetailsResp);
         proposalDetailsResp.setTopic(Browser.INQUIRY.equals(proposal.getTopic()) ? "" : proposal.getTopic());
@@ -1,22 +1,23 @@
 package com.platon.browser.service;
 
-import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.platon.browser.bean.CustomDelegation.YesNoEnum;
 import com.platon.browser.bean.*;
 import com.platon.browser.bean.CustomStaking.StatusEnum;
+import com.platon.browser.cache.NodeNameIndex;
+import com.platon.browser.cache.ProposalTopicCache;
+import com.platon.browser.cache.ValidatorListSnapshot;
 import com.platon.browser.client.PlatOnClient;
 import com.platon.browser.config.BlockChainConfig;
 import com.platon.browser.constant.Browser;
 import com.platon.browser.dao.custommapper.CustomDelegationMapper;
 import com.platon.browser.dao.custommapper.CustomNodeMapper;
-import com.platon.browser.dao.custommapper.CustomVoteMapper;
 import com.platon.browser.dao.entity.*;
 import com.platon.browser.dao.mapper.AddressMapper;
 import com.platon.browser.dao.mapper.NodeMapper;
-import com.platon.browser.dao.mapper.ProposalMapper;
+import com.platon.browser.dao.mapper.VoteMapper;
 import com.platon.browser.elasticsearch.dto.NodeOpt;
 import com.platon.browser.enums.AddressTypeEnum;
 import com.platon.browser.enums.I18nEnum;
@@ -42,10 +43,9 @@ import org.springframework.stereotype.Service;
 import javax.annotation.Resource;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * 验证人模块方法
@@ -63,9 +63,6 @@ public class StakingService {
     @Resource
     private StatisticCacheService statisticCacheService;
 
-    @Resource
-    private CustomVoteMapper customVoteMapper;
-
     @Resource
     private CustomDelegationMapper customDelegationMapper;
 
@@ -93,7 +90,29 @@ public class StakingService {
     @Resource
     private AddressMapper addressMapper;
     @Resource
-    private ProposalMapper proposalMapper;
+    private VoteMapper voteMapper;
+
+    @Resource
+    private ProposalTopicCache proposalTopicCache;
+
+    @Resource
+    private NodeNameIndex nodeNameIndex;
+
+    @Resource
+    private ValidatorListSnapshot validatorListSnapshot;
+
+    /**
+     * 与活跃验证人列表查询的order by big_version desc, total_value desc, staking_block_num asc, staking_tx_index asc一致
+     */
+    private static final Comparator<Node> ALIVE_ORDER = Comparator.comparing(Node::getBigVersion, Comparator.nullsLast(Comparator.reverseOrder()))
+                                                                  .thenComparing(Node::getTotalValue, Comparator.nullsLast(Comparator.reverseOrder()))
+                                                                  .thenComparing(Node::getStakingBlockNum, Comparator.nullsFirst(Comparator.naturalOrder()))
+                                                                  .thenComparing(Node::getStakingTxIndex, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    /**
+     * 与历史及锁定验证人列表查询的order by leave_time desc一致
+     */
+    private static final Comparator<Node> LEAVE_TIME_ORDER = Comparator.comparing(Node::getLeaveTime, Comparator.nullsLast(Comparator.reverseOrder()));
 
     public StakingStatisticNewResp stakingStatisticNew() {
         /** 获取统计信息 */
@@ -114,9 +133,8 @@ public class StakingService {
         return stakingStatisticNewResp;
     }
 
-    @Cacheable(cacheNames = "aliveStakingList",  key = "'pageNo_' + #req.pageNo + '_pageSize_' + #req.pageSize + '_queryStatus_' + #req.queryStatus + '_key_' + #req.key ", cacheManager = "caffeineCacheManagerOf1")
+    @Cacheable(cacheNames = "aliveStakingList",  key = "'pageNo_' + #req.pageNo + '_pageSize_' + #req.pageSize + '_queryStatus_' + #req.queryStatus + '_key_' + #req.key ", cacheManager = "caffeineCacheManagerOf1", sync = true)
     public RespPage<AliveStakingListResp> aliveStakingList(AliveStakingListReq req) {
-        PageHelper.startPage(req.getPageNo(), req.getPageSize());
         Integer status = null;
         Integer isSettle = null;
 
@@ -145,6 +163,10 @@ public class StakingService {
             default:
                 break;
         }
+        List<String> matchedNodeIds = searchNodeIds(req.getKey());
+        if (matchedNodeIds != null && matchedNodeIds.isEmpty()) {
+            return emptyPage();
+        }
         RespPage<AliveStakingListResp> respPage = new RespPage<>();
         List<AliveStakingListResp> lists = new LinkedList<>();
         /** 根据条件和状态进行查询列表 */
@@ -153,7 +175,7 @@ public class StakingService {
         NodeExample.Criteria criteria1 = nodeExample.createCriteria();
         criteria1.andStatusEqualTo(status);
         if (StringUtils.isNotBlank(req.getKey())) {
-            criteria1.andNodeNameLike("%" + req.getKey() + "%");
+            andNodeNameContains(criteria1, req.getKey(), matchedNodeIds);
         }
         if (isSettle != null) {
             criteria1.andIsSettleEqualTo(isSettle);
@@ -166,13 +188,20 @@ public class StakingService {
             NodeExample.Criteria criteria2 = nodeExample.createCriteria();
             criteria2.andStatusEqualTo(CustomStaking.StatusEnum.EXITING.getCode());
             if (StringUtils.isNotBlank(req.getKey())) {
-                criteria2.andNodeNameLike("%" + req.getKey() + "%");
+                andNodeNameContains(criteria2, req.getKey(), matchedNodeIds);
             }
             criteria2.andIsSettleEqualTo(CustomStaking.YesNoEnum.YES.getCode());
             nodeExample.or(criteria2);
         }
 
-        Page<Node> stakingPage = customNodeMapper.selectListByExample(nodeExample);
+        Page<Node> stakingPage = validatorListSnapshot.select(aliveFilter(status, isSettle, exitingAsActive, nameFilter(req.getKey(), matchedNodeIds)),
+                                                              ALIVE_ORDER,
+                                                              req.getPageNo(),
+                                                              req.getPageSize());
+        if (stakingPage == null) {
+            PageHelper.startPage(req.getPageNo(), req.getPageSize());
+            stakingPage = customNodeMapper.selectListByExample(nodeExample);
+        }
         List<Node> stakings = stakingPage.getResult();
         /** 查询出块节点 */
         NetworkStat networkStatRedis = statisticCacheService.getNetworkStatCache();
@@ -205,10 +234,8 @@ public class StakingService {
             aliveStakingListResp.setTotalValue(staking.getTotalValue().toString());
             aliveStakingListResp.setDeleAnnualizedRate(staking.getDeleAnnualizedRate().toString());
             try {
-                String nodeSettleStatisInfo = staking.getNodeSettleStatisInfo();
-                NodeSettleStatis nodeSettleStatis = NodeSettleStatis.jsonToBean(nodeSettleStatisInfo);
                 BigInteger settleEpochRound = EpochUtil.getEpoch(BigInteger.valueOf(networkStatRedis.getCurNumber()), blockChainConfig.getSettlePeriodBlockCount());
-                aliveStakingListResp.setGenBlocksRate(nodeSettleStatis.computeGenBlocksRate(settleEpochRound));
+                aliveStakingListResp.setGenBlocksRate(validatorListSnapshot.getGenBlocksRate(staking, settleEpochRound));
             } catch (Exception e) {
                 logger.error("获取节点24小时出块率异常", e);
             }
@@ -229,10 +256,13 @@ public class StakingService {
 
     public RespPage<HistoryStakingListResp> historyStakingList(HistoryStakingListReq req) {
         /** 设置只查询退出中和已退出 */
-        PageHelper.startPage(req.getPageNo(), req.getPageSize());
         List<Integer> status = new ArrayList<>();
         status.add(CustomStaking.StatusEnum.EXITING.getCode());
         status.add(CustomStaking.StatusEnum.EXITED.getCode());
+        List<String> matchedNodeIds = searchNodeIds(req.getKey());
+        if (matchedNodeIds != null && matchedNodeIds.isEmpty()) {
+            return emptyPage();
+        }
         RespPage<HistoryStakingListResp> respPage = new RespPage<>();
         List<HistoryStakingListResp> lists = new LinkedList<>();
         /** 根据条件和状态进行查询列表 */
@@ -246,9 +276,13 @@ public class StakingService {
         criteria.andIsSettleEqualTo(CustomStaking.YesNoEnum.NO.getCode());
 
         if (StringUtils.isNotBlank(req.getKey())) {
-            criteria.andNodeNameLike("%" + req.getKey() + "%");
+            andNodeNameContains(criteria, req.getKey(), matchedNodeIds);
+        }
+        Page<Node> stakings = validatorListSnapshot.select(historyFilter(status, nameFilter(req.getKey(), matchedNodeIds)), LEAVE_TIME_ORDER, req.getPageNo(), req.getPageSize());
+        if (stakings == null) {
+            PageHelper.startPage(req.getPageNo(), req.getPageSize());
+            stakings = customNodeMapper.selectListByExample(nodeExample);
         }
-        Page<Node> stakings = customNodeMapper.selectListByExample(nodeExample);
 
         for (Node stakingNode : stakings.getResult()) {
             HistoryStakingListResp historyStakingListResp = new HistoryStakingListResp();
@@ -406,6 +440,13 @@ public class StakingService {
             return respPage;
         }
         List<NodeOpt> nodeOpts = items.getRsData();
+        // 本页的提案及投票记录批量查询提案标题
+        Map<String, String> voteProposalHashes = getVoteProposalHashes(nodeOpts);
+        Set<String> proposalHashes = new HashSet<>(voteProposalHashes.values());
+        nodeOpts.stream()
+                .filter(nodeOpt -> isOptType(nodeOpt, NodeOpt.TypeEnum.PROPOSALS) && StrUtil.isNotBlank(nodeOpt.getTxHash()))
+                .forEach(nodeOpt -> proposalHashes.add(nodeOpt.getTxHash()));
+        Map<String, String> topics = proposalHashes.isEmpty() ? Collections.emptyMap() : proposalTopicCache.getTopics(proposalHashes);
         List<StakingOptRecordListResp> lists = new LinkedList<>();
         for (NodeOpt nodeOpt : nodeOpts) {
             StakingOptRecordListResp stakingOptRecordListResp = new StakingOptRecordListResp();
@@ -428,9 +469,9 @@ public class StakingService {
                         break;
                     /** 提案类型 */
                     case PROPOSALS:
-                        Proposal proposal = proposalMapper.selectByPrimaryKey(nodeOpt.getTxHash());
-                        if (ObjectUtil.isNotNull(proposal) && StrUtil.isNotBlank(proposal.getTopic())) {
-                            String desc = StrUtil.replace(stakingOptRecordListResp.getDesc(), Browser.INQUIRY, proposal.getTopic());
+                        String proposalTopic = topics.get(nodeOpt.getTxHash());
+                        if (StrUtil.isNotBlank(proposalTopic)) {
+                            String desc = StrUtil.replace(stakingOptRecordListResp.getDesc(), Browser.INQUIRY, proposalTopic);
                             nodeOpt.setDesc(desc);
                             stakingOptRecordListResp.setDesc(desc);
                             desces = nodeOpt.getDesc().split(Browser.OPT_SPILT);
@@ -444,10 +485,10 @@ public class StakingService {
                         break;
                     /** 投票类型 */
                     case VOTE:
-                        // 描述是由定时任务更新的，所以每次查询都要重新查询取最新的值
-                        CustomVoteProposal customVoteProposal = customVoteMapper.selectVotePropal(nodeOpt.getTxHash());
-                        if (ObjectUtil.isNotNull(customVoteProposal) && StrUtil.isNotBlank(customVoteProposal.getTopic())) {
-                            String desc = StrUtil.replace(stakingOptRecordListResp.getDesc(), Browser.INQUIRY, customVoteProposal.getTopic());
+                        // 描述是由定时任务更新的，所以每次查询都要取提案最新的标题
+                        String voteTopic = topics.get(voteProposalHashes.get(nodeOpt.getTxHash()));
+                        if (StrUtil.isNotBlank(voteTopic)) {
+                            String desc = StrUtil.replace(stakingOptRecordListResp.getDesc(), Browser.INQUIRY, voteTopic);
                             nodeOpt.setDesc(desc);
                             stakingOptRecordListResp.setDesc(desc);
                             desces = nodeOpt.getDesc().split(Browser.OPT_SPILT);
@@ -507,6 +548,34 @@ public class StakingService {
         return respPage;
     }
 
+    /**
+     * 用一次IN查询获取本页投票记录对应的提案hash
+     *
+     * @param nodeOpts: 节点操作记录
+     * @return: java.util.Map<java.lang.String, java.lang.String> <投票交易hash-提案hash>
+     * @date: 2022/3/24
+     */
+    private Map<String, String> getVoteProposalHashes(List<NodeOpt> nodeOpts) {
+        List<String> voteHashes = nodeOpts.stream()
+                                          .filter(nodeOpt -> isOptType(nodeOpt, NodeOpt.TypeEnum.VOTE) && StrUtil.isNotBlank(nodeOpt.getTxHash()))
+                                          .map(NodeOpt::getTxHash)
+                                          .distinct()
+                                          .collect(Collectors.toList());
+        if (voteHashes.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        VoteExample voteExample = new VoteExample();
+        voteExample.createCriteria().andHashIn(voteHashes);
+        return voteMapper.selectByExample(voteExample)
+                         .stream()
+                         .filter(vote -> StrUtil.isNotBlank(vote.getProposalHash()))
+                         .collect(Collectors.toMap(Vote::getHash, Vote::getProposalHash, (a, b) -> a));
+    }
+
+    private boolean isOptType(NodeOpt nodeOpt, NodeOpt.TypeEnum type) {
+        return StringUtils.isNotBlank(nodeOpt.getDesc()) && type.getCode().equals(String.valueOf(nodeOpt.getType()));
+    }
+
     public RespPage<DelegationListByStakingResp> delegationListByStaking(DelegationListByStakingReq req) {
         Node node = nodeMapper.selectByPrimaryKey(req.getNodeId());
         PageHelper.startPage(req.getPageNo(), req.getPageSize());
@@ -588,7 +657,10 @@ public class StakingService {
     }
 
     public RespPage<LockedStakingListResp> lockedStakingList(LockedStakingListReq req) {
-        PageHelper.startPage(req.getPageNo(), req.getPageSize());
+        List<String> matchedNodeIds = searchNodeIds(req.getKey());
+        if (matchedNodeIds != null && matchedNodeIds.isEmpty()) {
+            return emptyPage();
+        }
         RespPage<LockedStakingListResp> respPage = new RespPage<>();
         List<LockedStakingListResp> lists = new LinkedList<>();
         NodeExample nodeExample = new NodeExample();
@@ -597,9 +669,14 @@ public class StakingService {
         criteria.andStatusEqualTo(StatusEnum.LOCKED.getCode());
 
         if (StringUtils.isNotBlank(req.getKey())) {
-            criteria.andNodeNameLike("%" + req.getKey() + "%");
+            andNodeNameContains(criteria, req.getKey(), matchedNodeIds);
+        }
+        Predicate<Node> lockedFilter = nameFilter(req.getKey(), matchedNodeIds).and(node -> Objects.equals(node.getStatus(), StatusEnum.LOCKED.getCode()));
+        Page<Node> stakingPage = validatorListSnapshot.select(lockedFilter, LEAVE_TIME_ORDER, req.getPageNo(), req.getPageSize());
+        if (stakingPage == null) {
+            PageHelper.startPage(req.getPageNo(), req.getPageSize());
+            stakingPage = customNodeMapper.selectListByExample(nodeExample);
         }
-        Page<Node> stakingPage = customNodeMapper.selectListByExample(nodeExample);
 
         /** 查询出块节点 */
         //NetworkStat networkStatRedis = this.statisticCacheService.getNetworkStatCache();
@@ -643,6 +720,96 @@ public class StakingService {
         return respPage;
     }
 
+    /**
+     * 从节点名称索引查询名称包含关键字的节点
+     *
+     * @param key: 关键字
+     * @return: java.util.List<java.lang.String> 匹配的nodeId，关键字为空或索引未构建时返回null
+     * @date: 2022/3/24
+     */
+    private List<String> searchNodeIds(String key) {
+        return StringUtils.isBlank(key) ? null : nodeNameIndex.search(key);
+    }
+
+    /**
+     * 按节点名称关键字过滤，有索引匹配结果时按nodeId查询，否则退化为名称模糊查询
+     *
+     * @param criteria:       查询条件
+     * @param key:            关键字
+     * @param matchedNodeIds: 索引匹配的nodeId，不能为空集合
+     * @return: void
+     * @date: 2022/3/24
+     */
+    private void andNodeNameContains(NodeExample.Criteria criteria, String key, List<String> matchedNodeIds) {
+        if (matchedNodeIds == null) {
+            criteria.andNodeNameLike("%" + key + "%");
+        } else {
+            criteria.andNodeIdIn(matchedNodeIds);
+        }
+    }
+
+    /**
+     * 没有名称匹配的节点时直接返回空页
+     *
+     * @param :
+     * @return: com.platon.browser.response.RespPage<T>
+     * @date: 2022/3/24
+     */
+    private <T> RespPage<T> emptyPage() {
+        return new RespPage<>();
+    }
+
+    /**
+     * 快照查询的节点名称过滤条件，与andNodeNameContains一致
+     *
+     * @param key:            关键字
+     * @param matchedNodeIds: 索引匹配的nodeId
+     * @return: java.util.function.Predicate<com.platon.browser.dao.entity.Node>
+     * @date: 2022/3/24
+     */
+    private Predicate<Node> nameFilter(String key, List<String> matchedNodeIds) {
+        if (StringUtils.isBlank(key)) {
+            return node -> true;
+        }
+        if (matchedNodeIds != null) {
+            Set<String> nodeIds = new HashSet<>(matchedNodeIds);
+            return node -> nodeIds.contains(node.getNodeId());
+        }
+        String keyword = key.toLowerCase(Locale.ROOT);
+        return node -> node.getNodeName() != null && node.getNodeName().toLowerCase(Locale.ROOT).contains(keyword);
+    }
+
+    /**
+     * 快照查询的活跃验证人过滤条件，与aliveStakingList的查询条件一致
+     *
+     * @param status:          节点状态
+     * @param isSettle:        是否结算周期验证人，为null时不限
+     * @param exitingAsActive: 是否把结算周期内退出中的节点当做活跃中
+     * @param nameFilter:      名称过滤条件
+     * @return: java.util.function.Predicate<com.platon.browser.dao.entity.Node>
+     * @date: 2022/3/24
+     */
+    private Predicate<Node> aliveFilter(Integer status, Integer isSettle, boolean exitingAsActive, Predicate<Node> nameFilter) {
+        Predicate<Node> selected = node -> Objects.equals(node.getStatus(), status) && (isSettle == null || Objects.equals(node.getIsSettle(), isSettle));
+        if (exitingAsActive) {
+            selected = selected.or(node -> Objects.equals(node.getStatus(), CustomStaking.StatusEnum.EXITING.getCode())
+                    && Objects.equals(node.getIsSettle(), CustomStaking.YesNoEnum.YES.getCode()));
+        }
+        return nameFilter.and(selected);
+    }
+
+    /**
+     * 快照查询的历史验证人过滤条件，与historyStakingList的查询条件一致
+     *
+     * @param status:     节点状态
+     * @param nameFilter: 名称过滤条件
+     * @return: java.util.function.Predicate<com.platon.browser.dao.entity.Node>
+     * @date: 2022/3/24
+     */
+    private Predicate<Node> historyFilter(List<Integer> status, Predicate<Node> nameFilter) {
+        return nameFilter.and(node -> status.contains(node.getStatus()) && Objects.equals(node.getIsSettle(), CustomStaking.YesNoEnum.NO.getCode()));
+    }
+
     public Integer countCandidate() {
         return  customNodeMapper.selectCountByActive();
     }
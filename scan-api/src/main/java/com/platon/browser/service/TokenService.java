@@ -9,6 +9,7 @@ import com.platon.browser.bean.CustomToken;
 import com.platon.browser.bean.CustomTokenDetail;
 import com.platon.browser.bean.CustomTokenHolder;
 import com.platon.browser.bean.CustomTokenInventory;
+import com.platon.browser.cache.SingleFlight;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.dao.custommapper.CustomTokenHolderMapper;
 import com.platon.browser.dao.custommapper.CustomTokenInventoryMapper;
@@ -50,6 +51,9 @@ import java.util.stream.Collectors;
 @Service
 public class TokenService {
 
+    @Resource
+    private SingleFlight singleFlight;
+
     @Resource
     private CustomTokenMapper customTokenMapper;
 
@@ -79,6 +83,10 @@ public class TokenService {
     }
 
     public QueryTokenDetailResp queryTokenDetail(QueryTokenDetailReq req) {
+        return singleFlight.execute("token/queryTokenDetail", req, SingleFlight.MICRO_CACHE_MILLIS, () -> loadTokenDetail(req));
+    }
+
+    private QueryTokenDetailResp loadTokenDetail(QueryTokenDetailReq req) {
         CustomTokenDetail customTokenDetail = customTokenMapper.selectDetailByAddress(req.getAddress());
         if (!customTokenDetail.getType().equalsIgnoreCase(TokenTypeEnum.ERC1155.getType())) {
             // 总供应量为0，则取值总库存量
@@ -7,6 +7,7 @@ import com.alibaba.fastjson.JSONObject;
 import com.github.pagehelper.Page;
 import com.platon.browser.bean.CustomStaking;
 import com.platon.browser.bean.keybase.KeyBaseUserInfo;
+import com.platon.browser.cache.SingleFlight;
 import com.platon.browser.cache.TransactionCacheDto;
 import com.platon.browser.config.BlockChainConfig;
 import com.platon.browser.config.DownFileCommon;
@@ -42,6 +43,7 @@ import com.platon.browser.response.staking.QueryClaimByStakingResp;
 import com.platon.browser.response.transaction.*;
 import com.platon.browser.service.elasticsearch.EsDelegationRewardRepository;
 import com.platon.browser.service.elasticsearch.EsTransactionRepository;
+import com.platon.browser.service.elasticsearch.AbstractEsRepository;
 import com.platon.browser.service.elasticsearch.bean.ESResult;
 import com.platon.browser.service.elasticsearch.query.ESQueryBuilderConstructor;
 import com.platon.browser.service.elasticsearch.query.ESQueryBuilders;
@@ -77,6 +79,9 @@ public class TransactionService {
 
     private final Logger logger = LoggerFactory.getLogger(TransactionService.class);
 
+    @Resource
+    private SingleFlight singleFlight;
+
     @Resource
     private EsTransactionRepository ESTransactionRepository;
 
@@ -148,7 +153,7 @@ public class TransactionService {
         constructor.setResult(new String[]{"hash", "time", "status", "from", "to", "value", "num", "type", "toType", "cost", "failReason"});
         /** 根据区块号和类型分页查询交易信息 */
         try {
-            items = this.ESTransactionRepository.search(constructor, Transaction.class, req.getPageNo(), req.getPageSize());
+            items = this.ESTransactionRepository.searchWithTotal(constructor, Transaction.class, req.getPageNo(), req.getPageSize(), AbstractEsRepository.DEFAULT_TRACK_TOTAL_HITS);
         } catch (Exception e) {
             this.logger.error(ERROR_TIPS, e);
             return result;
@@ -175,7 +180,7 @@ public class TransactionService {
         constructor.setUnmappedType("long");
         constructor.setResult(new String[]{"hash", "time", "status", "from", "to", "value", "num", "type", "toType", "cost", "failReason"});
         try {
-            items = this.ESTransactionRepository.search(constructor, Transaction.class, req.getPageNo(), req.getPageSize());
+            items = this.ESTransactionRepository.searchWithTotal(constructor, Transaction.class, req.getPageNo(), req.getPageSize(), AbstractEsRepository.DEFAULT_TRACK_TOTAL_HITS);
         } catch (Exception e) {
             this.logger.error(ERROR_TIPS, e);
             return result;
@@ -279,6 +284,10 @@ public class TransactionService {
     }
 
     public TransactionDetailsResp transactionDetails(TransactionDetailsReq req) {
+        return singleFlight.execute("transaction/transactionDetails", req, SingleFlight.MICRO_CACHE_MILLIS, () -> loadTransactionDetails(req));
+    }
+
+    private TransactionDetailsResp loadTransactionDetails(TransactionDetailsReq req) {
         TransactionDetailsResp resp = new TransactionDetailsResp();
         /** 根据hash查询具体的交易数据 */
         Transaction transaction = null;
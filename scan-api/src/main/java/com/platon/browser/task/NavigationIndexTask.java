@@ -0,0 +1,39 @@
+package com.platon.browser.task;
+
+import com.platon.browser.cache.NavigationIndex;
+import com.platon.browser.utils.AppStatusUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 搜索导航路由索引更新任务
+ *
+ * @date: 2022/3/24
+ */
+@Slf4j
+@Component
+public class NavigationIndexTask {
+
+    @Resource
+    private NavigationIndex navigationIndex;
+
+    /**
+     * 按新区块增量更新交易及区块，首次执行时触发全量构建
+     */
+    @Scheduled(fixedDelay = 1000, initialDelay = 10000)
+    public void refresh() {
+        // 只有程序正常运行才执行任务
+        if (!AppStatusUtil.isRunning()) {
+            return;
+        }
+        try {
+            navigationIndex.refresh();
+        } catch (Exception e) {
+            log.error("增量更新搜索导航路由索引异常", e);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.platon.browser.task;
+
+import com.platon.browser.cache.NodeNameIndex;
+import com.platon.browser.utils.AppStatusUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 节点名称搜索索引更新任务
+ *
+ * @date: 2022/3/24
+ */
+@Slf4j
+@Component
+public class NodeNameIndexTask {
+
+    @Resource
+    private NodeNameIndex nodeNameIndex;
+
+    /**
+     * 与NodeUpdateTask的执行周期一致，每5秒比对一次节点名称
+     */
+    @Scheduled(fixedDelay = 5000)
+    public void refresh() {
+        // 只有程序正常运行才执行任务
+        if (!AppStatusUtil.isRunning()) {
+            return;
+        }
+        try {
+            nodeNameIndex.refresh();
+        } catch (Exception e) {
+            log.error("更新节点名称搜索索引异常", e);
+        }
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.platon.browser.task;
+
+import com.platon.browser.cache.SingleFlight;
+import com.platon.browser.utils.AppStatusUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 请求合并指标输出任务
+ *
+ * @date: 2022/3/24
+ */
+@Slf4j
+@Component
+public class SingleFlightMetricsTask {
+
+    @Resource
+    private SingleFlight singleFlight;
+
+    /**
+     * <接口-上次输出时的请求次数>
+     */
+    private final Map<String, Long> lastCalls = new HashMap<>();
+
+    /**
+     * 每5分钟按接口输出累计的请求合并指标，期间没有请求的接口不输出
+     */
+    @Scheduled(cron = "0 0/5 * * * ?")
+    public void report() {
+        // 只有程序正常运行才执行任务
+        if (!AppStatusUtil.isRunning()) {
+            return;
+        }
+        try {
+            singleFlight.getMetrics().forEach((endpoint, metrics) -> {
+                long calls = metrics.getCalls();
+                Long previous = lastCalls.put(endpoint, calls);
+                if (previous != null && previous == calls) {
+                    return;
+                }
+                long saved = metrics.getCoalesced() + metrics.getCached();
+                log.info("请求合并指标[{}]：累计请求[{}]次，执行[{}]次，合并[{}]次，命中短时缓存[{}]次，减少执行[{}]%，近5分钟请求[{}]次",
+                         endpoint,
+                         calls,
+                         metrics.getExecutions(),
+                         metrics.getCoalesced(),
+                         metrics.getCached(),
+                         calls == 0 ? 0 : saved * 100 / calls,
+                         calls - (previous == null ? 0 : previous));
+            });
+        } catch (Exception e) {
+            log.error("输出请求合并指标异常", e);
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.platon.browser.task;
+
+import com.platon.browser.cache.ValidatorListSnapshot;
+import com.platon.browser.utils.AppStatusUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 验证人列表快照更新任务
+ *
+ * @date: 2022/3/24
+ */
+@Slf4j
+@Component
+public class ValidatorListSnapshotTask {
+
+    @Resource
+    private ValidatorListSnapshot validatorListSnapshot;
+
+    /**
+     * 每秒加载一次节点更新，进入新的结算周期时全量加载
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void refresh() {
+        // 只有程序正常运行才执行任务
+        if (!AppStatusUtil.isRunning()) {
+            return;
+        }
+        try {
+            validatorListSnapshot.refresh();
+        } catch (Exception e) {
+            log.error("更新验证人列表快照异常", e);
+        }
+    }
+
+}
@@ -91,6 +91,7 @@ public class ApiTestMockBase extends ApiTestData {
         transEs.setRsData(transactionListTemp);
         transEs.setTotal(2l);
         when(ESTransactionRepository.search(any(), any(), anyInt(), anyInt())).thenReturn(transEs);
+        when(ESTransactionRepository.searchWithTotal(any(), any(), anyInt(), anyInt(), anyInt())).thenReturn(transEs);
 
         when(ESTransactionRepository.get(any(), any())).thenReturn(transactionList.get(0));
     }
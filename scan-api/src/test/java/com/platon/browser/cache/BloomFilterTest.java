@@ -0,0 +1,59 @@
+package com.platon.browser.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterTest {
+
+    @Test
+    public void mightContain() {
+        BloomFilter filter = new BloomFilter(10000, 0.01, Long.MAX_VALUE);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("0x" + i);
+        }
+        // 已添加的元素一定存在
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("0x" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) {
+            if (filter.mightContain("0x" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 100000 * 0.02);
+        assertTrue(filter.expectedFpp() < 0.02);
+    }
+
+    @Test
+    public void duplicateNotCounted() {
+        BloomFilter filter = new BloomFilter(100, 0.01, Long.MAX_VALUE);
+        filter.put("lat1abc");
+        filter.put("lat1abc");
+        assertEquals(1, filter.getInsertions());
+    }
+
+    @Test
+    public void layered() {
+        NavigationIndex.LayeredFilter filter = new NavigationIndex.LayeredFilter(1000, 0.01, 9600, 9600 * 3);
+        for (int i = 0; i < 5000; i++) {
+            filter.put("0x" + i);
+        }
+        // 饱和后分层扩容，扩容前后添加的元素都存在
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(filter.mightContain("0x" + i));
+        }
+        assertEquals(5000, filter.getInsertions());
+        // 达到位数上限后不再扩容
+        assertTrue(filter.getBitSize() <= 9600 * 3);
+    }
+
+    @Test
+    public void maxBits() {
+        BloomFilter filter = new BloomFilter(1000000, 0.01, 1024);
+        assertEquals(1024, filter.getBitSize());
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.platon.browser.cache;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NgramIndexTest {
+
+    @Test
+    public void search() {
+        Map<String, String> names = new LinkedHashMap<>();
+        names.put("0x01", "PlatON-Node-01");
+        names.put("0x02", "platon_node_02");
+        names.put("0x03", "验证节点");
+        names.put("0x04", "");
+        names.put("0x05", null);
+        NgramIndex index = new NgramIndex(names);
+        assertEquals(3, index.size());
+        // 忽略大小写
+        assertEquals(Arrays.asList("0x01", "0x02"), index.search("PLATON"));
+        assertEquals(Collections.singletonList("0x01"), index.search("node-0"));
+        assertEquals(Collections.singletonList("0x03"), index.search("节点"));
+        // 单字关键字
+        assertEquals(Collections.singletonList("0x02"), index.search("_"));
+        assertEquals(Collections.singletonList("0x03"), index.search("验"));
+        // 包含关键字的二元组但不包含关键字
+        assertTrue(index.search("node-02").isEmpty());
+        assertTrue(index.search("unknown").isEmpty());
+        assertTrue(index.search("").isEmpty());
+    }
+
+}
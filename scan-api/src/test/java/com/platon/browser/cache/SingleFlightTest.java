@@ -0,0 +1,109 @@
+package com.platon.browser.cache;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SingleFlightTest {
+
+    @After
+    public void destroy() {
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            futures.add(pool.submit(() -> singleFlight.execute("test", "0xabc", 0, () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            })));
+            started.await();
+            for (int i = 0; i < 7; i++) {
+                futures.add(pool.submit(() -> singleFlight.execute("test", "0xabc", 0, () -> {
+                    executions.incrementAndGet();
+                    return "other";
+                })));
+            }
+            // 等待其余请求进入等待状态
+            while (singleFlight.getMetrics().get("test").getCoalesced() < 7) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("result", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+        assertEquals(8, singleFlight.getMetrics().get("test").getCalls());
+        assertEquals(1, singleFlight.getMetrics().get("test").getExecutions());
+    }
+
+    @Test
+    public void microCache() {
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger executions = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Integer.valueOf(1), singleFlight.execute("test", "0xabc", 10000, executions::incrementAndGet));
+        }
+        // 不同的请求分别执行
+        singleFlight.execute("test", "0xdef", 10000, executions::incrementAndGet);
+        assertEquals(2, executions.get());
+        assertEquals(2, singleFlight.getMetrics().get("test").getCached());
+    }
+
+    @Test
+    public void locale() {
+        SingleFlight singleFlight = new SingleFlight();
+        LocaleContextHolder.setLocale(Locale.SIMPLIFIED_CHINESE);
+        assertEquals("zh-CN", singleFlight.execute("test", "0xabc", 10000, () -> LocaleContextHolder.getLocale().toLanguageTag()));
+        // 不同语言的相同请求不共享结果
+        LocaleContextHolder.setLocale(Locale.US);
+        assertEquals("en-US", singleFlight.execute("test", "0xabc", 10000, () -> LocaleContextHolder.getLocale().toLanguageTag()));
+        LocaleContextHolder.setLocale(Locale.SIMPLIFIED_CHINESE);
+        assertEquals("zh-CN", singleFlight.execute("test", "0xabc", 10000, () -> "other"));
+        assertEquals(2, singleFlight.getMetrics().get("test").getExecutions());
+    }
+
+    @Test
+    public void failureNotCached() {
+        SingleFlight singleFlight = new SingleFlight();
+        try {
+            singleFlight.execute("test", "0xabc", 10000, () -> {
+                throw new IllegalStateException("error");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("error", e.getMessage());
+        }
+        assertEquals("ok", singleFlight.execute("test", "0xabc", 10000, () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
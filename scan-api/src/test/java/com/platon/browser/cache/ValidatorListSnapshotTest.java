@@ -0,0 +1,105 @@
+package com.platon.browser.cache;
+
+import com.github.pagehelper.Page;
+import com.platon.browser.config.BlockChainConfig;
+import com.platon.browser.dao.entity.NetworkStat;
+import com.platon.browser.dao.entity.Node;
+import com.platon.browser.dao.mapper.NodeMapper;
+import com.platon.browser.service.StatisticCacheService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ValidatorListSnapshotTest {
+
+    @Mock
+    private NodeMapper nodeMapper;
+
+    @Mock
+    private StatisticCacheService statisticCacheService;
+
+    private ValidatorListSnapshot target;
+
+    private NetworkStat networkStat;
+
+    @Before
+    public void setup() {
+        target = new ValidatorListSnapshot();
+        BlockChainConfig blockChainConfig = new BlockChainConfig();
+        blockChainConfig.setSettlePeriodBlockCount(BigInteger.valueOf(100));
+        networkStat = new NetworkStat();
+        networkStat.setCurNumber(150L);
+        when(statisticCacheService.getNetworkStatCache()).thenReturn(networkStat);
+        ReflectionTestUtils.setField(target, "nodeMapper", nodeMapper);
+        ReflectionTestUtils.setField(target, "statisticCacheService", statisticCacheService);
+        ReflectionTestUtils.setField(target, "blockChainConfig", blockChainConfig);
+    }
+
+    @Test
+    public void select() throws Exception {
+        assertNull(target.select(node -> true, Comparator.comparing(Node::getNodeId), 1, 10));
+        when(nodeMapper.selectByExample(any())).thenReturn(Arrays.asList(node("0x01", 1, 10), node("0x02", 1, 30), node("0x03", 3, 20)));
+        target.refresh();
+
+        Comparator<Node> order = Comparator.comparing(Node::getTotalValue).reversed();
+        Page<Node> page = target.select(node -> node.getStatus() == 1, order, 1, 1);
+        assertEquals(2, page.getTotal());
+        assertEquals("0x02", page.get(0).getNodeId());
+        page = target.select(node -> node.getStatus() == 1, order, 2, 1);
+        assertEquals("0x01", page.get(0).getNodeId());
+        page = target.select(node -> node.getStatus() == 1, order, 3, 1);
+        assertEquals(2, page.getTotal());
+        assertTrue(page.isEmpty());
+    }
+
+    @Test
+    public void incrementalRefresh() throws Exception {
+        Node node1 = node("0x01", 1, 10);
+        when(nodeMapper.selectByExample(any())).thenReturn(Arrays.asList(node1, node("0x02", 1, 30)));
+        target.refresh();
+        String genBlocksRate = target.getGenBlocksRate(node1, BigInteger.valueOf(2));
+
+        // 同一结算周期内只合并更新的节点
+        Node updated = node("0x01", 1, 50);
+        when(nodeMapper.selectByExample(any())).thenReturn(Collections.singletonList(updated));
+        target.refresh();
+        Page<Node> page = target.select(node -> true, Comparator.comparing(Node::getTotalValue).reversed(), 1, 10);
+        assertEquals(2, page.getTotal());
+        assertSame(updated, page.get(0));
+        assertEquals(genBlocksRate, target.getGenBlocksRate(updated, BigInteger.valueOf(2)));
+
+        // 进入新的结算周期时全量加载
+        networkStat.setCurNumber(250L);
+        when(nodeMapper.selectByExample(any())).thenReturn(Collections.singletonList(node("0x03", 1, 10)));
+        target.refresh();
+        page = target.select(node -> true, Comparator.comparing(Node::getNodeId), 1, 10);
+        assertEquals(1, page.getTotal());
+        assertEquals("0x03", page.get(0).getNodeId());
+    }
+
+    private static Node node(String nodeId, int status, long totalValue) {
+        Node node = new Node();
+        node.setNodeId(nodeId);
+        node.setStatus(status);
+        node.setTotalValue(BigDecimal.valueOf(totalValue));
+        node.setUpdateTime(new Date());
+        node.setNodeSettleStatisInfo("{\"nodeId\":\"" + nodeId + "\",\"blockNum\":150,\"nodeSettleStatisQueue\":[{\"settleEpochRound\":1,\"blockNumGrandTotal\":5,\"blockNumElected\":1}]}");
+        return node;
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.platon.browser.config;
+
+import com.platon.browser.exception.BusinessException;
+import com.platon.browser.utils.I18nUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AsyncReadExecutorTest {
+
+    @Mock
+    private I18nUtil i18n;
+
+    private AsyncReadExecutor target;
+
+    @Before
+    public void setup() {
+        target = new AsyncReadExecutor();
+        ReflectionTestUtils.setField(target, "enabled", true);
+        ReflectionTestUtils.setField(target, "maxThreads", 1);
+        ReflectionTestUtils.setField(target, "maxQueued", 1);
+        ReflectionTestUtils.setField(target, "timeoutMillis", 500L);
+        ReflectionTestUtils.setField(target, "i18n", i18n);
+        when(i18n.i(any(), anyString())).thenReturn("busy");
+        target.init();
+    }
+
+    @After
+    public void destroy() {
+        target.destroy();
+        LocaleContextHolder.resetLocaleContext();
+    }
+
+    @Test
+    public void submit() {
+        LocaleContextHolder.setLocale(Locale.ENGLISH);
+        Mono<String> mono = target.submit(() -> Thread.currentThread().getName() + ":" + LocaleContextHolder.getLocale());
+        String result = mono.block(Duration.ofSeconds(5));
+        // 在异步线程中执行，沿用请求的语言环境
+        assertTrue(result.startsWith("async-read-"));
+        assertTrue(result.endsWith(":" + Locale.ENGLISH));
+    }
+
+    @Test
+    public void rejected() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            target.submit(() -> {
+                started.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            }).subscribe();
+            started.await(5, TimeUnit.SECONDS);
+            // 占满排队数
+            target.submit(() -> true).subscribe();
+            try {
+                target.submit(() -> true).block(Duration.ofSeconds(5));
+                fail();
+            } catch (BusinessException e) {
+                assertEquals("busy", e.getMessage());
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void timeout() {
+        try {
+            target.submit(() -> {
+                Thread.sleep(5000);
+                return true;
+            }).block(Duration.ofSeconds(5));
+            fail();
+        } catch (BusinessException e) {
+            assertEquals("busy", e.getMessage());
+        }
+    }
+
+}
@@ -5,6 +5,7 @@ import com.github.pagehelper.Page;
 import com.platon.browser.ApiTestMockBase;
 import com.platon.browser.bean.CustomAddressDetail;
 import com.platon.browser.bean.RestrictingBalance;
+import com.platon.browser.cache.SingleFlight;
 import com.platon.browser.client.PlatOnClient;
 import com.platon.browser.client.SpecialApi;
 import com.platon.browser.client.Web3jWrapper;
@@ -15,6 +16,7 @@ import com.platon.browser.dao.custommapper.CustomRpPlanMapper;
 import com.platon.browser.dao.mapper.RpPlanMapper;
 import com.platon.browser.request.address.QueryDetailRequest;
 import com.platon.browser.request.address.QueryRPPlanDetailRequest;
+import com.platon.browser.response.address.QueryDetailResp;
 import com.platon.contracts.ppos.RestrictingPlanContract;
 import com.platon.contracts.ppos.RewardContract;
 import com.platon.contracts.ppos.dto.CallResponse;
@@ -24,6 +26,7 @@ import com.platon.protocol.Web3j;
 import com.platon.protocol.core.RemoteCall;
 import com.platon.protocol.core.Request;
 import com.platon.protocol.core.methods.response.PlatonGetBalance;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -36,8 +39,11 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -64,9 +70,13 @@ public class AddressServiceTest extends ApiTestMockBase {
     @Mock
     private CustomAddressMapper customAddressMapper;
 
+    @Mock
+    private SingleFlight singleFlight;
+
     @SuppressWarnings("unchecked")
     @Before
     public void setup() throws Exception {
+        target.init();
         //ReflectionTestUtils.setField(target, "addressMapper", addressMapper);
         ReflectionTestUtils.setField(target, "customAddressMapper", customAddressMapper);
         ReflectionTestUtils.setField(target, "rpPlanMapper", rpPlanMapper);
@@ -77,6 +87,8 @@ public class AddressServiceTest extends ApiTestMockBase {
         ReflectionTestUtils.setField(target, "esBlockRepository", ESBlockRepository);
         ReflectionTestUtils.setField(target, "specialApi", specialApi);
         ReflectionTestUtils.setField(target, "statisticCacheService", statisticCacheService);
+        ReflectionTestUtils.setField(target, "singleFlight", singleFlight);
+        when(singleFlight.execute(any(), any(), anyLong(), any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(3)).get());
         RestrictingPlanContract restrictingPlanContract = mock(RestrictingPlanContract.class);
         when(platonClient.getRestrictingPlanContract()).thenReturn(restrictingPlanContract);
         RestrictingItem restrictingItem = new RestrictingItem();
@@ -149,6 +161,51 @@ public class AddressServiceTest extends ApiTestMockBase {
         target.getDetails(req);
     }
 
+    @After
+    public void destroy() {
+        target.destroy();
+    }
+
+    @Test
+    public void getDetailsPartial() throws Exception {
+        QueryDetailRequest req = new QueryDetailRequest();
+        req.setAddress("0x60ceca9c1290ee56b98d4e160ef0453f7c40d218");
+        CustomAddressDetail address = new CustomAddressDetail();
+        address.setAddress(req.getAddress());
+        address.setType(1);
+        address.setBalance(BigDecimal.TEN);
+        address.setDelegateHes(BigDecimal.ZERO);
+        address.setStakingValue(BigDecimal.ZERO);
+        address.setDelegateValue(BigDecimal.ZERO);
+        when(customAddressMapper.findAddressDetail(req.getAddress())).thenReturn(address);
+        when(rpPlanMapper.countByExample(any())).thenReturn(1L);
+        // 链上查询失败时其余数据照常返回
+        when(specialApi.getRestrictingBalance(any(), any())).thenThrow(new RuntimeException("node down"));
+        QueryDetailResp resp = target.getDetails(req);
+        assertEquals(BigDecimal.TEN, resp.getBalance());
+        assertEquals(Integer.valueOf(1), resp.getIsRestricting());
+        assertTrue(resp.getLockDelegateList().isEmpty());
+    }
+
+    @Test
+    public void getDetailsNullRestricting() throws Exception {
+        QueryDetailRequest req = new QueryDetailRequest();
+        req.setAddress("0x60ceca9c1290ee56b98d4e160ef0453f7c40d21a");
+        CustomAddressDetail address = new CustomAddressDetail();
+        address.setAddress(req.getAddress());
+        address.setType(1);
+        address.setBalance(BigDecimal.TEN);
+        address.setDelegateHes(BigDecimal.ZERO);
+        address.setStakingValue(BigDecimal.ZERO);
+        address.setDelegateValue(BigDecimal.ZERO);
+        when(customAddressMapper.findAddressDetail(req.getAddress())).thenReturn(address);
+        // 链上返回空结果时按无锁仓处理，其余数据照常返回
+        when(specialApi.getRestrictingBalance(any(), any())).thenReturn(null);
+        QueryDetailResp resp = target.getDetails(req);
+        assertEquals(BigDecimal.TEN, resp.getBalance());
+        assertTrue(resp.getLockDelegateList().isEmpty());
+    }
+
     @Test
     public void rpplanDetail() throws Exception {
 
@@ -4,6 +4,7 @@ package com.platon.browser.service;
 import com.platon.browser.ApiTestMockBase;
 import com.platon.browser.bean.CountBalance;
 import com.platon.browser.bean.StakingBO;
+import com.platon.browser.cache.NavigationIndex;
 import com.platon.browser.dao.custommapper.CustomInternalAddressMapper;
 import com.platon.browser.dao.entity.NetworkStat;
 import com.platon.browser.request.home.QueryNavigationRequest;
@@ -53,6 +54,8 @@ public class HomeServiceTest extends ApiTestMockBase {
         ReflectionTestUtils.setField(target, "commonService", commonService);
         ReflectionTestUtils.setField(target, "customNodeMapper", customNodeMapper);
         ReflectionTestUtils.setField(target, "networkParams", networkParams);
+        // 路由索引未构建时按原有顺序查询
+        ReflectionTestUtils.setField(target, "navigationIndex", new NavigationIndex());
         ReflectionTestUtils.setField(target, "commonService", service);
         NetworkStat networkStatRedis = new NetworkStat();
         networkStatRedis.setCurNumber(1000L);
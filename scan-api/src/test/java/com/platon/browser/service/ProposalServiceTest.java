@@ -2,6 +2,7 @@ package com.platon.browser.service;
 
 
 import com.platon.browser.ApiTestMockBase;
+import com.platon.browser.cache.ProposalTopicCache;
 import com.platon.browser.dao.entity.NetworkStat;
 import com.platon.browser.dao.entity.Proposal;
 import com.platon.browser.dao.mapper.ProposalMapper;
@@ -29,6 +30,8 @@ import static org.mockito.Mockito.when;
 public class ProposalServiceTest extends ApiTestMockBase {
     @Mock
     private ProposalMapper proposalMapper;
+    @Mock
+    private ProposalTopicCache proposalTopicCache;
     @Spy
     private ProposalInfoService target;
     
@@ -40,6 +43,7 @@ public class ProposalServiceTest extends ApiTestMockBase {
         ReflectionTestUtils.setField(target,"blockChainConfig",blockChainConfig);
         ReflectionTestUtils.setField(target,"ESBlockRepository", ESBlockRepository);
         ReflectionTestUtils.setField(target,"networkParams",networkParams);
+        ReflectionTestUtils.setField(target,"proposalTopicCache",proposalTopicCache);
     }
     
     @Test
@@ -7,6 +7,9 @@ import com.platon.browser.bean.CustomStaking;
 import com.platon.browser.bean.DelegationAddress;
 import com.platon.browser.bean.DelegationStaking;
 import com.platon.browser.bean.StakingBO;
+import com.platon.browser.cache.NodeNameIndex;
+import com.platon.browser.cache.ProposalTopicCache;
+import com.platon.browser.cache.ValidatorListSnapshot;
 import com.platon.browser.client.PlatOnClient;
 import com.platon.browser.dao.entity.Address;
 import com.platon.browser.dao.entity.NetworkStat;
@@ -16,6 +19,7 @@ import com.platon.browser.dao.custommapper.CustomNodeMapper;
 import com.platon.browser.dao.custommapper.CustomStakingMapper;
 import com.platon.browser.dao.mapper.AddressMapper;
 import com.platon.browser.dao.mapper.NodeMapper;
+import com.platon.browser.dao.mapper.VoteMapper;
 import com.platon.browser.service.elasticsearch.EsNodeOptRepository;
 import com.platon.browser.service.elasticsearch.bean.ESResult;
 import com.platon.browser.elasticsearch.dto.NodeOpt;
@@ -69,6 +73,12 @@ public class StakeEpochServiceTest extends ApiTestMockBase {
     @Mock
     private AddressMapper addressMapper;
 
+    @Mock
+    private VoteMapper voteMapper;
+
+    @Mock
+    private ProposalTopicCache proposalTopicCache;
+
     @Before
     public void setup() {
         ReflectionTestUtils.setField(this.target, "statisticCacheService", this.statisticCacheService);
@@ -82,6 +92,10 @@ public class StakeEpochServiceTest extends ApiTestMockBase {
         ReflectionTestUtils.setField(this.target, "customNodeMapper", this.customNodeMapper);
         ReflectionTestUtils.setField(target, "commonService", commonService);
         ReflectionTestUtils.setField(target, "addressMapper", addressMapper);
+        ReflectionTestUtils.setField(target, "voteMapper", voteMapper);
+        ReflectionTestUtils.setField(target, "proposalTopicCache", proposalTopicCache);
+        ReflectionTestUtils.setField(target, "nodeNameIndex", new NodeNameIndex());
+        ReflectionTestUtils.setField(target, "validatorListSnapshot", new ValidatorListSnapshot());
     }
 
     @Test
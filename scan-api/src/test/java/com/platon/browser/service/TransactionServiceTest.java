@@ -4,6 +4,7 @@ import com.alibaba.fastjson.JSONObject;
 import com.platon.browser.ApiTestMockBase;
 import com.platon.browser.bean.CustomStaking;
 import com.platon.browser.cache.TransactionCacheDto;
+import com.platon.browser.cache.SingleFlight;
 import com.platon.browser.config.BlockChainConfig;
 import com.platon.browser.config.DownFileCommon;
 import com.platon.browser.config.RedisKeyConfig;
@@ -43,6 +44,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -77,6 +79,9 @@ public class TransactionServiceTest extends ApiTestMockBase {
     @Mock
     private BlockChainConfig blockChainConfig;
 
+    @Mock
+    private SingleFlight singleFlight;
+
     @InjectMocks
     @Spy
     private TransactionService target;
@@ -87,6 +92,7 @@ public class TransactionServiceTest extends ApiTestMockBase {
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         when(valueOperations.get(any())).thenReturn("test");
         when(this.commonService.getNodeName(any(), any())).thenReturn("test-name");
+        when(this.singleFlight.execute(any(), any(), anyLong(), any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(3)).get());
     }
 
     @Test
@@ -114,6 +120,7 @@ public class TransactionServiceTest extends ApiTestMockBase {
         first.setRsData(transactionList);
         first.setTotal(33L);
         when(this.ESTransactionRepository.search(any(), any(), anyInt(), anyInt())).thenReturn(first);
+        when(this.ESTransactionRepository.searchWithTotal(any(), any(), anyInt(), anyInt(), anyInt())).thenReturn(first);
 
         transaction.setType(Transaction.TypeEnum.STAKE_CREATE.getCode());
         transaction.setInfo("{\"benefitAddress\":\"0x60ceca9c1290ee56b98d4e160ef0453f7c40d219\",\"details\":\"Node of CDM\",\"externalId\":\"5FD68B690010632B\",\"nodeId\":\"0x0aa9805681d8f77c05f317efc141c97d5adb511ffb51f5a251d2d7a4a3a96d9a12adf39f06b702f0ccdff9eddc1790eb272dca31b0c47751d49b5931c58701e7\",\"nodeName\":\"cdm-004\",\"programVersion\":2048,\"website\":\"WWW.CCC.COM\",\"DelegateRewardPer\":3}");
@@ -0,0 +1,18 @@
+package com.platon.browser.bean;
+
+import lombok.Data;
+
+@Data
+public class AddressDirty {
+
+    /**
+     * 地址
+     */
+    private String address;
+
+    /**
+     * 变更版本号
+     */
+    private Long version;
+
+}
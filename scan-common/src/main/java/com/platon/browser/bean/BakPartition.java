@@ -0,0 +1,23 @@
+package com.platon.browser.bean;
+
+import lombok.Data;
+
+@Data
+public class BakPartition {
+
+    /**
+     * 分区名
+     */
+    private String partitionName;
+
+    /**
+     * 分区上界(VALUES LESS THAN)，MAXVALUE分区为null
+     */
+    private Long lessThan;
+
+    /**
+     * 分区估算行数
+     */
+    private Long tableRows;
+
+}
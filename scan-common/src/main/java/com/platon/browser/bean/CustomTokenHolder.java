@@ -33,4 +33,14 @@ public class CustomTokenHolder {
 
     private String holderSumBalance;
 
+    /**
+     * 余额排序键前39位之和，全量核对时使用
+     */
+    private String holderSumBalanceHigh;
+
+    /**
+     * 余额排序键后39位之和，全量核对时使用
+     */
+    private String holderSumBalanceLow;
+
 }
\ No newline at end of file
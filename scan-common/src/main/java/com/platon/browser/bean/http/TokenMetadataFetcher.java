@@ -0,0 +1,258 @@
+package com.platon.browser.bean.http;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * token元数据批量查询
+ * 同一批次内按tokenURI去重后并发请求，按域名限制并发连接数及请求间隔；
+ * 域名返回429、5xx或连接失败时按失败次数指数退避，退避期间不再请求该域名；
+ * 请求成功的结果按tokenURI缓存，内容相同的元数据按内容哈希只解析一次。
+ * 返回的元数据对象在多个库存记录间共享，调用方不能修改
+ */
+@Slf4j
+public class TokenMetadataFetcher {
+
+    /**
+     * 按tokenURI缓存的有效期(分钟)
+     */
+    private static final int URL_CACHE_MINUTES = 10;
+
+    private static final int CACHE_SIZE = 10000;
+
+    private final OkHttpClient client;
+
+    private final long hostIntervalMillis;
+
+    private final long backoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "token-metadata-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    private final Cache<String, Result<?>> urlCache = Caffeine.newBuilder().maximumSize(CACHE_SIZE).expireAfterWrite(URL_CACHE_MINUTES, TimeUnit.MINUTES).build();
+
+    private final Cache<String, Object> contentCache = Caffeine.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    /**
+     * @param maxRequests:        最大并发请求数
+     * @param maxRequestsPerHost: 单个域名的最大并发请求数
+     * @param hostIntervalMillis: 单个域名的最小请求间隔(毫秒)
+     * @param backoffMillis:      域名失败后的初始退避时间(毫秒)，连续失败时翻倍
+     * @param maxBackoffMillis:   最大退避时间(毫秒)
+     */
+    public TokenMetadataFetcher(int maxRequests, int maxRequestsPerHost, long hostIntervalMillis, long backoffMillis, long maxBackoffMillis) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        this.client = CustomHttpClient.getOkHttpClient().newBuilder().dispatcher(dispatcher).connectionPool(new ConnectionPool(maxRequests, 5, TimeUnit.MINUTES)).build();
+        this.hostIntervalMillis = hostIntervalMillis;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * 批量查询元数据
+     * 超过等待时间未完成或所在域名退避中的tokenURI不在返回结果中，由调用方留到下次任务处理，不计重试次数
+     *
+     * @param urls:          tokenURI
+     * @param type:          元数据类型
+     * @param timeoutMillis: 等待的总时间(毫秒)
+     * @return: java.util.Map<java.lang.String, com.platon.browser.bean.http.TokenMetadataFetcher.Result<T>> <tokenURI-查询结果>
+     * @date: 2022/3/24
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, Result<T>> fetch(Collection<String> urls, Class<T> type, long timeoutMillis) {
+        Map<String, Result<T>> result = new HashMap<>();
+        Map<String, CompletableFuture<Result<T>>> futures = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (String url : new LinkedHashSet<>(urls)) {
+            if (url == null || url.trim().isEmpty()) {
+                continue;
+            }
+            Result<T> cached = (Result<T>) urlCache.getIfPresent(type.getName() + url);
+            if (cached != null) {
+                result.put(url, cached);
+                continue;
+            }
+            HttpUrl httpUrl = HttpUrl.parse(url);
+            if (httpUrl == null) {
+                result.put(url, Result.failure(-1, "tokenURI格式错误"));
+                continue;
+            }
+            HostState host = hosts.computeIfAbsent(httpUrl.host(), k -> new HostState());
+            if (host.isBlocked(now)) {
+                continue;
+            }
+            CompletableFuture<Result<T>> future = new CompletableFuture<>();
+            futures.put(url, future);
+            scheduler.schedule(() -> call(url, httpUrl, host, type, future), host.reserve(now, hostIntervalMillis), TimeUnit.MILLISECONDS);
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        int skipped = 0;
+        for (Map.Entry<String, CompletableFuture<Result<T>>> entry : futures.entrySet()) {
+            try {
+                long wait = Math.max(deadline - System.currentTimeMillis(), 0);
+                Result<T> value = entry.getValue().get(wait, TimeUnit.MILLISECONDS);
+                if (value != null) {
+                    result.put(entry.getKey(), value);
+                } else {
+                    skipped++;
+                }
+            } catch (TimeoutException | CancellationException e) {
+                entry.getValue().cancel(false);
+                skipped++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(future -> future.cancel(false));
+                break;
+            } catch (ExecutionException e) {
+                log.warn("查询token元数据异常,tokenURI:{}", entry.getKey(), e.getCause());
+            }
+        }
+        if (skipped > 0) {
+            log.warn("查询token元数据:请求{}个tokenURI,{}个超时或域名退避中,留待下次处理", futures.size(), skipped);
+        }
+        return result;
+    }
+
+    /**
+     * 到达预约的请求时间后发起请求，等待期间已超时取消或域名进入退避的不再请求
+     */
+    private <T> void call(String url, HttpUrl httpUrl, HostState host, Class<T> type, CompletableFuture<Result<T>> future) {
+        if (future.isDone()) {
+            return;
+        }
+        if (host.isBlocked(System.currentTimeMillis())) {
+            future.complete(null);
+            return;
+        }
+        Call call = client.newCall(new Request.Builder().url(httpUrl).build());
+        future.whenComplete((value, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (!call.isCanceled()) {
+                    host.onFailure(System.currentTimeMillis(), backoffMillis, maxBackoffMillis);
+                }
+                future.complete(Result.failure(-1, e.getMessage()));
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.code() != 200 || body == null) {
+                        if (response.code() == 429 || response.code() >= 500) {
+                            host.onFailure(System.currentTimeMillis(), backoffMillis, maxBackoffMillis);
+                        }
+                        future.complete(Result.failure(response.code(), response.message()));
+                        return;
+                    }
+                    host.onSuccess();
+                    String content = body.string();
+                    T value = (T) contentCache.get(type.getName() + DigestUtil.sha256Hex(content), k -> JSONUtil.toBean(content, type));
+                    Result<T> result = Result.success(value);
+                    urlCache.put(type.getName() + url, result);
+                    future.complete(result);
+                } catch (Exception e) {
+                    future.complete(Result.failure(-1, e.getMessage()));
+                }
+            }
+        });
+    }
+
+    /**
+     * 单个tokenURI的查询结果
+     */
+    public static class Result<T> {
+
+        private final int code;
+
+        private final String message;
+
+        private final T value;
+
+        private Result(int code, String message, T value) {
+            this.code = code;
+            this.message = message;
+            this.value = value;
+        }
+
+        private static <T> Result<T> success(T value) {
+            return new Result<>(200, "OK", value);
+        }
+
+        private static <T> Result<T> failure(int code, String message) {
+            return new Result<>(code, message, null);
+        }
+
+        /**
+         * http状态码，连接失败或解析失败时为-1
+         */
+        public int code() {
+            return code;
+        }
+
+        public String message() {
+            return message;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+    }
+
+    private static class HostState {
+
+        private long nextRequestTime;
+
+        private int failures;
+
+        private long blockedUntil;
+
+        /**
+         * 预约下一个请求时间
+         *
+         * @return 距预约时间的毫秒数
+         */
+        private synchronized long reserve(long now, long intervalMillis) {
+            long requestTime = Math.max(now, nextRequestTime);
+            nextRequestTime = requestTime + intervalMillis;
+            return requestTime - now;
+        }
+
+        private synchronized boolean isBlocked(long now) {
+            return blockedUntil > now;
+        }
+
+        private synchronized void onSuccess() {
+            failures = 0;
+        }
+
+        private synchronized void onFailure(long now, long backoffMillis, long maxBackoffMillis) {
+            failures++;
+            blockedUntil = now + Math.min(maxBackoffMillis, backoffMillis << Math.min(failures - 1, 20));
+        }
+
+    }
+
+}
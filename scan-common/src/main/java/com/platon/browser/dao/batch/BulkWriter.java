@@ -0,0 +1,112 @@
+package com.platon.browser.dao.batch;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.ReflectUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+
+/**
+ * 批量写入器
+ * 使用MyBatis的BATCH执行器逐行执行单行insert语句，由JDBC驱动(rewriteBatchedStatements=true)合并成多值insert，
+ * 避免foreach拼接的超长SQL超过max_allowed_packet，且单行语句可被驱动的预编译缓存复用。
+ * 参与调用方的Spring事务，与普通Mapper使用同一个数据库连接，事务提交或回滚由Spring统一处理。
+ */
+@Slf4j
+@Component
+public class BulkWriter {
+
+    /**
+     * 每行的固定开销估算(字节)
+     */
+    private static final int ROW_OVERHEAD = 64;
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    /**
+     * 单次提交给驱动的批量数据最大字节数，需小于数据库的max_allowed_packet
+     */
+    @Value("${mybatis.bulk-max-bytes:4194304}")
+    private long maxBytes;
+
+    private SqlSessionTemplate batchSqlSessionTemplate;
+
+    /**
+     * 同一个事务中，同一个SqlSessionFactory只能绑定一种ExecutorType，
+     * 因此基于同一个Configuration另建一个SqlSessionFactory专供BATCH执行器使用，
+     * 其事务工厂仍是SpringManagedTransactionFactory，数据库连接从当前Spring事务中获取
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/8
+     */
+    @PostConstruct
+    public void init() {
+        SqlSessionFactory batchSqlSessionFactory = new SqlSessionFactoryBuilder().build(sqlSessionFactory.getConfiguration());
+        batchSqlSessionTemplate = new SqlSessionTemplate(batchSqlSessionFactory, ExecutorType.BATCH);
+    }
+
+    /**
+     * 批量插入，按估算的字节数分块提交，返回时所有数据已执行且自增id已回填
+     *
+     * @param statement: 单行insert语句的id，如CustomTxBakMapper.class.getName() + ".insertOne"
+     * @param rows:      待插入数据
+     * @return: int 插入的行数
+     * @date: 2022/3/8
+     */
+    public <T> int insert(String statement, Collection<T> rows) {
+        if (CollUtil.isEmpty(rows)) {
+            return 0;
+        }
+        long bytes = 0;
+        int chunks = 0;
+        for (T row : rows) {
+            batchSqlSessionTemplate.insert(statement, row);
+            bytes += estimateSize(row);
+            if (bytes >= maxBytes) {
+                batchSqlSessionTemplate.flushStatements();
+                bytes = 0;
+                chunks++;
+            }
+        }
+        if (bytes > 0) {
+            batchSqlSessionTemplate.flushStatements();
+            chunks++;
+        }
+        log.debug("批量插入[{}]条数据，分[{}]次提交，语句[{}]", rows.size(), chunks, statement);
+        return rows.size();
+    }
+
+    /**
+     * 估算一行数据的字节数，按字符串字段长度累加，其它字段计入固定开销
+     *
+     * @param row: 数据
+     * @return: long
+     * @date: 2022/3/8
+     */
+    public static long estimateSize(Object row) {
+        long size = ROW_OVERHEAD;
+        for (Field field : ReflectUtil.getFields(row.getClass())) {
+            if (field.getType() != String.class || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            Object value = ReflectUtil.getFieldValue(row, field);
+            if (value != null) {
+                size += ((String) value).length();
+            }
+        }
+        return size;
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.platon.browser.dao.custommapper;
 
+import com.platon.browser.bean.AddressDirty;
 import com.platon.browser.bean.AddressErcQty;
 import com.platon.browser.bean.AddressQty;
 import com.platon.browser.bean.CustomAddressDetail;
@@ -39,6 +40,14 @@ public interface CustomAddressMapper {
      */
     void updateAddressHaveReward(@Param("address") String address, @Param("amount") BigDecimal amount);
 
+    /**
+     * 批量累加地址已领取委托奖励
+     *
+     * @param list: haveReward为本次增量
+     * @return: int
+     */
+    int batchUpdateAddressHaveReward(@Param("list") List<Address> list);
+
     /**
      * 批量更新地址表的erc交易数
      *
@@ -67,4 +76,24 @@ public interface CustomAddressMapper {
     int batchUpdateAddressInfo(@Param("list") List<Address> list);
 
     void batchUpdateAddressTxTransferQty(@Param("list") Collection<AddressQty> list);
+
+    /**
+     * 按地址顺序分页查询质押委托统计待更新的地址
+     *
+     * @param address: 上一页最后的地址，为空时从头查询
+     * @param limit:   每页数量
+     * @return: java.util.List<com.platon.browser.bean.AddressDirty>
+     * @date: 2022/3/16
+     */
+    List<AddressDirty> selectDirtyAddress(@Param("address") String address, @Param("limit") int limit);
+
+    /**
+     * 删除已处理的待更新地址，版本号已变化的说明处理期间又有变更，保留到下次处理
+     *
+     * @param list:
+     * @return: void
+     * @date: 2022/3/16
+     */
+    void deleteDirtyAddress(@Param("list") List<AddressDirty> list);
+
 }
@@ -0,0 +1,53 @@
+package com.platon.browser.dao.custommapper;
+
+import com.platon.browser.bean.BakPartition;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 备份表分区维护
+ * 表名直接拼接到SQL中，调用方只能传入固定的备份表名
+ */
+public interface CustomBakPartitionMapper {
+
+    /**
+     * 查询备份表的分区信息，按分区顺序返回
+     *
+     * @param tableName: 备份表名
+     * @return: java.util.List<com.platon.browser.bean.BakPartition>
+     * @date: 2022/3/1
+     */
+    List<BakPartition> selectPartitions(@Param("tableName") String tableName);
+
+    /**
+     * 查询备份表的最大id
+     *
+     * @param tableName: 备份表名
+     * @return: long
+     * @date: 2022/3/1
+     */
+    long selectMaxId(@Param("tableName") String tableName);
+
+    /**
+     * 从MAXVALUE分区中拆分出新的范围分区
+     *
+     * @param tableName:     备份表名
+     * @param partitionName: 新分区名
+     * @param lessThan:      新分区上界
+     * @return: void
+     * @date: 2022/3/1
+     */
+    void reorganizeMaxPartition(@Param("tableName") String tableName, @Param("partitionName") String partitionName, @Param("lessThan") long lessThan);
+
+    /**
+     * 删除分区
+     *
+     * @param tableName:     备份表名
+     * @param partitionName: 分区名
+     * @return: void
+     * @date: 2022/3/1
+     */
+    void dropPartition(@Param("tableName") String tableName, @Param("partitionName") String partitionName);
+
+}
@@ -6,9 +6,11 @@ import com.platon.browser.bean.DelegationAddress;
 import com.platon.browser.bean.DelegationStaking;
 
 import com.platon.browser.bean.RecoveredDelegationAmount;
+import com.platon.browser.dao.entity.DelegationKey;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CustomDelegationMapper {
@@ -17,6 +19,14 @@ public interface CustomDelegationMapper {
 
     List<CustomDelegation> selectByNodeIdList(@Param("nodeIds") List<String> nodeIds);
 
+    /**
+     * 根据委托主键批量查询委托记录
+     *
+     * @param list: 委托主键列表
+     * @return: java.util.List<com.platon.browser.bean.CustomDelegation>
+     */
+    List<CustomDelegation> selectByDelegationKeys(@Param("list") Collection<DelegationKey> list);
+
     Page<DelegationStaking> selectStakingByNodeId(@Param("nodeId") String nodeId);
 
     Page<DelegationAddress> selectAddressByAddr(@Param("delegateAddr") String delegateAddr);
@@ -25,4 +35,23 @@ public interface CustomDelegationMapper {
      * 批量更新
      */
     int batchUpdateByDelegationKey(@Param("list") List<RecoveredDelegationAmount> list);
+
+    /**
+     * 按主键键集分页查询历史委托
+     *
+     * @param key:   上一页最后一条记录的主键，为空时从头查询
+     * @param limit: 每页条数
+     * @return: java.util.List<com.platon.browser.bean.CustomDelegation>
+     * @date: 2022/3/18
+     */
+    List<CustomDelegation> selectHistoryByKeyset(@Param("key") DelegationKey key, @Param("limit") int limit);
+
+    /**
+     * 按主键删除历史委托，只删除仍为历史状态的记录
+     *
+     * @param list: 委托主键列表
+     * @return: int
+     * @date: 2022/3/18
+     */
+    int deleteHistoryByKeys(@Param("list") Collection<? extends DelegationKey> list);
 }
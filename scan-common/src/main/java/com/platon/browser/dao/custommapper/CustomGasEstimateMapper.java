@@ -1,10 +1,20 @@
 package com.platon.browser.dao.custommapper;
 
 import com.platon.browser.dao.entity.GasEstimate;
+import com.platon.browser.dao.entity.GasEstimateKey;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CustomGasEstimateMapper {
     int batchInsertOrUpdateSelective(@Param("list") List<GasEstimate> list, @Param("selective") GasEstimate.Column... selective);
+
+    /**
+     * 根据主键批量删除
+     *
+     * @param list:
+     * @return: int
+     */
+    int batchDeleteByKeys(@Param("list") Collection<GasEstimateKey> list);
 }
\ No newline at end of file
@@ -51,4 +51,13 @@ public interface CustomInternalAddressMapper {
      * @param values
      */
     void updateBalanceAndRestrictingBalance(Collection<InternalAddress> values);
+
+    /**
+     * 单条语句批量更新余额和锁仓金额，调用方需按地址排序，保证并发更新时按相同顺序加行锁
+     *
+     * @param list: 余额有变动的地址
+     * @return: int
+     * @date: 2022/3/15
+     */
+    int batchUpdateBalance(@Param("list") List<InternalAddress> list);
 }
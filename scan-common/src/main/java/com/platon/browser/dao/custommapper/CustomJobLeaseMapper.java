@@ -0,0 +1,41 @@
+package com.platon.browser.dao.custommapper;
+
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 任务租约
+ * 多个scan-job执行器处理同一个备份表消费流时，只有持有租约的执行器可以推进断点
+ */
+public interface CustomJobLeaseMapper {
+
+    /**
+     * 获取或续期租约：租约不存在、已过期或本来就由owner持有时，设置为owner持有并延长到期时间，否则不变
+     *
+     * @param name:    租约名称
+     * @param owner:   持有者标识
+     * @param seconds: 租约时长(秒)
+     * @return: void
+     * @date: 2022/3/24
+     */
+    void upsertLease(@Param("name") String name, @Param("owner") String owner, @Param("seconds") int seconds);
+
+    /**
+     * 查询租约当前的持有者
+     *
+     * @param name: 租约名称
+     * @return: java.lang.String
+     * @date: 2022/3/24
+     */
+    String selectOwner(@Param("name") String name);
+
+    /**
+     * 释放租约，只有持有者可以释放
+     *
+     * @param name:  租约名称
+     * @param owner: 持有者标识
+     * @return: void
+     * @date: 2022/3/24
+     */
+    void releaseLease(@Param("name") String name, @Param("owner") String owner);
+
+}
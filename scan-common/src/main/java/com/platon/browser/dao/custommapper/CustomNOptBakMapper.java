@@ -1,14 +1,17 @@
 package com.platon.browser.dao.custommapper;
 
-import com.platon.browser.dao.entity.NOptBak;
 import com.platon.browser.elasticsearch.dto.NodeOpt;
-import org.apache.ibatis.annotations.Param;
-
-import java.util.List;
 
 public interface CustomNOptBakMapper {
 
-    int batchInsertOrUpdateSelective(@Param("list") List<NodeOpt> list);
+    /**
+     * 单行插入，供BulkWriter批量执行
+     *
+     * @param item:
+     * @return: int
+     * @date: 2022/3/8
+     */
+    int insertOne(NodeOpt item);
 
     /**
      * 获取节点操作记录最新序号
@@ -40,6 +40,15 @@ public interface CustomNodeMapper {
      */
     List<Node> batchFindNodeNameByNodeId(@Param("nodeIds") Set<String> nodeIds);
 
+    /**
+     * 查询全部节点的nodeId及nodeName
+     *
+     * @param :
+     * @return: java.util.List<com.platon.browser.dao.entity.Node>
+     * @date: 2022/3/24
+     */
+    List<Node> selectAllNodeNames();
+
     Page<Node> findAliveStakingList(Integer status1, Integer isSettle1, boolean isUnion, Integer status2, Integer isSettle2);
 
     /**
@@ -1,6 +1,8 @@
 package com.platon.browser.dao.custommapper;
 
 import com.platon.browser.bean.CustomStaking;
+import com.platon.browser.dao.entity.Staking;
+import com.platon.browser.dao.entity.StakingKey;
 import org.apache.ibatis.annotations.Param;
 
 import java.util.List;
@@ -14,4 +16,15 @@ public interface CustomStakingMapper {
 	
 	Integer selectCountByActive ();
 
+	/**
+	 * 按主键键集分页查询指定状态的质押
+	 *
+	 * @param status: 质押状态
+	 * @param key:    上一页最后一条记录的主键，为空时从头查询
+	 * @param limit:  每页条数
+	 * @return: java.util.List<com.platon.browser.dao.entity.Staking>
+	 * @date: 2022/3/18
+	 */
+	List<Staking> selectByStatusKeyset(@Param("status") int status, @Param("key") StakingKey key, @Param("limit") int limit);
+
 }
@@ -14,6 +14,24 @@ public interface CustomTokenHolderMapper {
     CustomTokenHolder summaryTokenHolderList(@Param("tokenAddress") String tokenAddress);
     List<CustomTokenHolder> selectTokenHolderList(@Param("tokenAddress") String tokenAddress, @Param("limitBegin") Integer limitBegin, @Param("limitSize") Integer limitSize);
 
+    /**
+     * 按(token, holder)批量查询当前余额
+     *
+     * @param list: 只需设置tokenAddress和address
+     * @return: java.util.List<com.platon.browser.dao.entity.TokenHolder>
+     * @date: 2022/3/24
+     */
+    List<TokenHolder> selectBalances(@Param("list") List<TokenHolder> list);
+
+    /**
+     * 按token统计余额大于0的持有者数量及余额之和
+     *
+     * @param :
+     * @return: java.util.List<com.platon.browser.bean.CustomTokenHolder>
+     * @date: 2022/3/24
+     */
+    List<CustomTokenHolder> summaryTokenHolder();
+
     Page<CustomTokenHolder> selectERC721Holder(@Param("tokenAddress") String tokenAddress);
 
     Page<CustomTokenHolder> selectERC1155Holder(@Param("tokenAddress") String tokenAddress);
@@ -44,6 +44,33 @@ public interface CustomTokenMapper {
 
     int batchUpdateTokenHolder(@Param("list") List<Token> list);
 
+    /**
+     * 查询并锁定token的持有者余额之和，按token地址顺序加锁
+     *
+     * @param list: token地址
+     * @return: java.util.List<com.platon.browser.bean.CustomTokenHolder>
+     * @date: 2022/3/24
+     */
+    List<CustomTokenHolder> selectTokenHolderSumBalanceForUpdate(@Param("list") List<String> list);
+
+    /**
+     * 按变动量增减token的持有者数量，并更新余额之和
+     *
+     * @param list: holderCount为变动量，可为负数；holderSumBalance为更新后的余额之和
+     * @return: int
+     * @date: 2022/3/24
+     */
+    int batchIncreaseTokenHolderSummary(@Param("list") List<CustomTokenHolder> list);
+
+    /**
+     * 更新token的持有者数量及余额之和
+     *
+     * @param list:
+     * @return: int
+     * @date: 2022/3/24
+     */
+    int batchUpdateTokenHolderSummary(@Param("list") List<CustomTokenHolder> list);
+
      int updateErc20TokenHolderCount();
 
     int updateErc1155TokenHolderCount();
@@ -1,14 +1,17 @@
 package com.platon.browser.dao.custommapper;
 
 import com.platon.browser.elasticsearch.dto.ErcTx;
-import org.apache.ibatis.annotations.Param;
-
-import java.util.List;
-import java.util.Set;
 
 public interface CustomTx721BakMapper {
 
-    int batchInsert(@Param("list") List<ErcTx> list);
+    /**
+     * 单行插入，供BulkWriter批量执行
+     *
+     * @param item:
+     * @return: int
+     * @date: 2022/3/8
+     */
+    int insertOne(ErcTx item);
 
     long findMaxId();
 
@@ -1,13 +1,17 @@
 package com.platon.browser.dao.custommapper;
 
 import com.platon.browser.elasticsearch.dto.Transaction;
-import org.apache.ibatis.annotations.Param;
-
-import java.util.List;
 
 public interface CustomTxBakMapper {
 
-    int batchInsertOrUpdateSelective(@Param("list") List<Transaction> list);
+    /**
+     * 单行插入，供BulkWriter批量执行
+     *
+     * @param item:
+     * @return: int
+     * @date: 2022/3/8
+     */
+    int insertOne(Transaction item);
 
     /**
      * 查找最大的id
@@ -1,13 +1,17 @@
 package com.platon.browser.dao.custommapper;
 
 import com.platon.browser.elasticsearch.dto.DelegationReward;
-import org.apache.ibatis.annotations.Param;
-
-import java.util.List;
 
 public interface CustomTxDelegationRewardBakMapper {
 
-    int batchInsert(@Param("list") List<DelegationReward> list);
+    /**
+     * 单行插入，供BulkWriter批量执行
+     *
+     * @param item:
+     * @return: int
+     * @date: 2022/3/8
+     */
+    int insertOne(DelegationReward item);
 
     long findMaxId();
 }
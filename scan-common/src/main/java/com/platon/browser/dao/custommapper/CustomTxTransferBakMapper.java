@@ -1,15 +1,17 @@
 package com.platon.browser.dao.custommapper;
 
 import com.platon.browser.dao.entity.TxTransferBak;
-import com.platon.browser.elasticsearch.dto.ErcTx;
-import org.apache.ibatis.annotations.Param;
-
-import java.util.List;
-import java.util.Set;
 
 public interface CustomTxTransferBakMapper {
 
-    int batchInsert(@Param("list") List<TxTransferBak> set);
+    /**
+     * 单行插入，供BulkWriter批量执行
+     *
+     * @param item:
+     * @return: int
+     * @date: 2022/3/8
+     */
+    int insertOne(TxTransferBak item);
 
     long findMaxId();
 }
@@ -6,6 +6,7 @@ import com.platon.browser.dao.param.BusinessParam;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface EpochBusinessMapper {
@@ -37,6 +38,17 @@ public interface EpochBusinessMapper {
     @Transactional(rollbackFor = {Exception.class, Error.class})
     void updateGasEstimate(@Param("list") List<GasEstimate> estimateList);
 
+    /**
+     * 批量累加Gas估算周期数，并删除已处理的估算日志
+     *
+     * @param estimateList: 按(nodeId,sbn)合并后的估算记录，epoch为需要累加的周期数
+     * @param maxSeq:       已处理的最大日志序号，小于等于该序号的日志会被删除
+     * @return: void
+     * @date: 2022/3/14
+     */
+    @Transactional(rollbackFor = {Exception.class, Error.class})
+    void increaseGasEstimateEpoch(@Param("list") Collection<GasEstimate> estimateList, @Param("maxSeq") Long maxSeq);
+
     /**
      * 新选举周期数据变更（结算&共识周期往前推20个块）
      */
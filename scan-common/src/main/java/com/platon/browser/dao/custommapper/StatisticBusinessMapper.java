@@ -12,7 +12,7 @@ import java.util.List;
 public interface StatisticBusinessMapper {
 
     /**
-     * 地址数据变更
+     * 地址数据变更，新地址插入，已有地址只补全库中为空的合约信息
      *
      * @param list:
      * @return: void
@@ -0,0 +1,135 @@
+package com.platon.browser.bean.http;
+
+import com.platon.browser.bean.UpdateTokenInventory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TokenMetadataFetcherTest {
+
+    private static final String METADATA = "{\"name\":\"nft\",\"image\":\"https://img/1.png\",\"description\":\"desc\"}";
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+    private TokenMetadataFetcher target;
+
+    @Before
+    public void setup() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            hits.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+            if (path.startsWith("/error")) {
+                respond(exchange, 500, "");
+            } else if (path.startsWith("/slow")) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                respond(exchange, 200, METADATA);
+            } else {
+                respond(exchange, 200, METADATA);
+            }
+        });
+        server.start();
+        target = new TokenMetadataFetcher(8, 2, 10, 60 * 1000L, 60 * 1000L);
+    }
+
+    @After
+    public void destroy() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fetch() {
+        String a = url("localhost", "/a");
+        String b = url("localhost", "/b");
+        Map<String, TokenMetadataFetcher.Result<UpdateTokenInventory>> result = target.fetch(Arrays.asList(a, a, b, ""), UpdateTokenInventory.class, 5000);
+        assertEquals(2, result.size());
+        assertEquals(200, result.get(a).code());
+        assertEquals("nft", result.get(a).getValue().getName());
+        assertEquals("https://img/1.png", result.get(a).getValue().getImage());
+        // 同一批次内相同的tokenURI只请求一次
+        assertEquals(1, hits.get("/a").get());
+        // 内容相同的元数据只解析一次
+        assertSame(result.get(a).getValue(), result.get(b).getValue());
+
+        // 请求成功的tokenURI使用缓存
+        result = target.fetch(Collections.singletonList(a), UpdateTokenInventory.class, 5000);
+        assertEquals(200, result.get(a).code());
+        assertEquals(1, hits.get("/a").get());
+    }
+
+    @Test
+    public void serverError() {
+        String error = url("127.0.0.1", "/error");
+        Map<String, TokenMetadataFetcher.Result<UpdateTokenInventory>> result = target.fetch(Collections.singletonList(error), UpdateTokenInventory.class, 5000);
+        assertEquals(500, result.get(error).code());
+        assertNull(result.get(error).getValue());
+
+        // 域名退避期间不再请求
+        String other = url("127.0.0.1", "/other");
+        result = target.fetch(Arrays.asList(error, other), UpdateTokenInventory.class, 5000);
+        assertTrue(result.isEmpty());
+        assertEquals(1, hits.get("/error").get());
+        assertNull(hits.get("/other"));
+
+        // 其他域名不受影响
+        String a = url("localhost", "/a");
+        result = target.fetch(Collections.singletonList(a), UpdateTokenInventory.class, 5000);
+        assertEquals(200, result.get(a).code());
+    }
+
+    @Test
+    public void timeout() {
+        String slow = url("localhost", "/slow");
+        String a = url("localhost", "/a");
+        Map<String, TokenMetadataFetcher.Result<UpdateTokenInventory>> result = target.fetch(Arrays.asList(slow, a), UpdateTokenInventory.class, 300);
+        // 超时未完成的tokenURI不在结果中
+        assertFalse(result.containsKey(slow));
+        assertEquals(200, result.get(a).code());
+    }
+
+    @Test
+    public void invalidUrl() {
+        Map<String, TokenMetadataFetcher.Result<UpdateTokenInventory>> result = target.fetch(Collections.singletonList("ipfs://abc"), UpdateTokenInventory.class, 5000);
+        assertEquals(-1, result.get("ipfs://abc").code());
+    }
+
+    private String url(String host, String path) {
+        return "http://" + host + ":" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.platon.browser.dao.batch;
+
+import com.platon.browser.elasticsearch.dto.ErcTx;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class BulkWriterTest {
+
+    private static final String STATEMENT = "com.platon.browser.dao.custommapper.CustomTx20BakMapper.insertOne";
+
+    private BulkWriter target;
+
+    private SqlSessionTemplate batchSqlSessionTemplate;
+
+    @Before
+    public void setup() {
+        target = new BulkWriter();
+        batchSqlSessionTemplate = mock(SqlSessionTemplate.class);
+        ReflectionTestUtils.setField(target, "batchSqlSessionTemplate", batchSqlSessionTemplate);
+    }
+
+    @Test
+    public void insert() {
+        List<ErcTx> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ErcTx tx = new ErcTx();
+            tx.setHash("0x" + i);
+            rows.add(tx);
+        }
+        long rowSize = BulkWriter.estimateSize(rows.get(0));
+        assertTrue(rowSize > 0);
+        // 每3行提交一次，10行分4次提交
+        ReflectionTestUtils.setField(target, "maxBytes", rowSize * 3);
+        assertEquals(10, target.insert(STATEMENT, rows));
+        verify(batchSqlSessionTemplate, times(10)).insert(eq(STATEMENT), any());
+        verify(batchSqlSessionTemplate, times(4)).flushStatements();
+
+        reset(batchSqlSessionTemplate);
+        assertEquals(0, target.insert(STATEMENT, Collections.emptyList()));
+        verify(batchSqlSessionTemplate, never()).flushStatements();
+    }
+
+}
@@ -12,6 +12,7 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -44,6 +45,10 @@ public class JobPlatOnClient {
         return retryableClient.getWeb3jWrapper();
     }
 
+    public List<Web3jWrapper> getHealthyWeb3jWrappers() {
+        return retryableClient.getHealthyWeb3jWrappers();
+    }
+
     @Retryable(value = Exception.class, maxAttempts = Integer.MAX_VALUE, backoff = @Backoff(value = 3000L))
     public EconomicConfig getEconomicConfig() throws ConfigLoadingException {
         try {
@@ -0,0 +1,160 @@
+package com.platon.browser.client;
+
+import com.alibaba.fastjson.JSON;
+import com.platon.browser.bean.keybase.KeyBaseUserInfo;
+import com.platon.browser.config.BlockChainConfig;
+import com.platon.browser.config.TaskConfig;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * keybase用户信息查询
+ * 查询结果按external_id缓存，跨任务执行保留；缓存过期后携带ETag发起条件请求，内容未变化时直接续期
+ */
+@Slf4j
+@Component
+public class KeyBaseClient {
+
+    /**
+     * http客户端的并发请求数
+     */
+    private static final int MAX_REQUESTS = 8;
+
+    /**
+     * 单次请求超时时间(秒)
+     */
+    private static final int REQUEST_TIMEOUT_SECONDS = 5;
+
+    /**
+     * 单次批量查询等待的总时间(秒)，超时未返回的请求留到下次任务
+     */
+    private static final int BATCH_TIMEOUT_SECONDS = 15;
+
+    private final OkHttpClient client;
+
+    /**
+     * <external_id-缓存项>
+     */
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    @Resource
+    private BlockChainConfig chainConfig;
+
+    @Resource
+    private TaskConfig taskConfig;
+
+    /**
+     * keybase查询线程池，线程数由task.keyBaseQueryThreads配置
+     */
+    @Resource
+    private ThreadPoolTaskExecutor keyBaseQueryExecutor;
+
+    public KeyBaseClient() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS);
+        client = new OkHttpClient.Builder().dispatcher(dispatcher)
+                                           .connectTimeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                                           .readTimeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                                           .callTimeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                                           .build();
+    }
+
+    /**
+     * 批量查询keybase用户信息，缓存未过期的直接返回，其余并发查询
+     * 查询失败或超时的external_id不在返回结果中
+     *
+     * @param externalIds: external_id集合
+     * @return: java.util.Map<java.lang.String, com.platon.browser.bean.keybase.KeyBaseUserInfo>
+     * @date: 2022/3/23
+     */
+    public Map<String, KeyBaseUserInfo> getUserInfos(Collection<String> externalIds) {
+        Map<String, KeyBaseUserInfo> result = new HashMap<>();
+        Map<String, Future<KeyBaseUserInfo>> futures = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (String externalId : new HashSet<>(externalIds)) {
+            CacheEntry entry = cache.get(externalId);
+            if (entry != null && entry.expireAt > now) {
+                result.put(externalId, entry.userInfo);
+            } else {
+                futures.put(externalId, keyBaseQueryExecutor.submit(() -> query(externalId)));
+            }
+        }
+        long deadline = System.currentTimeMillis() + BATCH_TIMEOUT_SECONDS * 1000L;
+        for (Map.Entry<String, Future<KeyBaseUserInfo>> entry : futures.entrySet()) {
+            try {
+                long wait = Math.max(deadline - System.currentTimeMillis(), 0);
+                KeyBaseUserInfo userInfo = entry.getValue().get(wait, TimeUnit.MILLISECONDS);
+                if (userInfo != null) {
+                    result.put(entry.getKey(), userInfo);
+                }
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                log.warn("get keybase timeout:key={}", entry.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                log.error("get keybase error:key={}", entry.getKey(), e.getCause());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 查询单个external_id，缓存中有ETag时发起条件请求
+     *
+     * @param externalId: external_id
+     * @return: com.platon.browser.bean.keybase.KeyBaseUserInfo
+     * @date: 2022/3/23
+     */
+    private KeyBaseUserInfo query(String externalId) throws Exception {
+        String url = chainConfig.getKeyBase().concat(chainConfig.getKeyBaseApi()).concat(externalId);
+        CacheEntry cached = cache.get(externalId);
+        Request.Builder builder = new Request.Builder().url(url);
+        if (cached != null && StringUtils.isNotBlank(cached.etag)) {
+            builder.header("If-None-Match", cached.etag);
+        }
+        try (Response response = client.newCall(builder.build()).execute()) {
+            long expireAt = System.currentTimeMillis() + taskConfig.getKeyBaseCacheSeconds() * 1000L;
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                cache.put(externalId, new CacheEntry(cached.userInfo, cached.etag, expireAt));
+                return cached.userInfo;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IllegalStateException("请求地址[" + url + "]失败:" + response.code() + " " + response.message());
+            }
+            KeyBaseUserInfo userInfo = JSON.parseObject(response.body().string(), KeyBaseUserInfo.class);
+            cache.put(externalId, new CacheEntry(userInfo, response.header("ETag"), expireAt));
+            return userInfo;
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final KeyBaseUserInfo userInfo;
+
+        private final String etag;
+
+        private final long expireAt;
+
+        private CacheEntry(KeyBaseUserInfo userInfo, String etag, long expireAt) {
+            this.userInfo = userInfo;
+            this.etag = etag;
+            this.expireAt = expireAt;
+        }
+
+    }
+
+}
@@ -16,6 +16,7 @@ import org.springframework.stereotype.Component;
 import java.math.BigInteger;
 import java.net.ConnectException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -43,6 +44,9 @@ public class RetryableClient {
 
     private Web3jWrapper currentWeb3jWrapper;
 
+    // 最近一次连通性检查中可用的Web3j实例
+    private List<Web3jWrapper> healthyWeb3jWrappers = new ArrayList<>();
+
     // 委托合约接口
     private DelegateContract delegateContract;
 
@@ -144,6 +148,25 @@ public class RetryableClient {
         return null;
     }
 
+    /**
+     * 获取最近一次连通性检查中可用的Web3j实例，没有时返回当前实例
+     *
+     * @param :
+     * @return: java.util.List<com.platon.browser.client.Web3jWrapper>
+     * @date: 2022/3/15
+     */
+    public List<Web3jWrapper> getHealthyWeb3jWrappers() {
+        WEB3J_CONFIG_LOCK.readLock().lock();
+        try {
+            if (healthyWeb3jWrappers.isEmpty() && currentWeb3jWrapper != null) {
+                return Collections.singletonList(currentWeb3jWrapper);
+            }
+            return new ArrayList<>(healthyWeb3jWrappers);
+        } finally {
+            WEB3J_CONFIG_LOCK.readLock().unlock();
+        }
+    }
+
     @Retryable(value = Exception.class, maxAttempts = Integer.MAX_VALUE)
     public void updateContract() {
         rewardContract = RewardContract.load(currentWeb3jWrapper.getWeb3j());
@@ -162,9 +185,11 @@ public class RetryableClient {
             Web3jWrapper preWeb3j = currentWeb3jWrapper;
             // 检查所有Web3j的连通性, 取块高最高的作为当前web3j
             long maxBlockNumber = -1;
+            List<Web3jWrapper> healthy = new ArrayList<>();
             for (Web3jWrapper wrapper : web3jWrappers) {
                 try {
                     BigInteger blockNumber = wrapper.getWeb3j().platonBlockNumber().send().getBlockNumber();
+                    healthy.add(wrapper);
                     if (blockNumber.longValue() >= maxBlockNumber) {
                         maxBlockNumber = blockNumber.longValue();
                         currentWeb3jWrapper = wrapper;
@@ -173,6 +198,7 @@ public class RetryableClient {
                     log.info("候选Web3j实例({})无效！", wrapper.getAddress());
                 }
             }
+            healthyWeb3jWrappers = healthy;
             if (preWeb3j == null || preWeb3j != currentWeb3jWrapper) {
                 // 前任web3j为空或Web3j有变动,则更新合约变量
                 updateContract();
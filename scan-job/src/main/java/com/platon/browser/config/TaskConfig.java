@@ -22,6 +22,29 @@ import java.util.concurrent.Executors;
 public class TaskConfig implements SchedulingConfigurer {
     private int maxAddressCount;
     private int maxBatchSize;
+    private long bakPartitionSize;
+    private int bakRetainPartitions;
+    private int historyMigrateChunkSize = 1000;
+    private int holderBalanceShards = 4;
+    private int multiCallMaxBytes = 65536;
+    private long multiCallGasBudget = 50000000;
+    private long keyBaseCacheSeconds = 3600;
+    private int streamMaxSeconds = 50;
+    private long streamPageMillis = 2000;
+    private int streamLeaseSeconds = 120;
+    private int balanceQueryThreads = 8;
+    private int tokenQtyReadThreads = 3;
+
+    private int holderBalanceThreads = 8;
+
+    private int proposalQueryThreads = 8;
+
+    private int proposalMarkdownThreads = 8;
+
+    private int keyBaseQueryThreads = 8;
+
+    private int streamPrefetchThreads = 4;
+
     @Override
     public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
         taskRegistrar.setScheduler(Executors.newScheduledThreadPool(3));
@@ -0,0 +1,90 @@
+package com.platon.browser.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.annotation.Resource;
+
+/**
+ * 任务内并发执行使用的线程池
+ * 线程数由task配置，容器关闭时等待执行中的任务完成后关闭；各用途使用独立的线程池，避免相互占满线程
+ */
+@Configuration
+public class TaskExecutorConfig {
+
+    /**
+     * 容器关闭时等待执行中任务的最长秒数
+     */
+    private static final int AWAIT_TERMINATION_SECONDS = 30;
+
+    @Resource
+    private TaskConfig taskConfig;
+
+    /**
+     * 锁仓余额查询
+     */
+    @Bean
+    public ThreadPoolTaskExecutor balanceQueryExecutor() {
+        return executor("balance-query-", taskConfig.getBalanceQueryThreads());
+    }
+
+    /**
+     * erc交易数更新时读取交易备份表
+     */
+    @Bean
+    public ThreadPoolTaskExecutor tokenQtyReadExecutor() {
+        return executor("token-qty-read-", taskConfig.getTokenQtyReadThreads());
+    }
+
+    /**
+     * token holder余额增量刷新的分片
+     */
+    @Bean
+    public ThreadPoolTaskExecutor holderBalanceExecutor() {
+        return executor("holder-balance-", taskConfig.getHolderBalanceThreads());
+    }
+
+    /**
+     * 提案链上信息查询
+     */
+    @Bean
+    public ThreadPoolTaskExecutor proposalQueryExecutor() {
+        return executor("proposal-query-", taskConfig.getProposalQueryThreads());
+    }
+
+    /**
+     * 提案markdown获取
+     */
+    @Bean
+    public ThreadPoolTaskExecutor proposalMarkdownExecutor() {
+        return executor("proposal-markdown-", taskConfig.getProposalMarkdownThreads());
+    }
+
+    /**
+     * keybase用户信息查询
+     */
+    @Bean
+    public ThreadPoolTaskExecutor keyBaseQueryExecutor() {
+        return executor("keybase-query-", taskConfig.getKeyBaseQueryThreads());
+    }
+
+    /**
+     * 备份表消费流预读
+     */
+    @Bean
+    public ThreadPoolTaskExecutor streamPrefetchExecutor() {
+        return executor("stream-prefetch-", taskConfig.getStreamPrefetchThreads());
+    }
+
+    private ThreadPoolTaskExecutor executor(String threadNamePrefix, int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(threads, 1));
+        executor.setMaxPoolSize(Math.max(threads, 1));
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(AWAIT_TERMINATION_SECONDS);
+        return executor;
+    }
+
+}
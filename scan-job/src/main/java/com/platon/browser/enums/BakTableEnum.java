@@ -0,0 +1,32 @@
+package com.platon.browser.enums;
+
+/**
+ * 按id范围分区的备份表及其消费断点
+ * pointLogIds为空表示scan-job中没有消费者，只按保留分区数删除
+ */
+public enum BakTableEnum {
+    N_OPT_BAK("n_opt_bak", 1),
+    TX_BAK("tx_bak", 2),
+    TX_ERC_20_BAK("tx_erc_20_bak", 3, 5, 13),
+    TX_ERC_721_BAK("tx_erc_721_bak", 4, 6, 14),
+    TX_ERC_1155_BAK("tx_erc_1155_bak", 10, 12),
+    TX_TRANSFER_BAK("tx_transfer_bak", 11),
+    TX_DELEGATION_REWARD_BAK("tx_delegation_reward_bak");
+
+    private String tableName;
+
+    private int[] pointLogIds;
+
+    BakTableEnum(String tableName, int... pointLogIds) {
+        this.tableName = tableName;
+        this.pointLogIds = pointLogIds;
+    }
+
+    public String getTableName() {
+        return this.tableName;
+    }
+
+    public int[] getPointLogIds() {
+        return this.pointLogIds;
+    }
+}
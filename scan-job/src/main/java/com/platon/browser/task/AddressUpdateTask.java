@@ -4,16 +4,19 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.platon.browser.bean.AddressDirty;
 import com.platon.browser.bean.AddressQty;
 import com.platon.browser.dao.custommapper.CustomAddressMapper;
 import com.platon.browser.dao.custommapper.StatisticBusinessMapper;
 import com.platon.browser.dao.entity.*;
 import com.platon.browser.dao.mapper.AddressMapper;
-import com.platon.browser.dao.mapper.PointLogMapper;
 import com.platon.browser.dao.mapper.TxBakMapper;
 import com.platon.browser.dao.mapper.TxTransferBakMapper;
 import com.platon.browser.elasticsearch.dto.Transaction;
+import com.platon.browser.enums.BakTableEnum;
 import com.platon.browser.task.bean.AddressStatistics;
+import com.platon.browser.task.stream.BakStream;
+import com.platon.browser.task.stream.BakStreamProcessor;
 import com.platon.browser.utils.AddressUtil;
 import com.platon.browser.utils.AppStatusUtil;
 import com.platon.browser.utils.TaskUtil;
@@ -27,7 +30,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 
@@ -58,9 +61,6 @@ public class AddressUpdateTask {
     @Resource
     private AddressMapper addressMapper;
 
-    @Resource
-    private PointLogMapper pointLogMapper;
-
     @Resource
     private CustomAddressMapper customAddressMapper;
 
@@ -70,13 +70,22 @@ public class AddressUpdateTask {
     @Resource
     private TxTransferBakMapper txTransferBakMapper;
 
+    @Resource
+    private BakStreamProcessor bakStreamProcessor;
+
+    /**
+     * 全量核对的地址游标
+     */
+    private AtomicReference<String> addressCursor = new AtomicReference<>();
+
     /**
-     * 用于地址表更新
+     * 待更新地址的游标
      */
-    private AtomicLong addressStart = new AtomicLong(0L);
+    private AtomicReference<String> dirtyCursor = new AtomicReference<>();
 
     /**
      * 地址表信息补充
+     * 只处理agent标记为质押委托有变更的地址
      * 每5秒执行一次
      *
      * @param :
@@ -92,8 +101,18 @@ public class AddressUpdateTask {
         }
         try {
             int batchSize = Convert.toInt(XxlJobHelper.getJobParam(), 1000);
-            batchUpdate(addressStart.intValue(), batchSize);
-            XxlJobHelper.handleSuccess(StrUtil.format("地址表信息补充成功,当前标识为[{}]", addressStart.get()));
+            List<AddressDirty> dirtyList = customAddressMapper.selectDirtyAddress(dirtyCursor.get(), batchSize);
+            if (CollUtil.isEmpty(dirtyList)) {
+                dirtyCursor.set(null);
+                XxlJobHelper.handleSuccess("没有需要补充信息的地址");
+                return;
+            }
+            dirtyCursor.set(CollUtil.getLast(dirtyList).getAddress());
+            AddressExample addressExample = new AddressExample();
+            addressExample.createCriteria().andAddressIn(dirtyList.stream().map(AddressDirty::getAddress).collect(Collectors.toList()));
+            batchUpdate(addressMapper.selectByExample(addressExample));
+            customAddressMapper.deleteDirtyAddress(dirtyList);
+            XxlJobHelper.handleSuccess(StrUtil.format("地址表信息补充成功,地址数[{}],当前标识为[{}]", dirtyList.size(), dirtyCursor.get()));
         } catch (Exception e) {
             log.error("地址表信息补充异常", e);
             throw e;
@@ -101,22 +120,52 @@ public class AddressUpdateTask {
     }
 
     /**
-     * 执行任务
+     * 地址表质押委托信息全量核对
+     * 按地址顺序分页遍历地址表，兜底修正增量更新遗漏的数据
+     * 每10分钟执行一次
      *
-     * @param start 开始的块高
-     * @param size  执行的批次
+     * @param :
+     * @return: void
+     * @date: 2022/3/16
+     */
+    @XxlJob("addressConsistencyJobHandler")
+    @Transactional(rollbackFor = {Exception.class, Error.class})
+    public void addressConsistency() {
+        // 只有程序正常运行才执行任务
+        if (!AppStatusUtil.isRunning()) {
+            return;
+        }
+        try {
+            int batchSize = Convert.toInt(XxlJobHelper.getJobParam(), 1000);
+            AddressExample addressExample = new AddressExample();
+            addressExample.setOrderByClause("address limit " + batchSize);
+            if (StrUtil.isNotBlank(addressCursor.get())) {
+                addressExample.createCriteria().andAddressGreaterThan(addressCursor.get());
+            }
+            List<Address> addressList = addressMapper.selectByExample(addressExample);
+            if (CollUtil.isEmpty(addressList)) {
+                addressCursor.set(null);
+                XxlJobHelper.handleSuccess("地址表全量核对完成一轮");
+                return;
+            }
+            addressCursor.set(CollUtil.getLast(addressList).getAddress());
+            batchUpdate(addressList);
+            XxlJobHelper.handleSuccess(StrUtil.format("地址表全量核对成功,当前标识为[{}]", addressCursor.get()));
+        } catch (Exception e) {
+            log.error("地址表全量核对异常", e);
+            throw e;
+        }
+    }
+
+    /**
+     * 重新统计地址的质押委托信息，有变化的才更新
+     *
+     * @param addressList 待统计的地址
      * @return
      */
-    protected void batchUpdate(int start, int size) {
-        //查询待补充的地址
-        AddressExample addressExample = new AddressExample();
-        addressExample.setOrderByClause("create_time limit " + start + "," + size);
-        List<Address> addressList = addressMapper.selectByExample(addressExample);
+    protected void batchUpdate(List<Address> addressList) {
         if (CollUtil.isEmpty(addressList)) {
-            addressStart.set(0L);
             return;
-        } else {
-            addressStart.set(addressStart.get() + addressList.size());
         }
         List<String> addressStringList = addressList.stream().map(Address::getAddress).collect(Collectors.toList());
         //查询该地址发起的质押（有效的质押和赎回的质押）
@@ -206,43 +255,20 @@ public class AddressUpdateTask {
      * @date: 2021/12/6
      */
     @XxlJob("updateAddressQtyJobHandler")
-    @Transactional(rollbackFor = {Exception.class, Error.class})
     public void updateQty() throws Exception {
         try {
             int pageSize = Convert.toInt(XxlJobHelper.getJobParam(), 500);
-            PointLog pointLog = pointLogMapper.selectByPrimaryKey(2);
-            long oldPosition = Convert.toLong(pointLog.getPosition());
-            TaskUtil.console("当前页数为[{}]，断点为[{}]", pageSize, oldPosition);
-            List<TxBak> transactionList = getTransactionList(oldPosition, pageSize);
-            if (CollUtil.isNotEmpty(transactionList)) {
-                String minId = CollUtil.getFirst(transactionList).getId().toString();
-                String maxId = CollUtil.getLast(transactionList).getId().toString();
-                pointLog.setPosition(maxId);
-                TaskUtil.console("查找到[{}]条交易,交易id为[{}-{}]", transactionList.size(), minId, maxId);
-                Map<String, AddressQty> map = checkAddress(transactionList);
-                TaskUtil.console("更新前的数据为{}", JSONUtil.toJsonStr(map.values()));
-                for (TxBak txBak : transactionList) {
-                    if (!AddressUtil.isAddrZero(txBak.getFrom())) {
-                        AddressQty from = map.get(txBak.getFrom());
-                        addQty(Transaction.TypeEnum.getEnum(txBak.getType()), from);
-                    } else {
-                        TaskUtil.console("交易[{}]from[{}]为零地址", txBak.getHash(), txBak.getFrom());
-                    }
-                    if (!AddressUtil.isAddrZero(txBak.getTo())) {
-                        AddressQty to = map.get(txBak.getTo());
-                        addQty(Transaction.TypeEnum.getEnum(txBak.getType()), to);
-                    } else {
-                        TaskUtil.console("交易[{}]to[{}]为零地址", txBak.getHash(), txBak.getTo());
-                    }
-                }
-                List<AddressQty> list = CollUtil.newArrayList(map.values());
-                customAddressMapper.batchUpdateAddressQty(list);
-                pointLogMapper.updateByPrimaryKeySelective(pointLog);
-                TaskUtil.console("更新后的数据为{}", JSONUtil.toJsonStr(map.values()));
-                TaskUtil.console("更新地址交易数，断点(交易id)为[{}]->[{}]，更新[{}]个地址", oldPosition, pointLog.getPosition(), list.size());
-            } else {
-                XxlJobHelper.handleSuccess(StrUtil.format("最新断点[{}]未找到交易列表，更新地址交易数完成", oldPosition));
-            }
+            bakStreamProcessor.process(BakStream.<TxBak, Collection<AddressQty>>builder()
+                                                .name("tx_bak->address_qty")
+                                                .pointLogId(2)
+                                                .table(BakTableEnum.TX_BAK)
+                                                .source(this::getTransactionList)
+                                                .id(TxBak::getId)
+                                                .transform(this::countAddressQty)
+                                                .sink(list -> customAddressMapper.batchUpdateAddressQty(new ArrayList<>(list)))
+                                                .pageSize(pageSize)
+                                                .build());
+            XxlJobHelper.handleSuccess("更新地址交易数完成");
         } catch (Exception e) {
             log.error("更新地址交易数异常", e);
             throw e;
@@ -256,33 +282,52 @@ public class AddressUpdateTask {
      *
      */
     @XxlJob("updateAddressTransferTxQtyJobHandler")
-    @Transactional(rollbackFor = {Exception.class, Error.class})
     public void updateTransferTxQty() throws Exception {
         try {
             int pageSize = Convert.toInt(XxlJobHelper.getJobParam(), 500);
-            PointLog pointLog = pointLogMapper.selectByPrimaryKey(11);
-            long oldPosition = Convert.toLong(pointLog.getPosition());
-            TaskUtil.console("当前页数为[{}]，断点为[{}]", pageSize, oldPosition);
-            List<TxTransferBak> transactionList = getTxTransferBakList(oldPosition, pageSize);
-            if (CollUtil.isNotEmpty(transactionList)) {
-                String minId = CollUtil.getFirst(transactionList).getId().toString();
-                String maxId = CollUtil.getLast(transactionList).getId().toString();
-                pointLog.setPosition(maxId);
-                TaskUtil.console("查找到[{}]条内部转账交易,交易id为[{}-{}]", transactionList.size(), minId, maxId);
-                Map<String, AddressQty> map = extractAddressTxTransferQty(transactionList);
-                TaskUtil.console("更新的数据为{}", JSONUtil.toJsonStr(map.values()));
-                customAddressMapper.batchUpdateAddressTxTransferQty(map.values());
-                pointLogMapper.updateByPrimaryKeySelective(pointLog);
-                TaskUtil.console("更新地址内部转账交易数，断点(交易id)为[{}]->[{}]，更新[{}]个地址", oldPosition, pointLog.getPosition(), map.size());
-            } else {
-                XxlJobHelper.handleSuccess(StrUtil.format("最新断点[{}]未找到交易列表，更新地址交易数完成", oldPosition));
-            }
+            bakStreamProcessor.process(BakStream.<TxTransferBak, Collection<AddressQty>>builder()
+                                                .name("tx_transfer_bak->address_qty")
+                                                .pointLogId(11)
+                                                .table(BakTableEnum.TX_TRANSFER_BAK)
+                                                .source(this::getTxTransferBakList)
+                                                .id(TxTransferBak::getId)
+                                                .transform(list -> extractAddressTxTransferQty(list).values())
+                                                .sink(customAddressMapper::batchUpdateAddressTxTransferQty)
+                                                .pageSize(pageSize)
+                                                .build());
+            XxlJobHelper.handleSuccess("更新地址内部转账交易数完成");
         } catch (Exception e) {
             log.error("更新地址内部转账交易数异常", e);
             throw e;
         }
     }
 
+    /**
+     * 按交易累加地址的交易数
+     *
+     * @param transactionList: 交易列表
+     * @return: java.util.Collection<com.platon.browser.bean.AddressQty>
+     * @date: 2022/3/24
+     */
+    private Collection<AddressQty> countAddressQty(List<TxBak> transactionList) throws Exception {
+        Map<String, AddressQty> map = checkAddress(transactionList);
+        for (TxBak txBak : transactionList) {
+            if (!AddressUtil.isAddrZero(txBak.getFrom())) {
+                AddressQty from = map.get(txBak.getFrom());
+                addQty(Transaction.TypeEnum.getEnum(txBak.getType()), from);
+            } else {
+                TaskUtil.console("交易[{}]from[{}]为零地址", txBak.getHash(), txBak.getFrom());
+            }
+            if (!AddressUtil.isAddrZero(txBak.getTo())) {
+                AddressQty to = map.get(txBak.getTo());
+                addQty(Transaction.TypeEnum.getEnum(txBak.getType()), to);
+            } else {
+                TaskUtil.console("交易[{}]to[{}]为零地址", txBak.getHash(), txBak.getTo());
+            }
+        }
+        return map.values();
+    }
+
     /**
      * 地址增加交易数
      *
@@ -441,33 +486,21 @@ public class AddressUpdateTask {
      * @return: java.util.List<com.platon.browser.elasticsearch.dto.Transaction>
      * @date: 2021/12/6
      */
-    private List<TxBak> getTransactionList(long maxId, int pageSize) throws Exception {
-        try {
-            TxBakExample example = new TxBakExample();
-            example.createCriteria().andIdGreaterThan(maxId);
-            example.setOrderByClause("id asc limit " + pageSize);
-            List<TxBak> list = txBakMapper.selectByExample(example);
-            return list;
-        } catch (Exception e) {
-            log.error("获取交易列表异常", e);
-            throw e;
-        }
+    private List<TxBak> getTransactionList(long maxId, int pageSize) {
+        TxBakExample example = new TxBakExample();
+        example.createCriteria().andIdGreaterThan(maxId);
+        example.setOrderByClause("id asc limit " + pageSize);
+        return txBakMapper.selectByExample(example);
     }
 
 
     /**
      * 获取内部转账交易列表
      */
-    private List<TxTransferBak> getTxTransferBakList(long maxId, int pageSize) throws Exception {
-        try {
-            TxTransferBakExample example = new TxTransferBakExample();
-            example.createCriteria().andIdGreaterThan(maxId);
-            example.setOrderByClause("id asc limit " + pageSize);
-            List<TxTransferBak> list = txTransferBakMapper.selectByExample(example);
-            return list;
-        } catch (Exception e) {
-            log.error("获取内部转账交易列表异常", e);
-            throw e;
-        }
+    private List<TxTransferBak> getTxTransferBakList(long maxId, int pageSize) {
+        TxTransferBakExample example = new TxTransferBakExample();
+        example.createCriteria().andIdGreaterThan(maxId);
+        example.setOrderByClause("id asc limit " + pageSize);
+        return txTransferBakMapper.selectByExample(example);
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package com.platon.browser.task;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import com.platon.browser.bean.BakPartition;
+import com.platon.browser.config.TaskConfig;
+import com.platon.browser.dao.custommapper.CustomBakPartitionMapper;
+import com.platon.browser.dao.entity.PointLog;
+import com.platon.browser.dao.mapper.PointLogMapper;
+import com.platon.browser.enums.BakTableEnum;
+import com.platon.browser.utils.TaskUtil;
+import com.xxl.job.core.context.XxlJobHelper;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 备份表分区维护任务
+ * agent只往备份表追加数据，scan-job各任务消费后把断点记录在point_log中，
+ * 本任务按id预建分区，并把所有消费者都已越过的分区整分区删除，不做逐行删除
+ */
+@Slf4j
+@Component
+public class BakDataPruneTask {
+
+    /**
+     * 超过最大id后预建的分区数
+     */
+    private static final int AHEAD_PARTITIONS = 2;
+
+    private static final String MAX_PARTITION = "p_max";
+
+    @Resource
+    private TaskConfig taskConfig;
+
+    @Resource
+    private PointLogMapper pointLogMapper;
+
+    @Resource
+    private CustomBakPartitionMapper customBakPartitionMapper;
+
+    /**
+     * 备份表预建分区及按断点删除分区
+     * 每30分钟执行一次
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/1
+     */
+    @XxlJob("bakDataPruneJobHandler")
+    public void bakDataPrune() {
+        for (BakTableEnum table : BakTableEnum.values()) {
+            try {
+                prune(table);
+            } catch (Exception e) {
+                log.error(String.format("备份表[%s]分区维护异常", table.getTableName()), e);
+            }
+        }
+        XxlJobHelper.handleSuccess("备份表分区维护完成");
+    }
+
+    /**
+     * 单表分区维护
+     *
+     * @param table: 备份表
+     * @return: void
+     * @date: 2022/3/1
+     */
+    private void prune(BakTableEnum table) {
+        String tableName = table.getTableName();
+        List<BakPartition> partitions = customBakPartitionMapper.selectPartitions(tableName);
+        if (partitions.stream().noneMatch(p -> MAX_PARTITION.equals(p.getPartitionName()))) {
+            TaskUtil.console("备份表[{}]未分区，跳过", tableName);
+            return;
+        }
+        long partitionSize = taskConfig.getBakPartitionSize();
+        long maxId = customBakPartitionMapper.selectMaxId(tableName);
+        List<BakPartition> ranges = partitions.stream().filter(p -> p.getLessThan() != null).collect(Collectors.toList());
+        long upper = ranges.isEmpty() ? 0L : CollUtil.getLast(ranges).getLessThan();
+        // p_max中已有数据时先整体拆出一个分区，之后预建的分区都是空的，拆分不再搬迁数据
+        if (upper <= maxId) {
+            upper = (maxId / partitionSize + 1) * partitionSize;
+            customBakPartitionMapper.reorganizeMaxPartition(tableName, "p" + upper, upper);
+            TaskUtil.console("备份表[{}]拆分分区[p{}]，最大id[{}]", tableName, upper, maxId);
+        }
+        while (upper < maxId + partitionSize * AHEAD_PARTITIONS) {
+            upper += partitionSize;
+            customBakPartitionMapper.reorganizeMaxPartition(tableName, "p" + upper, upper);
+            TaskUtil.console("备份表[{}]预建分区[p{}]", tableName, upper);
+        }
+
+        long watermark = getWatermark(table);
+        // 已封闭的分区：最大id所在分区之前的分区，保证agent依赖的最大id记录始终保留
+        List<BakPartition> closed = ranges.stream().filter(p -> p.getLessThan() <= maxId).collect(Collectors.toList());
+        int droppable = closed.size() - taskConfig.getBakRetainPartitions();
+        for (int i = 0; i < droppable; i++) {
+            BakPartition partition = closed.get(i);
+            // 分区内id都小于lessThan，所有消费者断点都不小于lessThan-1才可删除
+            if (partition.getLessThan() - 1 > watermark) {
+                break;
+            }
+            customBakPartitionMapper.dropPartition(tableName, partition.getPartitionName());
+            TaskUtil.console("备份表[{}]删除分区[{}]，上界[{}]，行数[{}]，断点[{}]",
+                             tableName,
+                             partition.getPartitionName(),
+                             partition.getLessThan(),
+                             partition.getTableRows(),
+                             watermark);
+        }
+    }
+
+    /**
+     * 获取备份表所有消费者中最小的断点，没有消费者时不限制
+     *
+     * @param table: 备份表
+     * @return: long
+     * @date: 2022/3/1
+     */
+    private long getWatermark(BakTableEnum table) {
+        long watermark = Long.MAX_VALUE;
+        for (int pointLogId : table.getPointLogIds()) {
+            PointLog pointLog = pointLogMapper.selectByPrimaryKey(pointLogId);
+            if (pointLog == null) {
+                return 0L;
+            }
+            watermark = Math.min(watermark, Convert.toLong(pointLog.getPosition(), 0L));
+        }
+        return watermark;
+    }
+
+}
@@ -5,15 +5,17 @@ import com.alibaba.fastjson.JSON;
 import com.platon.browser.bean.RestrictingBalance;
 import com.platon.browser.client.JobPlatOnClient;
 import com.platon.browser.client.SpecialApi;
+import com.platon.browser.client.Web3jWrapper;
 import com.platon.browser.config.TaskConfig;
+import com.platon.browser.dao.custommapper.CustomInternalAddressMapper;
 import com.platon.browser.dao.entity.InternalAddress;
 import com.platon.browser.dao.entity.InternalAddressExample;
 import com.platon.browser.dao.mapper.InternalAddressMapper;
 import com.platon.browser.enums.InternalAddressType;
-import com.platon.protocol.Web3j;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +24,8 @@ import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -30,6 +34,9 @@ public class BalanceUpdateTask {
     @Resource
     private InternalAddressMapper internalAddressMapper;
 
+    @Resource
+    private CustomInternalAddressMapper customInternalAddressMapper;
+
     @Resource
     private SpecialApi specialApi;
 
@@ -39,6 +46,12 @@ public class BalanceUpdateTask {
     @Resource
     private TaskConfig config;
 
+    /**
+     * 锁仓余额查询线程池，线程数由task.balanceQueryThreads配置
+     */
+    @Resource
+    private ThreadPoolTaskExecutor balanceQueryExecutor;
+
     /**
      * 更新基金会账户余额
      * 每6分钟执行一次
@@ -99,65 +112,101 @@ public class BalanceUpdateTask {
     }
 
     private void updateBalance(List<InternalAddress> addressList) {
-        List<Map<String, InternalAddress>> batchList = new ArrayList<>();
-        Map<String, InternalAddress> batch = new HashMap<>();
-        batchList.add(batch);
-        for (InternalAddress address : addressList) {
-            if (batch.size() >= config.getMaxBatchSize()) {
-                // 如果当前批次大小达到批次大小，则新建一个批次
-                batch = new HashMap<>();
-                batchList.add(batch);
-            }
-            // <地址-内部地址> 映射
-            batch.put(address.getAddress(), address);
+        // 地址已按address排序，按顺序切分的批次也是有序的
+        List<List<InternalAddress>> batchList = CollUtil.split(addressList, config.getMaxBatchSize());
+        List<Web3jWrapper> wrappers = platOnClient.getHealthyWeb3jWrappers();
+        if (wrappers.isEmpty()) {
+            log.warn("没有可用的节点,不做操作！");
+            return;
+        }
+        log.info("地址总数{},分成{}批,每批最多{}个地址,可用节点{}个", addressList.size(), batchList.size(), config.getMaxBatchSize(), wrappers.size());
+
+        // 各批次的锁仓余额查询并发执行，按批次轮流分配到可用节点
+        List<Future<List<InternalAddress>>> futures = new ArrayList<>(batchList.size());
+        for (int i = 0; i < batchList.size(); i++) {
+            List<InternalAddress> batch = batchList.get(i);
+            Web3jWrapper wrapper = wrappers.get(i % wrappers.size());
+            futures.add(balanceQueryExecutor.submit(() -> queryChangedBalance(wrapper, batch)));
         }
-        log.info("地址总数{},分成{}批,每批最多{}个地址", addressList.size(), batchList.size(), config.getMaxBatchSize());
 
-        // 按批次查询并更新余额
-        batchList.forEach(addressMap -> {
+        // 按批次顺序写库，每批一条语句，行锁按地址顺序获取，不再需要全局锁
+        for (Future<List<InternalAddress>> future : futures) {
             try {
-                Web3j web3j = platOnClient.getWeb3jWrapper().getWeb3j();
-                Set<String> addressSet = addressMap.keySet();
-                String addresses = String.join(";", addressSet);
-                log.debug("锁仓余额查询参数：{}", addresses);
-
-                Instant start = Instant.now();
-                List<RestrictingBalance> balanceList = specialApi.getRestrictingBalance(web3j, addresses);
-                Instant end = Instant.now();
-                Duration duration = Duration.between(start, end);
-                log.debug("本批次查询地址锁仓余额耗时：{} ms", duration.toMillis());
-
-                log.debug("锁仓余额查询结果：{}", JSON.toJSONString(balanceList));
-                // 设置余额
-                balanceList.forEach(balance -> {
-                    InternalAddress address = addressMap.get(balance.getAccount());
-                    if(address.getType() == InternalAddressType.DELEGATE_CONTRACT.getCode()){
-                        address.setBalance(BigDecimal.ZERO);
-                        address.setRestrictingBalance(BigDecimal.ZERO);
-                    } else {
-                        address.setBalance(new BigDecimal(balance.getFreeBalance()));
-                        address.setRestrictingBalance(new BigDecimal(balance.getLockBalance().subtract(balance.getPledgeBalance())));
-                    }
-                });
-
-                // 同步更新，防止表锁争用导致的死锁
-                synchronized (BalanceUpdateTask.class) {
-                    // 批量更新余额
-                    Instant start1 = Instant.now();
-                    if (CollUtil.isNotEmpty(addressMap)) {
-                        for (Map.Entry<String, InternalAddress> entry : addressMap.entrySet()) {
-                            internalAddressMapper.updateByPrimaryKey(entry.getValue());
-                        }
-                    }
-                    Instant end1 = Instant.now();
-                    Duration duration1 = Duration.between(start1, end1);
-                    log.debug("本批次更新地址余额耗时：{} ms", duration1.toMillis());
-                    log.info("地址余额批量更新成功！");
+                List<InternalAddress> changed = future.get();
+                if (CollUtil.isEmpty(changed)) {
+                    continue;
                 }
+                Instant start = Instant.now();
+                customInternalAddressMapper.batchUpdateBalance(changed);
+                log.debug("本批次更新地址余额{}条，耗时：{} ms", changed.size(), Duration.between(start, Instant.now()).toMillis());
+            } catch (InterruptedException e) {
+                log.error("地址余额批量更新被中断！", e);
+                Thread.currentThread().interrupt();
+                return;
             } catch (Exception e) {
                 log.error("地址余额批量更新失败！", e);
             }
+        }
+        log.info("地址余额批量更新成功！");
+    }
+
+    /**
+     * 查询一批地址的余额，返回余额有变动的地址
+     * 指定节点查询失败时使用当前节点重试一次
+     *
+     * @param wrapper: 查询使用的节点
+     * @param batch:   同一批次的地址
+     * @return: java.util.List<com.platon.browser.dao.entity.InternalAddress>
+     * @date: 2022/3/15
+     */
+    private List<InternalAddress> queryChangedBalance(Web3jWrapper wrapper, List<InternalAddress> batch) throws Exception {
+        Map<String, InternalAddress> addressMap = new HashMap<>();
+        batch.forEach(address -> addressMap.put(address.getAddress(), address));
+        String addresses = String.join(";", addressMap.keySet());
+        log.debug("锁仓余额查询参数：{}", addresses);
+
+        Instant start = Instant.now();
+        List<RestrictingBalance> balanceList;
+        try {
+            balanceList = specialApi.getRestrictingBalance(wrapper.getWeb3j(), addresses);
+        } catch (Exception e) {
+            Web3jWrapper current = platOnClient.getWeb3jWrapper();
+            if (current == null || current == wrapper) {
+                throw e;
+            }
+            log.warn("节点[{}]查询锁仓余额异常，使用节点[{}]重试", wrapper.getAddress(), current.getAddress());
+            balanceList = specialApi.getRestrictingBalance(current.getWeb3j(), addresses);
+        }
+        log.debug("本批次查询地址锁仓余额耗时：{} ms", Duration.between(start, Instant.now()).toMillis());
+        log.debug("锁仓余额查询结果：{}", JSON.toJSONString(balanceList));
+
+        Set<String> changedSet = new HashSet<>();
+        balanceList.forEach(balance -> {
+            InternalAddress address = addressMap.get(balance.getAccount());
+            if (address == null) {
+                return;
+            }
+            BigDecimal free;
+            BigDecimal restricting;
+            if (address.getType() == InternalAddressType.DELEGATE_CONTRACT.getCode()) {
+                free = BigDecimal.ZERO;
+                restricting = BigDecimal.ZERO;
+            } else {
+                free = new BigDecimal(balance.getFreeBalance());
+                restricting = new BigDecimal(balance.getLockBalance().subtract(balance.getPledgeBalance()));
+            }
+            if (isChanged(address.getBalance(), free) || isChanged(address.getRestrictingBalance(), restricting)) {
+                address.setBalance(free);
+                address.setRestrictingBalance(restricting);
+                changedSet.add(address.getAddress());
+            }
         });
+        // 保持批次内的地址顺序
+        return batch.stream().filter(address -> changedSet.contains(address.getAddress())).collect(Collectors.toList());
+    }
+
+    private boolean isChanged(BigDecimal oldValue, BigDecimal newValue) {
+        return oldValue == null || oldValue.compareTo(newValue) != 0;
     }
 
-}
\ No newline at end of file
+}
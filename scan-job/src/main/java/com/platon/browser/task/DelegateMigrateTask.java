@@ -1,24 +1,25 @@
 package com.platon.browser.task;
 
+import cn.hutool.core.collection.CollUtil;
 import com.platon.browser.bean.CustomDelegation;
+import com.platon.browser.config.TaskConfig;
+import com.platon.browser.dao.custommapper.CustomDelegationMapper;
 import com.platon.browser.dao.entity.Delegation;
-import com.platon.browser.dao.entity.DelegationExample;
-import com.platon.browser.dao.mapper.DelegationMapper;
+import com.platon.browser.dao.entity.DelegationKey;
 import com.platon.browser.service.elasticsearch.EsDelegationService;
 import com.platon.browser.utils.AppStatusUtil;
+import com.platon.browser.utils.TaskUtil;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /**
  * 委托表中的历史数据迁移至ES任务
+ * 按主键键集分批处理，每批只删除ES已确认写入的委托，单批失败不影响已完成的批次
  *
  * @date: 2021/11/30
  */
@@ -27,11 +28,14 @@ import java.util.Set;
 public class DelegateMigrateTask {
 
     @Resource
-    private DelegationMapper delegationMapper;
+    private CustomDelegationMapper customDelegationMapper;
 
     @Resource
     private EsDelegationService esDelegationService;
 
+    @Resource
+    private TaskConfig taskConfig;
+
     /**
      * 委托表中的历史数据迁移至ES任务
      * 每30秒执行一次
@@ -40,7 +44,6 @@ public class DelegateMigrateTask {
      * @return: void
      * @date: 2021/12/15
      */
-    @Transactional(rollbackFor = {Exception.class, Error.class})
     @XxlJob("delegateMigrateJobHandler")
     public void delegateMigrate() throws Exception {
         // 只有程序正常运行才执行任务
@@ -49,13 +52,31 @@ public class DelegateMigrateTask {
 
     protected void start() throws Exception {
         try {
-            DelegationExample delegationExample = new DelegationExample();
-            delegationExample.createCriteria().andIsHistoryEqualTo(CustomDelegation.YesNoEnum.YES.getCode());
-            List<Delegation> delegationList = delegationMapper.selectByExample(delegationExample);
-            if (delegationList.isEmpty()) return;
-            Set<Delegation> delegationSet = new HashSet<>(delegationList);
-            esDelegationService.save(delegationSet);
-            delegationMapper.batchDeleteIsHistory(delegationList);
+            int chunkSize = taskConfig.getHistoryMigrateChunkSize();
+            DelegationKey cursor = null;
+            int migrated = 0;
+            int failed = 0;
+            while (true) {
+                List<CustomDelegation> chunk = customDelegationMapper.selectHistoryByKeyset(cursor, chunkSize);
+                if (chunk.isEmpty()) break;
+                cursor = CollUtil.getLast(chunk);
+                try {
+                    List<Delegation> acknowledged = esDelegationService.saveAndGetAcknowledged(chunk);
+                    if (!acknowledged.isEmpty()) {
+                        customDelegationMapper.deleteHistoryByKeys(acknowledged);
+                    }
+                    migrated += acknowledged.size();
+                    failed += chunk.size() - acknowledged.size();
+                } catch (Exception e) {
+                    // 本批未删除的委托由下次任务重试
+                    failed += chunk.size();
+                    log.error("委托历史迁移到ES本批次异常", e);
+                }
+                if (chunk.size() < chunkSize) break;
+            }
+            if (migrated > 0 || failed > 0) {
+                TaskUtil.console("委托历史迁移到ES，成功[{}]条，失败[{}]条", migrated, failed);
+            }
             XxlJobHelper.handleSuccess("委托历史迁移到ES完成");
         } catch (Exception e) {
             log.error("委托历史迁移到ES异常", e);
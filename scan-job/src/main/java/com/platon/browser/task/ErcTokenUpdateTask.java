@@ -1,30 +1,30 @@
 package com.platon.browser.task;
 
 import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.collection.ConcurrentHashSet;
 import cn.hutool.core.convert.Convert;
-import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.ObjectUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
 import com.github.pagehelper.Page;
 import com.platon.browser.bean.*;
-import com.platon.browser.bean.http.CustomHttpClient;
+import com.platon.browser.bean.http.TokenMetadataFetcher;
+import com.platon.browser.config.TaskConfig;
 import com.platon.browser.dao.custommapper.*;
 import com.platon.browser.dao.entity.*;
 import com.platon.browser.dao.mapper.*;
 import com.platon.browser.elasticsearch.dto.ErcTx;
 import com.platon.browser.enums.AddressTypeEnum;
+import com.platon.browser.enums.BakTableEnum;
 import com.platon.browser.enums.ErcTypeEnum;
 import com.platon.browser.service.erc.ErcServiceImpl;
+import com.platon.browser.task.stream.BakStream;
+import com.platon.browser.task.stream.BakStreamProcessor;
 import com.platon.browser.utils.AddressUtil;
 import com.platon.browser.utils.AppStatusUtil;
 import com.platon.browser.utils.TaskUtil;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
-import okhttp3.Request;
-import okhttp3.Response;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -33,12 +33,10 @@ import org.springframework.util.StopWatch;
 import javax.annotation.Resource;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -89,6 +87,18 @@ public class ErcTokenUpdateTask {
     @Resource
     private PointLogMapper pointLogMapper;
 
+    @Resource
+    private TokenHolderBalanceRefresher tokenHolderBalanceRefresher;
+
+    @Resource
+    private TokenHolderBalanceWriter tokenHolderBalanceWriter;
+
+    @Resource
+    private TaskConfig taskConfig;
+
+    @Resource
+    private BakStreamProcessor bakStreamProcessor;
+
     @Resource
     private TxErc20BakMapper txErc20BakMapper;
 
@@ -98,12 +108,73 @@ public class ErcTokenUpdateTask {
     @Resource
     private TxErc1155BakMapper txErc1155BakMapper;
 
-    private static final int TOKEN_BATCH_SIZE = 10;
+    /**
+     * token总供应量增量更新的初始页大小
+     */
+    private static final int TOTAL_SUPPLY_PAGE_SIZE = 5000;
+
+    /**
+     * MultiCall中单个totalSupply()调用编码后的字节数：Call3结构(target, allowFailure, callData偏移)及4字节callData补齐后的长度，加上数组中的偏移量
+     */
+    private static final int TOTAL_SUPPLY_CALL_BYTES = 192;
 
-    private static final ExecutorService TOKEN_UPDATE_POOL = Executors.newFixedThreadPool(TOKEN_BATCH_SIZE);
+    /**
+     * MultiCall中单个totalSupply()调用的预估gas
+     */
+    private static final int TOTAL_SUPPLY_CALL_GAS = 10000;
 
     private static final int HOLDER_BATCH_SIZE = 10;
 
+    /**
+     * token holder余额增量更新单次读取的备份表记录数
+     */
+    private static final int HOLDER_WINDOW_SIZE = 2000;
+
+    /**
+     * erc20、erc721 token holder余额更新分片断点id的起始值
+     */
+    private static final int ERC20_HOLDER_SHARD_POINT_BASE = 100;
+
+    private static final int ERC721_HOLDER_SHARD_POINT_BASE = 200;
+
+    /**
+     * 查询token元数据的最大并发请求数
+     */
+    private static final int METADATA_MAX_REQUESTS = 32;
+
+    /**
+     * 查询token元数据时单个域名的最大并发请求数
+     */
+    private static final int METADATA_MAX_REQUESTS_PER_HOST = 4;
+
+    /**
+     * 查询token元数据时单个域名的最小请求间隔(毫秒)
+     */
+    private static final long METADATA_HOST_INTERVAL_MILLIS = 100;
+
+    /**
+     * 域名请求失败后的初始退避时间及最大退避时间(毫秒)
+     */
+    private static final long METADATA_HOST_BACKOFF_MILLIS = 30 * 1000L;
+
+    private static final long METADATA_HOST_MAX_BACKOFF_MILLIS = 30 * 60 * 1000L;
+
+    /**
+     * 每批库存等待token元数据的总时间(毫秒)
+     */
+    private static final long METADATA_BATCH_TIMEOUT_MILLIS = 60 * 1000L;
+
+    /**
+     * 库存全量更新的重试间隔(毫秒)，按retry_num翻倍
+     */
+    private static final long INVENTORY_RETRY_BACKOFF_MILLIS = 10 * 60 * 1000L;
+
+    private final TokenMetadataFetcher tokenMetadataFetcher = new TokenMetadataFetcher(METADATA_MAX_REQUESTS,
+                                                                                       METADATA_MAX_REQUESTS_PER_HOST,
+                                                                                       METADATA_HOST_INTERVAL_MILLIS,
+                                                                                       METADATA_HOST_BACKOFF_MILLIS,
+                                                                                       METADATA_HOST_MAX_BACKOFF_MILLIS);
+
     private final Lock lock = new ReentrantLock();
 
     private final Lock tokenInventoryLock = new ReentrantLock();
@@ -111,7 +182,7 @@ public class ErcTokenUpdateTask {
 
     /**
      * 全量更新token的总供应量
-     * 每5分钟更新
+     * 每1小时更新
      *
      * @return void
      * @date 2021/1/18
@@ -129,6 +200,46 @@ public class ErcTokenUpdateTask {
         }
     }
 
+    /**
+     * 增量更新token的总供应量
+     * 每1分钟执行一次
+     *
+     * @param :
+     * @return: void
+     * @date: 2022/3/24
+     */
+    @XxlJob("incrementUpdateTokenTotalSupplyJobHandler")
+    public void incrementUpdateTokenTotalSupply() {
+        // 只有程序正常运行才执行任务
+        if (!AppStatusUtil.isRunning()) {
+            return;
+        }
+        if (!lock.tryLock()) {
+            log.warn("该次token总供应量增量更新抢不到锁");
+            return;
+        }
+        try {
+            int pageSize = Convert.toInt(XxlJobHelper.getJobParam(), TOTAL_SUPPLY_PAGE_SIZE);
+            bakStreamProcessor.process(totalSupplyStream("tx_erc_20_bak->total_supply", 13, BakTableEnum.TX_ERC_20_BAK, pageSize, (position, size) -> {
+                TxErc20BakExample example = new TxErc20BakExample();
+                example.setOrderByClause("id asc limit " + size);
+                example.createCriteria().andIdGreaterThan(position);
+                return txErc20BakMapper.selectByExample(example);
+            }));
+            bakStreamProcessor.process(totalSupplyStream("tx_erc_721_bak->total_supply", 14, BakTableEnum.TX_ERC_721_BAK, pageSize, (position, size) -> {
+                TxErc721BakExample example = new TxErc721BakExample();
+                example.setOrderByClause("id asc limit " + size);
+                example.createCriteria().andIdGreaterThan(position);
+                return txErc721BakMapper.selectByExample(example);
+            }));
+            XxlJobHelper.handleSuccess("增量更新token的总供应量成功");
+        } catch (Exception e) {
+            log.error("增量更新token的总供应量异常", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
 
     /**
      * 全量更新token库存信息
@@ -195,6 +306,7 @@ public class ErcTokenUpdateTask {
 
     /**
      * 更新ERC20和Erc721Enumeration token的总供应量===》全量更新
+     * 作为增量更新的兜底，覆盖不发出Transfer事件即改变总供应量的合约
      *
      * @return void
      * @date 2021/1/18
@@ -204,70 +316,142 @@ public class ErcTokenUpdateTask {
         if (!AppStatusUtil.isRunning()) {
             return;
         }
-        Set<ErcToken> updateParams = new ConcurrentHashSet<>();
-        List<List<ErcToken>> batchList = new ArrayList<>();
-        List<ErcToken> batch = new ArrayList<>();
-        batchList.add(batch);
         List<ErcToken> tokens = getErcTokens();
-        for (ErcToken token : tokens) {
-            if (token.isDirty()) {
-                updateParams.add(token);
-            }
-            if (!(token.getTypeEnum() == ErcTypeEnum.ERC20 || token.getIsSupportErc721Enumeration())) {
-                continue;
-            }
-            if (batch.size() == TOKEN_BATCH_SIZE) {
-                // 本批次达到大小限制，则新建批次，并加入批次列表
-                batch = new ArrayList<>();
-                batchList.add(batch);
-            }
-            // 加入批次中
-            batch.add(token);
-        }
-        // 分批并发查询Token totalSupply
-        batchList.forEach(b -> {
-            // 过滤销毁的合约
-            List<ErcToken> res = tokenSubtractToList(b, getDestroyContracts());
-            if (CollUtil.isNotEmpty(res)) {
-                CountDownLatch latch = new CountDownLatch(res.size());
-                for (ErcToken token : res) {
-                    TOKEN_UPDATE_POOL.submit(() -> {
-                        try {
-                            // 查询总供应量
-                            BigInteger totalSupply = ercServiceImpl.getTotalSupply(token.getAddress());
-                            totalSupply = totalSupply == null ? BigInteger.ZERO : totalSupply;
-                            if (ObjectUtil.isNull(token.getTotalSupply()) || !token.getTotalSupply().equalsIgnoreCase(totalSupply.toString())) {
-                                TaskUtil.console("token[{}]的总供应量有变动需要更新旧值[{}]新值[{}]", token.getAddress(), token.getTotalSupply(), totalSupply);
-                                // 有变动添加到更新列表中
-                                token.setTotalSupply(totalSupply.toString());
-                                updateParams.add(token);
-                            }
-                        } catch (Exception e) {
-                            XxlJobHelper.log(StrUtil.format("该token[{}]查询总供应量异常", token.getAddress()));
-                            log.error("查询总供应量异常", e);
-                        } finally {
-                            latch.countDown();
-                        }
-                    });
-                }
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    log.error("", e);
+        List<ErcToken> updateParams = tokens.stream().filter(ErcToken::isDirty).collect(Collectors.toList());
+        int updated = 0;
+        for (List<ErcToken> chunk : CollUtil.split(getTotalSupplyTokens(tokens), getTotalSupplyChunkSize())) {
+            try {
+                List<ErcToken> changed = queryChangedTotalSupply(chunk);
+                if (!changed.isEmpty()) {
+                    customTokenMapper.batchUpdateTokenTotalSupply(changed);
+                    updated += changed.size();
                 }
+            } catch (Exception e) {
+                XxlJobHelper.log(StrUtil.format("批量查询token总供应量异常，首个token为[{}]", chunk.get(0).getAddress()));
+                log.error("查询总供应量异常", e);
             }
-        });
+        }
         if (!updateParams.isEmpty()) {
-            // 批量更新总供应量有变动的记录
-            customTokenMapper.batchUpdateTokenTotalSupply(new ArrayList<>(updateParams));
-            XxlJobHelper.handleSuccess("全量更新token的总供应量成功");
+            customTokenMapper.batchUpdateTokenTotalSupply(updateParams);
             updateParams.forEach(token -> token.setDirty(false));
         }
-        XxlJobHelper.log("全量更新token的总供应量成功");
+        XxlJobHelper.handleSuccess(StrUtil.format("全量更新token的总供应量成功，更新[{}]条", updated + updateParams.size()));
+    }
+
+    /**
+     * token总供应量增量更新的消费流
+     * 从tx_erc_20_bak、tx_erc_721_bak读取断点之后的转账记录，只查询其中有转账的token的总供应量
+     *
+     * @param name:       流名称
+     * @param pointLogId: 断点id
+     * @param table:      备份表
+     * @param pageSize:   初始页大小
+     * @param source:     按(断点, 条数)查询备份表
+     * @return: com.platon.browser.task.stream.BakStream<T, java.util.List<com.platon.browser.bean.ErcToken>>
+     * @date: 2022/3/24
+     */
+    private <T extends ErcTx> BakStream<T, List<ErcToken>> totalSupplyStream(String name, int pointLogId, BakTableEnum table, int pageSize, BiFunction<Long, Integer, List<T>> source) {
+        return BakStream.<T, List<ErcToken>>builder()
+                        .name(name)
+                        .pointLogId(pointLogId)
+                        .table(table)
+                        .source(source)
+                        .id(ErcTx::getId)
+                        .transform(this::queryActiveTokenTotalSupply)
+                        .sink(updateParams -> {
+                            if (!updateParams.isEmpty()) {
+                                customTokenMapper.batchUpdateTokenTotalSupply(updateParams);
+                            }
+                        })
+                        .pageSize(pageSize)
+                        .build();
+    }
+
+    /**
+     * 查询一页转账记录中有转账的token的总供应量
+     *
+     * @param page: 转账记录
+     * @return: java.util.List<com.platon.browser.bean.ErcToken> 总供应量有变动的token
+     * @date: 2022/3/24
+     */
+    private List<ErcToken> queryActiveTokenTotalSupply(List<? extends ErcTx> page) throws Exception {
+        // 同一token在一页中多次转账只需查询一次最新的总供应量
+        List<String> contracts = page.stream().map(ErcTx::getContract).distinct().collect(Collectors.toList());
+        TokenExample example = new TokenExample();
+        example.createCriteria().andAddressIn(contracts);
+        List<ErcToken> tokens = tokenMapper.selectByExample(example).stream().map(token -> {
+            ErcToken et = new ErcToken();
+            BeanUtils.copyProperties(token, et);
+            et.setTypeEnum(ErcTypeEnum.valueOf(token.getType().toUpperCase()));
+            return et;
+        }).collect(Collectors.toList());
+        List<ErcToken> updateParams = new ArrayList<>();
+        for (List<ErcToken> chunk : CollUtil.split(getTotalSupplyTokens(tokens), getTotalSupplyChunkSize())) {
+            updateParams.addAll(queryChangedTotalSupply(chunk));
+        }
+        TaskUtil.console("活跃token[{}]个，总供应量有变动[{}]个", contracts.size(), updateParams.size());
+        return updateParams;
+    }
+
+    /**
+     * 过滤出需要查询总供应量的token：ERC20和Erc721Enumeration，且合约未销毁
+     *
+     * @param tokens: token列表
+     * @return: java.util.List<com.platon.browser.bean.ErcToken>
+     * @date: 2022/3/24
+     */
+    private List<ErcToken> getTotalSupplyTokens(List<ErcToken> tokens) {
+        List<ErcToken> supported = tokens.stream()
+                                         .filter(token -> token.getTypeEnum() == ErcTypeEnum.ERC20 || Boolean.TRUE.equals(token.getIsSupportErc721Enumeration()))
+                                         .collect(Collectors.toList());
+        if (supported.isEmpty()) {
+            return supported;
+        }
+        return tokenSubtractToList(supported, getDestroyContracts());
+    }
+
+    /**
+     * 通过MultiCall批量查询一块token的总供应量
+     *
+     * @param chunk: token列表
+     * @return: java.util.List<com.platon.browser.bean.ErcToken> 总供应量有变动的token，已设置新值
+     * @date: 2022/3/24
+     */
+    private List<ErcToken> queryChangedTotalSupply(List<ErcToken> chunk) throws Exception {
+        List<String> addresses = chunk.stream().map(ErcToken::getAddress).collect(Collectors.toList());
+        Map<String, BigInteger> totalSupplyMap = ercServiceImpl.batchTotalSupply(addresses);
+        List<ErcToken> updateParams = new ArrayList<>();
+        for (ErcToken token : chunk) {
+            BigInteger totalSupply = totalSupplyMap.get(token.getAddress());
+            if (totalSupply == null) {
+                // 调用失败的合约保留原值，避免把总供应量误更新为0
+                continue;
+            }
+            if (token.getTotalSupply() == null || !token.getTotalSupply().equalsIgnoreCase(totalSupply.toString())) {
+                TaskUtil.console("token[{}]的总供应量有变动需要更新旧值[{}]新值[{}]", token.getAddress(), token.getTotalSupply(), totalSupply);
+                token.setTotalSupply(totalSupply.toString());
+                updateParams.add(token);
+            }
+        }
+        return updateParams;
+    }
+
+    /**
+     * 按调用数据大小和gas预算计算每次MultiCall查询总供应量的调用数
+     *
+     * @param :
+     * @return: int
+     * @date: 2022/3/24
+     */
+    private int getTotalSupplyChunkSize() {
+        int byBytes = taskConfig.getMultiCallMaxBytes() / TOTAL_SUPPLY_CALL_BYTES;
+        long byGas = taskConfig.getMultiCallGasBudget() / TOTAL_SUPPLY_CALL_GAS;
+        return (int) Math.max(1, Math.min(byBytes, byGas));
     }
 
     /**
      * 更新erc20的token holder的余额
+     * 按持有者分片并行更新，每个分片记录自己的断点
      */
     @XxlJob("incrementUpdatePrc20TokenHolderBalanceJobHandler")
     public void incrementUpdateErc20TokenHolderBalance() {
@@ -276,65 +460,14 @@ public class ErcTokenUpdateTask {
             return;
         }
         try {
-            int pageSize = Convert.toInt(XxlJobHelper.getJobParam(), 50);
-            PointLog pointLog = pointLogMapper.selectByPrimaryKey(5);
-            long oldPosition = Convert.toLong(pointLog.getPosition());
-            TxErc20BakExample example = new TxErc20BakExample();
-            example.setOrderByClause("id asc limit " + pageSize);
-            example.createCriteria().andIdGreaterThan(oldPosition);
-            List<TxErc20Bak> list = txErc20BakMapper.selectByExample(example);
-            List<TokenHolder> updateParams = new ArrayList<>();
-            TaskUtil.console("[erc20]当前页数为[{}]，断点为[{}]", pageSize, oldPosition);
-            if (CollUtil.isEmpty(list)) {
-                TaskUtil.console("[erc20]该断点[{}]未找到交易", oldPosition);
-                return;
-            }
-            HashMap<String, HashSet<String>> map = new HashMap();
-            list.sort(Comparator.comparing(ErcTx::getSeq));
-            list.forEach(v -> {
-                if (map.containsKey(v.getContract())) {
-                    // 判断是否是0地址
-                    if (!AddressUtil.isAddrZero(v.getTo())) {
-                        map.get(v.getContract()).add(v.getTo());
-                    }
-                    if (!AddressUtil.isAddrZero(v.getFrom())) {
-                        map.get(v.getContract()).add(v.getFrom());
-                    }
-                } else {
-                    HashSet<String> addressSet = new HashSet<String>();
-                    // 判断是否是0地址
-                    if (!AddressUtil.isAddrZero(v.getTo())) {
-                        addressSet.add(v.getTo());
-                    }
-                    if (!AddressUtil.isAddrZero(v.getFrom())) {
-                        addressSet.add(v.getFrom());
-                    }
-                    map.put(v.getContract(), addressSet);
-                }
+            int windowSize = Convert.toInt(XxlJobHelper.getJobParam(), HOLDER_WINDOW_SIZE);
+            tokenHolderBalanceRefresher.refresh("erc20", 5, ERC20_HOLDER_SHARD_POINT_BASE, windowSize, (position, size) -> {
+                TxErc20BakExample example = new TxErc20BakExample();
+                example.setOrderByClause("id asc limit " + size);
+                example.createCriteria().andIdGreaterThan(position);
+                return txErc20BakMapper.selectByExample(example);
             });
-            if (MapUtil.isNotEmpty(map)) {
-                // 批量查询
-                List<TokenHolder> tokenHolderKeyList = new ArrayList<>();
-                map.forEach((contract, addressSet) -> {
-                    addressSet.forEach(address -> {
-                        TokenHolder holder = new TokenHolder();
-                        holder.setTokenAddress(contract);
-                        holder.setAddress(address);
-                        tokenHolderKeyList.add(holder);
-                    });
-                });
-                List<TokenHolder> tokenHolderList = ercServiceImpl.batchBalanceOfOwner(tokenHolderKeyList);
-                updateParams.addAll(tokenHolderList.stream().filter(item -> item.getBalance() != null).collect(Collectors.toList()));
-            }
-            if (CollUtil.isNotEmpty(updateParams)) {
-                customTokenHolderMapper.batchUpdate(updateParams);
-                TaskUtil.console("更新[erc20] token holder的余额{}", JSONUtil.toJsonStr(updateParams));
-                XxlJobHelper.handleSuccess("更新[erc20] token holder的余额成功");
-            }
-            String newPosition = CollUtil.getLast(list).getId().toString();
-            pointLog.setPosition(newPosition);
-            pointLogMapper.updateByPrimaryKeySelective(pointLog);
-            XxlJobHelper.log("更新[erc20] token holder的余额成功，断点为[{}]->[{}]", oldPosition, newPosition);
+            XxlJobHelper.handleSuccess("更新[erc20] token holder的余额成功");
         } catch (Exception e) {
             log.error("更新token持有者余额异常", e);
         }
@@ -342,6 +475,7 @@ public class ErcTokenUpdateTask {
 
     /**
      * 更新erc721的token holder的余额
+     * 按持有者分片并行更新，每个分片记录自己的断点
      */
     @XxlJob("incrementUpdatePrc721TokenHolderBalanceJobHandler")
     public void incrementUpdateErc721TokenHolderBalance() {
@@ -350,65 +484,14 @@ public class ErcTokenUpdateTask {
             return;
         }
         try {
-            int pageSize = Convert.toInt(XxlJobHelper.getJobParam(), 50);
-            PointLog pointLog = pointLogMapper.selectByPrimaryKey(6);
-            long oldPosition = Convert.toLong(pointLog.getPosition());
-            TxErc721BakExample example = new TxErc721BakExample();
-            example.setOrderByClause("id asc limit " + pageSize);
-            example.createCriteria().andIdGreaterThan(oldPosition);
-            List<TxErc721Bak> list = txErc721BakMapper.selectByExample(example);
-            List<TokenHolder> updateParams = new ArrayList<>();
-            TaskUtil.console("[erc721]当前页数为[{}]，断点为[{}]", pageSize, oldPosition);
-            if (CollUtil.isEmpty(list)) {
-                TaskUtil.console("[erc721]该断点[{}]未找到交易", oldPosition);
-                return;
-            }
-            HashMap<String, HashSet<String>> map = new HashMap();
-            list.sort(Comparator.comparing(ErcTx::getSeq));
-            list.forEach(v -> {
-                if (map.containsKey(v.getContract())) {
-                    // 判断是否是0地址
-                    if (!AddressUtil.isAddrZero(v.getTo())) {
-                        map.get(v.getContract()).add(v.getTo());
-                    }
-                    if (!AddressUtil.isAddrZero(v.getFrom())) {
-                        map.get(v.getContract()).add(v.getFrom());
-                    }
-                } else {
-                    HashSet<String> addressSet = new HashSet<String>();
-                    // 判断是否是0地址
-                    if (!AddressUtil.isAddrZero(v.getTo())) {
-                        addressSet.add(v.getTo());
-                    }
-                    if (!AddressUtil.isAddrZero(v.getFrom())) {
-                        addressSet.add(v.getFrom());
-                    }
-                    map.put(v.getContract(), addressSet);
-                }
+            int windowSize = Convert.toInt(XxlJobHelper.getJobParam(), HOLDER_WINDOW_SIZE);
+            tokenHolderBalanceRefresher.refresh("erc721", 6, ERC721_HOLDER_SHARD_POINT_BASE, windowSize, (position, size) -> {
+                TxErc721BakExample example = new TxErc721BakExample();
+                example.setOrderByClause("id asc limit " + size);
+                example.createCriteria().andIdGreaterThan(position);
+                return txErc721BakMapper.selectByExample(example);
             });
-            if (MapUtil.isNotEmpty(map)) {
-                // 批量查询
-                List<TokenHolder> tokenHolderKeyList = new ArrayList<>();
-                map.forEach((contract, addressSet) -> {
-                    addressSet.forEach(address -> {
-                        TokenHolder holder = new TokenHolder();
-                        holder.setTokenAddress(contract);
-                        holder.setAddress(address);
-                        tokenHolderKeyList.add(holder);
-                    });
-                });
-                List<TokenHolder> tokenHolderList = ercServiceImpl.batchBalanceOfOwner(tokenHolderKeyList);
-                updateParams.addAll(tokenHolderList.stream().filter(item -> item.getBalance() != null).collect(Collectors.toList()));
-            }
-            if (CollUtil.isNotEmpty(updateParams)) {
-                customTokenHolderMapper.batchUpdate(updateParams);
-                TaskUtil.console("更新[erc721] token holder的余额{}", JSONUtil.toJsonStr(updateParams));
-                XxlJobHelper.handleSuccess("更新[erc721] token holder的余额成功");
-            }
-            String newPosition = CollUtil.getLast(list).getId().toString();
-            pointLog.setPosition(newPosition);
-            pointLogMapper.updateByPrimaryKeySelective(pointLog);
-            XxlJobHelper.log("更新[erc721] token holder的余额成功，断点为[{}]->[{}]", oldPosition, newPosition);
+            XxlJobHelper.handleSuccess("更新[erc721] token holder的余额成功");
         } catch (Exception e) {
             log.error("更新token持有者余额异常", e);
         }
@@ -425,59 +508,78 @@ public class ErcTokenUpdateTask {
         }
         try {
             int pageSize = Convert.toInt(XxlJobHelper.getJobParam(), 30);
-            PointLog pointLog = pointLogMapper.selectByPrimaryKey(12);
-            long oldPosition = Convert.toLong(pointLog.getPosition());
-            TxErc1155BakExample example = new TxErc1155BakExample();
-            example.setOrderByClause("id asc limit " + pageSize);
-            example.createCriteria().andIdGreaterThan(oldPosition);
-            List<TxErc1155Bak> list = txErc1155BakMapper.selectByExample(example);
-            List<Token1155Holder> updateParams = new ArrayList<>();
-            TaskUtil.console("[erc1155]当前页数为[{}]，断点为[{}]", pageSize, oldPosition);
-            if (CollUtil.isEmpty(list)) {
-                TaskUtil.console("[erc1155]该断点[{}]未找到交易", oldPosition);
-                return;
+            bakStreamProcessor.process(BakStream.<TxErc1155Bak, List<Token1155Holder>>builder()
+                                                .name("tx_erc_1155_bak->holder_balance")
+                                                .pointLogId(12)
+                                                .table(BakTableEnum.TX_ERC_1155_BAK)
+                                                .source((position, size) -> {
+                                                    TxErc1155BakExample example = new TxErc1155BakExample();
+                                                    example.setOrderByClause("id asc limit " + size);
+                                                    example.createCriteria().andIdGreaterThan(position);
+                                                    return txErc1155BakMapper.selectByExample(example);
+                                                })
+                                                .id(TxErc1155Bak::getId)
+                                                .transform(this::queryErc1155HolderBalance)
+                                                .sink(updateParams -> {
+                                                    if (CollUtil.isNotEmpty(updateParams)) {
+                                                        customToken1155HolderMapper.batchUpdate(updateParams);
+                                                    }
+                                                })
+                                                .pageSize(pageSize)
+                                                .build());
+            XxlJobHelper.handleSuccess("更新[erc1155] token holder的余额成功");
+        } catch (Exception e) {
+            log.error("更新1155token持有者余额异常", e);
+        }
+    }
+
+    /**
+     * 查询一页erc1155转账记录涉及的(token, tokenId, holder)的余额
+     *
+     * @param list: 转账记录
+     * @return: java.util.List<com.platon.browser.dao.entity.Token1155Holder>
+     * @date: 2022/3/24
+     */
+    private List<Token1155Holder> queryErc1155HolderBalance(List<TxErc1155Bak> list) throws Exception {
+        Map<String, Map<String, HashSet<String>>> contract2tokenId2addressSet = new HashMap<>();
+        list.forEach(v -> {
+            Map<String, HashSet<String>> tokenId2addressSet = contract2tokenId2addressSet.computeIfAbsent(v.getContract(), contract -> new HashMap<>());
+            HashSet<String> addressSet = tokenId2addressSet.computeIfAbsent(v.getTokenId(), tokenId -> new HashSet<>());
+            if (!AddressUtil.isAddrZero(v.getTo())) {
+                addressSet.add(v.getTo());
             }
-            Map<String, Map<String, HashSet<String>>> contract2tokenId2addressSet = new HashMap<>();
-            list.sort(Comparator.comparing(ErcTx::getSeq));
-            list.forEach(v -> {
-                Map<String, HashSet<String>> tokenId2addressSet = contract2tokenId2addressSet.computeIfAbsent(v.getContract(), contract -> new HashMap<>());
-                HashSet<String> addressSet = tokenId2addressSet.computeIfAbsent(v.getTokenId(), tokenId -> new HashSet<>());
-                if (!AddressUtil.isAddrZero(v.getTo())) {
-                    addressSet.add(v.getTo());
-                }
-                if (!AddressUtil.isAddrZero(v.getFrom())) {
-                    addressSet.add(v.getFrom());
-                }
-            });
-            if (MapUtil.isNotEmpty(contract2tokenId2addressSet)) {
-                // 批量查询
-                List<Token1155Holder> tokenHolderKeyList = new ArrayList<>();
-                for (String contract: contract2tokenId2addressSet.keySet()) {
-                    for (String tokenId:contract2tokenId2addressSet.get(contract).keySet()){
-                        for (String address : contract2tokenId2addressSet.get(contract).get(tokenId)) {
-                            Token1155Holder holder = new Token1155Holder();
-                            holder.setTokenAddress(contract);
-                            holder.setTokenId(tokenId);
-                            holder.setAddress(address);
-                            tokenHolderKeyList.add(holder);
-                        }
-                    }
-                }
-                List<Token1155Holder> tokenHolderList = ercServiceImpl.batchBalanceOfOwnerAndId(tokenHolderKeyList);
-                updateParams.addAll(tokenHolderList.stream().filter(item -> item.getBalance() != null).collect(Collectors.toList()));
+            if (!AddressUtil.isAddrZero(v.getFrom())) {
+                addressSet.add(v.getFrom());
             }
-            if (CollUtil.isNotEmpty(updateParams)) {
-                customToken1155HolderMapper.batchUpdate(updateParams);
-                TaskUtil.console("更新[erc1155] token holder的余额{}", JSONUtil.toJsonStr(updateParams));
-                XxlJobHelper.handleSuccess("更新[erc1155] token holder的余额成功");
+        });
+        List<Token1155Holder> tokenHolderKeyList = new ArrayList<>();
+        contract2tokenId2addressSet.forEach((contract, tokenId2addressSet) -> tokenId2addressSet.forEach((tokenId, addressSet) -> {
+            for (String address : addressSet) {
+                Token1155Holder holder = new Token1155Holder();
+                holder.setTokenAddress(contract);
+                holder.setTokenId(tokenId);
+                holder.setAddress(address);
+                tokenHolderKeyList.add(holder);
             }
-            String newPosition = CollUtil.getLast(list).getId().toString();
-            pointLog.setPosition(newPosition);
-            pointLogMapper.updateByPrimaryKeySelective(pointLog);
-            XxlJobHelper.log("更新[erc1155] token holder的余额成功，断点为[{}]->[{}]", oldPosition, newPosition);
-        } catch (Exception e) {
-            log.error("更新1155token持有者余额异常", e);
+        }));
+        if (tokenHolderKeyList.isEmpty()) {
+            return Collections.emptyList();
         }
+        List<Token1155Holder> tokenHolderList = ercServiceImpl.batchBalanceOfOwnerAndId(tokenHolderKeyList);
+        List<Token1155Holder> updateParams = tokenHolderList.stream().filter(item -> item.getBalance() != null).collect(Collectors.toList());
+        TaskUtil.console("更新[erc1155] token holder的余额{}", JSONUtil.toJsonStr(updateParams));
+        return updateParams;
+    }
+
+    /**
+     * 库存全量更新第retryNum次重试前需等待的时间，元数据请求失败的库存不再每次任务都重新请求
+     *
+     * @param retryNum: 已重试次数
+     * @return: long
+     * @date: 2022/9/21
+     */
+    private static long retryBackoffMillis(int retryNum) {
+        return INVENTORY_RETRY_BACKOFF_MILLIS << Math.min(retryNum - 1, 20);
     }
 
     /**
@@ -489,7 +591,7 @@ public class ErcTokenUpdateTask {
      */
     private void updateToken721Inventory() {
         // 只有程序正常运行才执行任务
-        if (!AppStatusUtil.isRunning()) {
+        if (!AppStatusUtil.isRunning() || tokenRetryNum <= 0) {
             return;
         }
         long id = customToken721InventoryMapper.findMaxId() + 1;
@@ -504,10 +606,17 @@ public class ErcTokenUpdateTask {
             try {
                 TokenInventoryExample condition = new TokenInventoryExample();
                 condition.setOrderByClause(" id desc limit " + batchSize);
-                condition.createCriteria().andRetryNumLessThan(tokenRetryNum).andImageIsNull().andIdLessThan(id);
+                long now = System.currentTimeMillis();
+                for (int retryNum = 0; retryNum < tokenRetryNum; retryNum++) {
+                    TokenInventoryExample.Criteria criteria = condition.or().andRetryNumEqualTo(retryNum).andImageIsNull().andIdLessThan(id);
+                    if (retryNum > 0) {
+                        criteria.andUpdateTimeLessThan(new Date(now - retryBackoffMillis(retryNum)));
+                    }
+                }
                 batch = token721InventoryMapper.selectByExampleWithBLOBs(condition);
                 List<TokenInventoryWithBLOBs> updateParams = new ArrayList<>();
                 if (CollUtil.isNotEmpty(batch)) {
+                    Map<String, TokenMetadataFetcher.Result<UpdateTokenInventory>> metadata = tokenMetadataFetcher.fetch(batch.stream().map(TokenInventoryWithBLOBs::getTokenUrl).collect(Collectors.toList()), UpdateTokenInventory.class, METADATA_BATCH_TIMEOUT_MILLIS);
                     batch.forEach(inventory -> {
                         TokenInventoryWithBLOBs updateTokenInventory = new TokenInventoryWithBLOBs();
                         updateTokenInventory.setTokenId(inventory.getTokenId());
@@ -515,13 +624,13 @@ public class ErcTokenUpdateTask {
                         updateTokenInventory.setTokenUrl(inventory.getTokenUrl());
                         try {
                             if (StrUtil.isNotBlank(inventory.getTokenUrl())) {
-                                Request request = new Request.Builder().url(inventory.getTokenUrl()).build();
-                                Response response = CustomHttpClient.getOkHttpClient().newCall(request).execute();
+                                TokenMetadataFetcher.Result<UpdateTokenInventory> response = metadata.get(inventory.getTokenUrl());
+                                if (response == null) {
+                                    // 请求超时或域名退避中，留待下次处理，不计重试次数
+                                    return;
+                                }
                                 if (response.code() == 200) {
-                                    String resp = response.body().string();
-                                    UpdateTokenInventory newTi = JSONUtil.toBean(resp, UpdateTokenInventory.class);
-                                    newTi.setTokenId(inventory.getTokenId());
-                                    newTi.setTokenAddress(inventory.getTokenAddress());
+                                    UpdateTokenInventory newTi = response.getValue();
                                     boolean changed = false;
                                     // 只要有一个属性变动就添加到更新列表中
                                     if (ObjectUtil.isNull(inventory.getImage()) && ObjectUtil.isNotNull(newTi.getImageUrl())) {
@@ -604,7 +713,7 @@ public class ErcTokenUpdateTask {
      */
     private void updateToken1155Inventory() {
         // 只有程序正常运行才执行任务
-        if (!AppStatusUtil.isRunning()) {
+        if (!AppStatusUtil.isRunning() || tokenRetryNum <= 0) {
             return;
         }
         // 分页更新token库存相关信息
@@ -621,23 +730,30 @@ public class ErcTokenUpdateTask {
             try {
                 Token1155InventoryExample condition = new Token1155InventoryExample();
                 condition.setOrderByClause(" id desc limit " + batchSize);
-                condition.createCriteria().andRetryNumLessThan(tokenRetryNum).andImageIsNull().andIdLessThan(id);
+                long now = System.currentTimeMillis();
+                for (int retryNum = 0; retryNum < tokenRetryNum; retryNum++) {
+                    Token1155InventoryExample.Criteria criteria = condition.or().andRetryNumEqualTo(retryNum).andImageIsNull().andIdLessThan(id);
+                    if (retryNum > 0) {
+                        criteria.andUpdateTimeLessThan(new Date(now - retryBackoffMillis(retryNum)));
+                    }
+                }
                 batch = token1155InventoryMapper.selectByExampleWithBLOBs(condition);
                 // 过滤销毁的合约
                 List<Token1155InventoryWithBLOBs> res = token1155InventorySubtractToList(batch, getDestroyContracts());
                 List<Token1155InventoryWithBLOBs> updateParams = new ArrayList<>();
                 if (CollUtil.isNotEmpty(res)) {
                     batchNum = res.size();
+                    Map<String, TokenMetadataFetcher.Result<Token1155InventoryWithBLOBs>> metadata = tokenMetadataFetcher.fetch(res.stream().map(Token1155InventoryWithBLOBs::getTokenUrl).collect(Collectors.toList()), Token1155InventoryWithBLOBs.class, METADATA_BATCH_TIMEOUT_MILLIS);
                     res.forEach(inventory -> {
                         try {
                             if (StrUtil.isNotBlank(inventory.getTokenUrl())) {
-                                Request request = new Request.Builder().url(inventory.getTokenUrl()).build();
-                                Response response = CustomHttpClient.getOkHttpClient().newCall(request).execute();
+                                TokenMetadataFetcher.Result<Token1155InventoryWithBLOBs> response = metadata.get(inventory.getTokenUrl());
+                                if (response == null) {
+                                    // 请求超时或域名退避中，留待下次处理，不计重试次数
+                                    return;
+                                }
                                 if (response.code() == 200) {
-                                    String resp = response.body().string();
-                                    Token1155InventoryWithBLOBs newTi = JSONUtil.toBean(resp, Token1155InventoryWithBLOBs.class);
-                                    newTi.setTokenId(inventory.getTokenId());
-                                    newTi.setTokenAddress(inventory.getTokenAddress());
+                                    Token1155InventoryWithBLOBs newTi = response.getValue();
                                     boolean changed = false;
                                     // 只要有一个属性变动就添加到更新列表中
                                     if (ObjectUtil.isNull(inventory.getImage()) || !newTi.getImage().equals(inventory.getImage())) {
@@ -740,6 +856,7 @@ public class ErcTokenUpdateTask {
             List<TokenInventoryWithBLOBs> batch = token721InventoryMapper.selectByExampleWithBLOBs(condition);
             if (CollUtil.isNotEmpty(batch)) {
                 List<TokenInventoryWithBLOBs> updateParams = new ArrayList<>();
+                Map<String, TokenMetadataFetcher.Result<UpdateTokenInventory>> metadata = tokenMetadataFetcher.fetch(batch.stream().map(TokenInventoryWithBLOBs::getTokenUrl).collect(Collectors.toList()), UpdateTokenInventory.class, METADATA_BATCH_TIMEOUT_MILLIS);
                 batch.forEach(inventory -> {
                     TokenInventoryWithBLOBs updateTokenInventory = new TokenInventoryWithBLOBs();
                     updateTokenInventory.setTokenId(inventory.getTokenId());
@@ -747,13 +864,13 @@ public class ErcTokenUpdateTask {
                     updateTokenInventory.setTokenUrl(inventory.getTokenUrl());
                     try {
                         if (StrUtil.isNotBlank(inventory.getTokenUrl())) {
-                            Request request = new Request.Builder().url(inventory.getTokenUrl()).build();
-                            Response response = CustomHttpClient.getOkHttpClient().newCall(request).execute();
+                            TokenMetadataFetcher.Result<UpdateTokenInventory> response = metadata.get(inventory.getTokenUrl());
+                            if (response == null) {
+                                // 请求超时或域名退避中，留待下次处理，不计重试次数
+                                return;
+                            }
                             if (response.code() == 200) {
-                                String resp = response.body().string();
-                                UpdateTokenInventory newTi = JSONUtil.toBean(resp, UpdateTokenInventory.class);
-                                newTi.setTokenId(inventory.getTokenId());
-                                newTi.setTokenAddress(inventory.getTokenAddress());
+                                UpdateTokenInventory newTi = response.getValue();
                                 boolean changed = false;
                                 // 只要有一个属性变动就添加到更新列表中
                                 if (ObjectUtil.isNull(inventory.getImage()) && ObjectUtil.isNotNull(newTi.getImageUrl())) {
@@ -873,16 +990,17 @@ public class ErcTokenUpdateTask {
                 List<Token1155InventoryWithBLOBs> updateParams = new ArrayList<>();
                 if (CollUtil.isNotEmpty(res)) {
                     batchNum = res.size();
+                    Map<String, TokenMetadataFetcher.Result<Token1155InventoryWithBLOBs>> metadata = tokenMetadataFetcher.fetch(res.stream().map(Token1155InventoryWithBLOBs::getTokenUrl).collect(Collectors.toList()), Token1155InventoryWithBLOBs.class, METADATA_BATCH_TIMEOUT_MILLIS);
                     res.forEach(inventory -> {
                         try {
                             if (StrUtil.isNotBlank(inventory.getTokenUrl())) {
-                                Request request = new Request.Builder().url(inventory.getTokenUrl()).build();
-                                Response response = CustomHttpClient.getOkHttpClient().newCall(request).execute();
+                                TokenMetadataFetcher.Result<Token1155InventoryWithBLOBs> response = metadata.get(inventory.getTokenUrl());
+                                if (response == null) {
+                                    // 请求超时或域名退避中，留待下次处理，不计重试次数
+                                    return;
+                                }
                                 if (response.code() == 200) {
-                                    String resp = response.body().string();
-                                    Token1155InventoryWithBLOBs newTi = JSONUtil.toBean(resp, Token1155InventoryWithBLOBs.class);
-                                    newTi.setTokenId(inventory.getTokenId());
-                                    newTi.setTokenAddress(inventory.getTokenAddress());
+                                    Token1155InventoryWithBLOBs newTi = response.getValue();
                                     boolean changed = false;
                                     // 只要有一个属性变动就添加到更新列表中
                                     if (ObjectUtil.isNull(inventory.getImage()) || !newTi.getImage().equals(inventory.getImage())) {
@@ -993,7 +1111,7 @@ public class ErcTokenUpdateTask {
                     }
                 }
                 if (CollUtil.isNotEmpty(updateList)) {
-                    customTokenHolderMapper.batchUpdate(updateList);
+                    tokenHolderBalanceWriter.batchUpdate(updateList);
                     Set<String> destroyContractSet = updateList.stream().map(TokenHolderKey::getTokenAddress).collect(Collectors.toSet());
                     for (String destroyContract : destroyContractSet) {
                         Token token = new Token();
@@ -1069,7 +1187,7 @@ public class ErcTokenUpdateTask {
                         }
                     }
                     if (CollUtil.isNotEmpty(updateParams)) {
-                        customTokenHolderMapper.batchUpdate(updateParams);
+                        tokenHolderBalanceWriter.batchUpdate(updateParams);
                         log.info("销毁的erc721[{}]更新余额成功，结果为{}", tokenAddress, res.toString());
                     }
                 }
@@ -1200,15 +1318,14 @@ public class ErcTokenUpdateTask {
 
     private void updateTokenHolderCount(ErcTypeEnum type){
         try {
-            List<Token> tokenList;
             if (type == ErcTypeEnum.ERC1155){
-                tokenList = customTokenMapper.count1155TokenHolder();
+                List<Token> tokenList = customTokenMapper.count1155TokenHolder();
+                if (tokenList.size() > 0){
+                    customTokenMapper.batchUpdateTokenHolder(tokenList);
+                }
             } else {
-                tokenList = customTokenMapper.countTokenHolder();
-            }
-
-            if (tokenList.size() > 0){
-                customTokenMapper.batchUpdateTokenHolder(tokenList);
+                // erc20、erc721的持有者数量及余额之和在更新余额时增量维护，这里全量核对
+                tokenHolderBalanceWriter.updateSummary(customTokenHolderMapper.summaryTokenHolder());
             }
         } catch (Exception e){
             log.error("统计token的持有人数量任务异常，type = {}", type, e);
@@ -1,30 +1,31 @@
 package com.platon.browser.task;
 
-import cn.hutool.core.collection.CollUtil;
-import cn.hutool.core.convert.Convert;
 import com.platon.browser.dao.entity.NOptBak;
 import com.platon.browser.dao.entity.NOptBakExample;
-import com.platon.browser.dao.entity.PointLog;
 import com.platon.browser.dao.mapper.NOptBakMapper;
-import com.platon.browser.dao.mapper.PointLogMapper;
+import com.platon.browser.enums.BakTableEnum;
 import com.platon.browser.service.elasticsearch.EsNodeOptService;
+import com.platon.browser.task.stream.BakStream;
+import com.platon.browser.task.stream.BakStreamProcessor;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Set;
 
+/**
+ * 节点操作备份表迁移到ES
+ * 按id键集分页读取，读取下一页与ES写入当前页并行，
+ * ES确认写入后才推进断点，docId使用备份表id，中断后重放是幂等的
+ */
 @Slf4j
 @Component
 public class NodeOptTask {
 
-    @Resource
-    private PointLogMapper pointLogMapper;
+    private static final int POINT_LOG_ID = 1;
 
     @Resource
     private NOptBakMapper nOptBakMapper;
@@ -32,36 +33,33 @@ public class NodeOptTask {
     @Resource
     private EsNodeOptService esNodeOptService;
 
+    @Resource
+    private BakStreamProcessor bakStreamProcessor;
+
     /**
      * 节点操作备份表迁移到ES任务
-     * 每10分钟执行一次
+     * 每1分钟执行一次，单次执行直到积压处理完或达到最长执行时间
      *
      * @param :
      * @return: void
      * @date: 2021/12/1
      */
     @XxlJob("nodeOptMoveToESJobHandler")
-    @Transactional(rollbackFor = {Exception.class, Error.class})
     public void nodeOptMoveToES() throws Exception {
         try {
-            int batchSize = Convert.toInt(XxlJobHelper.getJobParam(), 10);
-            PointLog pointLog = pointLogMapper.selectByPrimaryKey(1);
-            long oldPosition = Convert.toLong(pointLog.getPosition());
-            XxlJobHelper.log("当前页数为[{}]，断点为[{}]", batchSize, oldPosition);
-            NOptBakExample nOptBakExample = new NOptBakExample();
-            nOptBakExample.setOrderByClause("id asc limit " + batchSize);
-            nOptBakExample.createCriteria().andIdGreaterThan(oldPosition);
-            List<NOptBak> nOptBakList = nOptBakMapper.selectByExample(nOptBakExample);
-            if (CollUtil.isNotEmpty(nOptBakList)) {
-                Set<NOptBak> nodeOpts = new HashSet<>(nOptBakList);
-                esNodeOptService.save(nodeOpts);
-                NOptBak lastNOptBak = CollUtil.getLast(nOptBakList);
-                pointLog.setPosition(lastNOptBak.getId().toString());
-                pointLogMapper.updateByPrimaryKeySelective(pointLog);
-                XxlJobHelper.log("节点操作备份表迁移到ES成功，断点[{}]->[{}]", oldPosition, pointLog.getPosition());
-            } else {
-                XxlJobHelper.log("当前断点[{}]未找到节点备份信息", oldPosition);
-            }
+            bakStreamProcessor.process(BakStream.<NOptBak, Integer>builder()
+                                                .name("n_opt_bak->es")
+                                                .pointLogId(POINT_LOG_ID)
+                                                .table(BakTableEnum.N_OPT_BAK)
+                                                .source(this::fetch)
+                                                .id(NOptBak::getId)
+                                                .transform(page -> {
+                                                    // ES写入不参与数据库事务，确认写入后只需提交断点，不设置写入
+                                                    esNodeOptService.save(new LinkedHashSet<>(page));
+                                                    return page.size();
+                                                })
+                                                .prefetch(true)
+                                                .build());
             XxlJobHelper.handleSuccess("节点操作备份表迁移到ES成功");
         } catch (Exception e) {
             log.error("节点操作备份表迁移到ES异常", e);
@@ -69,4 +67,19 @@ public class NodeOptTask {
         }
     }
 
+    /**
+     * 按id键集分页查询
+     *
+     * @param position: 断点
+     * @param rows:     行数
+     * @return: java.util.List<com.platon.browser.dao.entity.NOptBak>
+     * @date: 2022/3/17
+     */
+    private List<NOptBak> fetch(long position, int rows) {
+        NOptBakExample nOptBakExample = new NOptBakExample();
+        nOptBakExample.setOrderByClause("id asc limit " + rows);
+        nOptBakExample.createCriteria().andIdGreaterThan(position);
+        return nOptBakMapper.selectByExample(nOptBakExample);
+    }
+
 }
@@ -3,15 +3,13 @@ package com.platon.browser.task;
 import com.alibaba.fastjson.JSONObject;
 import com.platon.browser.bean.NodeVersion;
 import com.platon.browser.bean.keybase.KeyBaseUserInfo;
+import com.platon.browser.client.KeyBaseClient;
 import com.platon.browser.client.PlatOnClient;
 import com.platon.browser.client.SpecialApi;
-import com.platon.browser.config.BlockChainConfig;
 import com.platon.browser.dao.custommapper.StakeBusinessMapper;
 import com.platon.browser.dao.entity.Node;
 import com.platon.browser.dao.mapper.NodeMapper;
-import com.platon.browser.exception.HttpRequestException;
 import com.platon.browser.utils.AppStatusUtil;
-import com.platon.browser.utils.HttpUtil;
 import com.platon.browser.utils.KeyBaseAnalysis;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
@@ -22,9 +20,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 节点表补充
+ * keybase信息由KeyBaseClient并发查询并跨任务缓存
  *
  * @date: 2021/11/30
  */
@@ -32,9 +32,6 @@ import java.util.*;
 @Slf4j
 public class NodeUpdateTask {
 
-    @Resource
-    private BlockChainConfig chainConfig;
-
     @Resource
     private NodeMapper nodeMapper;
 
@@ -47,6 +44,9 @@ public class NodeUpdateTask {
     @Resource
     private SpecialApi specialApi;
 
+    @Resource
+    private KeyBaseClient keyBaseClient;
+
     /**
      * 节点表补充
      * 每5秒执行一次
@@ -63,48 +63,36 @@ public class NodeUpdateTask {
         try {
             //查询待补充的质押信息
             List<Node> nodeList = nodeMapper.selectByExample(null);
-            Map<String, Optional<KeyBaseUserInfo>> cache = new HashMap<>();
-            List<Node> updateNodeList = new ArrayList<>();
+            Set<Node> updateNodeList = new LinkedHashSet<>();
             // 查询节点版本号列表
             List<NodeVersion> versionList = specialApi.getNodeVersionList(platOnClient.getWeb3jWrapper().getWeb3j());
             Map<String, NodeVersion> versionMap = new HashMap<>();
             versionList.forEach(v -> versionMap.put(v.getNodeId(), v));
-            // 请求URL前缀
-            String prefix = chainConfig.getKeyBase().concat(chainConfig.getKeyBaseApi());
+            // 并发查询keybase信息
+            Set<String> externalIds = nodeList.stream()
+                                              .map(Node::getExternalId)
+                                              .filter(externalId -> externalId.trim().length() == 16)
+                                              .collect(Collectors.toSet());
+            Map<String, KeyBaseUserInfo> keyBaseUserMap = keyBaseClient.getUserInfos(externalIds);
             nodeList.forEach(node -> {
                 // 更新keybase相关信息
-                if (node.getExternalId().trim().length() == 16) {
-                    Optional<KeyBaseUserInfo> optional = cache.computeIfAbsent(node.getExternalId(), key -> {
-                        String url = prefix.concat(key);
-                        try {
-                            KeyBaseUserInfo keyBaseUser = HttpUtil.get(url, KeyBaseUserInfo.class);
-                            return Optional.of(keyBaseUser);
-                        } catch (HttpRequestException e) {
-                            log.error("get keybase error:key={}", key, e);
-                            return Optional.ofNullable(null);
-                        }
-                    });
-                    optional.ifPresent(keyBaseUser -> {
-                        boolean hasChange = false;
-                        try {
-                            String userName = KeyBaseAnalysis.getKeyBaseUseName(keyBaseUser);
-                            String icon = KeyBaseAnalysis.getKeyBaseIcon(keyBaseUser);
+                KeyBaseUserInfo keyBaseUser = keyBaseUserMap.get(node.getExternalId());
+                if (keyBaseUser != null) {
+                    try {
+                        String userName = KeyBaseAnalysis.getKeyBaseUseName(keyBaseUser);
+                        String icon = KeyBaseAnalysis.getKeyBaseIcon(keyBaseUser);
 
-                            if (StringUtils.isNotBlank(icon) && !icon.equals(node.getNodeIcon())) {
-                                node.setNodeIcon(icon);
-                                hasChange = true;
-                            }
-                            if (StringUtils.isNotBlank(userName) && !userName.equals(node.getExternalName())) {
-                                node.setExternalName(userName);
-                                hasChange = true;
-                            }
-                        } catch (Exception e) {
-                            log.error("get keybase error:keyBaseUser={}", JSONObject.toJSONString(keyBaseUser), e);
+                        if (StringUtils.isNotBlank(icon) && !icon.equals(node.getNodeIcon())) {
+                            node.setNodeIcon(icon);
+                            updateNodeList.add(node);
                         }
-                        if (hasChange) {
+                        if (StringUtils.isNotBlank(userName) && !userName.equals(node.getExternalName())) {
+                            node.setExternalName(userName);
                             updateNodeList.add(node);
                         }
-                    });
+                    } catch (Exception e) {
+                        log.error("get keybase error:keyBaseUser={}", JSONObject.toJSONString(keyBaseUser), e);
+                    }
                 }
                 // 更新节点版本号相关信息
                 NodeVersion version = versionMap.get(node.getNodeId());
@@ -115,7 +103,7 @@ public class NodeUpdateTask {
                 }
             });
             if (!updateNodeList.isEmpty()) {
-                stakeBusinessMapper.updateNodeForTask(updateNodeList);
+                stakeBusinessMapper.updateNodeForTask(new ArrayList<>(updateNodeList));
             }
             XxlJobHelper.handleSuccess("节点表补充成功");
         } catch (Exception e) {
@@ -1,6 +1,8 @@
 package com.platon.browser.task;
 
 import com.alibaba.fastjson.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.platon.browser.bean.CustomProposal;
 import com.platon.browser.bean.ProposalMarkDownDto;
 import com.platon.browser.dao.custommapper.CustomProposalMapper;
@@ -14,28 +16,50 @@ import com.platon.browser.utils.MarkDownParserUtil;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * @Auther: dongqile
  * @Date: 2019/8/17 20:09
  * @Description: 提案信息更新任务
+ * 各提案的markdown并发获取并设置超时，已解析的markdown按url缓存
  */
 @Slf4j
 @Component
 public class ProposalDetailTask {
 
+    /**
+     * 提案markdown获取的超时时间(秒)，从提交获取开始计算，所有提案共用
+     */
+    private static final long FETCH_TIMEOUT_SECONDS = 30;
+
+    /**
+     * 提案上链后其markdown内容不再变化，已解析的内容按url缓存<url-markdown信息>；
+     * 只有未完成同步的提案会重复获取，限制条数并定时过期
+     */
+    private final Cache<String, ProposalMarkDownDto> markdownCache = Caffeine.newBuilder().maximumSize(1000).expireAfterWrite(1, TimeUnit.DAYS).build();
+
     @Resource
     private CustomProposalMapper customProposalMapper;
 
     @Resource
     private ProposalMapper proposalMapper;
 
+    /**
+     * 提案markdown获取线程池，线程数由task.proposalMarkdownThreads配置
+     */
+    @Resource
+    private ThreadPoolTaskExecutor proposalMarkdownExecutor;
+
     /**
      * 1.查询数据库未同步完成的提案信息
      * 2.根据proposalId查询keybase上信息
@@ -58,9 +82,16 @@ public class ProposalDetailTask {
             //如果已经补充则无需补充
             if (proposals.isEmpty()) return;
 
+            // 并发获取各提案的markdown信息
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(FETCH_TIMEOUT_SECONDS);
+            Map<Proposal, Future<ProposalMarkDownDto>> futures = new LinkedHashMap<>();
             for (Proposal proposal : proposals) {
+                futures.put(proposal, proposalMarkdownExecutor.submit(() -> getMarkdownInfo(proposal.getUrl())));
+            }
+            for (Map.Entry<Proposal, Future<ProposalMarkDownDto>> entry : futures.entrySet()) {
+                Proposal proposal = entry.getKey();
                 try {
-                    ProposalMarkDownDto resp = getMarkdownInfo(proposal.getUrl());
+                    ProposalMarkDownDto resp = entry.getValue().get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
                     proposal.setTopic(resp.getTopic());
                     proposal.setDescription(resp.getDescription());
                     if (CustomProposal.TypeEnum.CANCEL.getCode() == proposal.getType()) {
@@ -68,6 +99,13 @@ public class ProposalDetailTask {
                         Proposal cp = proposalMapper.selectByPrimaryKey(proposal.getCanceledPipId());
                         proposal.setCanceledTopic(cp.getTopic());
                     }
+                } catch (TimeoutException e) {
+                    entry.getValue().cancel(true);
+                    log.error("更新提案(proposal={})出错: 获取[{}]超时", proposal.getHash(), proposal.getUrl());
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new BusinessException("更新提案详情被中断");
                 } catch (Exception e) {
                     log.error("更新提案(proposal={})出错: {}", proposal.getHash(), e.getMessage());
                     continue;
@@ -93,11 +131,19 @@ public class ProposalDetailTask {
      * @throws BusinessException
      */
     private ProposalMarkDownDto getMarkdownInfo(String url) throws HttpRequestException {
+        ProposalMarkDownDto cached = markdownCache.getIfPresent(url);
+        if (cached != null) {
+            return cached;
+        }
         try {
             String fileUrl = MarkDownParserUtil.acquireMD(url);
             if (fileUrl == null) throw new BusinessException("获取不到" + url);
             String proposalMarkString = MarkDownParserUtil.parserMD(fileUrl);
-            return JSON.parseObject(proposalMarkString, ProposalMarkDownDto.class);
+            ProposalMarkDownDto dto = JSON.parseObject(proposalMarkString, ProposalMarkDownDto.class);
+            if (dto != null) {
+                markdownCache.put(url, dto);
+            }
+            return dto;
         } catch (Exception e) {
             throw new HttpRequestException(e.getMessage());
         }
@@ -1,6 +1,8 @@
 package com.platon.browser.task;
 
 import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.platon.browser.bean.CustomProposal;
 import com.platon.browser.bean.ProposalParticipantStat;
 import com.platon.browser.dao.custommapper.CustomProposalMapper;
@@ -16,15 +18,19 @@ import com.platon.contracts.ppos.dto.resp.TallyResult;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
 
 /**
  * 提案信息更新任务
+ * 网络统计信息每次执行只查询一次，各提案的链上查询并发执行，所有查询共用一个截止时间，
+ * 投票结束后参与人数不再变化，缓存后不再查询；提案不再需要更新时移出缓存
  *
  * @date: 2021/11/30
  */
@@ -32,6 +38,16 @@ import java.util.List;
 @Component
 public class ProposalInfoTask {
 
+    /**
+     * 提案链上查询的超时时间(秒)，从提交查询开始计算，所有提案共用
+     */
+    private static final long QUERY_TIMEOUT_SECONDS = 10;
+
+    /**
+     * 投票已结束的提案的最终参与人数<提案hash-参与人数>
+     */
+    private final Cache<String, Long> finalVoterCount = Caffeine.newBuilder().maximumSize(1000).build();
+
     @Resource
     private ProposalMapper proposalMapper;
 
@@ -44,6 +60,12 @@ public class ProposalInfoTask {
     @Resource
     private NetworkStatMapper networkStatMapper;
 
+    /**
+     * 提案链上信息查询线程池，线程数由task.proposalQueryThreads配置
+     */
+    @Resource
+    private ThreadPoolTaskExecutor proposalQueryExecutor;
+
     /**
      * 提案信息更新任务
      * 每15秒执行一次
@@ -78,42 +100,46 @@ public class ProposalInfoTask {
         List<Proposal> proposals = proposalMapper.selectByExample(proposalExample);
         //如果已经补充则无需补充
         if (proposals.isEmpty()) return;
+        NetworkStat networkStat = networkStatMapper.selectByExample(null).get(0);
+        Set<String> canceledHashes = getPassedCanceledHashes(proposals);
+        // 不再需要更新的提案移出缓存
+        Set<String> hashes = proposals.stream().map(Proposal::getHash).collect(Collectors.toSet());
+        finalVoterCount.asMap().keySet().retainAll(hashes);
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(QUERY_TIMEOUT_SECONDS);
+        Map<Proposal, Future<ProposalInfo>> futures = new LinkedHashMap<>();
         for (Proposal proposal : proposals) {
+            futures.put(proposal, proposalQueryExecutor.submit(() -> query(proposal, networkStat, canceledHashes.contains(proposal.getHash()))));
+        }
+        for (Map.Entry<Proposal, Future<ProposalInfo>> entry : futures.entrySet()) {
+            Proposal proposal = entry.getKey();
             try {
-                List<NetworkStat> networkStat = networkStatMapper.selectByExample(null);
-                //发送rpc请求查询提案结果
-                ProposalParticipantStat pps = proposalService.getProposalParticipantStat(proposal.getHash(), networkStat.get(0).getCurBlockHash());
+                ProposalInfo info = entry.getValue().get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
                 //设置参与人数
-                if (pps.getVoterCount() != null && !pps.getVoterCount().equals(proposal.getAccuVerifiers())) {
+                if (info.voterCount != null && !info.voterCount.equals(proposal.getAccuVerifiers())) {
                     TaskUtil.console("当前块高[{}],提案结束块高[{}],提案投票[{}]的验证人总数[{}]->[{}]更新",
-                                     networkStat.get(0).getCurNumber(),
+                                     networkStat.getCurNumber(),
                                      proposal.getEndVotingBlock(),
                                      proposal.getHash(),
                                      proposal.getAccuVerifiers(),
-                                     pps.getVoterCount());
+                                     info.voterCount);
                     // 有变更
-                    proposal.setAccuVerifiers(pps.getVoterCount());
-                }
-                /**
-                 * 当同步区块号小于结束区块且相应的取消提案未成功时候则跳过更新状态，防止追块时候提案提前结束造成数据错误
-                 */
-                ProposalExample pe = new ProposalExample();
-                proposalExample.createCriteria().andCanceledPipIdEqualTo(proposal.getHash());
-                proposalExample.createCriteria().andStatusEqualTo(CustomProposal.StatusEnum.PASS.getCode());
-                List<Proposal> ppsList = proposalMapper.selectByExample(pe);
-                if (networkStat.get(0).getCurNumber() < proposal.getEndVotingBlock() && ppsList.size() == 0) {
-                    continue;
+                    proposal.setAccuVerifiers(info.voterCount);
                 }
-                TallyResult tallyResult = proposalService.getTallyResult(proposal.getHash());
-                if (tallyResult != null) {
-                    //设置状态
-                    int status = tallyResult.getStatus();
-                    if (status != proposal.getStatus()) {
-                        TaskUtil.console("提案投票[{}]状态[{}]->[{}]更新", proposal.getHash(), proposal.getStatus(), status);
-                        // 有变更
-                        proposal.setStatus(status);
-                    }
+                //设置状态
+                if (info.status != null && !info.status.equals(proposal.getStatus())) {
+                    TaskUtil.console("提案投票[{}]状态[{}]->[{}]更新", proposal.getHash(), proposal.getStatus(), info.status);
+                    // 有变更
+                    proposal.setStatus(info.status);
                 }
+            } catch (TimeoutException e) {
+                entry.getValue().cancel(true);
+                XxlJobHelper.log(StrUtil.format("提案投票信息[{}]查询超时", proposal.getHash()));
+                log.warn("提案投票信息[{}]查询超时", proposal.getHash());
+            } catch (InterruptedException e) {
+                log.error("提案投票信息更新被中断", e);
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 XxlJobHelper.log(StrUtil.format("提案投票信息[{}]更新出错:{}", proposal.getHash(), e.getMessage()));
                 log.error("提案投票信息更新出错", e);
@@ -123,4 +149,62 @@ public class ProposalInfoTask {
         XxlJobHelper.handleSuccess("提案投票信息更新成功");
     }
 
+    /**
+     * 查询单个提案的参与人数及投票结果
+     *
+     * @param proposal:    提案
+     * @param networkStat: 网络统计信息
+     * @param canceled:    是否已被取消提案取消
+     * @return: com.platon.browser.task.ProposalInfoTask.ProposalInfo
+     * @date: 2022/3/22
+     */
+    private ProposalInfo query(Proposal proposal, NetworkStat networkStat, boolean canceled) throws Exception {
+        ProposalInfo info = new ProposalInfo();
+        boolean votingEnded = networkStat.getCurNumber() >= proposal.getEndVotingBlock();
+        Long voterCount = finalVoterCount.getIfPresent(proposal.getHash());
+        if (voterCount == null) {
+            //发送rpc请求查询提案结果
+            ProposalParticipantStat pps = proposalService.getProposalParticipantStat(proposal.getHash(), networkStat.getCurBlockHash());
+            voterCount = pps.getVoterCount();
+            if (votingEnded && voterCount != null) {
+                finalVoterCount.put(proposal.getHash(), voterCount);
+            }
+        }
+        info.voterCount = voterCount;
+        /**
+         * 当同步区块号小于结束区块且相应的取消提案未成功时候则跳过更新状态，防止追块时候提案提前结束造成数据错误
+         */
+        if (!votingEnded && !canceled) {
+            return info;
+        }
+        TallyResult tallyResult = proposalService.getTallyResult(proposal.getHash());
+        if (tallyResult != null) {
+            info.status = tallyResult.getStatus();
+        }
+        return info;
+    }
+
+    /**
+     * 查询已通过的取消提案所取消的提案hash
+     *
+     * @param proposals: 待更新的提案
+     * @return: java.util.Set<java.lang.String>
+     * @date: 2022/3/22
+     */
+    private Set<String> getPassedCanceledHashes(List<Proposal> proposals) {
+        ProposalExample example = new ProposalExample();
+        example.createCriteria()
+               .andCanceledPipIdIn(proposals.stream().map(Proposal::getHash).collect(Collectors.toList()))
+               .andStatusEqualTo(CustomProposal.StatusEnum.PASS.getCode());
+        return proposalMapper.selectByExample(example).stream().map(Proposal::getCanceledPipId).collect(Collectors.toSet());
+    }
+
+    private static class ProposalInfo {
+
+        private Long voterCount;
+
+        private Integer status;
+
+    }
+
 }
@@ -1,17 +1,19 @@
 package com.platon.browser.task;
 
+import cn.hutool.core.collection.CollUtil;
+import com.platon.browser.bean.CustomStaking;
+import com.platon.browser.config.TaskConfig;
 import com.platon.browser.dao.custommapper.CustomStakingHistoryMapper;
+import com.platon.browser.dao.custommapper.CustomStakingMapper;
 import com.platon.browser.dao.entity.Staking;
-import com.platon.browser.dao.entity.StakingExample;
 import com.platon.browser.dao.entity.StakingHistory;
-import com.platon.browser.dao.mapper.StakingMapper;
+import com.platon.browser.dao.entity.StakingKey;
 import com.platon.browser.utils.AppStatusUtil;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.HashSet;
@@ -22,17 +24,21 @@ import java.util.Set;
  * @Auther: dongqile
  * @Date: 2019/11/6
  * @Description: 质押表中的历史数据迁移至数据库任务
+ * 按主键键集分批处理，每批单独提交，单批失败不影响其它批次
  */
 @Component
 @Slf4j
 public class StakingMigrateTask {
 
     @Resource
-    private StakingMapper stakingMapper;
+    private CustomStakingMapper customStakingMapper;
 
     @Resource
     private CustomStakingHistoryMapper customStakingHistoryMapper;
 
+    @Resource
+    private TaskConfig taskConfig;
+
     /**
      * 质押表中的历史数据迁移至数据库任务
      * 每30秒执行一次
@@ -42,7 +48,6 @@ public class StakingMigrateTask {
      * @date: 2021/12/15
      */
     @XxlJob("stakingMigrateJobHandler")
-    @Transactional(rollbackFor = {Exception.class, Error.class})
     void stakingMigrate() {
         // 只有程序正常运行才执行任务
         if (AppStatusUtil.isRunning()) start();
@@ -50,17 +55,29 @@ public class StakingMigrateTask {
 
     protected void start() {
         try {
-            StakingExample stakingExample = new StakingExample();
-            stakingExample.createCriteria().andStatusEqualTo(3);
-            List<Staking> stakingList = stakingMapper.selectByExample(stakingExample);
-            Set<StakingHistory> stakingHistoryList = new HashSet<>();
-            if (!stakingList.isEmpty()) {
-                stakingList.forEach(staking -> {
+            int chunkSize = taskConfig.getHistoryMigrateChunkSize();
+            StakingKey cursor = null;
+            int failed = 0;
+            while (true) {
+                List<Staking> chunk = customStakingMapper.selectByStatusKeyset(CustomStaking.StatusEnum.EXITED.getCode(), cursor, chunkSize);
+                if (chunk.isEmpty()) break;
+                cursor = CollUtil.getLast(chunk);
+                Set<StakingHistory> stakingHistoryList = new HashSet<>();
+                chunk.forEach(staking -> {
                     StakingHistory stakingHistory = new StakingHistory();
                     BeanUtils.copyProperties(staking, stakingHistory);
                     stakingHistoryList.add(stakingHistory);
                 });
-                customStakingHistoryMapper.batchInsertOrUpdateSelective(stakingHistoryList, StakingHistory.Column.values());
+                try {
+                    customStakingHistoryMapper.batchInsertOrUpdateSelective(stakingHistoryList, StakingHistory.Column.values());
+                } catch (Exception e) {
+                    failed += chunk.size();
+                    log.error("质押表中的历史数据迁移至数据库本批次异常", e);
+                }
+                if (chunk.size() < chunkSize) break;
+            }
+            if (failed > 0) {
+                log.warn("质押表中的历史数据迁移至数据库失败[{}]条，下次任务重试", failed);
             }
             XxlJobHelper.handleSuccess("质押表中的历史数据迁移至数据库任务成功");
         } catch (Exception e) {
@@ -69,4 +86,4 @@ public class StakingMigrateTask {
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+package com.platon.browser.task;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import cn.hutool.core.util.StrUtil;
+import com.platon.browser.config.TaskConfig;
+import com.platon.browser.dao.entity.PointLog;
+import com.platon.browser.dao.entity.PointLogExample;
+import com.platon.browser.dao.entity.TokenHolder;
+import com.platon.browser.dao.mapper.PointLogMapper;
+import com.platon.browser.elasticsearch.dto.ErcTx;
+import com.platon.browser.service.erc.ErcServiceImpl;
+import com.platon.browser.utils.AddressUtil;
+import com.platon.browser.utils.TaskUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * token holder余额增量刷新
+ * 按(token, holder)的哈希把持有者分配到多个分片并行刷新，每个分片在point_log中记录自己的断点，
+ * 原有断点记录所有分片中最小的断点，供备份表分区删除使用
+ */
+@Slf4j
+@Component
+public class TokenHolderBalanceRefresher {
+
+    /**
+     * 最大分片数
+     */
+    private static final int MAX_SHARDS = 16;
+
+    /**
+     * MultiCall中单个balanceOf(owner)调用编码后的字节数：Call3结构(target, allowFailure, callData偏移)及36字节callData补齐后的长度，加上数组中的偏移量
+     */
+    private static final int BALANCE_OF_CALL_BYTES = 224;
+
+    /**
+     * MultiCall中单个balanceOf(owner)调用的预估gas
+     */
+    private static final int BALANCE_OF_CALL_GAS = 30000;
+
+    private static final String KEY_SEPARATOR = ":";
+
+    @Resource
+    private TaskConfig taskConfig;
+
+    @Resource
+    private PointLogMapper pointLogMapper;
+
+    @Resource
+    private TokenHolderBalanceWriter tokenHolderBalanceWriter;
+
+    @Resource
+    private ErcServiceImpl ercServiceImpl;
+
+    /**
+     * 分片刷新线程池，线程数由task.holderBalanceThreads配置
+     */
+    @Resource
+    private ThreadPoolTaskExecutor holderBalanceExecutor;
+
+    /**
+     * 增量刷新token holder余额
+     *
+     * @param type:           日志前缀，如erc20
+     * @param pointLogId:     原有断点id
+     * @param shardPointBase: 分片断点id的起始值，分片断点id为shardPointBase+分片序号
+     * @param windowSize:     单次读取的备份表记录数
+     * @param fetcher:        按(断点, 条数)查询备份表
+     * @return: void
+     * @date: 2022/3/21
+     */
+    public void refresh(String type, int pointLogId, int shardPointBase, int windowSize, BiFunction<Long, Integer, List<? extends ErcTx>> fetcher) throws Exception {
+        int shards = Math.max(1, Math.min(MAX_SHARDS, taskConfig.getHolderBalanceShards()));
+        PointLog pointLog = pointLogMapper.selectByPrimaryKey(pointLogId);
+        List<PointLog> shardPointLogs = loadShardPointLogs(pointLog, shardPointBase, shards);
+        long minPosition = shardPointLogs.stream().mapToLong(p -> Convert.toLong(p.getPosition())).min().orElse(0L);
+
+        // 所有分片共用一次读取，每个分片只处理自己断点之后的记录
+        List<? extends ErcTx> window = fetcher.apply(minPosition, windowSize);
+        if (CollUtil.isEmpty(window)) {
+            TaskUtil.console("[{}]该断点[{}]未找到交易", type, minPosition);
+            return;
+        }
+        long windowEnd = CollUtil.getLast(window).getId();
+        List<Future<Integer>> futures = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            PointLog shardPointLog = shardPointLogs.get(shard);
+            int index = shard;
+            futures.add(holderBalanceExecutor.submit(() -> refreshShard(type, index, shards, shardPointLog, window, windowEnd)));
+        }
+        int total = 0;
+        Exception error = null;
+        for (Future<Integer> future : futures) {
+            try {
+                total += future.get();
+            } catch (Exception e) {
+                log.error(StrUtil.format("[{}]更新token holder的余额分片异常", type), e);
+                error = e;
+            }
+        }
+
+        // 原有断点推进到所有分片中最小的断点
+        long newPosition = shardPointLogs.stream().mapToLong(p -> Convert.toLong(p.getPosition())).min().orElse(minPosition);
+        if (newPosition != Convert.toLong(pointLog.getPosition())) {
+            long oldPosition = Convert.toLong(pointLog.getPosition());
+            pointLog.setPosition(String.valueOf(newPosition));
+            pointLogMapper.updateByPrimaryKeySelective(pointLog);
+            TaskUtil.console("[{}]更新token holder的余额[{}]条，断点为[{}]->[{}]", type, total, oldPosition, newPosition);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 刷新单个分片
+     * 分片内的(token, holder)按在窗口中首次出现的顺序去重，余额查询的是最新状态，
+     * 同一持有者在窗口中多次出现只需查询一次；每处理完一块即推进分片断点，重启最多重做一块
+     *
+     * @return: int 更新的持有者数
+     * @date: 2022/3/21
+     */
+    private int refreshShard(String type, int shard, int shards, PointLog shardPointLog, List<? extends ErcTx> window, long windowEnd) throws Exception {
+        long position = Convert.toLong(shardPointLog.getPosition());
+        if (position >= windowEnd) {
+            return 0;
+        }
+        // <token+holder, 首次出现的备份表id>
+        LinkedHashMap<String, Long> keys = new LinkedHashMap<>();
+        for (ErcTx tx : window) {
+            if (tx.getId() <= position) {
+                continue;
+            }
+            addKey(keys, tx.getContract(), tx.getFrom(), tx.getId(), shard, shards);
+            addKey(keys, tx.getContract(), tx.getTo(), tx.getId(), shard, shards);
+        }
+        int chunkSize = getChunkSize();
+        List<TokenHolder> keyList = new ArrayList<>(keys.size());
+        List<Long> firstIds = new ArrayList<>(keys.size());
+        keys.forEach((key, firstId) -> {
+            TokenHolder holder = new TokenHolder();
+            holder.setTokenAddress(StrUtil.subBefore(key, KEY_SEPARATOR, false));
+            holder.setAddress(StrUtil.subAfter(key, KEY_SEPARATOR, false));
+            keyList.add(holder);
+            firstIds.add(firstId);
+        });
+        int updated = 0;
+        for (int from = 0; from < keyList.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, keyList.size());
+            List<TokenHolder> balances = ercServiceImpl.batchBalanceOfOwner(keyList.subList(from, to));
+            List<TokenHolder> updateParams = balances.stream().filter(item -> item.getBalance() != null).collect(Collectors.toList());
+            if (CollUtil.isNotEmpty(updateParams)) {
+                tokenHolderBalanceWriter.batchUpdate(updateParams);
+                updated += updateParams.size();
+            }
+            // 下一个未处理的持有者首次出现之前的记录都已处理完
+            long checkpoint = to < keyList.size() ? firstIds.get(to) - 1 : windowEnd;
+            updateShardPosition(shardPointLog, checkpoint);
+        }
+        if (keyList.isEmpty()) {
+            updateShardPosition(shardPointLog, windowEnd);
+        }
+        log.debug("[{}]分片[{}/{}]更新token holder的余额[{}]条，断点为[{}]", type, shard, shards, updated, shardPointLog.getPosition());
+        return updated;
+    }
+
+    private void addKey(Map<String, Long> keys, String contract, String address, long id, int shard, int shards) {
+        // 判断是否是0地址
+        if (AddressUtil.isAddrZero(address)) {
+            return;
+        }
+        String key = contract + KEY_SEPARATOR + address;
+        if (Math.floorMod(key.hashCode(), shards) != shard) {
+            return;
+        }
+        keys.putIfAbsent(key, id);
+    }
+
+    private void updateShardPosition(PointLog shardPointLog, long position) {
+        if (position <= Convert.toLong(shardPointLog.getPosition())) {
+            return;
+        }
+        shardPointLog.setPosition(String.valueOf(position));
+        pointLogMapper.updateByPrimaryKeySelective(shardPointLog);
+    }
+
+    /**
+     * 按调用数据大小和gas预算计算每次MultiCall的调用数
+     *
+     * @param :
+     * @return: int
+     * @date: 2022/3/21
+     */
+    private int getChunkSize() {
+        int byBytes = taskConfig.getMultiCallMaxBytes() / BALANCE_OF_CALL_BYTES;
+        long byGas = taskConfig.getMultiCallGasBudget() / BALANCE_OF_CALL_GAS;
+        return (int) Math.max(1, Math.min(byBytes, byGas));
+    }
+
+    /**
+     * 加载分片断点，不存在时以原有断点创建；分片数变化后分片与持有者的对应关系改变，全部分片从原有断点重新开始
+     *
+     * @param pointLog:       原有断点
+     * @param shardPointBase: 分片断点id的起始值
+     * @param shards:         分片数
+     * @return: java.util.List<com.platon.browser.dao.entity.PointLog>
+     * @date: 2022/3/21
+     */
+    private List<PointLog> loadShardPointLogs(PointLog pointLog, int shardPointBase, int shards) {
+        PointLogExample example = new PointLogExample();
+        example.createCriteria().andIdBetween(shardPointBase, shardPointBase + MAX_SHARDS - 1);
+        Map<Integer, PointLog> existing = pointLogMapper.selectByExample(example).stream().collect(Collectors.toMap(PointLog::getId, p -> p));
+        List<PointLog> shardPointLogs = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            String name = getShardName(pointLog, shard, shards);
+            PointLog shardPointLog = existing.get(shardPointBase + shard);
+            if (shardPointLog == null) {
+                shardPointLog = new PointLog();
+                shardPointLog.setId(shardPointBase + shard);
+                shardPointLog.setType(pointLog.getType());
+                shardPointLog.setName(name);
+                shardPointLog.setDesc(pointLog.getDesc() + "(分片)");
+                shardPointLog.setPosition(pointLog.getPosition());
+                pointLogMapper.insertSelective(shardPointLog);
+            } else if (!name.equals(shardPointLog.getName())) {
+                TaskUtil.console("分片断点[{}]的分片数已变化，从原有断点[{}]重新开始", shardPointLog.getName(), pointLog.getPosition());
+                shardPointLog.setName(name);
+                shardPointLog.setPosition(pointLog.getPosition());
+                pointLogMapper.updateByPrimaryKeySelective(shardPointLog);
+            }
+            shardPointLogs.add(shardPointLog);
+        }
+        return shardPointLogs;
+    }
+
+    private String getShardName(PointLog pointLog, int shard, int shards) {
+        return pointLog.getName() + "#" + shard + "/" + shards;
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.platon.browser.task;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import com.platon.browser.bean.CustomTokenHolder;
+import com.platon.browser.dao.custommapper.CustomTokenHolderMapper;
+import com.platon.browser.dao.custommapper.CustomTokenMapper;
+import com.platon.browser.dao.entity.TokenHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * erc20、erc721 token holder余额写入
+ * token_holder中非0余额只由scan-job写入，写入时按新旧余额的差值增量维护token表的持有者数量及余额之和，
+ * 持有者列表查询不再按请求聚合；updateTokenHolderCountJobHandler定期全量核对。
+ * 余额为uint256，余额之和可能超过数据库decimal的最大位数，所以以字符串保存，在Java中按BigInteger累加。
+ * 多个分片并行写入时，token_holder按(token地址, 持有者地址)、token按token地址的顺序更新，各事务加行锁的顺序一致，避免死锁
+ */
+@Component
+public class TokenHolderBalanceWriter {
+
+    private static final String KEY_SEPARATOR = ":";
+
+    /**
+     * 全量核对时余额排序键(78位)按高低两段分别求和，每段的和不会超过decimal(65,0)
+     */
+    private static final BigInteger SORT_PART_BASE = BigInteger.TEN.pow(39);
+
+    private static final Comparator<TokenHolder> LOCK_ORDER = Comparator.comparing(TokenHolder::getTokenAddress).thenComparing(TokenHolder::getAddress);
+
+    @Resource
+    private CustomTokenHolderMapper customTokenHolderMapper;
+
+    @Resource
+    private CustomTokenMapper customTokenMapper;
+
+    /**
+     * 批量更新token持有者余额，同时增量更新token的持有者数量及余额之和
+     *
+     * @param list: 新余额
+     * @return: void
+     * @date: 2022/3/24
+     */
+    @Transactional(rollbackFor = {Exception.class, Error.class})
+    public void batchUpdate(List<TokenHolder> list) {
+        if (CollUtil.isEmpty(list)) {
+            return;
+        }
+        List<TokenHolder> sorted = new ArrayList<>(list);
+        sorted.sort(LOCK_ORDER);
+        Map<String, BigInteger> oldBalances = new HashMap<>();
+        customTokenHolderMapper.selectBalances(sorted)
+                               .forEach(holder -> oldBalances.put(holder.getTokenAddress() + KEY_SEPARATOR + holder.getAddress(), toBalance(holder.getBalance())));
+        // <token地址, 变动量>，按token地址排序
+        Map<String, CustomTokenHolder> deltas = new TreeMap<>();
+        Set<String> seen = new HashSet<>();
+        for (TokenHolder holder : sorted) {
+            String key = holder.getTokenAddress() + KEY_SEPARATOR + holder.getAddress();
+            // 不存在的持有者更新不到记录，同一持有者只计一次
+            if (!oldBalances.containsKey(key) || !seen.add(key)) {
+                continue;
+            }
+            BigInteger oldBalance = oldBalances.get(key);
+            BigInteger newBalance = toBalance(holder.getBalance());
+            long countDelta = (newBalance.signum() > 0 ? 1 : 0) - (oldBalance.signum() > 0 ? 1 : 0);
+            BigInteger sumDelta = newBalance.max(BigInteger.ZERO).subtract(oldBalance.max(BigInteger.ZERO));
+            if (countDelta == 0 && sumDelta.signum() == 0) {
+                continue;
+            }
+            CustomTokenHolder delta = deltas.computeIfAbsent(holder.getTokenAddress(), tokenAddress -> {
+                CustomTokenHolder summary = new CustomTokenHolder();
+                summary.setTokenAddress(tokenAddress);
+                summary.setHolderCount(0L);
+                summary.setHolderSumBalance("0");
+                return summary;
+            });
+            delta.setHolderCount(delta.getHolderCount() + countDelta);
+            delta.setHolderSumBalance(new BigInteger(delta.getHolderSumBalance()).add(sumDelta).toString());
+        }
+        customTokenHolderMapper.batchUpdate(sorted);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // 锁定token记录后在Java中累加余额之和
+        Map<String, BigInteger> oldSums = new HashMap<>();
+        customTokenMapper.selectTokenHolderSumBalanceForUpdate(new ArrayList<>(deltas.keySet()))
+                         .forEach(summary -> oldSums.put(summary.getTokenAddress(), toBalance(summary.getHolderSumBalance())));
+        deltas.values().forEach(delta -> {
+            BigInteger sum = oldSums.getOrDefault(delta.getTokenAddress(), BigInteger.ZERO).add(new BigInteger(delta.getHolderSumBalance()));
+            // 与持有者余额不一致时不会小于0，由全量核对修正
+            delta.setHolderSumBalance(sum.max(BigInteger.ZERO).toString());
+        });
+        customTokenMapper.batchIncreaseTokenHolderSummary(new ArrayList<>(deltas.values()));
+    }
+
+    /**
+     * 全量核对token的持有者数量及余额之和
+     *
+     * @param summaryList: 按token汇总的持有者数量及余额排序键高低两段的和
+     * @return: void
+     * @date: 2022/3/24
+     */
+    public void updateSummary(List<CustomTokenHolder> summaryList) {
+        if (CollUtil.isEmpty(summaryList)) {
+            return;
+        }
+        summaryList.forEach(summary -> summary.setHolderSumBalance(toBalance(summary.getHolderSumBalanceHigh()).multiply(SORT_PART_BASE)
+                                                                                                              .add(toBalance(summary.getHolderSumBalanceLow()))
+                                                                                                              .toString()));
+        customTokenMapper.batchUpdateTokenHolderSummary(summaryList);
+    }
+
+    private BigInteger toBalance(String balance) {
+        return Convert.toBigInteger(balance, BigInteger.ZERO);
+    }
+
+}
@@ -2,7 +2,6 @@ package com.platon.browser.task;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.convert.Convert;
-import cn.hutool.json.JSONUtil;
 import com.platon.browser.bean.AddressErcQty;
 import com.platon.browser.bean.TokenQty;
 import com.platon.browser.dao.custommapper.CustomAddressMapper;
@@ -18,19 +17,39 @@ import com.platon.browser.utils.TaskUtil;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.Future;
 
+/**
+ * erc交易数统计
+ * erc20、erc721、erc1155三个备份表并行按id键集分页读取，一次遍历累加token及地址的交易数，
+ * 交易数与三个断点在同一事务中更新，保证统计结果与断点一致
+ */
 @Slf4j
 @Component
 public class UpdateTokenQtyTask {
 
+    /**
+     * 计数数组中各类交易的下标
+     */
+    private static final int ERC20 = 0;
+
+    private static final int ERC721 = 1;
+
+    private static final int ERC1155 = 2;
+
+    /**
+     * 各类交易对应的断点id
+     */
+    private static final int[] POINT_LOG_IDS = {3, 4, 10};
+
+    private static final String[] STREAM_NAMES = {"erc20", "erc721", "erc1155"};
+
     @Resource
     private CustomTokenMapper customTokenMapper;
 
@@ -49,6 +68,12 @@ public class UpdateTokenQtyTask {
     @Resource
     private TxErc1155BakMapper txErc1155BakMapper;
 
+    /**
+     * 交易备份表读取线程池，线程数由task.tokenQtyReadThreads配置
+     */
+    @Resource
+    private ThreadPoolTaskExecutor tokenQtyReadExecutor;
+
     /**
      * 更新erc交易数
      * 每5分钟执行一次
@@ -62,153 +87,77 @@ public class UpdateTokenQtyTask {
     public void updateTokenQty() throws Exception {
         try {
             int pageSize = Convert.toInt(XxlJobHelper.getJobParam(), 500);
-            Map<String, TokenQty> tokenMap = new HashMap<>();
-            Map<String, AddressErcQty> addressMap = new HashMap<>();
-            PointLog erc20PointLog = pointLogMapper.selectByPrimaryKey(3);
-            long oldErc20Position = Convert.toLong(erc20PointLog.getPosition());
-            TaskUtil.console("当前页数为[{}]，erc20断点为[{}]", pageSize, oldErc20Position);
-            TxErc20BakExample txErc20BakExample = new TxErc20BakExample();
-            txErc20BakExample.setOrderByClause("id asc limit " + pageSize);
-            txErc20BakExample.createCriteria().andIdGreaterThan(oldErc20Position);
-            List<TxErc20Bak> erc20List = txErc20BakMapper.selectByExample(txErc20BakExample);
-            if (CollUtil.isNotEmpty(erc20List)) {
-                TaskUtil.console("找到erc20交易[{}]条", erc20List.size());
-                Map<String, List<ErcTx>> erc20Map = erc20List.stream().collect(Collectors.groupingBy(ErcTx::getContract));
-                //累计token的erc20交易数
-                for (Map.Entry<String, List<ErcTx>> entry : erc20Map.entrySet()) {
-                    TokenQty tokenQty = getTokenQty(tokenMap, entry.getKey());
-                    tokenQty.setErc20TxQty(entry.getValue().size());
-                }
-                //累计地址的erc20交易数
-                for (ErcTx ercTx : erc20List) {
-                    AddressErcQty fromAddressErcQty = getAddressErcQty(addressMap, ercTx.getFrom());
-                    AddressErcQty toAddressErcQty = getAddressErcQty(addressMap, ercTx.getTo());
-                    if (ercTx.getFrom().equalsIgnoreCase(ercTx.getTo()) && !AddressUtil.isAddrZero(ercTx.getFrom())) {
-                        fromAddressErcQty.setErc20TxQty(fromAddressErcQty.getErc20TxQty() + 1);
-                        TaskUtil.console("该erc20交易[{}]的from[{}]和to[{}]地址一致，erc交易数只算一次", ercTx.getHash(), ercTx.getFrom(), ercTx.getTo());
-                    } else {
-                        if (!AddressUtil.isAddrZero(fromAddressErcQty.getAddress())) {
-                            fromAddressErcQty.setErc20TxQty(fromAddressErcQty.getErc20TxQty() + 1);
-                        } else {
-                            TaskUtil.console("该erc20交易[{}]下，零地址[{}]不统计交易数", ercTx.getHash(), fromAddressErcQty.getAddress());
-                        }
-                        if (!AddressUtil.isAddrZero(toAddressErcQty.getAddress())) {
-                            toAddressErcQty.setErc20TxQty(toAddressErcQty.getErc20TxQty() + 1);
-                        } else {
-                            TaskUtil.console("该erc20交易[{}]下，零地址[{}]不统计交易数", ercTx.getHash(), toAddressErcQty.getAddress());
-                        }
-                    }
-                }
-                //记录最大的seq
-                erc20PointLog.setPosition(CollUtil.getLast(erc20List).getId().toString());
-            } else {
-                TaskUtil.console("当前erc20断点[{}]未找到erc20交易", oldErc20Position);
+            PointLog[] pointLogs = new PointLog[POINT_LOG_IDS.length];
+            long[] oldPositions = new long[POINT_LOG_IDS.length];
+            List<Future<List<? extends ErcTx>>> futures = new ArrayList<>(POINT_LOG_IDS.length);
+            for (int i = 0; i < POINT_LOG_IDS.length; i++) {
+                pointLogs[i] = pointLogMapper.selectByPrimaryKey(POINT_LOG_IDS[i]);
+                oldPositions[i] = Convert.toLong(pointLogs[i].getPosition());
+                int stream = i;
+                long position = oldPositions[i];
+                futures.add(tokenQtyReadExecutor.submit(() -> fetch(stream, position, pageSize)));
             }
-            PointLog erc721PointLog = pointLogMapper.selectByPrimaryKey(4);
-            long oldErc721Position = Convert.toLong(erc721PointLog.getPosition());
-            TaskUtil.console("当前页码为[{}]，erc721断点为[{}]", pageSize, oldErc721Position);
-            TxErc721BakExample txErc721BakExample = new TxErc721BakExample();
-            txErc721BakExample.setOrderByClause("id asc limit " + pageSize);
-            txErc721BakExample.createCriteria().andIdGreaterThan(oldErc721Position);
-            List<TxErc721Bak> erc721List = txErc721BakMapper.selectByExample(txErc721BakExample);
-            if (CollUtil.isNotEmpty(erc721List)) {
-                TaskUtil.console("找到erc721交易[{}]条", erc721List.size());
-                Map<String, List<ErcTx>> erc721Map = erc721List.stream().collect(Collectors.groupingBy(ErcTx::getContract));
-                //累计token的erc721交易数
-                for (Map.Entry<String, List<ErcTx>> entry : erc721Map.entrySet()) {
-                    TokenQty tokenQty = getTokenQty(tokenMap, entry.getKey());
-                    tokenQty.setErc721TxQty(entry.getValue().size());
+            TaskUtil.console("当前页数为[{}]，erc20断点为[{}]，erc721断点为[{}]，erc1155断点为[{}]", pageSize, oldPositions[ERC20], oldPositions[ERC721], oldPositions[ERC1155]);
+
+            // <合约地址-各类交易数>、<地址-各类交易数>
+            Map<String, long[]> tokenCounter = new HashMap<>();
+            Map<String, long[]> addressCounter = new HashMap<>();
+            for (int i = 0; i < futures.size(); i++) {
+                List<? extends ErcTx> txList = futures.get(i).get();
+                if (CollUtil.isEmpty(txList)) {
+                    TaskUtil.console("当前{}断点[{}]未找到{}交易", STREAM_NAMES[i], oldPositions[i], STREAM_NAMES[i]);
+                    continue;
                 }
-                //累计地址的erc721交易数
-                for (ErcTx ercTx : erc721List) {
-                    AddressErcQty fromAddressErcQty = getAddressErcQty(addressMap, ercTx.getFrom());
-                    AddressErcQty toAddressErcQty = getAddressErcQty(addressMap, ercTx.getTo());
-                    if (ercTx.getFrom().equalsIgnoreCase(ercTx.getTo()) && !AddressUtil.isAddrZero(ercTx.getFrom())) {
-                        fromAddressErcQty.setErc721TxQty(fromAddressErcQty.getErc721TxQty() + 1);
-                        TaskUtil.console("该erc721交易[{}]的from[{}]和to[{}]地址一致，erc交易数只算一次", ercTx.getHash(), ercTx.getFrom(), ercTx.getTo());
-                    } else {
-                        if (!AddressUtil.isAddrZero(fromAddressErcQty.getAddress())) {
-                            fromAddressErcQty.setErc721TxQty(fromAddressErcQty.getErc721TxQty() + 1);
-                        } else {
-                            TaskUtil.console("该erc721交易[{}]下，零地址[{}]不统计交易数", ercTx.getHash(), fromAddressErcQty.getAddress());
-                        }
-                        if (!AddressUtil.isAddrZero(toAddressErcQty.getAddress())) {
-                            toAddressErcQty.setErc721TxQty(toAddressErcQty.getErc721TxQty() + 1);
-                        } else {
-                            TaskUtil.console("该erc721交易[{}]下，零地址[{}]不统计交易数", ercTx.getHash(), toAddressErcQty.getAddress());
+                for (ErcTx ercTx : txList) {
+                    count(tokenCounter, ercTx.getContract(), i);
+                    if (ercTx.getFrom().equalsIgnoreCase(ercTx.getTo())) {
+                        // from和to地址一致，erc交易数只算一次
+                        if (!AddressUtil.isAddrZero(ercTx.getFrom())) {
+                            count(addressCounter, ercTx.getFrom(), i);
                         }
+                        continue;
                     }
-                }
-                //记录最大的seq
-                erc721PointLog.setPosition(CollUtil.getLast(erc721List).getId().toString());
-            } else {
-                TaskUtil.console("当前erc721断点[{}]未找到erc721交易", oldErc721Position);
-            }
-            // 1155
-            PointLog erc1155PointLog = pointLogMapper.selectByPrimaryKey(10);
-            long oldErc1155Position = Convert.toLong(erc1155PointLog.getPosition());
-            TaskUtil.console("当前页码为[{}]，erc1155断点为[{}]", pageSize, oldErc1155Position);
-            TxErc1155BakExample txErc1155BakExample = new TxErc1155BakExample();
-            txErc1155BakExample.setOrderByClause("id");
-            txErc1155BakExample.createCriteria().andIdGreaterThan(oldErc1155Position).andIdLessThanOrEqualTo(oldErc1155Position + pageSize);
-            List<TxErc1155Bak> erc1155List = txErc1155BakMapper.selectByExample(txErc1155BakExample);
-            if (CollUtil.isNotEmpty(erc1155List)) {
-                TaskUtil.console("找到1155交易[{}]条", erc1155List.size());
-                Map<String, List<ErcTx>> erc1155Map = erc1155List.stream().collect(Collectors.groupingBy(ErcTx::getContract));
-                //累计token的erc1155交易数
-                for (Map.Entry<String, List<ErcTx>> entry : erc1155Map.entrySet()) {
-                    TokenQty tokenQty = getTokenQty(tokenMap, entry.getKey());
-                    tokenQty.setErc1155TxQty(entry.getValue().size());
-                }
-                //累计地址的erc1155交易数
-                for (ErcTx ercTx : erc1155List) {
-                    AddressErcQty fromAddressErcQty = getAddressErcQty(addressMap, ercTx.getFrom());
-                    AddressErcQty toAddressErcQty = getAddressErcQty(addressMap, ercTx.getTo());
-                    if (ercTx.getFrom().equalsIgnoreCase(ercTx.getTo()) && !AddressUtil.isAddrZero(ercTx.getFrom())) {
-                        fromAddressErcQty.setErc1155TxQty(fromAddressErcQty.getErc1155TxQty() + 1);
-                        TaskUtil.console("该erc1155交易[{}]的from[{}]和to[{}]地址一致，erc交易数只算一次", ercTx.getHash(), ercTx.getFrom(), ercTx.getTo());
-                    } else {
-                        if (!AddressUtil.isAddrZero(fromAddressErcQty.getAddress())) {
-                            fromAddressErcQty.setErc1155TxQty(fromAddressErcQty.getErc1155TxQty() + 1);
-                        } else {
-                            TaskUtil.console("该erc1155交易[{}]下，零地址[{}]不统计交易数", ercTx.getHash(), fromAddressErcQty.getAddress());
-                        }
-                        if (!AddressUtil.isAddrZero(toAddressErcQty.getAddress())) {
-                            toAddressErcQty.setErc1155TxQty(toAddressErcQty.getErc1155TxQty() + 1);
-                        } else {
-                            TaskUtil.console("该erc1155交易[{}]下，零地址[{}]不统计交易数", ercTx.getHash(), toAddressErcQty.getAddress());
-                        }
+                    // 零地址不统计交易数
+                    if (!AddressUtil.isAddrZero(ercTx.getFrom())) {
+                        count(addressCounter, ercTx.getFrom(), i);
+                    }
+                    if (!AddressUtil.isAddrZero(ercTx.getTo())) {
+                        count(addressCounter, ercTx.getTo(), i);
                     }
                 }
-                //记录最大的seq
-                erc1155PointLog.setPosition(CollUtil.getLast(erc1155List).getId().toString());
-            } else {
-                TaskUtil.console("当前erc1155断点[{}]未找到erc1155交易", oldErc1155Position);
+                //记录最大的id
+                pointLogs[i].setPosition(CollUtil.getLast(txList).getId().toString());
+                TaskUtil.console("找到{}交易[{}]条", STREAM_NAMES[i], txList.size());
             }
-            if (CollUtil.isNotEmpty(tokenMap.values())) {
-                for (Map.Entry<String, TokenQty> entry : tokenMap.entrySet()) {
-                    entry.getValue().setTokenTxQty(entry.getValue().getErc20TxQty() + entry.getValue().getErc721TxQty() + entry.getValue().getErc1155TxQty());
-                }
-                List<TokenQty> list = CollUtil.newArrayList(tokenMap.values());
+
+            if (!tokenCounter.isEmpty()) {
+                List<TokenQty> list = new ArrayList<>(tokenCounter.size());
+                tokenCounter.forEach((contract, qty) -> list.add(TokenQty.builder()
+                                                                         .contract(contract)
+                                                                         .erc20TxQty(qty[ERC20])
+                                                                         .erc721TxQty(qty[ERC721])
+                                                                         .erc1155TxQty(qty[ERC1155])
+                                                                         .tokenTxQty(qty[ERC20] + qty[ERC721] + qty[ERC1155])
+                                                                         .build()));
                 customTokenMapper.batchUpdateTokenQty(list);
-                TaskUtil.console("更新token表的erc交易数，涉及的token数为[{}]，修改数据为{}", list.size(), JSONUtil.toJsonStr(list));
+                TaskUtil.console("更新token表的erc交易数，涉及的token数为[{}]", list.size());
             }
-            if (CollUtil.isNotEmpty(addressMap.values())) {
-                List<AddressErcQty> list = CollUtil.newArrayList(addressMap.values());
+            if (!addressCounter.isEmpty()) {
+                List<AddressErcQty> list = new ArrayList<>(addressCounter.size());
+                addressCounter.forEach((address, qty) -> list.add(AddressErcQty.builder()
+                                                                               .address(address)
+                                                                               .erc20TxQty(qty[ERC20])
+                                                                               .erc721TxQty(qty[ERC721])
+                                                                               .erc1155TxQty(qty[ERC1155])
+                                                                               .build()));
                 customAddressMapper.batchUpdateAddressErcQty(list);
-                TaskUtil.console("更新地址表的erc交易数，涉及的address数为[{}]，修改数据为{}", list.size(), JSONUtil.toJsonStr(list));
-            }
-            if (CollUtil.isNotEmpty(erc20List)) {
-                pointLogMapper.updateByPrimaryKeySelective(erc20PointLog);
-                TaskUtil.console("更新erc交易数，erc20断点为[{}]->[{}]", oldErc20Position, erc20PointLog.getPosition());
+                TaskUtil.console("更新地址表的erc交易数，涉及的address数为[{}]", list.size());
             }
-            if (CollUtil.isNotEmpty(erc721List)) {
-                pointLogMapper.updateByPrimaryKeySelective(erc721PointLog);
-                TaskUtil.console("更新erc交易数，erc721断点为[{}]->[{}]", oldErc721Position, erc721PointLog.getPosition());
-            }
-            if (CollUtil.isNotEmpty(erc1155List)) {
-                pointLogMapper.updateByPrimaryKeySelective(erc1155PointLog);
-                TaskUtil.console("更新erc交易数，erc1155断点为[{}]->[{}]", oldErc1155Position, erc1155PointLog.getPosition());
+            for (int i = 0; i < pointLogs.length; i++) {
+                if (!String.valueOf(oldPositions[i]).equals(pointLogs[i].getPosition())) {
+                    pointLogMapper.updateByPrimaryKeySelective(pointLogs[i]);
+                    TaskUtil.console("更新erc交易数，{}断点为[{}]->[{}]", STREAM_NAMES[i], oldPositions[i], pointLogs[i].getPosition());
+                }
             }
             XxlJobHelper.handleSuccess("更新erc交易数成功");
         } catch (Exception e) {
@@ -218,39 +167,46 @@ public class UpdateTokenQtyTask {
     }
 
     /**
-     * 获取AddressErcQty
+     * 按id键集分页查询备份表
      *
-     * @param addressMap:
-     * @param address:
-     * @return: com.platon.browser.bean.AddressErcQty
-     * @date: 2021/12/6
+     * @param stream:   交易类型下标
+     * @param position: 断点
+     * @param pageSize: 每页条数
+     * @return: java.util.List<? extends com.platon.browser.elasticsearch.dto.ErcTx>
+     * @date: 2022/3/18
      */
-    private AddressErcQty getAddressErcQty(Map<String, AddressErcQty> addressMap, String address) {
-        if (addressMap.containsKey(address)) {
-            return addressMap.get(address);
-        } else {
-            AddressErcQty addressErcQty = AddressErcQty.builder().address(address).erc20TxQty(0).erc721TxQty(0).erc1155TxQty(0).build();
-            addressMap.put(address, addressErcQty);
-            return addressErcQty;
+    private List<? extends ErcTx> fetch(int stream, long position, int pageSize) {
+        String orderBy = "id asc limit " + pageSize;
+        switch (stream) {
+            case ERC20:
+                TxErc20BakExample txErc20BakExample = new TxErc20BakExample();
+                txErc20BakExample.setOrderByClause(orderBy);
+                txErc20BakExample.createCriteria().andIdGreaterThan(position);
+                return txErc20BakMapper.selectByExample(txErc20BakExample);
+            case ERC721:
+                TxErc721BakExample txErc721BakExample = new TxErc721BakExample();
+                txErc721BakExample.setOrderByClause(orderBy);
+                txErc721BakExample.createCriteria().andIdGreaterThan(position);
+                return txErc721BakMapper.selectByExample(txErc721BakExample);
+            default:
+                TxErc1155BakExample txErc1155BakExample = new TxErc1155BakExample();
+                txErc1155BakExample.setOrderByClause(orderBy);
+                txErc1155BakExample.createCriteria().andIdGreaterThan(position);
+                return txErc1155BakMapper.selectByExample(txErc1155BakExample);
         }
     }
 
     /**
-     * 获取TokenQty
+     * 交易数加1
      *
-     * @param tokenMap:
-     * @param contract:
-     * @return: com.platon.browser.bean.TokenQty
-     * @date: 2021/12/6
+     * @param counter: 计数器
+     * @param key:     合约地址或地址
+     * @param stream:  交易类型下标
+     * @return: void
+     * @date: 2022/3/18
      */
-    private TokenQty getTokenQty(Map<String, TokenQty> tokenMap, String contract) {
-        if (tokenMap.containsKey(contract)) {
-            return tokenMap.get(contract);
-        } else {
-            TokenQty tokenQty = TokenQty.builder().contract(contract).tokenTxQty(0).erc20TxQty(0).erc721TxQty(0).erc1155TxQty(0).build();
-            tokenMap.put(contract, tokenQty);
-            return tokenQty;
-        }
+    private void count(Map<String, long[]> counter, String key, int stream) {
+        counter.computeIfAbsent(key, k -> new long[POINT_LOG_IDS.length])[stream]++;
     }
 
 }
@@ -0,0 +1,79 @@
+package com.platon.browser.task.stream;
+
+import cn.hutool.core.lang.func.Func1;
+import com.platon.browser.enums.BakTableEnum;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * 备份表消费流
+ * 数据源按断点键集分页读取，转换在事务外执行(可包含链上查询等耗时操作)，写入与断点更新在同一事务中执行
+ *
+ * @param <T> 备份表记录
+ * @param <R> 转换结果
+ */
+@Getter
+@Builder
+public class BakStream<T, R> {
+
+    /**
+     * 流名称，用于日志、指标及租约
+     */
+    private final String name;
+
+    /**
+     * 断点id
+     */
+    private final int pointLogId;
+
+    /**
+     * 备份表，用于计算积压
+     */
+    private final BakTableEnum table;
+
+    /**
+     * 数据源：按(断点, 条数)查询id大于断点的记录，按id升序返回
+     */
+    private final BiFunction<Long, Integer, List<T>> source;
+
+    /**
+     * 记录的id
+     */
+    private final ToLongFunction<T> id;
+
+    /**
+     * 转换
+     */
+    private final Func1<List<T>, R> transform;
+
+    /**
+     * 写入，为空时只在事务中更新断点(如转换中已写入ES等不参与数据库事务的存储)
+     */
+    private final Consumer<R> sink;
+
+    /**
+     * 初始页大小
+     */
+    @Builder.Default
+    private final int pageSize = 500;
+
+    /**
+     * 页大小范围，按每页处理耗时在范围内自适应调整
+     */
+    @Builder.Default
+    private final int minPageSize = 10;
+
+    @Builder.Default
+    private final int maxPageSize = 5000;
+
+    /**
+     * 处理当前页时是否并行预取下一页
+     */
+    private final boolean prefetch;
+
+}
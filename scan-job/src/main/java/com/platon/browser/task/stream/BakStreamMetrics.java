@@ -0,0 +1,53 @@
+package com.platon.browser.task.stream;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 备份表消费流的指标，每次执行结束时输出到任务日志
+ */
+@Data
+public class BakStreamMetrics {
+
+    /**
+     * 自适应后的页大小，下次执行沿用
+     */
+    private int pageSize;
+
+    /**
+     * 自适应页大小对应的配置页大小，配置(任务参数)变化时重新从配置值开始自适应
+     */
+    private int configuredPageSize;
+
+    /**
+     * 累计处理的页数及记录数
+     */
+    private long totalPages;
+
+    private long totalRows;
+
+    /**
+     * 累计异常次数及最近一次异常信息
+     */
+    private long errors;
+
+    private String lastError;
+
+    /**
+     * 最近一次执行处理的记录数、吞吐量(条/秒)及结束时的断点
+     */
+    private long lastRows;
+
+    private long throughput;
+
+    private long position;
+
+    /**
+     * 最近一次执行结束时的积压条数(备份表最大id-断点)
+     */
+    private long lag;
+
+    private Date lastRunTime;
+
+}
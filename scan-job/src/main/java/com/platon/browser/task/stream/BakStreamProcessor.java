@@ -0,0 +1,227 @@
+package com.platon.browser.task.stream;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.convert.Convert;
+import com.platon.browser.config.TaskConfig;
+import com.platon.browser.dao.custommapper.CustomBakPartitionMapper;
+import com.platon.browser.dao.custommapper.CustomJobLeaseMapper;
+import com.platon.browser.dao.entity.PointLog;
+import com.platon.browser.dao.mapper.PointLogMapper;
+import com.platon.browser.utils.TaskUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 备份表消费流处理器
+ * 持有租约期间按断点循环读取、转换、写入，每页写入与断点更新在同一事务中提交，直到积压处理完或达到最长执行时间；
+ * 空页不推进断点，异常时已提交的页保留，当前页在下次执行时重做；
+ * 每页提交时在同一事务中续期并校验租约，转换耗时超过租约时长、租约已被其它执行器接管时回滚该页并停止，避免同一页被写入两次。
+ * 各流的指标每次执行结束时输出到任务日志
+ */
+@Slf4j
+@Component
+public class BakStreamProcessor {
+
+    private static final String INSTANCE = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private static final AtomicLong LEASE_SEQ = new AtomicLong();
+
+    /**
+     * <流名称-指标>，保存自适应页大小及累计值
+     */
+    private final Map<String, BakStreamMetrics> metricsMap = new ConcurrentHashMap<>();
+
+    @Resource
+    private TaskConfig taskConfig;
+
+    @Resource
+    private PointLogMapper pointLogMapper;
+
+    @Resource
+    private CustomBakPartitionMapper customBakPartitionMapper;
+
+    @Resource
+    private CustomJobLeaseMapper customJobLeaseMapper;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 预读线程池，线程数由task.streamPrefetchThreads配置
+     */
+    @Resource
+    private ThreadPoolTaskExecutor streamPrefetchExecutor;
+
+    /**
+     * 处理消费流，未获取到租约时直接返回
+     *
+     * @param stream: 消费流
+     * @return: void
+     * @date: 2022/3/24
+     */
+    public <T, R> void process(BakStream<T, R> stream) throws Exception {
+        String leaseName = "point_log#" + stream.getPointLogId();
+        // 每次执行使用不同的持有者标识，同一执行器并发触发时也互斥
+        String owner = INSTANCE + "#" + LEASE_SEQ.incrementAndGet();
+        if (!tryLease(leaseName, owner)) {
+            TaskUtil.console("[{}]租约[{}]由其它执行器持有，跳过本次执行", stream.getName(), leaseName);
+            return;
+        }
+        BakStreamMetrics metrics = metricsMap.computeIfAbsent(stream.getName(), k -> new BakStreamMetrics());
+        PointLog pointLog = pointLogMapper.selectByPrimaryKey(stream.getPointLogId());
+        long oldPosition = Convert.toLong(pointLog.getPosition());
+        long position = oldPosition;
+        long start = System.currentTimeMillis();
+        long deadline = start + taskConfig.getStreamMaxSeconds() * 1000L;
+        // 沿用上次自适应后的页大小，配置的页大小变化时以新配置为准
+        if (metrics.getConfiguredPageSize() != stream.getPageSize()) {
+            metrics.setConfiguredPageSize(stream.getPageSize());
+            metrics.setPageSize(0);
+        }
+        int pageSize = clamp(stream, metrics.getPageSize() > 0 ? metrics.getPageSize() : stream.getPageSize());
+        int pages = 0;
+        long rows = 0;
+        Future<List<T>> next = null;
+        // 当前页及预读页查询时使用的页大小
+        int requested = pageSize;
+        int nextRequested = pageSize;
+        try {
+            List<T> page = stream.getSource().apply(position, requested);
+            while (CollUtil.isNotEmpty(page)) {
+                long pageStart = System.currentTimeMillis();
+                long lastId = stream.getId().applyAsLong(CollUtil.getLast(page));
+                // 不足查询时的页大小说明积压已处理完
+                boolean hasNext = page.size() >= requested && pageStart < deadline;
+                if (hasNext && stream.isPrefetch()) {
+                    int size = pageSize;
+                    nextRequested = size;
+                    next = streamPrefetchExecutor.submit(() -> stream.getSource().apply(lastId, size));
+                }
+                R result = stream.getTransform().call(page);
+                if (!commit(stream, pointLog, result, lastId, leaseName, owner)) {
+                    TaskUtil.console("[{}]租约[{}]已被其它执行器接管，回滚断点[{}]之后的一页并停止本次执行", stream.getName(), leaseName, position);
+                    break;
+                }
+                position = lastId;
+                pages++;
+                rows += page.size();
+                pageSize = nextPageSize(stream, pageSize, requested, page.size(), System.currentTimeMillis() - pageStart);
+                if (!hasNext) {
+                    break;
+                }
+                if (next != null) {
+                    page = next.get();
+                    requested = nextRequested;
+                } else {
+                    page = stream.getSource().apply(position, pageSize);
+                    requested = pageSize;
+                }
+                next = null;
+            }
+        } catch (Exception e) {
+            metrics.setErrors(metrics.getErrors() + 1);
+            metrics.setLastError(e.getMessage());
+            throw e;
+        } finally {
+            if (next != null) {
+                next.cancel(true);
+            }
+            customJobLeaseMapper.releaseLease(leaseName, owner);
+            record(stream, metrics, oldPosition, position, pages, rows, pageSize, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 写入与断点更新在同一事务中提交
+     * 先续期租约，续期语句锁定租约记录直到提交，提交期间租约不会被接管；租约已由其它执行器持有时回滚
+     *
+     * @return: boolean 是否已提交
+     * @date: 2022/3/24
+     */
+    private <T, R> boolean commit(BakStream<T, R> stream, PointLog pointLog, R result, long lastId, String leaseName, String owner) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (!tryLease(leaseName, owner)) {
+                status.setRollbackOnly();
+                return false;
+            }
+            if (stream.getSink() != null) {
+                stream.getSink().accept(result);
+            }
+            pointLog.setPosition(String.valueOf(lastId));
+            pointLogMapper.updateByPrimaryKeySelective(pointLog);
+            return true;
+        }));
+    }
+
+    private boolean tryLease(String leaseName, String owner) {
+        customJobLeaseMapper.upsertLease(leaseName, owner, taskConfig.getStreamLeaseSeconds());
+        return owner.equals(customJobLeaseMapper.selectOwner(leaseName));
+    }
+
+    /**
+     * 按本页处理耗时调整页大小：满页且耗时不到目标一半时翻倍，超过目标时减半
+     *
+     * @param stream:   消费流
+     * @param pageSize:  当前页大小
+     * @param requested: 本页查询时的页大小
+     * @param rows:      本页记录数
+     * @param elapsed:   本页处理耗时(毫秒)
+     * @return: int
+     * @date: 2022/3/24
+     */
+    private int nextPageSize(BakStream<?, ?> stream, int pageSize, int requested, int rows, long elapsed) {
+        long target = taskConfig.getStreamPageMillis();
+        if (elapsed > target) {
+            return clamp(stream, pageSize / 2);
+        }
+        if (rows >= requested && elapsed < target / 2) {
+            return clamp(stream, pageSize * 2);
+        }
+        return pageSize;
+    }
+
+    private int clamp(BakStream<?, ?> stream, int pageSize) {
+        return Math.max(stream.getMinPageSize(), Math.min(stream.getMaxPageSize(), pageSize));
+    }
+
+    private void record(BakStream<?, ?> stream, BakStreamMetrics metrics, long oldPosition, long position, int pages, long rows, int pageSize, long elapsed) {
+        metrics.setPageSize(pageSize);
+        metrics.setTotalPages(metrics.getTotalPages() + pages);
+        metrics.setTotalRows(metrics.getTotalRows() + rows);
+        metrics.setLastRows(rows);
+        metrics.setThroughput(rows * 1000 / Math.max(elapsed, 1));
+        metrics.setPosition(position);
+        metrics.setLastRunTime(new Date());
+        if (stream.getTable() != null) {
+            try {
+                metrics.setLag(Math.max(customBakPartitionMapper.selectMaxId(stream.getTable().getTableName()) - position, 0));
+            } catch (Exception e) {
+                log.warn("[{}]查询备份表最大id异常", stream.getName(), e);
+            }
+        }
+        TaskUtil.console("[{}]断点[{}]->[{}]，本次处理[{}]页[{}]条，耗时[{}]ms，吞吐[{}]条/秒，页大小[{}]，积压[{}]条，累计处理[{}]页[{}]条，累计异常[{}]次，最近异常[{}]",
+                         stream.getName(),
+                         oldPosition,
+                         position,
+                         pages,
+                         rows,
+                         elapsed,
+                         metrics.getThroughput(),
+                         pageSize,
+                         metrics.getLag(),
+                         metrics.getTotalPages(),
+                         metrics.getTotalRows(),
+                         metrics.getErrors(),
+                         metrics.getLastError());
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.platon.browser.task;
+
+import com.platon.browser.bean.CustomTokenHolder;
+import com.platon.browser.dao.custommapper.CustomTokenHolderMapper;
+import com.platon.browser.dao.custommapper.CustomTokenMapper;
+import com.platon.browser.dao.entity.TokenHolder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class TokenHolderBalanceWriterTest {
+
+    private static final BigInteger MAX_UINT256 = BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE);
+
+    @Mock
+    private CustomTokenHolderMapper customTokenHolderMapper;
+
+    @Mock
+    private CustomTokenMapper customTokenMapper;
+
+    @InjectMocks
+    private TokenHolderBalanceWriter target;
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void batchUpdate() {
+        when(customTokenHolderMapper.selectBalances(any())).thenReturn(Arrays.asList(holder("0xt", "0xa", "0"), holder("0xt", "0xb", "0")));
+        // 已有余额之和为uint256最大值，再加两个接近2^256的余额，超过decimal(65,0)
+        when(customTokenMapper.selectTokenHolderSumBalanceForUpdate(any())).thenReturn(Collections.singletonList(summary("0xt", MAX_UINT256.toString())));
+
+        target.batchUpdate(Arrays.asList(holder("0xt", "0xb", MAX_UINT256.toString()), holder("0xt", "0xa", MAX_UINT256.toString())));
+
+        ArgumentCaptor<List<CustomTokenHolder>> captor = ArgumentCaptor.forClass(List.class);
+        verify(customTokenMapper).batchIncreaseTokenHolderSummary(captor.capture());
+        CustomTokenHolder summary = captor.getValue().get(0);
+        assertEquals(Long.valueOf(2), summary.getHolderCount());
+        assertEquals(MAX_UINT256.multiply(BigInteger.valueOf(3)).toString(), summary.getHolderSumBalance());
+        // 持有者按(token地址, 持有者地址)的顺序更新
+        ArgumentCaptor<List<TokenHolder>> holders = ArgumentCaptor.forClass(List.class);
+        verify(customTokenHolderMapper).batchUpdate(holders.capture());
+        assertEquals("0xa", holders.getValue().get(0).getAddress());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void updateSummary() {
+        CustomTokenHolder summary = summary("0xt", null);
+        // 两个uint256最大值的排序键高低两段分别求和
+        String sort = MAX_UINT256.toString();
+        summary.setHolderSumBalanceHigh(new BigInteger(sort.substring(0, 39)).shiftLeft(1).toString());
+        summary.setHolderSumBalanceLow(new BigInteger(sort.substring(39)).shiftLeft(1).toString());
+
+        target.updateSummary(Collections.singletonList(summary));
+
+        ArgumentCaptor<List<CustomTokenHolder>> captor = ArgumentCaptor.forClass(List.class);
+        verify(customTokenMapper).batchUpdateTokenHolderSummary(captor.capture());
+        assertEquals(MAX_UINT256.shiftLeft(1).toString(), captor.getValue().get(0).getHolderSumBalance());
+    }
+
+    private TokenHolder holder(String tokenAddress, String address, String balance) {
+        TokenHolder holder = new TokenHolder();
+        holder.setTokenAddress(tokenAddress);
+        holder.setAddress(address);
+        holder.setBalance(balance);
+        return holder;
+    }
+
+    private CustomTokenHolder summary(String tokenAddress, String sumBalance) {
+        CustomTokenHolder summary = new CustomTokenHolder();
+        summary.setTokenAddress(tokenAddress);
+        summary.setHolderSumBalance(sumBalance);
+        return summary;
+    }
+
+}
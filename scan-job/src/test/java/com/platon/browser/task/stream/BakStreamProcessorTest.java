@@ -0,0 +1,136 @@
+package com.platon.browser.task.stream;
+
+import com.platon.browser.config.TaskConfig;
+import com.platon.browser.dao.custommapper.CustomBakPartitionMapper;
+import com.platon.browser.dao.custommapper.CustomJobLeaseMapper;
+import com.platon.browser.dao.entity.PointLog;
+import com.platon.browser.dao.mapper.PointLogMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class BakStreamProcessorTest {
+
+    private static final List<Long> RECORDS = LongStream.rangeClosed(1, 5).boxed().collect(Collectors.toList());
+
+    @Mock
+    private TaskConfig taskConfig;
+
+    @Mock
+    private PointLogMapper pointLogMapper;
+
+    @Mock
+    private CustomBakPartitionMapper customBakPartitionMapper;
+
+    @Mock
+    private CustomJobLeaseMapper customJobLeaseMapper;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    @InjectMocks
+    private BakStreamProcessor target;
+
+    private ThreadPoolTaskExecutor streamPrefetchExecutor;
+
+    private final PointLog pointLog = new PointLog();
+
+    private final AtomicReference<String> leaseOwner = new AtomicReference<>();
+
+    private final List<Long> written = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        streamPrefetchExecutor = new ThreadPoolTaskExecutor();
+        streamPrefetchExecutor.initialize();
+        ReflectionTestUtils.setField(target, "streamPrefetchExecutor", streamPrefetchExecutor);
+        when(taskConfig.getStreamMaxSeconds()).thenReturn(60);
+        when(taskConfig.getStreamLeaseSeconds()).thenReturn(60);
+        when(taskConfig.getStreamPageMillis()).thenReturn(10000L);
+        pointLog.setId(1);
+        pointLog.setPosition("0");
+        when(pointLogMapper.selectByPrimaryKey(1)).thenReturn(pointLog);
+        doAnswer(invocation -> {
+            leaseOwner.compareAndSet(null, invocation.getArgument(1));
+            return null;
+        }).when(customJobLeaseMapper).upsertLease(anyString(), anyString(), anyInt());
+        when(customJobLeaseMapper.selectOwner(anyString())).thenAnswer(invocation -> leaseOwner.get());
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(transactionStatus));
+    }
+
+    @After
+    public void destroy() {
+        streamPrefetchExecutor.shutdown();
+    }
+
+    @Test
+    public void process() throws Exception {
+        target.process(stream());
+        // 每页2条，预读下一页，全部写入后断点推进到最后一条
+        assertEquals(RECORDS, written);
+        assertEquals("5", pointLog.getPosition());
+        verify(pointLogMapper, times(3)).updateByPrimaryKeySelective(any());
+        verify(customJobLeaseMapper).releaseLease(anyString(), eq(leaseOwner.get()));
+    }
+
+    @Test
+    public void leaseLost() throws Exception {
+        // 获取租约及第一页提交时仍持有，之后被其它执行器接管
+        AtomicInteger calls = new AtomicInteger();
+        when(customJobLeaseMapper.selectOwner(anyString())).thenAnswer(invocation -> calls.incrementAndGet() <= 2 ? leaseOwner.get() : "other");
+        target.process(stream());
+        // 第二页回滚，断点停在第一页
+        assertEquals(RECORDS.subList(0, 2), written);
+        assertEquals("2", pointLog.getPosition());
+        verify(pointLogMapper, times(1)).updateByPrimaryKeySelective(any());
+        verify(transactionStatus).setRollbackOnly();
+    }
+
+    @Test
+    public void leaseHeldByOther() throws Exception {
+        when(customJobLeaseMapper.selectOwner(anyString())).thenReturn("other");
+        target.process(stream());
+        assertEquals(0, written.size());
+        verify(pointLogMapper, never()).selectByPrimaryKey(any());
+    }
+
+    private BakStream<Long, List<Long>> stream() {
+        return BakStream.<Long, List<Long>>builder()
+                        .name("test")
+                        .pointLogId(1)
+                        .source((position, size) -> RECORDS.stream().filter(id -> id > position).limit(size).collect(Collectors.toList()))
+                        .id(Long::longValue)
+                        .transform(ArrayList::new)
+                        .sink(written::addAll)
+                        .pageSize(2)
+                        .minPageSize(1)
+                        .maxPageSize(2)
+                        .prefetch(true)
+                        .build();
+    }
+
+}
@@ -9,6 +9,7 @@ import com.platon.browser.utils.SpringUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
@@ -17,8 +18,12 @@ import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
@@ -27,12 +32,15 @@ import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.core.CountRequest;
 import org.elasticsearch.client.core.CountResponse;
 import org.elasticsearch.client.indices.*;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.yaml.snakeyaml.Yaml;
 
@@ -40,6 +48,7 @@ import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.IOException;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * @Auther: Chendongming
@@ -55,6 +64,11 @@ public abstract class AbstractEsRepository {
 
     private static final String CONSUME_TIME_TIPS = "处理耗时:{} ms";
 
+    /**
+     * 列表总数的默认上限，与ES默认的track_total_hits一致
+     */
+    public static final int DEFAULT_TRACK_TOTAL_HITS = 10000;
+
     @Resource(name = "restHighLevelClient")
     protected RestHighLevelClient client;
 
@@ -353,10 +367,124 @@ public abstract class AbstractEsRepository {
     public <T> ESResult<T> search(ESQueryBuilderConstructor constructor, Class<T> clazz, int pageNo, int pageSize) throws IOException {
         long startTime = System.currentTimeMillis();
 
+        SearchRequest searchRequest = new SearchRequest(getIndexName());
+        // 设置SearchSourceBuilder查询属性
+        searchRequest.source(buildSearchSource(constructor, pageNo, pageSize));
+        SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
+        ESResult<T> esResult = toResult(response, clazz);
+
+        log.debug(CONSUME_TIME_TIPS, System.currentTimeMillis() - startTime);
+
+        return esResult;
+    }
+
+    /**
+     * 分页搜索并在同一次请求中返回总数
+     * 总数超过trackTotalHitsUpTo时按trackTotalHitsUpTo返回，避免为精确计数遍历全部命中文档
+     *
+     * @param constructor:        查询条件
+     * @param clazz:              文档类型
+     * @param pageNo:             页码
+     * @param pageSize:           页大小
+     * @param trackTotalHitsUpTo: 总数上限
+     * @return: com.platon.browser.service.elasticsearch.bean.ESResult<T>
+     * @date: 2022/3/24
+     */
+    public <T> ESResult<T> searchWithTotal(ESQueryBuilderConstructor constructor, Class<T> clazz, int pageNo, int pageSize, int trackTotalHitsUpTo) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        SearchRequest searchRequest = new SearchRequest(getIndexName());
+        searchRequest.source(buildSearchSource(constructor, pageNo, pageSize).trackTotalHitsUpTo(trackTotalHitsUpTo));
+        SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
+        ESResult<T> esResult = toResult(response, clazz);
+
+        log.debug(CONSUME_TIME_TIPS, System.currentTimeMillis() - startTime);
+
+        return esResult;
+    }
+
+    /**
+     * 分页搜索及按另一个条件精确计数，通过msearch在一次请求中并行执行
+     * 计数条件与搜索条件相同时应使用searchWithTotal
+     *
+     * @param constructor:      搜索条件
+     * @param countConstructor: 计数条件
+     * @param clazz:            文档类型
+     * @param pageNo:           页码
+     * @param pageSize:         页大小
+     * @return: com.platon.browser.service.elasticsearch.bean.ESResult<T> 总数为计数条件的命中数
+     * @date: 2022/3/24
+     */
+    public <T> ESResult<T> searchWithCount(ESQueryBuilderConstructor constructor, ESQueryBuilderConstructor countConstructor, Class<T> clazz, int pageNo, int pageSize) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        MultiSearchRequest multiSearchRequest = new MultiSearchRequest();
+        multiSearchRequest.add(new SearchRequest(getIndexName()).source(buildSearchSource(constructor, pageNo, pageSize)));
+        SearchSourceBuilder countSourceBuilder = new SearchSourceBuilder().query(countConstructor.listBuilders()).size(0).trackTotalHits(true);
+        multiSearchRequest.add(new SearchRequest(getIndexName()).source(countSourceBuilder));
+        MultiSearchResponse.Item[] items = client.msearch(multiSearchRequest, RequestOptions.DEFAULT).getResponses();
+        for (MultiSearchResponse.Item item : items) {
+            if (item.isFailure()) {
+                throw new IOException("msearch失败：" + item.getFailureMessage(), item.getFailure());
+            }
+        }
+        ESResult<T> esResult = toResult(items[0].getResponse(), clazz);
+        esResult.setTotal(items[1].getResponse().getHits().getTotalHits().value);
+
+        log.debug(CONSUME_TIME_TIPS, System.currentTimeMillis() - startTime);
+
+        return esResult;
+    }
+
+    /**
+     * 以scroll方式遍历所有符合条件的文档，按批回调，用于全量构建内存索引等场景
+     *
+     * @param constructor: 查询条件，result为需要返回的字段
+     * @param clazz:       文档类型
+     * @param batchSize:   每批文档数
+     * @param consumer:    每批文档的处理
+     * @return: long 遍历的文档数
+     * @date: 2022/3/24
+     */
+    public <T> long scroll(ESQueryBuilderConstructor constructor, Class<T> clazz, int batchSize, Consumer<List<T>> consumer) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Scroll scroll = new Scroll(TimeValue.timeValueMinutes(1));
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder().query(constructor.listBuilders()).size(batchSize).sort(SortBuilders.fieldSort("_doc"));
+        if (constructor.getResult() != null) {
+            searchSourceBuilder.fetchSource(constructor.getResult(), null);
+        }
+        SearchRequest searchRequest = new SearchRequest(getIndexName()).source(searchSourceBuilder).scroll(scroll);
+        SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
+        String scrollId = response.getScrollId();
+        long total = 0;
+        try {
+            while (response.getHits().getHits().length > 0) {
+                ESResult<T> esResult = toResult(response, clazz);
+                consumer.accept(esResult.getRsData());
+                total += esResult.getRsData().size();
+                SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId).scroll(scroll);
+                response = client.scroll(scrollRequest, RequestOptions.DEFAULT);
+                scrollId = response.getScrollId();
+            }
+        } finally {
+            ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+            clearScrollRequest.addScrollId(scrollId);
+            try {
+                client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+            } catch (IOException e) {
+                log.warn("清除scroll失败", e);
+            }
+        }
+
+        log.debug(CONSUME_TIME_TIPS, System.currentTimeMillis() - startTime);
+
+        return total;
+    }
+
+    private SearchSourceBuilder buildSearchSource(ESQueryBuilderConstructor constructor, int pageNo, int pageSize) {
         if (pageNo <= 0) {
             pageNo = 1;
         }
-        SearchRequest searchRequest = new SearchRequest(getIndexName());
         SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
         //排序
         if (StringUtils.isNotEmpty(constructor.getAsc())) {
@@ -381,19 +509,17 @@ public abstract class AbstractEsRepository {
         if (constructor.getResult() != null) {
             searchSourceBuilder.fetchSource(constructor.getResult(), null);
         }
-        // 设置SearchSourceBuilder查询属性
-        searchRequest.source(searchSourceBuilder);
         log.debug("get rs" + searchSourceBuilder.toString());
-        SearchResponse response = client.search(searchRequest, RequestOptions.DEFAULT);
+        return searchSourceBuilder;
+    }
+
+    private <T> ESResult<T> toResult(SearchResponse response, Class<T> clazz) {
         ESResult<T> esResult = new ESResult<>();
         SearchHits hits = response.getHits();
         esResult.setTotal(hits.getTotalHits().value);
         List<T> list = new ArrayList<>();
         Arrays.asList(hits.getHits()).forEach(hit -> list.add(JSON.parseObject(hit.getSourceAsString(), clazz)));
         esResult.setRsData(list);
-
-        log.debug(CONSUME_TIME_TIPS, System.currentTimeMillis() - startTime);
-
         return esResult;
     }
 
@@ -453,6 +579,53 @@ public abstract class AbstractEsRepository {
 
     }
 
+    /**
+     * 批量增加或更新，任一文档写入失败都抛出异常
+     * 用于需要ES确认后才能推进断点的场景，docId需由业务主键生成，重复写入保持幂等
+     *
+     * @throws IOException
+     */
+    public <T> void bulkAddOrUpdateChecked(Map<String, T> docs) throws IOException {
+        BulkResponse response = bulkIndex(docs);
+        if (response.hasFailures()) {
+            throw new IOException("ES批量增加或更新部分失败:" + response.buildFailureMessage());
+        }
+    }
+
+    /**
+     * 批量增加或更新，返回写入失败的docId，由调用方逐条处理
+     *
+     * @throws IOException
+     */
+    public <T> Set<String> bulkAddOrUpdateGetFailed(Map<String, T> docs) throws IOException {
+        BulkResponse response = bulkIndex(docs);
+        Set<String> failedIds = new HashSet<>();
+        if (response.hasFailures()) {
+            for (BulkItemResponse item : response.getItems()) {
+                if (item.isFailed()) {
+                    failedIds.add(item.getId());
+                    log.error("ES写入文档[{}]失败:{}", item.getId(), item.getFailureMessage());
+                }
+            }
+        }
+        return failedIds;
+    }
+
+    private <T> BulkResponse bulkIndex(Map<String, T> docs) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        BulkRequest br = new BulkRequest();
+        for (Map.Entry<String, T> doc : docs.entrySet()) {
+            IndexRequest ir = new IndexRequest(getIndexName());
+            ir.id(doc.getKey());
+            ir.source(JSON.toJSONString(doc.getValue()), XContentType.JSON);
+            br.add(ir);
+        }
+        BulkResponse response = client.bulk(br, RequestOptions.DEFAULT);
+        log.debug(CONSUME_TIME_TIPS, System.currentTimeMillis() - startTime);
+        return response;
+    }
+
     /**
      * 批量删除
      *
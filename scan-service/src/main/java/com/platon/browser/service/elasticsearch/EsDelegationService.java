@@ -8,9 +8,7 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @Auther: Chendongming
@@ -32,8 +30,7 @@ public class EsDelegationService implements EsService<Delegation> {
         }
         try {
             Map<String, Delegation> delegationMap = new HashMap<>();
-            // 使用(<节点ID>-<质押区块号>-<委托人地址>)作ES的docId
-            delegations.forEach(d -> delegationMap.put(d.getNodeId() + "-" + d.getStakingBlockNum() + "-" + d.getDelegateAddr(), d));
+            delegations.forEach(d -> delegationMap.put(getDocId(d), d));
             ESDelegationRepository.bulkAddOrUpdate(delegationMap);
         } catch (Exception e) {
             log.error("", e);
@@ -41,4 +38,34 @@ public class EsDelegationService implements EsService<Delegation> {
         }
     }
 
+    /**
+     * 保存委托并返回ES已确认写入的委托，写入失败的委托不返回，由下次任务重试
+     *
+     * @param delegations: 委托列表
+     * @return: java.util.List<com.platon.browser.dao.entity.Delegation>
+     * @date: 2022/3/18
+     */
+    public List<Delegation> saveAndGetAcknowledged(List<? extends Delegation> delegations) throws IOException {
+        Map<String, Delegation> delegationMap = new LinkedHashMap<>();
+        delegations.forEach(d -> delegationMap.put(getDocId(d), d));
+        if (delegationMap.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> failedIds = ESDelegationRepository.bulkAddOrUpdateGetFailed(delegationMap);
+        List<Delegation> acknowledged = new ArrayList<>();
+        delegationMap.forEach((docId, d) -> {
+            if (!failedIds.contains(docId)) {
+                acknowledged.add(d);
+            }
+        });
+        return acknowledged;
+    }
+
+    /**
+     * 使用(<节点ID>-<质押区块号>-<委托人地址>)作ES的docId
+     */
+    private String getDocId(Delegation d) {
+        return d.getNodeId() + "-" + d.getStakingBlockNum() + "-" + d.getDelegateAddr();
+    }
+
 }
@@ -34,7 +34,7 @@ public class EsNodeOptService implements EsService<NOptBak> {
             Map<String, NOptBak> nodeOptMap = new HashMap<>();
             // 使用(<id>)作ES的docId
             nodeOpts.forEach(n -> nodeOptMap.put(n.getId().toString(), n));
-            ESNodeOptRepository.bulkAddOrUpdate(nodeOptMap);
+            ESNodeOptRepository.bulkAddOrUpdateChecked(nodeOptMap);
         } catch (Exception e) {
             log.error("", e);
             throw new BusinessException(e.getMessage());
@@ -35,10 +35,7 @@ import org.web3j.utils.Numeric;
 import javax.annotation.Resource;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -173,6 +170,50 @@ public class ErcServiceImpl {
         return balance;
     }
 
+    /**
+     * 批量查询合约方法 totalSupply()，适用于prc20 & prc721Enumeration
+     *
+     * @param contractAddressList 合约地址
+     * @return 合约地址与总供应量的映射，调用失败的合约不在结果中
+     * @throws IOException 网络异常，可重试
+     */
+    public Map<String, BigInteger> batchTotalSupply(List<String> contractAddressList) throws IOException {
+        Map<String, BigInteger> totalSupplyMap = new HashMap<>();
+        if (contractAddressList.isEmpty()) {
+            return totalSupplyMap;
+        }
+        Function totalSupplyFunction = new Function("totalSupply", Collections.emptyList(), Collections.singletonList(new TypeReference<Uint256>() {
+        }));
+        byte[] callData = Numeric.hexStringToByteArray(FunctionEncoder.encode(totalSupplyFunction));
+        List<Call3> call3List = contractAddressList.stream()
+                .map(address -> new Call3(Bech32.addressDecodeHex(address), true, callData))
+                .collect(Collectors.toList());
+        Function function = new Function("aggregate3",
+                Collections.singletonList(new DynamicArray<Call3>(Call3.class, call3List)),
+                Collections.singletonList(new TypeReference<DynamicArray<Result>>() {
+                }));
+
+        PlatonCall ethCall = platOnClient.getWeb3jWrapper().getWeb3j().platonCall(Transaction.createEthCallTransaction(Address.DEFAULT.getValue(), blockChainConfig.getMultiCallContractAddress(),  FunctionEncoder.encode(function)),
+                        DefaultBlockParameterName.LATEST)
+                .send();
+        if(ethCall.hasError()){
+            throw new RuntimeException("查询合约失败(MultiCall3)  msg = " + ethCall.getError().getMessage() + " code = " + ethCall.getError().getCode() );
+        }
+        List resultList = executeCallSingleValueReturn(FunctionReturnDecoder.decode(ethCall.getValue(), function.getOutputParameters()), List.class);
+        for (int i = 0; i < contractAddressList.size(); i++) {
+            if(resultList.get(i) instanceof  Result){
+                Result result = (Result) resultList.get(i);
+                if ( result.success ){
+                    List<BigInteger> totalSupplyList = convertToNative(FunctionReturnDecoder.decode(Numeric.toHexString(result.returnData), Utils.convert( Collections.singletonList(new TypeReference<Uint256>() {}))));
+                    if(totalSupplyList.size() == 1){
+                        totalSupplyMap.put(contractAddressList.get(i), totalSupplyList.get(0));
+                    }
+                }
+            }
+        }
+        return totalSupplyMap;
+    }
+
     /**
      * 获取供应总量
      *